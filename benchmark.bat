@@ -0,0 +1,7 @@
+REM Compiles and runs the microbenchmarks (see benchmark.BenchmarkRunner)
+set targetdir=target
+
+IF NOT EXIST "%targetdir%" mkdir %targetdir%
+
+javac -sourcepath src -d %targetdir% -cp lib/ECLA.jar;lib/DTNConsoleConnection.jar src/benchmark/*.java
+java -Xmx1024M -cp %targetdir%;lib/ECLA.jar;lib/DTNConsoleConnection.jar benchmark.BenchmarkRunner %*
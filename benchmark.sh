@@ -0,0 +1,8 @@
+#! /bin/sh
+# Compiles and runs the microbenchmarks (see benchmark.BenchmarkRunner)
+targetdir=target
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+javac -sourcepath src -d $targetdir -cp lib/ECLA.jar:lib/DTNConsoleConnection.jar src/benchmark/*.java || exit 1
+java -Xmx1024M -cp $targetdir:lib/ECLA.jar:lib/DTNConsoleConnection.jar benchmark.BenchmarkRunner $*
@@ -0,0 +1,18 @@
+REM Compiles and runs the end-to-end scaling benchmark (see benchmark.ScalingBenchmark)
+setlocal enabledelayedexpansion
+set targetdir=target
+
+IF NOT EXIST "%targetdir%" mkdir %targetdir%
+
+REM routers, event generators etc. are loaded by reflection so all the
+REM simulator packages are compiled, except the routers that don't build
+set broken=EvrOld EvrRouter GSASPlusRouter GSASRouter GSWD GSWDRouter GeoCastPlusRouter GeooppRouter
+set routers=
+for %%f in (src\routing\*.java) do (
+	set skip=
+	for %%b in (%broken%) do if "%%~nf"=="%%b" set skip=1
+	if not defined skip set routers=!routers! %%f
+)
+
+javac -sourcepath src -d %targetdir% -cp lib/ECLA.jar;lib/DTNConsoleConnection.jar src/core/*.java src/movement/*.java src/report/*.java %routers% src/input/*.java src/applications/*.java src/interfaces/*.java src/benchmark/*.java || exit /b 1
+java -cp %targetdir%;lib/ECLA.jar;lib/DTNConsoleConnection.jar benchmark.ScalingBenchmark %*
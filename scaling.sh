@@ -0,0 +1,18 @@
+#! /bin/sh
+# Compiles and runs the end-to-end scaling benchmark (see benchmark.ScalingBenchmark)
+targetdir=target
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+# routers, event generators etc. are loaded by reflection so all the
+# simulator packages are compiled, except the routers that don't build
+routers=""
+for f in src/routing/*.java; do
+	case `basename $f .java` in
+	EvrOld|EvrRouter|GSASPlusRouter|GSASRouter|GSWD|GSWDRouter|GeoCastPlusRouter|GeooppRouter) ;;
+	*) routers="$routers $f" ;;
+	esac
+done
+
+javac -sourcepath src -d $targetdir -cp lib/ECLA.jar:lib/DTNConsoleConnection.jar src/core/*.java src/movement/*.java src/report/*.java $routers src/input/*.java src/applications/*.java src/interfaces/*.java src/benchmark/*.java || exit 1
+java -cp $targetdir:lib/ECLA.jar:lib/DTNConsoleConnection.jar benchmark.ScalingBenchmark $*
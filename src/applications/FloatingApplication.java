@@ -35,6 +35,8 @@ import routing.FloatingContentRouter;
  * @author jo
  */
 public class FloatingApplication extends Application {
+	private static final long serialVersionUID = 42L;
+
     /** Destination address */
     public static final String FLOATING_DESTINATION = "destination";
     /** Seed for the app's random number generator */
@@ -398,11 +400,11 @@ public class FloatingApplication extends Application {
 					    SimClock.getIntTime() + "-" + host.getAddress(),
 					    getMessageSize());
 		    m.addProperty("type", "floating");
-		    m.addProperty("anchor", anchor.clone());
-		    m.addProperty("r", getR());
-		    m.addProperty("a", getA());
-		    m.addProperty("ttl", SimClock.getTime() + ttl);
-		    m.addProperty("ttlval", ttl);
+		    m.setCoord(FloatingContentRouter.ANCHOR_SLOT, anchor.clone());
+		    m.setDouble(FloatingContentRouter.R_SLOT, getR());
+		    m.setDouble(FloatingContentRouter.A_SLOT, getA());
+		    m.setDouble(FloatingContentRouter.TTL_SLOT, SimClock.getTime() + ttl);
+		    m.setDouble(FloatingContentRouter.TTL_VAL_SLOT, ttl);
 		    m.setAppID(APP_ID);
 		    host.createNewMessage(m);
 		    
@@ -461,17 +463,17 @@ public class FloatingApplication extends Application {
 					    SimClock.getIntTime() + "-" + host.getAddress(),
 					    msgsize);
 		    m.addProperty("type", "floating");
-		    m.addProperty("r", r);
-		    m.addProperty("a", a);
-		    m.addProperty("ttl", SimClock.getTime() + msgttl);
-		    m.addProperty("ttlval", msgttl);
+		    m.setDouble(FloatingContentRouter.R_SLOT, r);
+		    m.setDouble(FloatingContentRouter.A_SLOT, a);
+		    m.setDouble(FloatingContentRouter.TTL_SLOT, SimClock.getTime() + msgttl);
+		    m.setDouble(FloatingContentRouter.TTL_VAL_SLOT, msgttl);
 		    m.setTtl ((int) (msgttl));  /* need to redo this after host.createNewMessage () */
 		    m.setAppID(APP_ID);
 
 		    if (fcr.getLocationSource() == FloatingContentRouter.LOC_SRC_GPS)
-			m.addProperty("anchor", fcr.getLocation().clone());
+			m.setCoord(FloatingContentRouter.ANCHOR_SLOT, fcr.getLocation().clone());
 		    else
-			m.addProperty("anchor", fcr.getLastKnownLocation().clone());
+			m.setCoord(FloatingContentRouter.ANCHOR_SLOT, fcr.getLastKnownLocation().clone());
 		    host.createNewMessage(m);
 		    /* ttl needs to be set after message creation */
 		    m.setTtl ((int) (msgttl));
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+/**
+ * A microbenchmark of one operation of the simulator. The
+ * {@link BenchmarkRunner} calls {@link #setUp()} once and then
+ * {@link #run(int)} repeatedly with the number of operations to run.
+ * Benchmarks are parameterized by creating one instance per parameter
+ * value; the parameter is a part of the name.
+ */
+public abstract class Benchmark {
+	private String name;
+
+	/**
+	 * Creates a new benchmark
+	 * @param name Name of the benchmark (e.g., "Cast.checkThePoint[sussex]")
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the benchmark
+	 * @return the name of the benchmark
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Creates the objects the benchmark needs. Called once before the
+	 * benchmark is run. Benchmarks must not rely on the state left by
+	 * other benchmarks.
+	 * @throws Exception if the set up fails
+	 */
+	public void setUp() throws Exception {
+	}
+
+	/**
+	 * Releases the resources of the benchmark after it has been run
+	 */
+	public void tearDown() {
+	}
+
+	/**
+	 * Runs the benchmarked operation the given number of times
+	 * @param ops How many operations to run
+	 * @return A value computed from the results of the operations (so that
+	 * the compiler can't remove the operations)
+	 */
+	public abstract long run(int ops);
+}
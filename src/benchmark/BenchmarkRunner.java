@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <P>Runs the microbenchmarks of the simulator's hot paths and compares
+ * the results to reference results. Every benchmark is first run until
+ * the warmup time has passed and then measured in a number of iterations
+ * of (about) equal length. The result is the mean time of one operation
+ * in the measured iterations.</P>
+ *
+ * <P>Usage: <CODE>BenchmarkRunner [-w warmupMs] [-i iterations]
+ * [-t iterationMs] [-r referenceFile] [-s saveFile] [-d tolerance]
+ * [nameRegex]</CODE>. Only the benchmarks whose name matches the regular
+ * expression are run. The results are compared to the
+ * {@link #DEF_REFERENCE_FILE reference file} and the benchmarks that are
+ * more than the tolerance (a fraction, default {@value #DEF_TOLERANCE})
+ * slower than the reference are marked as regressions. With
+ * <CODE>-s</CODE> the results are saved in the reference file format.
+ * The reference results depend on the machine, so they should be
+ * re-created (with <CODE>-s</CODE>) when the machine changes.</P>
+ */
+public class BenchmarkRunner {
+	/** default path of the reference results file ({@value}) */
+	public static final String DEF_REFERENCE_FILE =
+		"src/benchmark/reference.txt";
+	/** default warmup time of a benchmark in milliseconds ({@value}) */
+	public static final int DEF_WARMUP_MS = 2000;
+	/** default number of measured iterations ({@value}) */
+	public static final int DEF_ITERATIONS = 5;
+	/** default length of a measured iteration in milliseconds ({@value}) */
+	public static final int DEF_ITERATION_MS = 1000;
+	/** default relative slowdown that is reported as a regression
+	 * ({@value}) */
+	public static final double DEF_TOLERANCE = 0.25;
+
+	/** sink for the results of the benchmarks */
+	public static volatile long sink;
+
+	private int warmupMs = DEF_WARMUP_MS;
+	private int iterations = DEF_ITERATIONS;
+	private int iterationMs = DEF_ITERATION_MS;
+	private double tolerance = DEF_TOLERANCE;
+
+	/**
+	 * Returns all the benchmarks
+	 * @return all the benchmarks
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(ConnectivityGridBenchmarks.create());
+		benchmarks.addAll(ConnectivityDetectionBenchmarks.create());
+		benchmarks.addAll(ConnectivityOptimizerBenchmarks.create());
+		benchmarks.addAll(CastBenchmarks.create());
+		benchmarks.addAll(PathFinderBenchmarks.create());
+		benchmarks.addAll(GeoRouterBenchmarks.create());
+		benchmarks.addAll(EventsReaderBenchmarks.create());
+		benchmarks.addAll(ReplicateBenchmarks.create());
+		return benchmarks;
+	}
+
+	public static void main(String[] args) throws IOException {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		String referenceFile = DEF_REFERENCE_FILE;
+		String saveFile = null;
+		String filter = ".*";
+
+		Locale.setDefault(Locale.US);
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-w")) {
+				runner.warmupMs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-i")) {
+				runner.iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-t")) {
+				runner.iterationMs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-r")) {
+				referenceFile = args[++i];
+			} else if (args[i].equals("-s")) {
+				saveFile = args[++i];
+			} else if (args[i].equals("-d")) {
+				runner.tolerance = Double.parseDouble(args[++i]);
+			} else {
+				filter = args[i];
+			}
+		}
+
+		Map<String, Double> reference = readResults(new File(referenceFile));
+		Map<String, Double> results = new LinkedHashMap<String, Double>();
+		int regressions = 0;
+
+		System.out.println(String.format("%-52s %12s %7s %12s %7s",
+				"benchmark", "ns/op", "error", "reference", "ratio"));
+		for (Benchmark b : getBenchmarks()) {
+			if (!b.getName().matches(filter)) {
+				continue;
+			}
+			double[] result = runner.run(b);
+			results.put(b.getName(), result[0]);
+
+			Double ref = reference.get(b.getName());
+			String line = String.format("%-52s %12.1f %6.1f%%", b.getName(),
+					result[0], 100 * result[1] / result[0]);
+			if (ref != null) {
+				double ratio = result[0] / ref;
+				line += String.format(" %12.1f %7.2f", ref, ratio);
+				if (ratio > 1 + runner.tolerance) {
+					line += " REGRESSION";
+					regressions++;
+				}
+			}
+			System.out.println(line);
+		}
+
+		if (saveFile != null) {
+			saveResults(results, new File(saveFile));
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " regression(s)");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs one benchmark
+	 * @param b The benchmark
+	 * @return The mean time of an operation in nanoseconds and its standard
+	 * deviation over the iterations
+	 */
+	public double[] run(Benchmark b) {
+		try {
+			b.setUp();
+		} catch (Exception e) {
+			throw new RuntimeException("Can't set up " + b.getName(), e);
+		}
+
+		/* find the number of operations that takes about one iteration */
+		int ops = 1;
+		long nanos = measure(b, ops);
+		while (nanos < 10000000L && ops < Integer.MAX_VALUE / 2) {
+			ops *= 2;
+			nanos = measure(b, ops);
+		}
+		ops = (int)Math.max(1, Math.min(Integer.MAX_VALUE,
+				(double)ops * iterationMs * 1000000L / nanos));
+
+		long warmupEnd = System.nanoTime() + warmupMs * 1000000L;
+		while (System.nanoTime() < warmupEnd) {
+			measure(b, ops);
+		}
+
+		double[] times = new double[iterations];
+		double sum = 0;
+		for (int i=0; i<iterations; i++) {
+			times[i] = (double)measure(b, ops) / ops;
+			sum += times[i];
+		}
+		b.tearDown();
+
+		double mean = sum / iterations;
+		double var = 0;
+		for (double t : times) {
+			var += (t - mean) * (t - mean);
+		}
+		return new double[] {mean, Math.sqrt(var / iterations)};
+	}
+
+	/**
+	 * Runs the given number of operations of a benchmark
+	 * @param b The benchmark
+	 * @param ops Number of operations
+	 * @return The time it took in nanoseconds
+	 */
+	private static long measure(Benchmark b, int ops) {
+		long start = System.nanoTime();
+		sink += b.run(ops);
+		return Math.max(1, System.nanoTime() - start);
+	}
+
+	/**
+	 * Reads benchmark results from a file. Every line contains the name of
+	 * a benchmark and its result (ns/op) separated by a tab. Lines starting
+	 * with '#' are comments.
+	 * @param file The file
+	 * @return The results by benchmark names (empty if the file doesn't
+	 * exist)
+	 * @throws IOException if the file can't be read
+	 */
+	public static Map<String, Double> readResults(File file)
+		throws IOException {
+		Map<String, Double> results = new LinkedHashMap<String, Double>();
+		if (!file.exists()) {
+			return results;
+		}
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				int tab = line.lastIndexOf('\t');
+				results.put(line.substring(0, tab).trim(),
+						Double.parseDouble(line.substring(tab + 1)));
+			}
+		} finally {
+			reader.close();
+		}
+		return results;
+	}
+
+	/**
+	 * Saves benchmark results to a file in the format read by
+	 * {@link #readResults(File)}
+	 * @param results The results by benchmark names
+	 * @param file The file
+	 * @throws IOException if the file can't be written
+	 */
+	public static void saveResults(Map<String, Double> results, File file)
+		throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		Runtime rt = Runtime.getRuntime();
+		out.println("# Reference results (ns/op) of the benchmark.BenchmarkRunner");
+		out.println("# Java " + System.getProperty("java.version") + ", " +
+				System.getProperty("os.name") + " " +
+				System.getProperty("os.arch") + ", " +
+				rt.availableProcessors() + " processors");
+		for (Map.Entry<String, Double> e : results.entrySet()) {
+			out.println(e.getKey() + "\t" + String.format("%.1f", e.getValue()));
+		}
+		out.close();
+	}
+}
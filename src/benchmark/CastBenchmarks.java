@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTCastReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import core.Cast;
+import core.Coord;
+
+/**
+ * Benchmarks of {@link Cast#checkThePoint(double, double)} with the casts
+ * of the Helsinki and Sussex scenarios. The points are random points in
+ * the bounding box of all the casts of the file.
+ */
+public class CastBenchmarks {
+	/** the cast files */
+	public static final String[] CAST_FILES = {
+		"data/helsinkicastsFinal.wkt", "data/SussexCell.wkt"};
+	private static final int NROF_POINTS = 1024;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String file : CAST_FILES) {
+			benchmarks.add(new CastBenchmark(file));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark that checks random points against all casts of a file
+	 */
+	private static class CastBenchmark extends Benchmark {
+		private String file;
+		private Cast[] casts;
+		private double[] xs;
+		private double[] ys;
+
+		public CastBenchmark(String file) {
+			super("Cast.checkThePoint[" + new File(file).getName() + "]");
+			this.file = file;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			WKTCastReader reader = new WKTCastReader();
+			reader.readFile(new File(file));
+			List<List<Coord>> points = reader.returnCasts();
+
+			casts = new Cast[points.size()];
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for (int i=0; i<casts.length; i++) {
+				casts[i] = new Cast(points.get(i));
+				for (Coord c : points.get(i)) {
+					minX = Math.min(minX, c.getX());
+					minY = Math.min(minY, c.getY());
+					maxX = Math.max(maxX, c.getX());
+					maxY = Math.max(maxY, c.getY());
+				}
+			}
+
+			Random rng = new Random(42);
+			xs = new double[NROF_POINTS];
+			ys = new double[NROF_POINTS];
+			for (int i=0; i<NROF_POINTS; i++) {
+				xs[i] = minX + rng.nextDouble() * (maxX - minX);
+				ys[i] = minY + rng.nextDouble() * (maxY - minY);
+			}
+		}
+
+		@Override
+		public long run(int ops) {
+			long inside = 0;
+			for (int i=0; i<ops; i++) {
+				int p = i % NROF_POINTS;
+				if (casts[i % casts.length].checkThePoint(xs[p], ys[p])) {
+					inside++;
+				}
+			}
+			return inside;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import test.TestSettings;
+import test.TestUtils;
+import core.ConnectionListener;
+import core.SimClock;
+import core.World;
+
+/**
+ * Benchmarks of the world updates with and without the separate
+ * connectivity detection pass (see {@link World#CONNECTIVITY_THREADS_S}).
+ * The hosts move with the random waypoint model in a test world (see
+ * {@link TestUtils#createWorld}) with 30 m radio range and one operation
+ * is one world update of one second.
+ */
+public class ConnectivityDetectionBenchmarks {
+	/** the numbers of hosts in the world */
+	public static final int[] NROF_HOSTS = {1000, 5000};
+	/** the numbers of connectivity threads (0 = no detection pass) */
+	public static final int[] NROF_THREADS = {0, 1};
+	private static final double RANGE = 30;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int n : NROF_HOSTS) {
+			for (int threads : NROF_THREADS) {
+				benchmarks.add(new WorldBenchmark("World.update[hosts=" + n +
+						",connectivityThreads=" + threads + "]", n, threads));
+			}
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark of the updates of a world with randomly moving hosts
+	 */
+	private static class WorldBenchmark extends Benchmark {
+		private int nrofHosts;
+		private int nrofThreads;
+		private World world;
+
+		public WorldBenchmark(String name, int nrofHosts, int nrofThreads) {
+			super(name);
+			this.nrofHosts = nrofHosts;
+			this.nrofThreads = nrofThreads;
+		}
+
+		@Override
+		public void setUp() {
+			TestSettings s = new TestSettings();
+			s.putSetting(MovementModel.SPEED, "0.5,15");
+			s.putSetting(MovementModel.WAIT_TIME, "0,30");
+			s.putSetting("Optimization." + World.CONNECTIVITY_THREADS_S,
+					"" + nrofThreads);
+			TestUtils.resetWorld();
+
+			TestUtils utils = new TestUtils(
+					new ArrayList<ConnectionListener>(), null, s);
+			utils.setBroadcastRange(RANGE);
+			MovementModel mmProto = new RandomWaypoint(s);
+			for (int i=0; i<nrofHosts; i++) {
+				utils.createBroadcastHost(mmProto);
+			}
+
+			world = utils.createWorld(1.0, null, true, null);
+		}
+
+		public long run(int ops) {
+			for (int i=0; i<ops; i++) {
+				world.update();
+			}
+			return (long)SimClock.getTime();
+		}
+
+		@Override
+		public void tearDown() {
+			world.shutdown();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.ConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import test.TestSettings;
+import test.TestUtils;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Benchmarks of the {@link ConnectivityGrid} location updates and near
+ * interface queries with different densities of hosts in a 1000x1000 m
+ * world (with 10 m radio range).
+ */
+public class ConnectivityGridBenchmarks {
+	/** the numbers of hosts in the world */
+	public static final int[] NROF_HOSTS = {100, 1000, 10000};
+	private static final int WORLD_SIZE = 1000;
+	private static final double RANGE = 10;
+	private static final int NROF_COORDS = 1024;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (final int n : NROF_HOSTS) {
+			benchmarks.add(new GridBenchmark(
+					"ConnectivityGrid.updateLocation[hosts=" + n + "]", n) {
+				public long run(int ops) {
+					for (int i=0; i<ops; i++) {
+						NetworkInterface ni = interfaces[i % n];
+						ni.getHost().setLocation(coords[i % NROF_COORDS]);
+						grid.updateLocation(ni);
+					}
+					return ops;
+				}
+			});
+			benchmarks.add(new GridBenchmark(
+					"ConnectivityGrid.getNearInterfaces[hosts=" + n + "]", n) {
+				public long run(int ops) {
+					long found = 0;
+					for (int i=0; i<ops; i++) {
+						found += grid.getNearInterfaces(
+								interfaces[i % n]).size();
+					}
+					return found;
+				}
+			});
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark with hosts in random locations in the grid
+	 */
+	private static abstract class GridBenchmark extends Benchmark {
+		private int nrofHosts;
+		protected NetworkInterface[] interfaces;
+		protected ConnectivityGrid grid;
+		protected Coord[] coords;
+
+		public GridBenchmark(String name, int nrofHosts) {
+			super(name);
+			this.nrofHosts = nrofHosts;
+		}
+
+		@Override
+		public void setUp() {
+			TestSettings s = new TestSettings();
+			DTNHost.reset();
+			ConnectivityGrid.reset();
+			s.setNameSpace(TestUtils.IFACE_NS);
+			s.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+			s.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+			TestUtils utils = new TestUtils(null, null, s);
+
+			Random rng = new Random(42);
+			coords = new Coord[NROF_COORDS];
+			for (int i=0; i<NROF_COORDS; i++) {
+				coords[i] = randomCoord(rng);
+			}
+			interfaces = new NetworkInterface[nrofHosts];
+			for (int i=0; i<nrofHosts; i++) {
+				DTNHost h = utils.createHost(randomCoord(rng));
+				interfaces[i] = h.getInterfaces().get(0);
+			}
+			grid = (ConnectivityGrid)interfaces[0].getOptimizer();
+			for (NetworkInterface ni : interfaces) {
+				grid.updateLocation(ni); // put to the cell of the location
+			}
+		}
+
+		private static Coord randomCoord(Random rng) {
+			return new Coord(rng.nextDouble() * WORLD_SIZE,
+					rng.nextDouble() * WORLD_SIZE);
+		}
+	}
+}
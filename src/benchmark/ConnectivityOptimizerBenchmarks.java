@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.HierarchicalGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import test.TestSettings;
+import test.TestUtils;
+import core.ConnectionListener;
+import core.SimClock;
+import core.World;
+
+/**
+ * Benchmarks of the world updates with the per interface type connectivity
+ * grids and with the hierarchical grid (see
+ * {@link HierarchicalGrid#HIERARCHICAL_GRID_S}). Half of the hosts have a
+ * short range (10 m) and half a long range (100 m) interface type, and
+ * they move with the random waypoint model in a test world (see
+ * {@link TestUtils#createWorld}). One operation is one world update of
+ * one second.
+ */
+public class ConnectivityOptimizerBenchmarks {
+	/** the numbers of hosts in the world */
+	public static final int[] NROF_HOSTS = {1000, 5000};
+	private static final double SHORT_RANGE = 10;
+	private static final double LONG_RANGE = 100;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int n : NROF_HOSTS) {
+			for (boolean hierarchical : new boolean[] {false, true}) {
+				benchmarks.add(new WorldBenchmark("World.update[hosts=" + n +
+						",optimizer=" + (hierarchical ? "hierarchical" :
+						"grid") + "]", n, hierarchical));
+			}
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark of the updates of a world with randomly moving hosts
+	 */
+	private static class WorldBenchmark extends Benchmark {
+		private int nrofHosts;
+		private boolean hierarchical;
+		private World world;
+
+		public WorldBenchmark(String name, int nrofHosts,
+				boolean hierarchical) {
+			super(name);
+			this.nrofHosts = nrofHosts;
+			this.hierarchical = hierarchical;
+		}
+
+		@Override
+		public void setUp() {
+			TestSettings s = new TestSettings();
+			s.putSetting(MovementModel.SPEED, "0.5,15");
+			s.putSetting(MovementModel.WAIT_TIME, "0,30");
+			s.putSetting("Optimization." +
+					HierarchicalGrid.HIERARCHICAL_GRID_S, "" + hierarchical);
+			TestUtils.resetWorld();
+
+			TestUtils utils = new TestUtils(
+					new ArrayList<ConnectionListener>(), null, s);
+			MovementModel mmProto = new RandomWaypoint(s);
+			utils.setBroadcastRange("shortRange", SHORT_RANGE);
+			for (int i=0; i<nrofHosts / 2; i++) {
+				utils.createBroadcastHost(mmProto);
+			}
+			utils.setBroadcastRange("longRange", LONG_RANGE);
+			for (int i=nrofHosts / 2; i<nrofHosts; i++) {
+				utils.createBroadcastHost(mmProto);
+			}
+
+			world = utils.createWorld(1.0, null, true, null);
+		}
+
+		public long run(int ops) {
+			for (int i=0; i<ops; i++) {
+				world.update();
+			}
+			return (long)SimClock.getTime();
+		}
+
+		@Override
+		public void tearDown() {
+			world.shutdown();
+		}
+	}
+}
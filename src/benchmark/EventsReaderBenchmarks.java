@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.BinaryEventsReader;
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of parsing an external events trace with the
+ * {@link StandardEventsReader} and the {@link BinaryEventsReader}. One
+ * operation is reading one event; the trace is read again from the
+ * beginning when all its events have been read.
+ */
+public class EventsReaderBenchmarks {
+	/** the external events trace */
+	public static final String EVENTS_FILE =
+		"ee/1400_events_2000_nodes_700ks.txt";
+	/** how many events are read at a time */
+	private static final int CHUNK_SIZE = 500;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new ReaderBenchmark("StandardEventsReader.readEvents") {
+			protected ExternalEventsReader open() {
+				return new StandardEventsReader(new File(EVENTS_FILE));
+			}
+		});
+		benchmarks.add(new ReaderBenchmark("BinaryEventsReader.readEvents") {
+			private File binFile;
+
+			@Override
+			public void setUp() throws Exception {
+				ExternalEventsReader r =
+					new StandardEventsReader(new File(EVENTS_FILE));
+				List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+				List<ExternalEvent> chunk;
+				while (!(chunk = r.readEvents(CHUNK_SIZE)).isEmpty()) {
+					events.addAll(chunk);
+				}
+				r.close();
+				binFile = File.createTempFile("benchmark",
+						BinaryEventsReader.BINARY_EXT);
+				BinaryEventsReader.storeToBinaryFile(binFile.getPath(), events);
+				super.setUp();
+			}
+
+			protected ExternalEventsReader open() {
+				return new BinaryEventsReader(binFile);
+			}
+
+			@Override
+			public void tearDown() {
+				super.tearDown();
+				binFile.delete();
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark that reads events with a reader
+	 */
+	private static abstract class ReaderBenchmark extends Benchmark {
+		private ExternalEventsReader reader;
+
+		public ReaderBenchmark(String name) {
+			super(name);
+		}
+
+		/**
+		 * Opens a new reader at the beginning of the trace
+		 * @return The reader
+		 */
+		protected abstract ExternalEventsReader open();
+
+		@Override
+		public void setUp() throws Exception {
+			reader = open();
+		}
+
+		@Override
+		public void tearDown() {
+			reader.close();
+		}
+
+		@Override
+		public long run(int ops) {
+			long sum = 0;
+			int read = 0;
+			while (read < ops) {
+				List<ExternalEvent> events = reader.readEvents(
+						Math.min(CHUNK_SIZE, ops - read));
+				if (events.isEmpty()) {
+					reader.close();
+					reader = open();
+					continue;
+				}
+				read += events.size();
+				sum += events.size();
+			}
+			return sum;
+		}
+	}
+}
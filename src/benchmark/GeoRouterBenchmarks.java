@@ -0,0 +1,218 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import routing.GeoEpidemicRouter;
+import routing.GeoMessageRouter;
+import routing.PassiveRouter;
+import test.StationaryMovement;
+import test.TestInterface;
+import test.TestSettings;
+import test.TestUtils;
+import util.Tuple;
+import core.Cast;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.GeoDTNHost;
+import core.GeoMessage;
+import core.GeoMessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Benchmarks of the message selection of {@link routing.GeoActiveRouter}:
+ * finding the messages for the connected hosts and ordering the messages
+ * by the send queue mode (FIFO), both by sorting a list and by keeping the
+ * buffer in the queue order while one message changes. The benchmarked
+ * host has {@link #NROF_CONNECTIONS} connections and a buffer of
+ * different numbers of messages to random casts; the connected hosts carry
+ * half as many messages.
+ */
+public class GeoRouterBenchmarks {
+	/** numbers of messages in the buffer of the benchmarked host */
+	public static final int[] NROF_MESSAGES = {10, 100, 1000};
+	/** number of connections of the benchmarked host */
+	public static final int NROF_CONNECTIONS = 5;
+	private static final int NROF_CASTS = 20;
+	private static final int CAST_SIZE = 200;
+	private static final int WORLD_SIZE = 1000;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int n : NROF_MESSAGES) {
+			benchmarks.add(new RouterBenchmark(
+					"GeoActiveRouter.getMessagesForConnected[messages=" +
+					n + "]", n) {
+				public long run(int ops) {
+					long found = 0;
+					for (int i=0; i<ops; i++) {
+						found += router.messagesForConnected().size();
+					}
+					return found;
+				}
+			});
+			benchmarks.add(new RouterBenchmark(
+					"GeoMessageRouter.sortByQueueMode[messages=" + n + "]",
+					n) {
+				public long run(int ops) {
+					long sum = 0;
+					for (int i=0; i<ops; i++) {
+						List<GeoMessage> list =
+							new ArrayList<GeoMessage>(shuffled);
+						router.sort(list);
+						sum += list.get(0).getUniqueId();
+					}
+					return sum;
+				}
+			});
+			benchmarks.add(new RouterBenchmark(
+					"GeoMessageRouter.getGeoMessagesInQueueOrder[messages=" +
+					n + "]", n) {
+				public long run(int ops) {
+					long sum = 0;
+					for (int i=0; i<ops; i++) {
+						/* replace one message to make the buffer change */
+						GeoMessage m = shuffled.get(i % shuffled.size());
+						router.replace(m);
+						sum += router.inQueueOrder().get(0).getUniqueId();
+					}
+					return sum;
+				}
+			});
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark with a host that has messages and connections
+	 */
+	private static abstract class RouterBenchmark extends Benchmark {
+		private int nrofMessages;
+		protected BenchmarkRouter router;
+		/** the messages of the router in random order */
+		protected List<GeoMessage> shuffled;
+
+		public RouterBenchmark(String name, int nrofMessages) {
+			super(name);
+			this.nrofMessages = nrofMessages;
+		}
+
+		@Override
+		public void setUp() {
+			TestSettings s = new TestSettings();
+			SimClock.reset();
+			DTNHost.reset();
+			s.setNameSpace(TestUtils.IFACE_NS);
+			s.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+			s.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+			TestSettings rs = new TestSettings("GeoRouter");
+			rs.putSetting(GeoMessageRouter.SEND_QUEUE_MODE_S,
+					"" + GeoMessageRouter.Q_MODE_FIFO);
+			BenchmarkRouter proto = new BenchmarkRouter(rs);
+
+			Random rng = new Random(42);
+			List<Cast> casts = new ArrayList<Cast>();
+			for (int i=0; i<NROF_CASTS; i++) {
+				casts.add(randomCast(rng));
+			}
+
+			GeoDTNHost host = createHost(s, proto, new Coord(500, 500));
+			addMessages(host, nrofMessages, casts, rng);
+			for (int i=0; i<NROF_CONNECTIONS; i++) {
+				GeoDTNHost other = createHost(s, proto,
+						new Coord(495 + i * 2, 505));
+				addMessages(other, nrofMessages / 2, casts, rng);
+				host.forceConnection(other, null, true);
+			}
+
+			router = (BenchmarkRouter)host.getGeoRouter();
+			shuffled = new ArrayList<GeoMessage>(
+					host.getGeoMessageCollection());
+			Collections.shuffle(shuffled, rng);
+		}
+
+		private static GeoDTNHost createHost(Settings s,
+				GeoMessageRouter proto, Coord loc) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new TestInterface(s));
+			return new GeoDTNHost(null, null, "h", li,
+					new ModuleCommunicationBus(), new StationaryMovement(loc),
+					new PassiveRouter(s), proto,
+					new ArrayList<GeoMessageListener>());
+		}
+
+		private static void addMessages(GeoDTNHost host, int count,
+				List<Cast> casts, Random rng) {
+			for (int i=0; i<count; i++) {
+				List<Cast> to = new ArrayList<Cast>();
+				to.add(casts.get(rng.nextInt(casts.size())));
+				GeoMessage m = new GeoMessage(host, to,
+						"M" + host.getAddress() + "_" + i, 1000);
+				m.setReceiveTime(rng.nextDouble() * 1000);
+				host.getGeoRouter().createNewGeoMessage(m);
+			}
+		}
+
+		private static Cast randomCast(Random rng) {
+			double x = rng.nextDouble() * (WORLD_SIZE - CAST_SIZE);
+			double y = rng.nextDouble() * (WORLD_SIZE - CAST_SIZE);
+			List<Coord> points = new ArrayList<Coord>();
+			points.add(new Coord(x, y));
+			points.add(new Coord(x + CAST_SIZE, y));
+			points.add(new Coord(x + CAST_SIZE, y + CAST_SIZE));
+			points.add(new Coord(x, y + CAST_SIZE));
+			return new Cast(points);
+		}
+	}
+
+	/**
+	 * Geo epidemic router that exposes the benchmarked methods
+	 */
+	private static class BenchmarkRouter extends GeoEpidemicRouter {
+		private static final long serialVersionUID = 42L;
+
+		public BenchmarkRouter(Settings s) {
+			super(s);
+		}
+
+		protected BenchmarkRouter(BenchmarkRouter r) {
+			super(r);
+		}
+
+		public List<Tuple<GeoMessage, Connection>> messagesForConnected() {
+			return getMessagesForConnected();
+		}
+
+		public void sort(List<GeoMessage> messages) {
+			sortByQueueMode(messages);
+		}
+
+		public List<GeoMessage> inQueueOrder() {
+			return getGeoMessagesInQueueOrder();
+		}
+
+		public void replace(GeoMessage m) {
+			removeFromGeoMessages(m.getId());
+			addToGeoMessages(m, false);
+		}
+
+		@Override
+		public BenchmarkRouter replicate() {
+			return new BenchmarkRouter(this);
+		}
+	}
+}
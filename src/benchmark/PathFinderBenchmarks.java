@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.SimMap;
+
+/**
+ * Benchmarks of {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * between random nodes of the Helsinki and Manhattan road maps. Only the
+ * nodes reachable from the first node of the map are used so that a path
+ * is always found.
+ */
+public class PathFinderBenchmarks {
+	/** the map files */
+	public static final String[] MAP_FILES = {
+		"data/HelsinkiMedium/roads.wkt", "data/Manhattan/roads.wkt"};
+	private static final int NROF_PAIRS = 256;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String file : MAP_FILES) {
+			benchmarks.add(new PathBenchmark(file));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark that finds paths between random node pairs of a map
+	 */
+	private static class PathBenchmark extends Benchmark {
+		private String file;
+		private DijkstraPathFinder finder;
+		private MapNode[] from;
+		private MapNode[] to;
+
+		public PathBenchmark(String file) {
+			super("DijkstraPathFinder.getShortestPath[" +
+					new File(file).getParentFile().getName() + "]");
+			this.file = file;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			WKTMapReader reader = new WKTMapReader(true);
+			reader.addPaths(new File(file), 1);
+			SimMap map = reader.getMap();
+			List<MapNode> nodes = reachableNodes(map.getNodes().get(0));
+
+			Random rng = new Random(42);
+			from = new MapNode[NROF_PAIRS];
+			to = new MapNode[NROF_PAIRS];
+			for (int i=0; i<NROF_PAIRS; i++) {
+				from[i] = nodes.get(rng.nextInt(nodes.size()));
+				to[i] = nodes.get(rng.nextInt(nodes.size()));
+			}
+			finder = new DijkstraPathFinder(null);
+		}
+
+		@Override
+		public long run(int ops) {
+			long length = 0;
+			for (int i=0; i<ops; i++) {
+				int p = i % NROF_PAIRS;
+				length += finder.getShortestPath(from[p], to[p]).size();
+			}
+			return length;
+		}
+
+		/**
+		 * Returns the nodes that are reachable from the given node
+		 * @param start The node to start from
+		 * @return The reachable nodes (including the start node)
+		 */
+		private static List<MapNode> reachableNodes(MapNode start) {
+			List<MapNode> nodes = new ArrayList<MapNode>();
+			Set<MapNode> visited = new HashSet<MapNode>();
+			LinkedList<MapNode> queue = new LinkedList<MapNode>();
+			queue.add(start);
+			visited.add(start);
+			while (!queue.isEmpty()) {
+				MapNode n = queue.removeFirst();
+				nodes.add(n);
+				for (MapNode neighbor : n.getNeighbors()) {
+					if (visited.add(neighbor)) {
+						queue.add(neighbor);
+					}
+				}
+			}
+			return nodes;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import test.TestSettings;
+import test.TestUtils;
+import core.Cast;
+import core.Coord;
+import core.DTNHost;
+import core.GeoMessage;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Benchmarks of replicating messages ({@link Message#replicate()} and
+ * {@link GeoMessage#replicate()}). The messages have travelled through a
+ * few hosts and have a couple of properties, like the messages of most
+ * routers do.
+ */
+public class ReplicateBenchmarks {
+	private static final int PATH_LENGTH = 4;
+	/** number of the latest replicates kept reachable (a power of two) so
+	 * that the replicates can't be optimized away */
+	private static final int NROF_REPLICATES = 64;
+
+	/**
+	 * Creates the benchmarks
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new HostsBenchmark("Message.replicate") {
+			private Message m;
+			private Message[] replicates = new Message[NROF_REPLICATES];
+
+			@Override
+			public void setUp() {
+				super.setUp();
+				m = new Message(hosts.get(0), hosts.get(1), "M1", 1000);
+				for (DTNHost h : hosts) {
+					m.addNodeOnPath(h);
+				}
+				m.addProperty("copies", 6);
+				m.addProperty("hops", PATH_LENGTH);
+			}
+
+			public long run(int ops) {
+				long sum = 0;
+				for (int i=0; i<ops; i++) {
+					Message r = m.replicate();
+					replicates[i & (NROF_REPLICATES - 1)] = r;
+					sum += r.getUniqueId();
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new HostsBenchmark("GeoMessage.replicate") {
+			private GeoMessage m;
+			private GeoMessage[] replicates = new GeoMessage[NROF_REPLICATES];
+
+			@Override
+			public void setUp() {
+				super.setUp();
+				List<Coord> points = new ArrayList<Coord>();
+				points.add(new Coord(0, 0));
+				points.add(new Coord(100, 0));
+				points.add(new Coord(100, 100));
+				points.add(new Coord(0, 100));
+				List<Cast> to = new ArrayList<Cast>();
+				to.add(new Cast(points));
+				m = new GeoMessage(hosts.get(0), to, "G1", 1000);
+				for (DTNHost h : hosts) {
+					m.addNodeOnPath(h);
+				}
+				m.addProperty("copies", 6);
+				m.addProperty("hops", PATH_LENGTH);
+			}
+
+			public long run(int ops) {
+				long sum = 0;
+				for (int i=0; i<ops; i++) {
+					GeoMessage r = m.replicate();
+					replicates[i & (NROF_REPLICATES - 1)] = r;
+					sum += r.getUniqueId();
+				}
+				return sum;
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * Benchmark with a few hosts for the message paths
+	 */
+	private static abstract class HostsBenchmark extends Benchmark {
+		protected List<DTNHost> hosts;
+
+		public HostsBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp() {
+			TestSettings s = new TestSettings();
+			SimClock.reset();
+			DTNHost.reset();
+			TestUtils utils = new TestUtils(null, null, s);
+			hosts = new ArrayList<DTNHost>();
+			for (int i=0; i<PATH_LENGTH; i++) {
+				hosts.add(utils.createHost());
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>End-to-end scaling benchmark. Generates settings files for a sweep of
+ * scenarios over the number of hosts, host density, buffer size and router,
+ * runs every configuration in its own JVM (see {@link ScalingRun}) and
+ * collects the wall time, simulated seconds per second, peak heap usage
+ * and garbage collection time of the runs to a results table.</P>
+ *
+ * <P>The hosts move with the random waypoint model in a square world whose
+ * size gives the requested density (hosts per square kilometer) and use
+ * the Bluetooth interface of the default settings. The hosts create
+ * messages at a constant rate per host (with at least one second between
+ * messages). The "sim" configurations use the {@link core.SimScenario}
+ * with the given routers, the "geo" configurations the
+ * {@link core.GeoSimScenario} with the given geo routers (and passive
+ * message routers) and the casts of the default settings.</P>
+ *
+ * <P>Usage: <CODE>ScalingBenchmark [-n hosts] [-d densities] [-b bufferSizes]
+ * [-r routers] [-g geoRouters] [-s sim,geo] [-t simTime] [-u updateInterval]
+ * [-e msgsPerHostPerHour] [-x maxHeap] [-m timeoutMinutes]
+ * [-o outputDir]</CODE>. The lists are comma separated. The results are
+ * appended to the <CODE>results.txt</CODE> file (tab separated) in the
+ * output directory, which also gets the generated settings files and
+ * the output of every run. Runs that run out of memory, crash or don't
+ * finish in time are marked as such in the table.</P>
+ */
+public class ScalingBenchmark {
+	/** name of the results table file in the output directory ({@value}) */
+	public static final String RESULTS_FILE = "results.txt";
+	/** header of the results table */
+	public static final String HEADER = "scenario\trouter\thosts\tdensity" +
+		"\tbufferSize\tworldSize\tstatus\tsetupTime(s)\twallTime(s)" +
+		"\tsimSecPerSec\tpeakHeap(MB)\tgcTime(s)\tgcCount";
+
+	private String[] hosts = {"100", "1000", "10000", "100000"};
+	private String[] densities = {"100", "1000"};
+	private String[] bufferSizes = {"5M", "50M"};
+	private String[] routers = {"EpidemicRouter", "SprayAndWaitRouter",
+			"ProphetRouter"};
+	private String[] geoRouters = {"GeoEpidemicRouter", "GSAFRouter"};
+	private String[] scenarios = {"sim", "geo"};
+	private double simTime = 600;
+	private double updateInterval = 1;
+	private double msgRate = 1;
+	private String maxHeap = "4g";
+	private int timeoutMinutes = 30;
+	private File outDir = new File("scaling");
+
+	public static void main(String[] args) throws IOException {
+		Locale.setDefault(Locale.US);
+		ScalingBenchmark b = new ScalingBenchmark();
+		for (int i=0; i<args.length; i+=2) {
+			String value = args[i+1];
+			if (args[i].equals("-n")) {
+				b.hosts = value.split(",");
+			} else if (args[i].equals("-d")) {
+				b.densities = value.split(",");
+			} else if (args[i].equals("-b")) {
+				b.bufferSizes = value.split(",");
+			} else if (args[i].equals("-r")) {
+				b.routers = value.split(",");
+			} else if (args[i].equals("-g")) {
+				b.geoRouters = value.split(",");
+			} else if (args[i].equals("-s")) {
+				b.scenarios = value.split(",");
+			} else if (args[i].equals("-t")) {
+				b.simTime = Double.parseDouble(value);
+			} else if (args[i].equals("-u")) {
+				b.updateInterval = Double.parseDouble(value);
+			} else if (args[i].equals("-e")) {
+				b.msgRate = Double.parseDouble(value);
+			} else if (args[i].equals("-x")) {
+				b.maxHeap = value;
+			} else if (args[i].equals("-m")) {
+				b.timeoutMinutes = Integer.parseInt(value);
+			} else if (args[i].equals("-o")) {
+				b.outDir = new File(value);
+			} else {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(1);
+			}
+		}
+		b.runAll();
+	}
+
+	/**
+	 * Runs all the configurations and appends the results to the table
+	 * @throws IOException if the settings or results can't be written
+	 */
+	public void runAll() throws IOException {
+		outDir.mkdirs();
+		File resultsFile = new File(outDir, RESULTS_FILE);
+		boolean newFile = !resultsFile.exists();
+		PrintWriter results = new PrintWriter(new FileWriter(resultsFile,
+				true));
+		if (newFile) {
+			results.println(HEADER);
+		}
+		System.out.println(HEADER);
+
+		for (String scenario : scenarios) {
+			boolean geo = scenario.equals("geo");
+			for (String router : (geo ? geoRouters : routers)) {
+				for (String n : hosts) {
+					for (String density : densities) {
+						for (String bufferSize : bufferSizes) {
+							String row = run(geo, router,
+									Integer.parseInt(n.trim()),
+									Double.parseDouble(density.trim()),
+									bufferSize.trim());
+							System.out.println(row);
+							results.println(row);
+							results.flush();
+						}
+					}
+				}
+			}
+		}
+		results.close();
+	}
+
+	/**
+	 * Runs one configuration
+	 * @param geo Is the geo scenario used
+	 * @param router The (geo) router class name
+	 * @param nrofHosts The number of hosts
+	 * @param density The number of hosts per square kilometer
+	 * @param bufferSize The buffer size (e.g., "5M")
+	 * @return The row of the results table
+	 * @throws IOException if the settings file can't be written
+	 */
+	private String run(boolean geo, String router, int nrofHosts,
+			double density, String bufferSize) throws IOException {
+		int worldSize = (int)Math.round(
+				Math.sqrt(nrofHosts / density) * 1000);
+		String name = (geo ? "geo" : "sim") + "_" + router + "_n" +
+			nrofHosts + "_d" + (int)density + "_b" + bufferSize;
+		File settingsFile = new File(outDir, name + "_settings.txt");
+		File logFile = new File(outDir, name + "_out.txt");
+		writeSettings(settingsFile, name, geo, router, nrofHosts, worldSize,
+				bufferSize);
+
+		String status;
+		String measurements = "\t\t\t\t\t";
+		List<String> cmd = new ArrayList<String>(Arrays.asList(
+				System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java", "-Xmx" + maxHeap, "-cp",
+				System.getProperty("java.class.path"),
+				ScalingRun.class.getName(), geo ? "geo" : "sim",
+				settingsFile.getPath()));
+		ProcessBuilder pb = new ProcessBuilder(cmd);
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(logFile);
+		try {
+			Process p = pb.start();
+			if (!p.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+				p.destroyForcibly();
+				status = "timeout";
+			} else {
+				String result = findResult(logFile);
+				if (result != null) {
+					status = "ok";
+					measurements = result;
+				} else if (contains(logFile, "OutOfMemoryError")) {
+					status = "outOfMemory";
+				} else {
+					status = "error";
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+
+		return (geo ? "geo" : "sim") + "\t" + router + "\t" + nrofHosts +
+			"\t" + density + "\t" + bufferSize + "\t" + worldSize + "\t" +
+			status + "\t" + measurements;
+	}
+
+	/**
+	 * Writes the settings file of a configuration. The settings override
+	 * the default settings.
+	 */
+	private void writeSettings(File file, String name, boolean geo,
+			String router, int nrofHosts, int worldSize, String bufferSize)
+		throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		int msgInterval = (int)Math.max(1,
+				Math.round(3600 / (nrofHosts * msgRate)));
+
+		out.println("Scenario.name = " + name);
+		out.println("Scenario.endTime = " + simTime);
+		out.println("Scenario.updateInterval = " + updateInterval);
+		out.println("Scenario.nrofHostGroups = 1");
+		out.println("Group.groupID = n");
+		out.println("Group.nrofHosts = " + nrofHosts);
+		out.println("Group.movementModel = RandomWaypoint");
+		out.println("Group.speed = 0.5, 1.5");
+		out.println("Group.waitTime = 0, 120");
+		out.println("Group.nrofInterfaces = 1");
+		out.println("Group.interface1 = btInterface");
+		out.println("Group.bufferSize = " + bufferSize);
+		if (geo) {
+			out.println("Group.router = PassiveRouter");
+			out.println("Group.georouter = " + router);
+		} else {
+			out.println("Group.router = " + router);
+		}
+		out.println("MovementModel.worldSize = " + worldSize + ", " +
+				worldSize);
+		out.println("Events.nrof = 1");
+		out.println("Events1.class = " + (geo ? "GeoMessageEventGenerator" :
+			"MessageEventGenerator"));
+		out.println("Events1.interval = " + msgInterval);
+		out.println("Events1.hosts = 0," + nrofHosts);
+		out.println("Events1.tohosts = 0," + nrofHosts);
+		out.println("Report.nrofReports = 0");
+		out.close();
+	}
+
+	/**
+	 * Returns the measurements of a run from its output
+	 * @param logFile The output of the run
+	 * @return The measurements (tab separated) or null if the run didn't
+	 * print them
+	 * @throws IOException if the output can't be read
+	 */
+	private static String findResult(File logFile) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(logFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(ScalingRun.RESULT_PREFIX)) {
+					return line.substring(ScalingRun.RESULT_PREFIX.length());
+				}
+			}
+			return null;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns true if the output of a run contains the given text
+	 */
+	private static boolean contains(File logFile, String text)
+		throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(logFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.contains(text)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+
+import core.DTNSim;
+import core.GeoSimScenario;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * <P>Runs one configuration of the {@link ScalingBenchmark} without a user
+ * interface or reports and prints its measurements. Should be run in its
+ * own JVM so that the heap and garbage collection measurements only
+ * contain the run.</P>
+ *
+ * <P>Usage: <CODE>ScalingRun sim|geo settingsFile...</CODE>. With "geo"
+ * the {@link GeoSimScenario} is used. The measurements are printed on one
+ * line that starts with {@link #RESULT_PREFIX} and contains, separated by
+ * tabs, the scenario set up time (s), the simulation wall time (s), the
+ * simulated seconds per second, the peak heap usage (MB), the total
+ * garbage collection time (s) and the number of garbage collections.</P>
+ */
+public class ScalingRun {
+	/** prefix of the result line ({@value}) */
+	public static final String RESULT_PREFIX = "RESULT\t";
+
+	public static void main(String[] args) {
+		Locale.setDefault(Locale.US);
+		boolean geo = args[0].equals("geo");
+		Settings.init(args[1]);
+		for (int i=2; i<args.length; i++) {
+			Settings.addSettings(args[i]);
+		}
+		Settings.setRunIndex(0);
+		DTNSim.resetForNextRun();
+
+		long start = System.nanoTime();
+		World world;
+		double endTime;
+		if (geo) {
+			GeoSimScenario scen = GeoSimScenario.getInstance();
+			world = scen.getWorld();
+			endTime = scen.getEndTime();
+		} else {
+			SimScenario scen = SimScenario.getInstance();
+			world = scen.getWorld();
+			endTime = scen.getEndTime();
+		}
+		double setupTime = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		while (SimClock.getTime() < endTime) {
+			world.update();
+		}
+		double wallTime = (System.nanoTime() - start) / 1e9;
+		world.shutdown();
+
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		long gcTime = 0;
+		long gcCount = 0;
+		for (GarbageCollectorMXBean gc :
+			ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTime += Math.max(0, gc.getCollectionTime());
+			gcCount += Math.max(0, gc.getCollectionCount());
+		}
+
+		System.out.println(RESULT_PREFIX + String.format(
+				"%.2f\t%.2f\t%.2f\t%d\t%.2f\t%d", setupTime, wallTime,
+				SimClock.getTime() / wallTime, peakHeap / (1024 * 1024),
+				gcTime / 1000.0, gcCount));
+	}
+}
@@ -11,6 +11,8 @@ import routing.MessageRouter;
  * A constant bit-rate connection between two DTN nodes.
  */
 public class CBRConnection extends Connection {
+	private static final long serialVersionUID = 42L;
+
 	private int speed;
 	private double transferDoneTime;
 
@@ -60,6 +62,7 @@ public class CBRConnection extends Connection {
 		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
 
 		if (retVal == MessageRouter.RCV_OK) {
+			Profiler.count(Profiler.Counter.TRANSFERS_STARTED);
 			this.msgOnFly = newMessage;
 			this.transferDoneTime = SimClock.getTime() + 
 			(1.0*m.getSize()) / this.speed;
@@ -96,6 +99,7 @@ public class CBRConnection extends Connection {
 		int retVal = ((GeoDTNHost) getOtherNode(from)).receiveGeoMessage(newMessage, (GeoDTNHost) from);
 
 		if (retVal == GeoMessageRouter.RCV_OK) {
+			Profiler.count(Profiler.Counter.TRANSFERS_STARTED);
 			this.gMsgOnFly = newMessage;
 			this.transferDoneTime = SimClock.getTime() + 
 			(1.0*m.getSize()) / this.speed;
@@ -108,6 +112,7 @@ public class CBRConnection extends Connection {
 	 * Aborts the transfer of the currently transferred message.
 	 */
 	public void abortTransfer() {
+		Profiler.count(Profiler.Counter.TRANSFERS_ABORTED);
 		assert (msgOnFly != null || gMsgOnFly != null) : "No message to abort at " + msgFromNode;
 		
 		if(msgOnFly != null){
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +13,8 @@ import java.util.List;
  *
  * @author Aydin Rajaei
  */
-public class Cast {
+public class Cast implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/** Identifier of the cast */
 	private String id;
@@ -55,6 +57,7 @@ public class Cast {
 	 * @return flag : true if inside
 	 */
 	public boolean checkThePoint(double a, double b){
+		Profiler.count(Profiler.Counter.POLYGON_TESTS);
 
 		double af = a + 0.02;
 		boolean flag = false;
@@ -141,11 +144,60 @@ public class Cast {
 		return isInside;
 	}
 	
+	/**
+	 * This method looks if the current location of a host is inside the cast
+	 * (see {@link #checkThePoint(double, double)}). The location is read from
+	 * the {@link HostStateStore}.
+	 *
+	 * @param host The host
+	 * @return isInside : true if inside
+	 */
+	public boolean checkThePoint(DTNHost host){
+		
+		int address = host.getAddress();
+		return checkThePoint(HostStateStore.getX(address), 
+				HostStateStore.getY(address));
+	}
+	
 	
 	public List<Coord> getTheCast() {
 		return this.theCast;
 	} 
 	
+	/**
+	 * Returns the bounding box of the cast as {minX, minY, maxX, maxY}.
+	 * {@link #checkThePoint(double, double)} is false for every point
+	 * outside the box, so the box can be used to skip the point checks.
+	 * The x bounds are the ranges of the edge equations and the y bounds
+	 * are the values of the equations at the ends of their ranges, widened
+	 * by a margin for the rounding errors of the equations.
+	 * @return The bounding box (min &gt; max if the cast has no edges)
+	 */
+	public double[] getBoundingBox() {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double margin = 0;
+		
+		for (Equation e : theEqu) {
+			double r1 = e.getR1();
+			double r2 = e.getR2();
+			double y1 = e.getEquResult(r1);
+			double y2 = e.getEquResult(r2);
+			minX = Math.min(minX, Math.min(r1, r2));
+			maxX = Math.max(maxX, Math.max(r1, r2));
+			minY = Math.min(minY, Math.min(y1, y2));
+			maxY = Math.max(maxY, Math.max(y1, y2));
+			margin = Math.max(margin, Math.abs(e.getM()) *
+					Math.max(Math.abs(r1), Math.abs(r2)) +
+					Math.abs(e.getY1()) + Math.abs(e.getMx1()));
+		}
+		
+		margin = 1 + margin * 1e-9;
+		return new double[] {minX, minY - margin, maxX, maxY + margin};
+	}
+	
 	/**
 	 * Returns a string representation of the cast
 	 * @return a string representation of the cast
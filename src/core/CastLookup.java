@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import util.BoxGrid;
+
+/**
+ * Shared lookup of the casts that contain the current location of a host.
+ * The casts are registered to the lookup (e.g., by the routers that index
+ * their messages by the destination casts). Their bounding boxes (see
+ * {@link Cast#getBoundingBox()}) are kept in a {@link BoxGrid}, so only the
+ * casts whose bounding box contains the location are found and checked
+ * with {@link Cast#checkThePoint(double, double)}. The result
+ * for a host is cached until the host moves or new casts are registered,
+ * so all the routers that are connected to the same host during an update
+ * share the result.
+ */
+public class CastLookup {
+	/** cell size of the finest level of the bounding box grid (meters) */
+	private static final double CELL_SIZE = 100;
+
+	/** the registered casts (value is the registration index) */
+	private static HashMap<Cast, Integer> indexes;
+	/** the registered casts in registration order */
+	private static List<Cast> casts;
+	/** bounding boxes of the casts by their registration indexes */
+	private static BoxGrid boxes;
+	/** registration indexes of the casts found by the ongoing lookup */
+	private static int[] found;
+	private static int nrofFound;
+	/** collects the casts whose bounding box contains the location */
+	private static final BoxGrid.BoxVisitor collector =
+		new BoxGrid.BoxVisitor() {
+		public void visit(int id) {
+			if (nrofFound == found.length) {
+				found = Arrays.copyOf(found, nrofFound * 2);
+			}
+			found[nrofFound++] = id;
+		}
+	};
+	/** cached lookup results by host addresses */
+	private static List<Result> results;
+
+	static {
+		DTNSim.registerForReset(CastLookup.class.getCanonicalName());
+		reset();
+	}
+
+	private CastLookup() {}
+
+	/**
+	 * Registers a cast to the lookup. Registering the same cast again has
+	 * no effect.
+	 * @param cast The cast to register
+	 */
+	public static void register(Cast cast) {
+		if (indexes.containsKey(cast)) {
+			return;
+		}
+
+		int i = casts.size();
+		double[] box = cast.getBoundingBox();
+		boxes.put(i, box[0], box[1], box[2], box[3]);
+		indexes.put(cast, i);
+		casts.add(cast);
+	}
+
+	/**
+	 * Returns the registered casts that contain the current location of a
+	 * host (see {@link Cast#checkThePoint(DTNHost)})
+	 * @param host The host
+	 * @return The casts in registration order (read-only)
+	 */
+	public static List<Cast> getCastsAt(DTNHost host) {
+		int address = host.getAddress();
+		double x = HostStateStore.getX(address);
+		double y = HostStateStore.getY(address);
+
+		while (results.size() <= address) {
+			results.add(null);
+		}
+		Result r = results.get(address);
+		if (r == null) {
+			r = new Result();
+			results.set(address, r);
+		}
+		else if (r.x == x && r.y == y && r.nrofCasts == casts.size()) {
+			return r.casts;
+		}
+
+		nrofFound = 0;
+		boxes.forEachOverlapping(x, y, x, y, collector);
+		/* keep the registration order */
+		Arrays.sort(found, 0, nrofFound);
+		List<Cast> inside = null;
+		for (int i = 0; i < nrofFound; i++) {
+			Cast cast = casts.get(found[i]);
+			if (cast.checkThePoint(x, y)) {
+				if (inside == null) {
+					inside = new ArrayList<Cast>(2);
+				}
+				inside.add(cast);
+			}
+		}
+		r.x = x;
+		r.y = y;
+		r.nrofCasts = casts.size();
+		r.casts = (inside == null ? Collections.<Cast>emptyList() :
+			Collections.unmodifiableList(inside));
+		return r.casts;
+	}
+
+	/**
+	 * Returns the number of registered casts
+	 * @return The number of registered casts
+	 */
+	public static int size() {
+		return casts.size();
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		indexes = new HashMap<Cast, Integer>();
+		casts = new ArrayList<Cast>();
+		boxes = new BoxGrid(CELL_SIZE);
+		found = new int[16];
+		nrofFound = 0;
+		results = new ArrayList<Result>();
+	}
+
+	/**
+	 * Cached lookup result of a host
+	 */
+	private static class Result {
+		/** the location the result is for */
+		private double x;
+		private double y;
+		/** number of registered casts when the result was looked up */
+		private int nrofCasts = -1;
+		private List<Cast> casts;
+	}
+}
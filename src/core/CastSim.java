@@ -6,9 +6,11 @@ package core;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import input.AssetCache;
 import input.WKTCastReader;
 
 /**
@@ -17,7 +19,8 @@ import input.WKTCastReader;
  *
  * @author Aydin Rajaei
  */
-public class CastSim {
+public class CastSim implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/** cast file -setting id ({@value})*/
 	public static final String castMap = "castFile";
@@ -32,10 +35,12 @@ public class CastSim {
 	
 	Settings settings = new Settings(CASTS_FROM_FILE);
 	
-	List<List<Coord>> castsList = new ArrayList <List<Coord>>();
-	
 	List<Cast> Casts = new ArrayList <Cast>();
 	
+	/** the casts read in this simulation context. Casts refer to the hosts
+	 * of the context, so they can't be shared by all contexts. */
+	private static final AssetCache cache = new AssetCache();
+	
 	/**
 	 * Constructor of the CastSim class.
 	 * @throws IOException
@@ -50,7 +55,6 @@ public class CastSim {
 	 */
 	public CastSim(boolean x) {
 		runCell();
-		defineCast();
 		System.out.println("Cell List have initialized successfully!");
 	}
 
@@ -60,7 +64,6 @@ public class CastSim {
 	 */
 	public void run() {
 		runCast();
-		defineCast();
 		System.out.println("Casts have initialized successfully!");	
 	}
 
@@ -89,26 +92,12 @@ public class CastSim {
 	 * 
 	 */
 	private void runCast() { 
-		
-		WKTCastReader c = new WKTCastReader();
-		String CFile = checkCastFile(settings);
 		try {
-			c.readFile(new File(CFile));
+			Casts = readCasts(castMap);
 		} catch (IOException e) {
 			System.out.println("Casts list has not read properly from file");
 			e.printStackTrace();
 		}
-		castsList = c.returnCasts();
-		
-		int offSetX = settings.getInt(OFFSETX);
-		int offSetY = settings.getInt(OFFSETY);
-		
-		//CastSim calibrator
-		for(int j=0; j<castsList.size(); j++){
-			for(int k=0; k<castsList.get(j).size(); k++){
-				castsList.get(j).get(k).setLocation(castsList.get(j).get(k).getX() + offSetX, -castsList.get(j).get(k).getY() + offSetY);
-			}
-		}
 	}
 	
 	/**
@@ -116,38 +105,60 @@ public class CastSim {
 	 * 
 	 */
 	private void runCell() { 
-		
-		WKTCastReader c = new WKTCastReader();
-		String CFile = checkCellFile(settings);
 		try {
-			c.readFile(new File(CFile));
+			Casts = readCasts(cellMap);
 		} catch (IOException e) {
 			System.out.println("Cell list has not read properly from file");
 			e.printStackTrace();
 		}
-		castsList = c.returnCasts();
-		
-		int offSetX = settings.getInt(OFFSETX);
-		int offSetY = settings.getInt(OFFSETY);
+	}
+	
+	/**
+	 * Returns the calibrated casts of the file that is defined by the given
+	 * setting. Each file is read only once for all the runs of this
+	 * simulation context, so the returned casts are shared.
+	 * @param fileSetting The setting id of the cast file
+	 * @return The casts of the file
+	 * @throws IOException if the file can't be read
+	 */
+	private List<Cast> readCasts(String fileSetting) throws IOException {
+		final File file = new File(settings.getSetting(fileSetting));
+		final int offSetX = settings.getInt(OFFSETX);
+		final int offSetY = settings.getInt(OFFSETY);
 		
+		return cache.get(AssetCache.key(fileSetting, offSetX + "," + offSetY,
+				file), new AssetCache.Loader<List<Cast>>() {
+			public List<Cast> load() throws IOException {
+				WKTCastReader c = new WKTCastReader();
+				c.readFile(file);
+				return defineCasts(c.returnCasts(), offSetX, offSetY);
+			}
+		});
+	}
+
+	/**
+	 * This method calibrates the casts and creates new object of each cast
+	 * @param castsList The coordinates of the casts
+	 * @param offSetX The calibration offset of x coordinates
+	 * @param offSetY The calibration offset of y coordinates
+	 * @return The casts
+	 */
+	private static List<Cast> defineCasts(List<List<Coord>> castsList,
+			int offSetX, int offSetY) {
 		//CastSim calibrator
 		for(int j=0; j<castsList.size(); j++){
 			for(int k=0; k<castsList.get(j).size(); k++){
 				castsList.get(j).get(k).setLocation(castsList.get(j).get(k).getX() + offSetX, -castsList.get(j).get(k).getY() + offSetY);
 			}
 		}
-	}
-
-	/**
-	 * This method creates new object of each cast and adds it to the casts
-	 * 
-	 */
-	private void defineCast() {
+		
+		List<Cast> casts = new ArrayList<Cast>();
 		for (int i=0; i<castsList.size(); i++){	
 			Cast temp = new Cast(castsList.get(i));
 			temp.setId(i+1);
-			Casts.add(temp);			
+			casts.add(temp);			
 		}
+		return casts;
 	}
 
 	/**
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import report.Report;
+
+/**
+ * <P>Simulation checkpoints. A checkpoint contains the whole state of a
+ * simulation run at the end of a world update: the scenario and its world
+ * with all hosts, movement models, paths, routers, message buffers,
+ * connections and event queues, and the static state of the simulator
+ * classes (the sim clock, the random number generators, the address and
+ * message id counters, the connectivity grids, etc.). A run that is
+ * restored from a checkpoint continues exactly like the original run
+ * would have continued.</P>
+ *
+ * <P>The reports and other global listeners of the scenario are not part of
+ * the checkpoint; the restored run gets new, empty, listener lists where
+ * the new run's reports are added. Because of this, a (warmed up)
+ * checkpoint can also be used as a starting point for many runs with
+ * different reports. The settings are not part of the checkpoint either;
+ * settings that are read during the simulation (e.g., by reports) are read
+ * from the restored run's configuration.</P>
+ *
+ * <P>The static state is collected from all the classes that are
+ * {@link DTNSim#registerForReset(String) registered for resetting} and from
+ * the classes listed in {@link #STATE_CLASSES}, except the classes listed in
+ * {@link #EXCLUDED_CLASSES}. All their non-final static fields and all the
+ * objects reachable from the scenario must be serializable, so e.g.
+ * scenarios that use {@link movement.ExternalMovement} can't be
+ * checkpointed.</P>
+ */
+public class Checkpoint {
+	/** Checkpoint settings namespace ({@value}) */
+	public static final String CHECKPOINT_NS = "Checkpoint";
+	/** Path of the checkpoint file to restore the run from -setting id
+	 * ({@value}). If defined, the run is restored from the checkpoint
+	 * instead of creating a new scenario (and no movement warmup is done).
+	 * Supports value filling. */
+	public static final String RESTORE_FILE_S = "restoreFile";
+	/** Path prefix of the saved checkpoint files -setting id ({@value}).
+	 * Supports value filling. The checkpoint's simulation time and
+	 * {@link #FILE_SUFFIX} are appended to the prefix. Default is the
+	 * report directory and the scenario name. */
+	public static final String SAVE_FILE_S = "saveFile";
+	/** Simulation times when to save checkpoints -setting id ({@value}).
+	 * Comma separated list of times. A checkpoint is saved after the
+	 * first world update that reaches each of the times. */
+	public static final String SAVE_TIMES_S = "saveTimes";
+	/** Interval of periodic checkpoints -setting id ({@value}). Simulated
+	 * seconds. */
+	public static final String SAVE_INTERVAL_S = "saveInterval";
+	/** Suffix of checkpoint files ({@value}) */
+	public static final String FILE_SUFFIX = ".ckpt";
+	/** Stack size of the thread that saves and restores checkpoints */
+	private static final long STACK_SIZE = 1L << 30;
+
+	/** Names of the classes with run-scoped static state that are not
+	 * registered for resetting */
+	public static final String[] STATE_CLASSES = {"core.GeoSimScenario",
+		"core.GeoMessage", "movement.BusMovement",
+		"movement.BusTravellerMovement", "movement.EveningActivityMovement",
+		"routing.util.EnergyModel", "routing.FloatingContentRouter"};
+	/** Names of the classes registered for resetting whose static state is
+	 * not part of the simulation (e.g., the profiler's measurements), so
+	 * it is not saved in checkpoints */
+	public static final String[] EXCLUDED_CLASSES = {"core.Profiler"};
+
+	/** the checkpoint file prefix */
+	private String savePrefix;
+	/** the checkpoint times that haven't been saved yet, in order */
+	private double[] saveTimes;
+	/** index of the next checkpoint time */
+	private int nextTimeIndex;
+	/** interval of periodic checkpoints (or 0 if not in use) */
+	private double saveInterval;
+	/** time of the next periodic checkpoint */
+	private double nextIntervalTime;
+	/** the restore file (or null if the run is not restored) */
+	private String restoreFile;
+
+	/**
+	 * Creates a checkpoint manager based on the settings in the
+	 * {@link #CHECKPOINT_NS} namespace
+	 */
+	public Checkpoint() {
+		Settings s = new Settings(CHECKPOINT_NS);
+
+		if (s.contains(RESTORE_FILE_S)) {
+			this.restoreFile = s.valueFillString(s.getSetting(RESTORE_FILE_S));
+		}
+		if (s.contains(SAVE_FILE_S)) {
+			this.savePrefix = s.valueFillString(s.getSetting(SAVE_FILE_S));
+		}
+		else { // report directory and scenario name
+			Settings scen = new Settings(SimScenario.SCENARIO_NS);
+			Settings global = new Settings();
+			String dir = "";
+			if (global.contains(Report.REPORTDIR_SETTING)) {
+				dir = global.getSetting(Report.REPORTDIR_SETTING);
+				if (!dir.endsWith("/")) {
+					dir += "/";
+				}
+			}
+			this.savePrefix = dir + scen.valueFillString(
+					scen.getSetting(SimScenario.NAME_S));
+		}
+
+		if (s.contains(SAVE_TIMES_S)) {
+			this.saveTimes = s.getCsvDoubles(SAVE_TIMES_S);
+			Arrays.sort(this.saveTimes);
+		}
+		else {
+			this.saveTimes = new double[0];
+		}
+		this.saveInterval = s.getDouble(SAVE_INTERVAL_S, 0);
+		s.ensurePositiveValue(saveInterval, SAVE_INTERVAL_S);
+		this.nextIntervalTime = saveInterval;
+	}
+
+	/**
+	 * Returns true if the run should be restored from a checkpoint
+	 * @return true if the run should be restored from a checkpoint
+	 */
+	public boolean isRestoring() {
+		return this.restoreFile != null;
+	}
+
+	/**
+	 * Restores the run from the {@link #RESTORE_FILE_S restore file}. After
+	 * this, the (geo) sim scenario instance is the restored scenario.
+	 * The checkpoints before the restored simulation time are not saved.
+	 */
+	public void restore() {
+		restore(new File(this.restoreFile));
+		skipSavesUntil(SimClock.getTime());
+	}
+
+	/**
+	 * Saves a checkpoint if any checkpoint time has been reached. Should be
+	 * called after every world update.
+	 * @param listenerLists The global listener lists of the scenario
+	 * (see {@link #save(File, List...)})
+	 */
+	public void update(List<?>... listenerLists) {
+		double time = SimClock.getTime();
+		boolean due = false;
+
+		if (nextTimeIndex < saveTimes.length &&
+				saveTimes[nextTimeIndex] <= time) {
+			due = true;
+		}
+		if (saveInterval > 0 && nextIntervalTime <= time) {
+			due = true;
+		}
+
+		if (due) {
+			save(new File(savePrefix + "_" + SimClock.getFormattedTime(0) +
+					FILE_SUFFIX), listenerLists);
+		}
+		skipSavesUntil(time);
+	}
+
+	/**
+	 * Skips all the checkpoints that are due at or before the given time
+	 * @param time The time
+	 */
+	private void skipSavesUntil(double time) {
+		while (nextTimeIndex < saveTimes.length &&
+				saveTimes[nextTimeIndex] <= time) {
+			nextTimeIndex++;
+		}
+		if (saveInterval > 0) {
+			while (nextIntervalTime <= time) {
+				nextIntervalTime += saveInterval;
+			}
+		}
+	}
+
+	/**
+	 * Saves the state of the current run to a file
+	 * @param file The file to save the checkpoint to
+	 * @param listenerLists The global listener lists of the scenario. The
+	 * lists are saved as empty lists.
+	 * @throws SimError if the state can't be saved
+	 */
+	public static void save(final File file, final List<?>... listenerLists) {
+		final Map<String, Map<String, Object>> state = collectState();
+
+		/* the checkpoint is first written to a temporary file so that a 
+		 * failed save doesn't destroy an old checkpoint */
+		final File tmpFile = new File(file.getPath() + ".tmp");
+		runWithLargeStack(new Callable<Object>() {
+			public Object call() throws IOException {
+				ObjectOutputStream out = null;
+				try {
+					out = new CheckpointOutputStream(new GZIPOutputStream(
+						new BufferedOutputStream(
+								new FileOutputStream(tmpFile))),
+						listenerLists);
+					out.writeObject(state);
+					out.close(); // errors when flushing the file are fatal
+					out = null;
+				} finally {
+					close(out);
+				}
+				return null;
+			}
+		}, "Can't save checkpoint " + file);
+		
+		file.delete();
+		if (!tmpFile.renameTo(file)) {
+			throw new SimError("Can't rename " + tmpFile + " to " + file);
+		}
+	}
+
+	/**
+	 * Restores the state of a run from a checkpoint file. Overwrites the
+	 * static state of all the classes of the checkpoint.
+	 * @param file The checkpoint file
+	 * @throws SimError if the state can't be restored
+	 */
+	@SuppressWarnings("unchecked")
+	public static void restore(final File file) {
+		Map<String, Map<String, Object>> state;
+
+		state = (Map<String, Map<String, Object>>)runWithLargeStack(
+				new Callable<Object>() {
+			public Object call() throws Exception {
+				ObjectInputStream in = null;
+				try {
+					in = new ObjectInputStream(new GZIPInputStream(
+						new BufferedInputStream(new FileInputStream(file))));
+					return in.readObject();
+				} finally {
+					close(in);
+				}
+			}
+		}, "Can't read checkpoint " + file);
+
+		for (Map.Entry<String, Map<String, Object>> e : state.entrySet()) {
+			Class<?> c = loadClass(e.getKey());
+			for (Map.Entry<String, Object> f : e.getValue().entrySet()) {
+				try {
+					Field field = c.getDeclaredField(f.getKey());
+					field.setAccessible(true);
+					field.set(null, f.getValue());
+				} catch (Exception ex) {
+					throw new SimError("Can't restore field " + f.getKey() +
+							" of " + c.getName() + ": " + ex, ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the values of the non-final static fields of the state
+	 * classes
+	 * @return The values by field names by class names
+	 */
+	private static Map<String, Map<String, Object>> collectState() {
+		List<Class<?>> classes = new ArrayList<Class<?>>(
+				DTNSim.getResetClasses());
+		for (String name : STATE_CLASSES) {
+			Class<?> c = loadClass(name);
+			if (!classes.contains(c)) {
+				classes.add(c);
+			}
+		}
+		for (String name : EXCLUDED_CLASSES) {
+			classes.remove(loadClass(name));
+		}
+
+		Map<String, Map<String, Object>> state =
+			new LinkedHashMap<String, Map<String, Object>>();
+		for (Class<?> c : classes) {
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			for (Field f : c.getDeclaredFields()) {
+				int mod = f.getModifiers();
+				if (!Modifier.isStatic(mod) || Modifier.isFinal(mod)) {
+					continue;
+				}
+				try {
+					f.setAccessible(true);
+					values.put(f.getName(), f.get(null));
+				} catch (IllegalAccessException e) {
+					throw new SimError(e);
+				}
+			}
+			state.put(c.getName(), values);
+		}
+		return state;
+	}
+
+	/**
+	 * Loads and initializes a class
+	 * @param name Name of the class
+	 * @return The class
+	 */
+	private static Class<?> loadClass(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Can't find checkpointed class " + name);
+		}
+	}
+
+	/**
+	 * Runs a task in a new thread that has a large stack. Serialization 
+	 * recurses through the object graph, and e.g. the map nodes (that refer
+	 * to their neighbors) make the graph very deep.
+	 * @param task The task to run
+	 * @param errorMsg Message of the SimError that is thrown if the task
+	 * fails
+	 * @return The result of the task
+	 */
+	private static Object runWithLargeStack(final Callable<Object> task,
+			String errorMsg) {
+		final Object[] result = new Object[1];
+		final Throwable[] error = new Throwable[1];
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					result[0] = task.call();
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "checkpoint", STACK_SIZE);
+		
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		}
+		
+		if (error[0] instanceof Error) {
+			throw (Error)error[0];
+		}
+		if (error[0] != null) {
+			throw new SimError(errorMsg + ": " + error[0], 
+					(Exception)error[0]);
+		}
+		return result[0];
+	}
+
+	/**
+	 * Closes a stream ignoring errors
+	 * @param c The stream to close (or null)
+	 */
+	private static void close(java.io.Closeable c) {
+		if (c == null) {
+			return;
+		}
+		try {
+			c.close();
+		} catch (IOException e) {
+			// nothing to do; the original error (if any) is more relevant
+		}
+	}
+
+	/**
+	 * Object output stream that writes the given lists as empty lists
+	 */
+	private static class CheckpointOutputStream extends ObjectOutputStream {
+		/** the empty replacements of the lists */
+		private Map<Object, Object> replacements;
+
+		public CheckpointOutputStream(OutputStream out, List<?>[] lists)
+			throws IOException {
+			super(out);
+			this.replacements = new IdentityHashMap<Object, Object>();
+			for (List<?> l : lists) {
+				replacements.put(l, new ArrayList<Object>());
+			}
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			Object replacement = replacements.get(obj);
+			return replacement != null ? replacement : obj;
+		}
+	}
+}
@@ -8,6 +8,8 @@
  */
 package core;
 
+import java.io.Serializable;
+
 import routing.MessageRouter;
 import routing.GeoMessageRouter;
 
@@ -17,7 +19,9 @@ import routing.GeoMessageRouter;
  * 
  * Modified by: @author Aydin Rajaei
  */
-public abstract class Connection {
+public abstract class Connection implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	protected DTNHost toNode;
 	protected NetworkInterface toInterface;
 	protected DTNHost fromNode;
@@ -116,6 +120,7 @@ public abstract class Connection {
      * Aborts the transfer of the currently transferred message.
      */
 	public void abortTransfer() {
+		Profiler.count(Profiler.Counter.TRANSFERS_ABORTED);
 		assert (msgOnFly != null || gMsgOnFly != null) : "No message to abort at " + msgFromNode;	
 		int bytesRemaining = getRemainingByteCount();
 		
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import util.BoxGrid;
+
+/**
+ * <P>Predicts the exact times when pairs of hosts get in and out of each
+ * other's radio range and schedules world updates at those times.</P>
+ *
+ * <P>Between two waypoints every host moves on a straight line with a
+ * constant speed, so the times when the distance between two hosts is
+ * equal to their (smaller) radio range can be solved from a quadratic
+ * equation. The predictions of a host are recomputed only when the host
+ * gets a new waypoint, stops at the end of its path or its movement
+ * activeness changes, which the host tells with
+ * {@link #segmentChanged(DTNHost)}. Predictions are computed only until
+ * both hosts have reached the ends of their current line segments and a
+ * host that has reached its segment's end is expected to wait there,
+ * since the pair is recomputed anyway when either of them turns. The
+ * bounding boxes of the segments are kept in a {@link BoxGrid} so that a
+ * host's predictions are computed only with the hosts whose segments can
+ * get within range of its segment.</P>
+ *
+ * <P>The world must move the hosts to the time of every scheduled update
+ * (not just to the update interval boundaries) for the contacts to be
+ * detected at the predicted times. Contacts are still detected by the
+ * normal range checks, so hosts that don't follow their paths (e.g.,
+ * hosts whose location is set externally) are handled at update interval
+ * granularity.</P>
+ */
+public class ContactPredictor implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** How long after the predicted time the update is scheduled. This
+	 * makes sure the hosts are (numerically) inside or outside the range
+	 * when the update happens. */
+	public static final double CONTACT_TIME_EPSILON = 1e-6;
+
+	private World world;
+	private List<? extends DTNHost> hosts;
+
+	/* current line segment of every host (indexed by address) */
+	private double[] x;
+	private double[] y;
+	private double[] vx;
+	private double[] vy;
+	/** time when the segment was computed (and the host was at x,y) */
+	private double[] t0;
+	/** time when the host reaches the end of the segment */
+	private double[] tEnd;
+	/** bounding box of the remaining segment */
+	private double[] minX, maxX, minY, maxY;
+	/** largest radio range of the host */
+	private double[] maxRange;
+	/** movement activeness of the host when the segment was computed */
+	private boolean[] active;
+	/** bounding boxes of the segments (by host address) */
+	private BoxGrid segments;
+	/** hosts whose predictions are recomputed in this round */
+	private boolean[] dirty;
+	/** addresses of the dirty hosts */
+	private int[] dirtyHosts;
+	/** number of dirty hosts */
+	private int nrofDirty;
+	/** the dirty host whose pairs are predicted */
+	private int current;
+	/** visitor that predicts the pairs of the current host */
+	private transient BoxGrid.BoxVisitor pairPredictor;
+	/** predicted update times of this round (scheduled all at once) */
+	private double[] predicted;
+	/** number of valid times in the predicted array */
+	private int nrofPredicted;
+	private boolean initialized;
+
+	/**
+	 * Creates a new contact predictor
+	 * @param world The world where the updates are scheduled to
+	 */
+	public ContactPredictor(World world) {
+		this.world = world;
+		this.hosts = world.getHosts();
+		int n = hosts.size();
+
+		this.x = new double[n];
+		this.y = new double[n];
+		this.vx = new double[n];
+		this.vy = new double[n];
+		this.t0 = new double[n];
+		this.tEnd = new double[n];
+		this.minX = new double[n];
+		this.maxX = new double[n];
+		this.minY = new double[n];
+		this.maxY = new double[n];
+		this.maxRange = new double[n];
+		this.active = new boolean[n];
+		this.dirty = new boolean[n];
+		this.dirtyHosts = new int[n];
+		this.nrofDirty = 0;
+		this.predicted = new double[16];
+		this.initialized = false;
+
+		double range = 1;
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				range = Math.max(range, ni.getTransmitRange());
+			}
+			h.setContactPredictor(this);
+		}
+		this.segments = new BoxGrid(range);
+	}
+
+	/**
+	 * Tells the predictor that a host has got a new waypoint, has stopped
+	 * to wait for a new path or its movement activeness has changed. The
+	 * predictions of the host are recomputed on the next {@link #update()}.
+	 * @param host The host
+	 */
+	public void segmentChanged(DTNHost host) {
+		int i = host.getAddress();
+		if (!dirty[i]) {
+			dirty[i] = true;
+			dirtyHosts[nrofDirty++] = i;
+		}
+	}
+
+	/**
+	 * Recomputes the predictions of all hosts that have got a new waypoint
+	 * (or whose movement activeness changed) since the last call and
+	 * schedules world updates for the predicted contact start and end times.
+	 * Must be called every time after the hosts have been moved.
+	 */
+	public void update() {
+		double now = SimClock.getTime();
+
+		if (!initialized) {
+			for (DTNHost h : hosts) {
+				segmentChanged(h);
+			}
+			initialized = true;
+		}
+		if (nrofDirty == 0) {
+			return;
+		}
+
+		for (int k=0; k<nrofDirty; k++) {
+			int i = dirtyHosts[k];
+			DTNHost h = hosts.get(i);
+			active[i] = h.isMovementActive();
+			setSegment(i, h, now);
+			segments.put(i, minX[i], minY[i], maxX[i], maxY[i]);
+		}
+
+		if (this.pairPredictor == null) {
+			this.pairPredictor = new BoxGrid.BoxVisitor() {
+				public void visit(int j) {
+					if (j == current || (dirty[j] && j < current)) {
+						return; /* dirty pairs are predicted only once */
+					}
+					predictPair(current, j, SimClock.getTime());
+				}
+			};
+		}
+		for (int k=0; k<nrofDirty; k++) {
+			int i = dirtyHosts[k];
+			this.current = i;
+			segments.forEachOverlapping(minX[i] - maxRange[i],
+					minY[i] - maxRange[i], maxX[i] + maxRange[i],
+					maxY[i] + maxRange[i], pairPredictor);
+		}
+
+		for (int k=0; k<nrofDirty; k++) {
+			dirty[dirtyHosts[k]] = false;
+		}
+		nrofDirty = 0;
+		
+		if (nrofPredicted > 0) {
+			world.scheduleUpdates(predicted, nrofPredicted);
+			nrofPredicted = 0;
+		}
+	}
+
+	/**
+	 * Sets the current line segment of a host
+	 * @param i Index of the host
+	 * @param h The host
+	 * @param now Current simulation time
+	 */
+	private void setSegment(int i, DTNHost h, double now) {
+		Coord loc = h.getLocation();
+		Coord dest = h.getDestination();
+		double range = 0;
+
+		for (NetworkInterface ni : h.getInterfaces()) {
+			range = Math.max(range, ni.getTransmitRange());
+		}
+
+		x[i] = loc.getX();
+		y[i] = loc.getY();
+		t0[i] = now;
+		maxRange[i] = range;
+		minX[i] = maxX[i] = x[i];
+		minY[i] = maxY[i] = y[i];
+
+		double dist = (dest == null ? 0 : loc.distance(dest));
+		if (!active[i] || dist == 0 || h.getSpeed() <= 0) {
+			/* not moving until the host gets a new waypoint */
+			vx[i] = vy[i] = 0;
+			tEnd[i] = Double.MAX_VALUE;
+			return;
+		}
+
+		double speed = h.getSpeed();
+		vx[i] = (dest.getX() - x[i]) / dist * speed;
+		vy[i] = (dest.getY() - y[i]) / dist * speed;
+		tEnd[i] = now + dist / speed;
+		minX[i] = Math.min(x[i], dest.getX());
+		maxX[i] = Math.max(x[i], dest.getX());
+		minY[i] = Math.min(y[i], dest.getY());
+		maxY[i] = Math.max(y[i], dest.getY());
+	}
+
+	/**
+	 * Predicts the contact changes of a pair of hosts within the time at
+	 * least one of the hosts stays on its current segment and adds the
+	 * update times to the ones scheduled after this round. A host that has
+	 * reached the end of its segment is expected to stay at the end point
+	 * (i.e., to wait for its next path).
+	 * @param i Index of the first host
+	 * @param j Index of the second host
+	 * @param now Current simulation time
+	 */
+	private void predictPair(int i, int j, double now) {
+		double r = Math.min(maxRange[i], maxRange[j]);
+
+		/* can the hosts get within range at all during the segments */
+		if (minX[i] - r > maxX[j] || minX[j] - r > maxX[i] ||
+				minY[i] - r > maxY[j] || minY[j] - r > maxY[i]) {
+			return;
+		}
+
+		/* first while both hosts move and then while only the other one
+		 * does (if either host has already stopped, only the latter) */
+		double firstEnd = Math.min(tEnd[i], tEnd[j]);
+		if (firstEnd > now) {
+			predictSpan(i, j, now, firstEnd);
+		}
+		predictSpan(i, j, Math.max(now, firstEnd), Math.max(tEnd[i], tEnd[j]));
+	}
+
+	/**
+	 * Predicts the contact changes of a pair of hosts within a time span
+	 * when neither of the hosts changes its velocity
+	 * @param i Index of the first host
+	 * @param j Index of the second host
+	 * @param from Start time of the span
+	 * @param to End time of the span
+	 */
+	private void predictSpan(int i, int j, double from, double to) {
+		if (to <= from) {
+			return;
+		}
+
+		/* relative location (at from) and velocity of j from i's point of
+		 * view; hosts past their segment's end stay at the end point */
+		double wx = (tEnd[j] > from ? vx[j] : 0) -
+			(tEnd[i] > from ? vx[i] : 0);
+		double wy = (tEnd[j] > from ? vy[j] : 0) -
+			(tEnd[i] > from ? vy[i] : 0);
+		double a = wx*wx + wy*wy;
+		if (a == 0) {
+			return; /* distance stays the same */
+		}
+
+		double ti = Math.min(from, tEnd[i]) - t0[i];
+		double tj = Math.min(from, tEnd[j]) - t0[j];
+		double dx = (x[j] + vx[j] * tj) - (x[i] + vx[i] * ti);
+		double dy = (y[j] + vy[j] * tj) - (y[i] + vy[i] * ti);
+
+		for (NetworkInterface ni : hosts.get(i).getInterfaces()) {
+			double range = pairRange(ni, hosts.get(j));
+			if (range <= 0) {
+				continue;
+			}
+
+			double b = 2 * (dx*wx + dy*wy);
+			double c = dx*dx + dy*dy - range*range;
+			double disc = b*b - 4*a*c;
+			if (disc < 0) {
+				continue; /* never within range */
+			}
+
+			double sqrtDisc = Math.sqrt(disc);
+			double enter = from + (-b - sqrtDisc) / (2*a);
+			double leave = from + (-b + sqrtDisc) / (2*a);
+
+			if (enter > from && enter < to) {
+				addPrediction(enter + CONTACT_TIME_EPSILON);
+			}
+			if (leave > from && leave < to) {
+				addPrediction(leave + CONTACT_TIME_EPSILON);
+			}
+		}
+	}
+
+	/**
+	 * Adds a predicted update time to the times scheduled after this round
+	 * @param time The time of the update
+	 */
+	private void addPrediction(double time) {
+		if (nrofPredicted == predicted.length) {
+			predicted = Arrays.copyOf(predicted, 2 * nrofPredicted);
+		}
+		predicted[nrofPredicted++] = time;
+	}
+
+	/**
+	 * Returns the range within which an interface and another host's
+	 * interface of the same type can connect
+	 * @param ni The interface
+	 * @param other The other host
+	 * @return The smaller of the two ranges or 0 if the other host doesn't
+	 * have an interface of the same type
+	 */
+	private double pairRange(NetworkInterface ni, DTNHost other) {
+		String type = ni.getInterfaceType();
+		for (NetworkInterface oi : other.getInterfaces()) {
+			if (oi.getInterfaceType().equals(type)) {
+				return Math.min(ni.getTransmitRange(), oi.getTransmitRange());
+			}
+		}
+		return 0;
+	}
+}
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -17,15 +18,16 @@ import routing.util.RoutingInfo;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+	private static final long serialVersionUID = 42L;
+
 	private static int nextAddress = 0;
 	private int address;
 
+	/* the location, destination, speed and direction are also kept in the
+	 * HostStateStore (see HostLocation) */
 	private Coord location; 	// where is the host 
 	private Coord destination;	// where is it going
-	//Host's direction StandStill = 0 - NorthEast=1 - SouthEast=2 - SouthWest=3 - NorthWest=4
-	private int direction;	//added to original class
-	private Coord previousLocation;	//added to original class
 
 	protected MessageRouter router; //#changed private to protected
 	private MovementModel movement;
@@ -38,6 +40,28 @@ public class DTNHost implements Comparable<DTNHost> {
 	protected List<NetworkInterface> net; //#changed private to protected
 	private ModuleCommunicationBus comBus;
 
+	/** are movement listener calls buffered (see {@link #moveDeferred}) */
+	private boolean deferMovementEvents;
+	/** buffered destinations for movement listeners */
+	private List<Coord> bufferedDestinations;
+	/** buffered speeds for movement listeners */
+	private List<Double> bufferedSpeeds;
+	/** is there a deferred move waiting for a new path */
+	private boolean movePending;
+	/** should the pending move start from the beginning of the move */
+	private boolean pendingFromStart;
+	/** time increment (if pending from start) or distance left to move */
+	private double pendingMovement;
+	/** predictor that is told about new waypoints and movement activeness
+	 * changes (null if contacts are not predicted) */
+	private ContactPredictor contactPredictor;
+	/** movement activeness of the host at the previous move */
+	private boolean wasMovementActive;
+	/** has the predictor's segment changed during a deferred move */
+	private boolean segmentChangePending;
+	/** are the router updates skipped while the router is idle */
+	private boolean skipIdleUpdates;
+
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
 		reset();
@@ -59,8 +83,9 @@ public class DTNHost implements Comparable<DTNHost> {
 			ModuleCommunicationBus comBus, 
 			MovementModel mmProto, MessageRouter mRouterProto) {
 		this.comBus = comBus;
-		this.location = new Coord(0,0);
 		this.address = getNextAddress();
+		HostStateStore.addHost(this.address);
+		this.location = new HostLocation(this.address, 0, 0);
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
 
@@ -68,8 +93,6 @@ public class DTNHost implements Comparable<DTNHost> {
 			NetworkInterface ni = i.replicate();
 			ni.setHost(this);
 			net.add(ni);
-			
-			previousLocation = new Coord(0,0);
 		}	
 
 		// TODO - think about the names of the interfaces and the nodes
@@ -83,7 +106,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.movement.setHost(this);
 		setRouter(mRouterProto.replicate());
 
-		this.location = movement.getInitialLocation();
+		this.location.setLocation(movement.getInitialLocation());
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
@@ -111,6 +134,33 @@ public class DTNHost implements Comparable<DTNHost> {
 		nextAddress = 0;
 	}
 
+	/**
+	 * Returns the simulation time when this host may continue moving. 
+	 * Before that time {@link #move(double)} doesn't do anything.
+	 * @return The time when the host may move the next time
+	 */
+	public double getNextTimeToMove() {
+		return this.nextTimeToMove;
+	}
+
+	/**
+	 * Sets whether the router updates are skipped while the router is 
+	 * idle (see {@link MessageRouter#isIdle()})
+	 * @param skip True if the idle updates should be skipped
+	 */
+	void setSkipIdleUpdates(boolean skip) {
+		this.skipIdleUpdates = skip;
+	}
+
+	/**
+	 * Returns true if the router updates are skipped while the router is
+	 * idle
+	 * @return True if the idle updates are skipped
+	 */
+	protected boolean isSkippingIdleUpdates() {
+		return this.skipIdleUpdates;
+	}
+
 	/**
 	 * Returns true if this node is actively moving (false if not)
 	 * @return true if this node is actively moving (false if not)
@@ -195,6 +245,36 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.location;
 	}
 
+	/**
+	 * Returns the current destination (the next waypoint) of this host. If 
+	 * the host is waiting, the destination is the host's current location 
+	 * (or null if the host hasn't had a destination yet).
+	 * @return The destination
+	 */
+	public Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed the host moves towards its destination
+	 * @return The speed
+	 */
+	public double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Sets the contact predictor that is told (with 
+	 * {@link ContactPredictor#segmentChanged(DTNHost)}) every time this 
+	 * host gets a new destination, stops to wait for a new path or its
+	 * movement activeness changes
+	 * @param predictor The predictor
+	 */
+	public void setContactPredictor(ContactPredictor predictor) {
+		this.contactPredictor = predictor;
+		this.wasMovementActive = isMovementActive();
+	}
+
 	/**
 	 * Returns the Path this node is currently traveling or null if no
 	 * path is in use at the moment.
@@ -209,7 +289,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param location The location to set
 	 */
 	public void setLocation(Coord location) {
-		this.location = location.clone();
+		this.location.setLocation(location);
 	}
 
 	/**
@@ -334,7 +414,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @return The location
 	 */
 	public int getDirection() {
-		return this.direction;
+		return HostStateStore.getDirection(this.address);
 	}
 	
 	
@@ -352,54 +432,24 @@ public class DTNHost implements Comparable<DTNHost> {
 		}
 		
 		if (simulateConnections) {
+			long start = Profiler.start();
 			for (NetworkInterface i : net) {
 				i.update();
 			}
+			Profiler.stop(Profiler.Phase.CONNECTIVITY, start);
+		}
+		if (!this.skipIdleUpdates || !this.router.isIdle()) {
+			long start = Profiler.start();
+			this.router.update();
+			Profiler.stopRouter(Profiler.Phase.ROUTING, router, start);
 		}
-		this.router.update();
 	}
 	
 	/** added to original class
 	 * Updates the direction of Host.
 	 */
 	protected void updateDirection() {
-		
-		//first update
-		if (this.previousLocation.getX() == 0 && this.previousLocation.getY() == 0){
-			this.previousLocation.setLocation(this.location);
-			this.direction = 0;
-			return;
-		}
-		
-		double cX = this.location.getX(); //currentX
-		double cY = this.location.getY(); //currentY
-		double pX = this.previousLocation.getX(); //previousX
-		double pY = this.previousLocation.getY(); //previousY
-		
-		//StandStill
-		if (pY == cY && pX == cX) {
-			this.direction = 0;
-		}
-		
-		//North
-		else if (pY >= cY) {
-			
-			//NorthEast
-			if(pX <= cX){ this.direction = 1; }
-			//NorthWest
-			else if(pX > cX) { this.direction = 4; }
-		}
-		
-		//South
-		else if(pY < cY) {
-			//SoutEast
-			if(pX <= cX){ this.direction = 3; }
-			//SouthWest
-			else if (pX > cX){ this.direction = 2; }
-		}
-		
-		this.previousLocation.setLocation(this.location);
-		return;
+		HostStateStore.updateDirection(this.address);
 	}
 
 
@@ -431,11 +481,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param timeIncrement How long time the node moves
 	 */
 	public void move(double timeIncrement) {		
-		double possibleMovement;
-		double distance;
-		double dx, dy;
-
-		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
+		if (!checkMovementActive() || 
+				SimClock.getTime() < this.nextTimeToMove) {
 			return; 
 		}
 		if (this.destination == null) {
@@ -444,15 +491,112 @@ public class DTNHost implements Comparable<DTNHost> {
 			}
 		}
 
-		possibleMovement = timeIncrement * speed;
+		moveTowardsDestination(timeIncrement * speed, false);
+	}
+
+	/**
+	 * Moves the node like {@link #move(double)} but never asks the movement
+	 * model for a new path (or for the next path's time). If a new path
+	 * would be needed, the move stops at that point and must be finished 
+	 * later with {@link #finishDeferredMove()}. Only the state of this host
+	 * is changed and the movement listener calls are buffered until
+	 * {@link #flushMovementEvents()} is called, so different hosts can be
+	 * moved concurrently. 
+	 * @param timeIncrement How long time the node moves
+	 * @return True if the move is complete, false if a deferred move is 
+	 * pending
+	 */
+	public boolean moveDeferred(double timeIncrement) {
+		this.deferMovementEvents = true;
+		
+		if (!checkMovementActive() || 
+				SimClock.getTime() < this.nextTimeToMove) {
+			return true; 
+		}
+		if (this.destination == null) {
+			if (!hasNextWaypoint()) {
+				this.movePending = true;
+				this.pendingFromStart = true;
+				this.pendingMovement = timeIncrement;
+				return false;
+			}
+			setNextWaypoint();
+		}
+
+		return moveTowardsDestination(timeIncrement * speed, true);
+	}
+
+	/**
+	 * Finishes a move that was stopped by {@link #moveDeferred(double)}
+	 * because a new path was needed. The result is the same as if the whole
+	 * move had been done with {@link #move(double)}.
+	 */
+	public void finishDeferredMove() {
+		assert this.movePending : "No deferred move pending for " + this;
+		this.movePending = false;
+		
+		if (!setNextWaypoint()) {
+			return;
+		}
+		if (this.pendingFromStart) {
+			moveTowardsDestination(this.pendingMovement * speed, false);
+		}
+		else {
+			moveTowardsDestination(this.pendingMovement, false);
+		}
+	}
+
+	/**
+	 * Delivers the movement listener calls buffered since the last call to 
+	 * {@link #moveDeferred(double)} and stops buffering them.
+	 */
+	public void flushMovementEvents() {
+		this.deferMovementEvents = false;
+		if (this.segmentChangePending) {
+			this.segmentChangePending = false;
+			this.contactPredictor.segmentChanged(this);
+		}
+		if (this.bufferedDestinations == null) {
+			return;
+		}
+		
+		for (int i=0, n=this.bufferedDestinations.size(); i<n; i++) {
+			for (MovementListener l : this.movListeners) {
+				l.newDestination(this, this.bufferedDestinations.get(i), 
+						this.bufferedSpeeds.get(i));
+			}
+		}
+		this.bufferedDestinations.clear();
+		this.bufferedSpeeds.clear();
+	}
+
+	/**
+	 * Moves the node towards its destination (and further along the path)
+	 * @param possibleMovement How long distance the node can move
+	 * @param deferPathRequests If true, the move stops when a new path 
+	 * would be needed
+	 * @return False if the move was stopped because of a new path request,
+	 * true otherwise
+	 */
+	private boolean moveTowardsDestination(double possibleMovement, 
+			boolean deferPathRequests) {
+		double distance;
+		double dx, dy;
+
 		distance = this.location.distance(this.destination);
 
 		while (possibleMovement >= distance) {
 			// node can move past its next destination
 			this.location.setLocation(this.destination); // snap to destination
 			possibleMovement -= distance;
+			if (deferPathRequests && !hasNextWaypoint()) {
+				this.movePending = true;
+				this.pendingFromStart = false;
+				this.pendingMovement = possibleMovement;
+				return false;
+			}
 			if (!setNextWaypoint()) { // get a new waypoint
-				return; // no more waypoints left
+				return true; // no more waypoints left
 			}
 			distance = this.location.distance(this.destination);
 		}
@@ -463,8 +607,50 @@ public class DTNHost implements Comparable<DTNHost> {
 		dy = (possibleMovement/distance) * (this.destination.getY() -
 				this.location.getY());
 		this.location.translate(dx, dy);
+		return true;
 	}	
 
+	/**
+	 * Returns the movement activeness of the host and tells the contact 
+	 * predictor (if any) if it has changed since the previous move
+	 * @return true if the host's movement is active
+	 */
+	private boolean checkMovementActive() {
+		boolean isActive = isMovementActive();
+		if (this.contactPredictor != null && 
+				isActive != this.wasMovementActive) {
+			this.wasMovementActive = isActive;
+			segmentChanged();
+		}
+		return isActive;
+	}
+
+	/**
+	 * Tells the contact predictor (if any) that the host's line segment has
+	 * changed. During a deferred move the predictor is told when the 
+	 * movement events are flushed.
+	 */
+	private void segmentChanged() {
+		if (this.contactPredictor == null) {
+			return;
+		}
+		if (this.deferMovementEvents) {
+			this.segmentChangePending = true;
+		}
+		else {
+			this.contactPredictor.segmentChanged(this);
+		}
+	}
+
+	/**
+	 * Returns true if the current path has a next waypoint (i.e., the next
+	 * waypoint can be set without asking the movement model for a new path)
+	 * @return true if the current path has a next waypoint
+	 */
+	private boolean hasNextWaypoint() {
+		return this.path != null && this.path.hasNext();
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -479,15 +665,29 @@ public class DTNHost implements Comparable<DTNHost> {
 		if (path == null || !path.hasNext()) {
 			this.nextTimeToMove = movement.nextPathAvailable();
 			this.path = null;
+			segmentChanged(); // stays where the previous segment ended
 			return false;
 		}
 
 		this.destination = path.getNextWaypoint();
 		this.speed = path.getSpeed();
+		segmentChanged();
+		HostStateStore.setDestination(this.address, this.destination, 
+				this.speed);
 
 		if (this.movListeners != null) {
-			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+			if (this.deferMovementEvents) {
+				if (this.bufferedDestinations == null) {
+					this.bufferedDestinations = new ArrayList<Coord>();
+					this.bufferedSpeeds = new ArrayList<Double>();
+				}
+				this.bufferedDestinations.add(this.destination);
+				this.bufferedSpeeds.add(this.speed);
+			}
+			else {
+				for (MovementListener l : this.movListeners) {
+					l.newDestination(this, this.destination, this.speed);
+				}
 			}
 		}
 
@@ -596,4 +796,47 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.getAddress() - h.getAddress();
 	}
 
+	/**
+	 * Location of a host that writes all changes through to the
+	 * {@link HostStateStore}. Clones are plain coordinates.
+	 */
+	private static class HostLocation extends Coord {
+		private static final long serialVersionUID = 42L;
+
+		private int address;
+		/* false while the super constructor sets the initial location */
+		private boolean inStore;
+
+		public HostLocation(int address, double x, double y) {
+			super(x, y);
+			this.address = address;
+			this.inStore = true;
+			HostStateStore.setLocation(address, x, y);
+		}
+
+		@Override
+		public void setLocation(double x, double y) {
+			super.setLocation(x, y);
+			if (inStore) {
+				HostStateStore.setLocation(address, x, y);
+			}
+		}
+
+		@Override
+		public void setLocation(Coord c) {
+			setLocation(c.getX(), c.getY());
+		}
+
+		@Override
+		public void translate(double dx, double dy) {
+			super.translate(dx, dy);
+			HostStateStore.setLocation(address, getX(), getY());
+		}
+
+		@Override
+		public Coord clone() {
+			return new Coord(getX(), getY());
+		}
+	}
+
 }
@@ -7,6 +7,7 @@ import gui.DTNSimGUI;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import ui.DTNSimTextUI;
@@ -20,6 +21,17 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/**
+	 * Number of batch runs run at the same time -setting id ({@value}) in 
+	 * the optimization settings namespace. Integer value. With more than one
+	 * thread, every run is run in its own {@link SimContext} and the 
+	 * reports are identical to the ones of sequential runs. The runs must 
+	 * not write to the same report (or settings output) files. Default is 
+	 * {@link #DEF_BATCH_THREADS}.
+	 */
+	public static final String BATCH_THREADS_S = "batchThreads";
+	/** default number of batch threads ({@value}) */
+	public static final int DEF_BATCH_THREADS = 1;
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -78,11 +90,18 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			int nrofThreads = getNrofBatchThreads();
+			if (nrofThreads > 1) {
+				SimContext.runAll(DTNSim.class.getName(), confFiles, 
+						firstConfIndex, nrofRuns[0], nrofRuns[1], nrofThreads);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +112,31 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs one batch run with the text UI. {@link SimContext} calls this 
+	 * in the context's own copy of the simulator classes.
+	 * @param confFiles File name paths where to read the settings
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex The run index of the run
+	 */
+	public static void runBatchRun(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		new DTNSimTextUI().start();
+	}
+	
+	/**
+	 * Returns the number of batch runs to run at the same time
+	 * @return the number of batch threads
+	 */
+	protected static int getNrofBatchThreads() {
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		int nrofThreads = s.getInt(BATCH_THREADS_S, DEF_BATCH_THREADS);
+		s.ensurePositiveValue(nrofThreads, BATCH_THREADS_S);
+		return nrofThreads;
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -159,10 +203,19 @@ public class DTNSim {
 		resetList.add(c);
 	}
 	
+	/**
+	 * Returns the classes that are registered for resetting
+	 * @return the classes that are registered for resetting
+	 * @see #registerForReset(String)
+	 */
+	public static List<Class<?>> getResetClasses() {
+		return Collections.unmodifiableList(resetList);
+	}
+	
 	/**
 	 * Resets all registered classes.
 	 */
-	private static void resetForNextRun() {
+	public static void resetForNextRun() {
 		for (Class<?> c : resetList) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
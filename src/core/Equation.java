@@ -4,12 +4,15 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
  * This class calculates the linear equation of each line in edge of the Cast.
  *
  * @author Aydin Rajaei
  */
-public class Equation {
+public class Equation implements Serializable {
+	private static final long serialVersionUID = 42L;
 	
 	/** f(x): Y = mX + y1 - mx1   
 	 * range(x): [range1,range2] 
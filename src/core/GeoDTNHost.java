@@ -25,6 +25,7 @@ import routing.util.RoutingInfo;
  * Modified by: @author Aydin Rajaei
  */
 public class GeoDTNHost extends DTNHost {
+	private static final long serialVersionUID = 42L;
 
 	private List<GeoMessageListener> gmsgListeners;
 	private GeoMessageRouter georouter;
@@ -146,12 +147,22 @@ public class GeoDTNHost extends DTNHost {
 		}
 		
 		if (simulateConnections) {
+			long start = Profiler.start();
 			for (NetworkInterface i : net) {
 				i.update();
 			}
+			Profiler.stop(Profiler.Phase.CONNECTIVITY, start);
+		}
+		if (!isSkippingIdleUpdates() || !this.router.isIdle()) {
+			long start = Profiler.start();
+			this.router.update();
+			Profiler.stopRouter(Profiler.Phase.ROUTING, router, start);
+		}
+		if (!isSkippingIdleUpdates() || !this.georouter.isIdle()) {
+			long start = Profiler.start();
+			this.georouter.update();
+			Profiler.stopRouter(Profiler.Phase.GEO_ROUTING, georouter, start);
 		}
-		this.router.update();
-		this.georouter.update();
 	}
 	
 
@@ -62,11 +62,18 @@ public class GeoDTNSim extends DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new GeoDTNSimTextUI().start();
+			int nrofThreads = getNrofBatchThreads();
+			if (nrofThreads > 1) {
+				SimContext.runAll(GeoDTNSim.class.getName(), confFiles, 
+						firstConfIndex, nrofRuns[0], nrofRuns[1], nrofThreads);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new GeoDTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -77,6 +84,20 @@ public class GeoDTNSim extends DTNSim {
 		}
 	}
 
+	/**
+	 * Runs one batch run with the geo text UI. {@link SimContext} calls 
+	 * this in the context's own copy of the simulator classes.
+	 * @param confFiles File name paths where to read the settings
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex The run index of the run
+	 */
+	public static void runBatchRun(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		new GeoDTNSimTextUI().start();
+	}
+
 	/**
 	 * Parses the number of runs, and an optional starting run index, from a 
 	 * command line argument
@@ -165,7 +186,7 @@ public class GeoDTNSim extends DTNSim {
 	/**
 	 * Resets all registered classes.
 	 */
-	private static void resetForNextRun() {
+	public static void resetForNextRun() {
 		for (Class<?> c : resetList) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
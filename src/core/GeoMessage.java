@@ -4,17 +4,18 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
  */
-public class GeoMessage implements Comparable<Message> {
+public class GeoMessage implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** Time-to-live (TTL) as seconds -setting id ({@value}). Boolean valued.
 	 * If set to true, the TTL is interpreted as seconds instead of minutes. 
 	 * Default=false. */
@@ -28,10 +29,16 @@ public class GeoMessage implements Comparable<Message> {
 	private List<Cast> to;
 	/** Identifier of the message */
 	private String id;
+	/** Identifier without the part ID (see {@link #getId(boolean)}) */
+	private String baseId;
+	/** Interned handle of the identifier (see {@link MessageIds}) */
+	private int handle;
+	/** Interned handle of the identifier without the part ID */
+	private int baseHandle;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
+	/** List of nodes this message has passed (shared with the replicates) */
+	private HopPath path;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -50,9 +57,17 @@ public class GeoMessage implements Comparable<Message> {
 	private Message requestMsg;
 	
 	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
+	 * stored in the properties should be immutable because the replicates
+	 * of the message share the property values. Contains the properties
+	 * set after the message was last replicated (or created as a replicate);
+	 * the others are in the shared properties. */
 	private Map<String, Object> properties;
+	/** Properties shared with the replicates of this message. The map is
+	 * never modified once it has been created. */
+	private Map<String, Object> sharedProperties;
+	/** Values of the typed property slots (shared with the replicates
+	 * until modified; null if no slot has a value) */
+	private SlotValues slots;
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -79,9 +94,9 @@ public class GeoMessage implements Comparable<Message> {
 	public GeoMessage(DTNHost from, List<Cast> to, String id, int size) {
 		this.from = from;
 		this.to = to;
-		this.id = id;
+		setIdentifier(id);
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = HopPath.EMPTY;
 		this.uniqueId = nextUniqueId;
 		this.partID = 0;
 		this.timeCreated = SimClock.getTime();
@@ -90,6 +105,7 @@ public class GeoMessage implements Comparable<Message> {
 		this.responseSize = 0;
 		this.requestMsg = null;
 		this.properties = null;
+		this.sharedProperties = null;
 		this.appID = null;
 		this.payload = "abcdefgh";
 		GeoMessage.nextUniqueId++;
@@ -99,9 +115,9 @@ public class GeoMessage implements Comparable<Message> {
 	public GeoMessage(DTNHost from, List<Cast> to, String id, int size, int partID, String payload) {
 		this.from = from;
 		this.to = to;
-		this.id = id;
+		setIdentifier(id);
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = HopPath.EMPTY;
 		this.uniqueId = nextUniqueId;
 		this.partID = partID;
 		this.timeCreated = SimClock.getTime();
@@ -110,12 +126,32 @@ public class GeoMessage implements Comparable<Message> {
 		this.responseSize = 0;
 		this.requestMsg = null;
 		this.properties = null;
+		this.sharedProperties = null;
 		this.appID = null;
 		this.payload = payload;
 		GeoMessage.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	
+	/**
+	 * Creates a replicate of a message. The replicate shares the immutable
+	 * fields, the hop path and the properties with the original message.
+	 * @param m The message to replicate
+	 */
+	private GeoMessage(GeoMessage m) {
+		this.from = m.from;
+		this.to = m.to;
+		this.id = m.id;
+		this.baseId = m.baseId;
+		this.handle = m.handle;
+		this.baseHandle = m.baseHandle;
+		this.size = m.size;
+		this.uniqueId = nextUniqueId;
+		this.timeReceived = SimClock.getTime();
+		copyFrom(m);
+		GeoMessage.nextUniqueId++;
+	}
+	
 	/**
 	 * Returns the node this message is originally from
 	 * @return the node this message is originally from
@@ -145,14 +181,41 @@ public class GeoMessage implements Comparable<Message> {
 	 * @return
 	 */
 	public String getId(boolean strip) {
-		if(!strip)
-			return this.getId();
-
-		int index = this.id.lastIndexOf("$");
-		if(index==-1)
-			return this.id;
-		else
-			return this.id.substring(0, index);
+		return (strip ? this.baseId : this.id);
+	}
+	
+	/**
+	 * Returns the interned handle of the message ID. All the messages
+	 * with the same ID (e.g., the replicates) have the same handle.
+	 * @return The handle
+	 * @see MessageIds
+	 */
+	public int getHandle() {
+		return this.handle;
+	}
+	
+	/**
+	 * Returns the interned handle of the message ID without the part ID
+	 * (i.e., the handle of {@link #getId(boolean) getId(true)}), which is
+	 * the same for all the parts of a message
+	 * @return The handle
+	 */
+	public int getBaseHandle() {
+		return this.baseHandle;
+	}
+	
+	/**
+	 * Sets the ID of the message and caches the ID without the part ID
+	 * (the part after the last '$') and the handles of both
+	 * @param id The ID
+	 */
+	private void setIdentifier(String id) {
+		this.id = id;
+		int index = id.lastIndexOf("$");
+		this.baseId = (index == -1 ? id : id.substring(0, index));
+		this.handle = MessageIds.intern(id);
+		this.baseHandle = (index == -1 ? this.handle :
+			MessageIds.intern(this.baseId));
 	}
 	
 	/**
@@ -180,12 +243,12 @@ public class GeoMessage implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = this.path.append(node);
 	}
 	
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The (read-only) list
 	 */
 	public List<DTNHost> getHops() {
 		return this.path;
@@ -230,6 +293,18 @@ public class GeoMessage implements Comparable<Message> {
 	public void setTtl(int ttl) {
 		this.initTtl = ttl;
 	}
+
+	/**
+	 * Returns the simulation time when the TTL of this message expires
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + (ttlAsSeconds ? this.initTtl :
+			this.initTtl * 60.0);
+	}
 	
 	/**
 	 * Sets the time when this message was received.
@@ -307,13 +382,15 @@ public class GeoMessage implements Comparable<Message> {
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
-	 * introduced to this class, most likely they should be copied here too
-	 * (unless done in constructor).
+	 * Copies message data from other message. The hop path and the
+	 * properties are shared with the other message (and copied only when
+	 * either message modifies them). If new fields are introduced to this
+	 * class, most likely they should be copied here too (unless done in
+	 * constructor).
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(GeoMessage m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -321,12 +398,29 @@ public class GeoMessage implements Comparable<Message> {
 		this.appID = m.appID;
 		this.partID = m.getPartID();
 		this.setPayload(m.getPayload());
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
+		this.sharedProperties = m.shareProperties();
+		this.properties = null;
+		this.slots = SlotValues.share(m.slots);
+	}
+
+	/**
+	 * Moves the properties set after the last replication to the shared
+	 * properties so that they can be shared with a new replicate
+	 * @return The shared properties (null if there are no properties)
+	 */
+	private Map<String, Object> shareProperties() {
+		if (this.properties != null) {
+			Map<String, Object> merged;
+			if (this.sharedProperties == null) {
+				merged = this.properties;
+			} else {
+				merged = new HashMap<String, Object>(this.sharedProperties);
+				merged.putAll(this.properties);
 			}
+			this.sharedProperties = merged;
+			this.properties = null;
 		}
+		return this.sharedProperties;
 	}
 	
 	/**
@@ -340,7 +434,11 @@ public class GeoMessage implements Comparable<Message> {
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		PropertySlot slot = PropertySlot.forName(key);
+		if ((slot != null && SlotValues.isSet(this.slots, slot)) ||
+				(this.properties != null && this.properties.containsKey(key)) ||
+				(this.sharedProperties != null &&
+				 this.sharedProperties.containsKey(key))) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " + 
 					"for a key " + key);
@@ -356,42 +454,147 @@ public class GeoMessage implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
+		PropertySlot slot = PropertySlot.forName(key);
+		if (slot != null) {
+			return SlotValues.getBoxed(this.slots, slot);
+		}
+		if (this.properties != null) {
+			Object value = this.properties.get(key);
+			if (value != null || this.properties.containsKey(key)) {
+				return value;
+			}
+		}
+		if (this.sharedProperties == null) {
 			return null;
 		}
-		return this.properties.get(key);
+		return this.sharedProperties.get(key);
 	}
 	
 	/**
 	 * Updates a value for an existing property. For storing the value first 
 	 * time, {@link #addProperty(String, Object)} should be used which
-	 * checks for name space clashes.
+	 * checks for name space clashes. If the key is the name of a
+	 * {@link PropertySlot}, the value must be of the slot's type (or null,
+	 * which removes the value).
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
+		PropertySlot slot = PropertySlot.forName(key);
+		if (slot != null) {
+			this.slots = SlotValues.setBoxed(this.slots, slot, value);
+			return;
+		}
 		if (this.properties == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
+			this.properties = new HashMap<String, Object>(4);
 		}		
 
 		this.properties.put(key, value);
 	}
 	
+	/**
+	 * Returns true if the given property slot of this message has a value
+	 * @param slot The slot
+	 * @return True if the slot has a value, false if not
+	 */
+	public boolean hasProperty(PropertySlot slot) {
+		return SlotValues.isSet(this.slots, slot);
+	}
+	
+	/**
+	 * Returns the value of an int property slot
+	 * @param slot The slot
+	 * @return The value or 0 if the slot has no value
+	 * @throws SimError if the slot is not an int slot
+	 */
+	public int getInt(PropertySlot slot) {
+		return SlotValues.getInt(this.slots, slot);
+	}
+	
+	/**
+	 * Sets the value of an int property slot
+	 * @param slot The slot
+	 * @param value The new value
+	 * @throws SimError if the slot is not an int slot
+	 */
+	public void setInt(PropertySlot slot, int value) {
+		this.slots = SlotValues.setInt(this.slots, slot, value);
+	}
+	
+	/**
+	 * Returns the value of a double property slot
+	 * @param slot The slot
+	 * @return The value or 0 if the slot has no value
+	 * @throws SimError if the slot is not a double slot
+	 */
+	public double getDouble(PropertySlot slot) {
+		return SlotValues.getDouble(this.slots, slot);
+	}
+	
+	/**
+	 * Sets the value of a double property slot
+	 * @param slot The slot
+	 * @param value The new value
+	 * @throws SimError if the slot is not a double slot
+	 */
+	public void setDouble(PropertySlot slot, double value) {
+		this.slots = SlotValues.setDouble(this.slots, slot, value);
+	}
+	
+	/**
+	 * Returns the value of a boolean property slot
+	 * @param slot The slot
+	 * @return The value or false if the slot has no value
+	 * @throws SimError if the slot is not a boolean slot
+	 */
+	public boolean getBoolean(PropertySlot slot) {
+		return SlotValues.getBoolean(this.slots, slot);
+	}
+	
+	/**
+	 * Sets the value of a boolean property slot
+	 * @param slot The slot
+	 * @param value The new value
+	 * @throws SimError if the slot is not a boolean slot
+	 */
+	public void setBoolean(PropertySlot slot, boolean value) {
+		this.slots = SlotValues.setBoolean(this.slots, slot, value);
+	}
+	
+	/**
+	 * Returns the value of a coordinate property slot
+	 * @param slot The slot
+	 * @return The value or null if the slot has no value
+	 * @throws SimError if the slot is not a coordinate slot
+	 */
+	public Coord getCoord(PropertySlot slot) {
+		return SlotValues.getCoord(this.slots, slot);
+	}
+	
+	/**
+	 * Sets the value of a coordinate property slot. The coordinate should
+	 * not be modified after it has been set.
+	 * @param slot The slot
+	 * @param value The new value (null removes the value)
+	 * @throws SimError if the slot is not a coordinate slot
+	 */
+	public void setCoord(PropertySlot slot, Coord value) {
+		this.slots = SlotValues.setCoord(this.slots, slot, value);
+	}
+	
 	/**
 	 * Returns a replicate of this message (identical except for the unique id)
 	 * @return A replicate of the message
 	 */
 	public GeoMessage replicate() {
-		GeoMessage m = new GeoMessage(from, to, id, size);
-		m.copyFrom(this);
-		return m;
+		return new GeoMessage(this);
 	}
 	
 	public GeoMessage replicate(String id) {
 		GeoMessage m = this.replicate();
-		m.id = id;
+		m.setIdentifier(id);
 		return m;
 	}
 	
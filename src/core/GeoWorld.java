@@ -18,6 +18,7 @@ import java.util.Random;
  * location and connections.
  */
 public class GeoWorld extends World{
+	private static final long serialVersionUID = 42L;
 
 	public GeoWorld(List<GeoDTNHost> hosts, int sizeX, int sizeY,
 			double updateInterval, List<UpdateListener> updateListeners,
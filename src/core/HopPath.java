@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent (immutable) list of the hosts a message has passed. Adding a
+ * host creates a new path that shares all the previous hosts with the old
+ * path, so replicates of a message can share their paths and adding a hop
+ * allocates only one node. The path is a read-only {@link java.util.List}
+ * in the order the hosts were passed.
+ */
+public class HopPath extends AbstractList<DTNHost> implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** The empty path */
+	public static final HopPath EMPTY = new HopPath(null, null);
+
+	/** the last host of the path */
+	private final DTNHost host;
+	/** the path before the last host (null for the empty path) */
+	private final HopPath previous;
+	/** number of hosts on the path */
+	private final int length;
+
+	private HopPath(DTNHost host, HopPath previous) {
+		this.host = host;
+		this.previous = previous;
+		this.length = (previous == null ? 0 : previous.length + 1);
+	}
+
+	/**
+	 * Returns a new path with the given host added to the end of this path.
+	 * This path is not modified.
+	 * @param host The host to add
+	 * @return The new path
+	 */
+	public HopPath append(DTNHost host) {
+		return new HopPath(host, this);
+	}
+
+	/**
+	 * Returns the last host of the path
+	 * @return The last host or null if the path is empty
+	 */
+	public DTNHost getLast() {
+		return this.host;
+	}
+
+	@Override
+	public int size() {
+		return this.length;
+	}
+
+	@Override
+	public DTNHost get(int index) {
+		if (index < 0 || index >= this.length) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + this.length);
+		}
+		HopPath p = this;
+		for (int i = this.length - 1; i > index; i--) {
+			p = p.previous;
+		}
+		return p.host;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		for (HopPath p = this; p.length > 0; p = p.previous) {
+			if (o == null ? p.host == null : o.equals(p.host)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<DTNHost> iterator() {
+		final DTNHost[] hosts = new DTNHost[this.length];
+		HopPath p = this;
+		for (int i = this.length - 1; i >= 0; i--) {
+			hosts[i] = p.host;
+			p = p.previous;
+		}
+
+		return new Iterator<DTNHost>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < hosts.length;
+			}
+
+			public DTNHost next() {
+				if (next >= hosts.length) {
+					throw new NoSuchElementException();
+				}
+				return hosts[next++];
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
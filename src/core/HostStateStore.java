@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * <P>Keeps the movement state of all the hosts (location, destination,
+ * speed, previous location and direction) in primitive arrays indexed by
+ * host address. The state of one kind for all the hosts is next to each
+ * other in memory, so loops that go through the locations of many hosts
+ * (movement, connectivity and cast checks) don't need to follow references
+ * to separate objects.</P>
+ *
+ * <P>The arrays are written by {@link DTNHost}. The location of a host is
+ * also available as a {@link Coord} from {@link DTNHost#getLocation()},
+ * which writes all changes through to the arrays. The state of a host is
+ * valid only after the host has been created, and the address of a host is
+ * reused after {@link DTNHost#reset()}.</P>
+ */
+public class HostStateStore {
+	/** initial number of hosts the arrays have space for */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static double[] xs;
+	private static double[] ys;
+	private static double[] destXs;
+	private static double[] destYs;
+	private static double[] speeds;
+	private static double[] prevXs;
+	private static double[] prevYs;
+	private static int[] directions;
+
+	static {
+		DTNSim.registerForReset(HostStateStore.class.getCanonicalName());
+		reset();
+	}
+
+	private HostStateStore() {}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		xs = new double[INITIAL_CAPACITY];
+		ys = new double[INITIAL_CAPACITY];
+		destXs = new double[INITIAL_CAPACITY];
+		destYs = new double[INITIAL_CAPACITY];
+		speeds = new double[INITIAL_CAPACITY];
+		prevXs = new double[INITIAL_CAPACITY];
+		prevYs = new double[INITIAL_CAPACITY];
+		directions = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Makes room for and clears the state of a new host. Must not be called
+	 * while the hosts are moved concurrently.
+	 * @param address Address of the new host
+	 */
+	static void addHost(int address) {
+		if (address >= xs.length) {
+			int capacity = Math.max(address + 1, xs.length * 2);
+			xs = grow(xs, capacity);
+			ys = grow(ys, capacity);
+			destXs = grow(destXs, capacity);
+			destYs = grow(destYs, capacity);
+			speeds = grow(speeds, capacity);
+			prevXs = grow(prevXs, capacity);
+			prevYs = grow(prevYs, capacity);
+			int[] newDirections = new int[capacity];
+			System.arraycopy(directions, 0, newDirections, 0,
+					directions.length);
+			directions = newDirections;
+		}
+
+		xs[address] = ys[address] = 0;
+		destXs[address] = destYs[address] = 0;
+		speeds[address] = 0;
+		prevXs[address] = prevYs[address] = 0;
+		directions[address] = 0;
+	}
+
+	private static double[] grow(double[] array, int capacity) {
+		double[] newArray = new double[capacity];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * Returns the x coordinate of a host's location
+	 * @param address Address of the host
+	 * @return The x coordinate
+	 */
+	public static double getX(int address) {
+		return xs[address];
+	}
+
+	/**
+	 * Returns the y coordinate of a host's location
+	 * @param address Address of the host
+	 * @return The y coordinate
+	 */
+	public static double getY(int address) {
+		return ys[address];
+	}
+
+	/**
+	 * Returns the x coordinate of a host's destination
+	 * @param address Address of the host
+	 * @return The x coordinate (0 if the host hasn't had a destination)
+	 */
+	public static double getDestinationX(int address) {
+		return destXs[address];
+	}
+
+	/**
+	 * Returns the y coordinate of a host's destination
+	 * @param address Address of the host
+	 * @return The y coordinate (0 if the host hasn't had a destination)
+	 */
+	public static double getDestinationY(int address) {
+		return destYs[address];
+	}
+
+	/**
+	 * Returns the speed a host moves towards its destination
+	 * @param address Address of the host
+	 * @return The speed
+	 */
+	public static double getSpeed(int address) {
+		return speeds[address];
+	}
+
+	/**
+	 * Returns the direction of a host (see {@link DTNHost#getDirection()})
+	 * @param address Address of the host
+	 * @return The direction
+	 */
+	public static int getDirection(int address) {
+		return directions[address];
+	}
+
+	/**
+	 * Returns the square of the distance between the locations of two hosts
+	 * @param address1 Address of the first host
+	 * @param address2 Address of the second host
+	 * @return The square distance
+	 */
+	public static double distance2(int address1, int address2) {
+		double dx = xs[address1] - xs[address2];
+		double dy = ys[address1] - ys[address2];
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * Sets the location of a host
+	 * @param address Address of the host
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	static void setLocation(int address, double x, double y) {
+		xs[address] = x;
+		ys[address] = y;
+	}
+
+	/**
+	 * Sets the destination and speed of a host
+	 * @param address Address of the host
+	 * @param destination The destination
+	 * @param speed Speed towards the destination
+	 */
+	static void setDestination(int address, Coord destination,
+			double speed) {
+		destXs[address] = destination.getX();
+		destYs[address] = destination.getY();
+		speeds[address] = speed;
+	}
+
+	/**
+	 * Updates the direction of a host based on how it has moved since the
+	 * previous call (the first call only stores the location).
+	 * StandStill = 0; NorthEast=1; SouthEast=2; SouthWest=3; NorthWest=4
+	 * @param address Address of the host
+	 */
+	static void updateDirection(int address) {
+		double cX = xs[address]; //currentX
+		double cY = ys[address]; //currentY
+		double pX = prevXs[address]; //previousX
+		double pY = prevYs[address]; //previousY
+		prevXs[address] = cX;
+		prevYs[address] = cY;
+
+		//first update
+		if (pX == 0 && pY == 0) {
+			directions[address] = 0;
+		}
+		//StandStill
+		else if (pY == cY && pX == cX) {
+			directions[address] = 0;
+		}
+		//North
+		else if (pY >= cY) {
+			directions[address] = (pX <= cX ? 1 : 4);
+		}
+		//South
+		else {
+			directions[address] = (pX <= cX ? 3 : 2);
+		}
+	}
+}
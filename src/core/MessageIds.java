@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Interning service for message IDs. Every distinct message ID of a run
+ * gets a dense int handle (0, 1, 2, ...) when it's interned for the first
+ * time. The messages intern their IDs when they are created, so the
+ * routers and buffers can key messages by the handles (see
+ * {@link Message#getHandle()}) instead of hashing and comparing the ID
+ * strings.
+ */
+public class MessageIds {
+	/** Handle that is returned for IDs that haven't been interned */
+	public static final int NO_HANDLE = -1;
+
+	/** handles by the IDs */
+	private static HashMap<String, Integer> handles;
+	/** IDs by the handles */
+	private static List<String> ids;
+
+	static {
+		DTNSim.registerForReset(MessageIds.class.getCanonicalName());
+		reset();
+	}
+
+	private MessageIds() {}
+
+	/**
+	 * Returns the handle of a message ID. The ID is interned (given the
+	 * next free handle) if it hasn't been interned before.
+	 * @param id The message ID
+	 * @return The handle of the ID
+	 */
+	public static int intern(String id) {
+		Integer handle = handles.get(id);
+		if (handle == null) {
+			handle = ids.size();
+			handles.put(id, handle);
+			ids.add(id);
+		}
+		return handle;
+	}
+
+	/**
+	 * Returns the handle of an interned message ID
+	 * @param id The message ID
+	 * @return The handle of the ID or {@link #NO_HANDLE} if the ID hasn't
+	 * been interned (i.e., there are no messages with the ID)
+	 */
+	public static int getHandle(String id) {
+		Integer handle = handles.get(id);
+		return (handle == null ? NO_HANDLE : handle);
+	}
+
+	/**
+	 * Returns the message ID of a handle
+	 * @param handle The handle
+	 * @return The message ID
+	 */
+	public static String getId(int handle) {
+		return ids.get(handle);
+	}
+
+	/**
+	 * Returns the number of interned IDs
+	 * @return The number of interned IDs
+	 */
+	public static int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		handles = new HashMap<String, Integer>();
+		ids = new ArrayList<String>();
+	}
+}
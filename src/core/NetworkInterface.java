@@ -6,7 +6,9 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.HierarchicalGrid;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -18,7 +20,9 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -50,6 +54,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_DOWN = 2;
 
 	private static Random rng;
+	/** address of the next created interface */
+	private static int nextAddress;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -70,6 +76,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private int activenessJitterMax;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
+	
+	/** interfaces found within range by the last detection pass 
+	 * (see {@link #detectNearInterfaces(ConnectivityOptimizer)}) */
+	private List<NetworkInterface> detectedInterfaces;
+	/** are the detected interfaces valid for the next update */
+	private boolean isDetected;
+	/** this interface's transmit range at the last detection pass */
+	private double detectedRange;
+	/** visitor that collects the near interfaces within range */
+	private transient ConnectivityOptimizer.InterfaceVisitor rangeDetector;
+	/** visitor that tries to connect to the near interfaces */
+	private transient ConnectivityOptimizer.InterfaceVisitor connector;
+	/** visit orders of the detected interfaces (see {@link 
+	 * #connectToDetectedInterfaces()}) */
+	private long[] detectedOrders;
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
@@ -81,12 +102,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public static void reset() {
 		rng = new Random(0);
+		nextAddress = 0;
 	}
 	
 	/**
 	 * For creating an empty class of a specific type
 	 */
 	public NetworkInterface(Settings s) {
+		this.address = nextAddress++;
 		this.interfacetype = s.getNameSpace();
 		this.connections = new ArrayList<Connection>();
 
@@ -100,6 +123,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * For creating an empty class of a specific type
 	 */
 	public NetworkInterface() {
+		this.address = nextAddress++;
 		this.interfacetype = "Default";
 		this.connections = new ArrayList<Connection>();
 	}
@@ -108,6 +132,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * copy constructor
 	 */
 	public NetworkInterface(NetworkInterface ni) {
+		this.address = nextAddress++;
 		this.connections = new ArrayList<Connection>();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
@@ -154,8 +179,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
-					this.interfacetype.hashCode(), transmitRange);
+			if (HierarchicalGrid.isInUse()) {
+				optimizer = HierarchicalGrid.getInstance();
+			}
+			else {
+				optimizer = ConnectivityGrid.ConnectivityGridFactory(
+						this.interfacetype.hashCode(), transmitRange);
+			}
 			optimizer.addInterface(this);
 		} else {
 			optimizer = null;
@@ -307,6 +337,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param anotherInterface The interface to connect to
 	 */
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
+		Profiler.count(Profiler.Counter.CONTACTS);
 		this.connections.add(con);
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
@@ -351,8 +382,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
-		return this.host.getLocation().distance(
-				anotherInterface.getHost().getLocation()) <= smallerRange;
+		return Math.sqrt(HostStateStore.distance2(this.host.getAddress(), 
+				anotherInterface.getHost().getAddress())) <= smallerRange;
 	}
 	
 	/**
@@ -433,6 +464,172 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Finds the interfaces that are within range of this interface and stores
+	 * them for the next {@link #update()} call. The near interfaces are
+	 * searched from a separate detector optimizer that indexes the same 
+	 * interfaces as this interface's own optimizer, so that the detection
+	 * doesn't change the state the connection search of the update sees.
+	 * This method only reads the state of the world (locations, ranges and
+	 * the detector) so it can be called concurrently for different 
+	 * interfaces as long as nothing is moved or connected meanwhile. The
+	 * detector's location of every interface must be up to date before 
+	 * calling this.
+	 * @param detector The optimizer to search the near interfaces from
+	 */
+	public void detectNearInterfaces(ConnectivityOptimizer detector) {
+		if (!beginDetection()) {
+			return;
+		}
+		
+		if (this.rangeDetector == null) {
+			this.rangeDetector = new ConnectivityOptimizer.InterfaceVisitor() {
+				public void visit(NetworkInterface ni) {
+					if (ni != NetworkInterface.this && isWithinRange(ni)) {
+						detectedInterfaces.add(ni);
+					}
+				}
+			};
+		}
+		detector.forEachNearInterface(this, rangeDetector);
+		endDetection();
+	}
+	
+	/**
+	 * Starts a new detection pass for this interface by clearing the 
+	 * previously detected interfaces
+	 * @return true if the interface takes part in the detection (i.e., it
+	 * has a connectivity optimizer), false if not
+	 */
+	boolean beginDetection() {
+		if (optimizer == null) {
+			this.isDetected = false;
+			return false;
+		}
+		
+		if (this.detectedInterfaces == null) {
+			this.detectedInterfaces = new ArrayList<NetworkInterface>();
+		}
+		else {
+			this.detectedInterfaces.clear();
+		}
+		this.detectedRange = this.transmitRange;
+		return true;
+	}
+	
+	/**
+	 * Adds an interface to the interfaces detected within range in the 
+	 * current detection pass
+	 * @param ni The interface within range
+	 */
+	void addDetected(NetworkInterface ni) {
+		this.detectedInterfaces.add(ni);
+	}
+	
+	/**
+	 * Finishes a detection pass started with {@link #beginDetection()}
+	 */
+	void endDetection() {
+		this.isDetected = true;
+	}
+	
+	/**
+	 * Returns the connectivity optimizer of this interface
+	 * @return the connectivity optimizer or null if this interface doesn't
+	 * use one
+	 */
+	public ConnectivityOptimizer getOptimizer() {
+		return this.optimizer;
+	}
+	
+	/**
+	 * Tries to connect (see {@link #connect(NetworkInterface)}) to the 
+	 * interfaces that may be within range. The near interfaces are visited
+	 * using the connectivity optimizer. If a detection pass has been done
+	 * for this update (see {@link #detectNearInterfaces(
+	 * ConnectivityOptimizer)}), and this interface's range hasn't changed 
+	 * since, only the interfaces found within range are tried (see 
+	 * {@link #connectToDetectedInterfaces()}).
+	 */
+	protected void connectToNearInterfaces() {
+		boolean useDetected = this.isDetected && 
+			this.transmitRange <= this.detectedRange;
+		this.isDetected = false; /* results are valid only once */
+		
+		if (useDetected) {
+			connectToDetectedInterfaces();
+			return;
+		}
+		
+		if (this.connector == null) {
+			this.connector = new ConnectivityOptimizer.InterfaceVisitor() {
+				public void visit(NetworkInterface ni) {
+					connect(ni);
+				}
+			};
+		}
+		optimizer.forEachNearInterface(this, connector);
+	}
+
+	/**
+	 * Tries to connect to the interfaces found within range by the last 
+	 * detection pass. The interfaces are tried in the order the optimizer
+	 * would visit them (see {@link ConnectivityOptimizer#getVisitOrder(
+	 * NetworkInterface, NetworkInterface)}) and the ones it wouldn't visit 
+	 * are skipped, so the connections are created in the same order as 
+	 * without the detection pass. The range is checked again only if the
+	 * other interface's range has shrunk since the detection.
+	 */
+	private void connectToDetectedInterfaces() {
+		int n = detectedInterfaces.size();
+		if (n == 0) {
+			return;
+		}
+		if (detectedOrders == null || detectedOrders.length < n) {
+			detectedOrders = new long[Math.max(n, 8)];
+		}
+		
+		/* insertion sort by the visit order (there are only few interfaces
+		 * within range of any interface) */
+		int count = 0;
+		for (int i=0; i<n; i++) {
+			NetworkInterface ni = detectedInterfaces.get(i);
+			long order = optimizer.getVisitOrder(this, ni);
+			if (order < 0) {
+				continue;
+			}
+			int j = count++;
+			while (j > 0 && detectedOrders[j-1] > order) {
+				detectedOrders[j] = detectedOrders[j-1];
+				detectedInterfaces.set(j, detectedInterfaces.get(j-1));
+				j--;
+			}
+			detectedOrders[j] = order;
+			detectedInterfaces.set(j, ni);
+		}
+		
+		for (int i=0; i<count; i++) {
+			NetworkInterface ni = detectedInterfaces.get(i);
+			if (ni.transmitRange < ni.detectedRange) {
+				connect(ni);
+			}
+			else {
+				connectDetected(ni);
+			}
+		}
+	}
+
+	/**
+	 * Tries to connect this host to another host that the detection pass 
+	 * found within range of this host. The default implementation calls
+	 * {@link #connect(NetworkInterface)}; subclasses can override this to
+	 * skip the range check.
+	 * @param anotherInterface The interface to connect to
+	 */
+	protected void connectDetected(NetworkInterface anotherInterface) {
+		connect(anotherInterface);
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active 
@@ -481,6 +678,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		connections.remove(index);
 	}
 
+	/**
+	 * Returns the address of this interface. The addresses are small,
+	 * non-negative, integers that are unique within a run (e.g., for
+	 * indexing arrays by interface).
+	 * @return The address
+	 */
+	public int getAddress() {
+		return this.address;
+	}
+
 	/**
 	 * Returns the DTNHost of this interface
 	 */
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <P>Profiler that measures where the (real) time of a simulation run is
+ * spent. The time spent in every {@link Phase phase} of the world updates
+ * is accumulated with nanosecond resolution, as is the time spent in the
+ * updates of every router class. The profiler also counts some
+ * {@link Counter events} (contacts, transfers, polygon tests).</P>
+ *
+ * <P>The totals are written periodically (every {@link #INTERVAL_S}
+ * simulated seconds) to the {@link #OUTPUT_FILE_S output file}, if one is
+ * defined, and summarized by the text UI. The file is written in CSV
+ * format (one row per value) unless its name ends with ".json", in which
+ * case every snapshot is written as one JSON object per line. All values
+ * are cumulative since the start of the run.</P>
+ *
+ * <P>The measurements are done with {@link #start()} and
+ * {@link #stop(Phase, long)} around the measured code. When the profiler
+ * is disabled (the default), they only check a flag. The phases are
+ * measured in the simulation thread; work done by the parallel movement
+ * and connectivity threads is included in the phase that runs them.
+ * The connectivity time includes the routers' connection up/down handling.
+ * The applications are updated by the routers, so the application time is
+ * also a part of the (geo) routing time.</P>
+ */
+public class Profiler {
+	/** Profiler settings namespace ({@value}) */
+	public static final String PROFILER_NS = "Profiler";
+	/** Is the profiler enabled -setting id ({@value}). Boolean. Default is
+	 * false. */
+	public static final String ENABLED_S = "enabled";
+	/** Path of the profiler output file -setting id ({@value}). Supports
+	 * value filling. If not defined, the profile is only shown by the text
+	 * UI. */
+	public static final String OUTPUT_FILE_S = "outputFile";
+	/** Interval of the profiler output -setting id ({@value}). Simulated
+	 * seconds. Default is {@link #DEF_INTERVAL}. */
+	public static final String INTERVAL_S = "interval";
+	/** Default output interval ({@value}) */
+	public static final double DEF_INTERVAL = 600;
+
+	/** Phases of the simulation whose times are measured */
+	public enum Phase {
+		/** processing of external events */
+		EVENTS("events"),
+		/** moving the hosts */
+		MOVEMENT("movement"),
+		/** detecting, creating and tearing down connections */
+		CONNECTIVITY("connectivity"),
+		/** updates of the message routers */
+		ROUTING("routing"),
+		/** updates of the geo message routers */
+		GEO_ROUTING("geoRouting"),
+		/** updates of the applications */
+		APPLICATIONS("applications"),
+		/** update listeners (reports) */
+		UPDATE_LISTENERS("updateListeners");
+
+		private final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns the name of the phase in the output
+		 * @return the name of the phase in the output
+		 */
+		public String getLabel() {
+			return this.label;
+		}
+	}
+
+	/** Events that are counted */
+	public enum Counter {
+		/** connections created */
+		CONTACTS("contacts"),
+		/** message transfers started */
+		TRANSFERS_STARTED("transfersStarted"),
+		/** message transfers aborted */
+		TRANSFERS_ABORTED("transfersAborted"),
+		/** tests whether a point is inside a cast */
+		POLYGON_TESTS("polygonTests");
+
+		private final String label;
+
+		private Counter(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns the name of the counter in the output
+		 * @return the name of the counter in the output
+		 */
+		public String getLabel() {
+			return this.label;
+		}
+	}
+
+	/* the measurements are not part of the simulation, so they are not
+	 * saved in checkpoints (see Checkpoint.EXCLUDED_CLASSES) */
+	private static boolean enabled;
+	private static long[] phaseNanos;
+	private static long[] counts;
+	/** update times and counts ({nanos, updates}) by router class */
+	private static Map<Class<?>, long[]> routerTimes;
+	private static long startNanos;
+	private static double interval;
+	private static double nextOutput;
+	private static PrintWriter out;
+	private static boolean json;
+
+	static {
+		DTNSim.registerForReset(Profiler.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the profiler and disables it
+	 */
+	public static void reset() {
+		if (out != null) {
+			out.close();
+		}
+		enabled = false;
+		phaseNanos = new long[Phase.values().length];
+		counts = new long[Counter.values().length];
+		routerTimes = new LinkedHashMap<Class<?>, long[]>();
+		startNanos = System.nanoTime();
+		out = null;
+	}
+
+	/**
+	 * Resets the profiler and enables it if the profiler settings say so.
+	 * Should be called when the run is about to start.
+	 * @throws SimError if the output file can't be opened
+	 */
+	public static void init() {
+		reset();
+		Settings s = new Settings(PROFILER_NS);
+		if (!s.getBoolean(ENABLED_S, false)) {
+			return;
+		}
+
+		interval = s.getDouble(INTERVAL_S, DEF_INTERVAL);
+		s.ensurePositiveValue(interval, INTERVAL_S);
+		nextOutput = SimClock.getTime() + interval;
+		if (s.contains(OUTPUT_FILE_S)) {
+			File f = new File(s.valueFillString(s.getSetting(OUTPUT_FILE_S)));
+			json = f.getName().endsWith(".json");
+			try {
+				out = new PrintWriter(new FileWriter(f));
+			} catch (IOException e) {
+				throw new SimError("Can't open profiler output file " + f +
+						": " + e.getMessage(), e);
+			}
+			if (!json) {
+				out.println("simTime,realTime,kind,name,value,calls");
+				out.flush();
+			}
+		}
+		enabled = true;
+	}
+
+	/**
+	 * Returns true if the profiler is enabled
+	 * @return true if the profiler is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts measuring a phase
+	 * @return The start time to give to {@link #stop(Phase, long)} (zero
+	 * if the profiler is disabled)
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Stops measuring a phase and adds the time since the start to it
+	 * @param phase The phase
+	 * @param start The start time returned by {@link #start()}
+	 */
+	public static void stop(Phase phase, long start) {
+		if (enabled) {
+			phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Stops measuring a router update and adds the time since the start to
+	 * the given phase and to the router's class
+	 * @param phase The phase ({@link Phase#ROUTING} or
+	 * {@link Phase#GEO_ROUTING})
+	 * @param router The router that was updated
+	 * @param start The start time returned by {@link #start()}
+	 */
+	public static void stopRouter(Phase phase, Object router, long start) {
+		if (enabled) {
+			long nanos = System.nanoTime() - start;
+			phaseNanos[phase.ordinal()] += nanos;
+			long[] times = routerTimes.get(router.getClass());
+			if (times == null) {
+				times = new long[2];
+				routerTimes.put(router.getClass(), times);
+			}
+			times[0] += nanos;
+			times[1]++;
+		}
+	}
+
+	/**
+	 * Counts an event
+	 * @param counter The counter of the event
+	 */
+	public static void count(Counter counter) {
+		if (enabled) {
+			counts[counter.ordinal()]++;
+		}
+	}
+
+	/**
+	 * Returns the total time spent in a phase
+	 * @param phase The phase
+	 * @return The time in nanoseconds
+	 */
+	public static long getNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the value of a counter
+	 * @param counter The counter
+	 * @return The number of counted events
+	 */
+	public static long getCount(Counter counter) {
+		return counts[counter.ordinal()];
+	}
+
+	/**
+	 * Returns the total update time of a router class
+	 * @param routerClass The router class
+	 * @return The time in nanoseconds
+	 */
+	public static long getRouterNanos(Class<?> routerClass) {
+		long[] times = routerTimes.get(routerClass);
+		return times == null ? 0 : times[0];
+	}
+
+	/**
+	 * Writes a snapshot of the profile to the output file if the output
+	 * interval has passed. Should be called after every world update.
+	 */
+	public static void update() {
+		if (enabled && SimClock.getTime() >= nextOutput) {
+			write();
+			while (nextOutput <= SimClock.getTime()) {
+				nextOutput += interval;
+			}
+		}
+	}
+
+	/**
+	 * Writes the final snapshot of the profile and closes the output file
+	 */
+	public static void done() {
+		if (enabled && out != null) {
+			write();
+			out.close();
+			out = null;
+		}
+	}
+
+	/**
+	 * Returns a one line summary of the profile: the share of every phase
+	 * of the measured time, the slowest router class and the counters
+	 * @return The summary or an empty string if the profiler is disabled
+	 */
+	public static String getSummary() {
+		if (!enabled) {
+			return "";
+		}
+		long total = 0;
+		for (Phase p : Phase.values()) {
+			if (p != Phase.APPLICATIONS) { // part of the routing phases
+				total += getNanos(p);
+			}
+		}
+		StringBuilder sb = new StringBuilder("profile:");
+		for (Phase p : Phase.values()) {
+			sb.append(String.format(Locale.US, " %s %.1f%%", p.getLabel(),
+					total > 0 ? 100.0 * getNanos(p) / total : 0.0));
+		}
+		Class<?> slowest = null;
+		for (Map.Entry<Class<?>, long[]> e : routerTimes.entrySet()) {
+			if (slowest == null ||
+					e.getValue()[0] > getRouterNanos(slowest)) {
+				slowest = e.getKey();
+			}
+		}
+		if (slowest != null) {
+			sb.append(String.format(Locale.US, " | slowest router %s %.2fs",
+					slowest.getSimpleName(), getRouterNanos(slowest) / 1e9));
+		}
+		sb.append(" |");
+		for (Counter c : Counter.values()) {
+			sb.append(" " + c.getLabel() + " " + getCount(c));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a snapshot of the profile to the output file (if any)
+	 */
+	private static void write() {
+		if (out == null) {
+			return;
+		}
+		String simTime = SimClock.getFormattedTime(1);
+		String realTime = String.format(Locale.US, "%.3f",
+				(System.nanoTime() - startNanos) / 1e9);
+		if (json) {
+			writeJson(simTime, realTime);
+		}
+		else {
+			writeCsv(simTime, realTime);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes a snapshot as CSV rows (times in milliseconds)
+	 * @param simTime The simulation time
+	 * @param realTime The real time since the start of the run
+	 */
+	private static void writeCsv(String simTime, String realTime) {
+		String prefix = simTime + "," + realTime + ",";
+		for (Phase p : Phase.values()) {
+			out.println(prefix + "phase," + p.getLabel() + "," +
+					format(getNanos(p)) + ",");
+		}
+		for (Map.Entry<Class<?>, long[]> e : routerTimes.entrySet()) {
+			out.println(prefix + "router," + e.getKey().getSimpleName() +
+					"," + format(e.getValue()[0]) + "," + e.getValue()[1]);
+		}
+		for (Counter c : Counter.values()) {
+			out.println(prefix + "counter," + c.getLabel() + "," +
+					getCount(c) + ",");
+		}
+	}
+
+	/**
+	 * Writes a snapshot as one JSON object (times in milliseconds)
+	 * @param simTime The simulation time
+	 * @param realTime The real time since the start of the run
+	 */
+	private static void writeJson(String simTime, String realTime) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"simTime\":" + simTime + ",\"realTime\":" + realTime);
+		sb.append(",\"phases\":{");
+		String sep = "";
+		for (Phase p : Phase.values()) {
+			sb.append(sep + "\"" + p.getLabel() + "\":" + format(getNanos(p)));
+			sep = ",";
+		}
+		sb.append("},\"routers\":{");
+		sep = "";
+		for (Map.Entry<Class<?>, long[]> e : routerTimes.entrySet()) {
+			sb.append(sep + "\"" + e.getKey().getSimpleName() + "\":{\"ms\":" +
+					format(e.getValue()[0]) + ",\"calls\":" +
+					e.getValue()[1] + "}");
+			sep = ",";
+		}
+		sb.append("},\"counters\":{");
+		sep = "";
+		for (Counter c : Counter.values()) {
+			sb.append(sep + "\"" + c.getLabel() + "\":" + getCount(c));
+			sep = ",";
+		}
+		sb.append("}}");
+		out.println(sb.toString());
+	}
+
+	/**
+	 * Formats nanoseconds as milliseconds
+	 * @param nanos The time in nanoseconds
+	 * @return The time in milliseconds with three decimals
+	 */
+	private static String format(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <P>A typed message property slot. Routers that keep per-message state
+ * (e.g., the number of copies left) declare their properties once as
+ * slots, typically in a static final field:</P>
+ * <PRE>
+ * private static final PropertySlot COPIES_SLOT =
+ *     PropertySlot.intSlot(MSG_COUNT_PROPERTY);
+ * </PRE>
+ * <P>and read and write them with the typed accessors of the messages
+ * (e.g., {@link Message#getInt(PropertySlot)} and
+ * {@link GeoMessage#setInt(PropertySlot, int)}). The values are stored in
+ * a compact primitive array of every message instead of a map of boxed
+ * values. The name of a slot is also accepted by the string-keyed property
+ * methods of the messages, which box and unbox the values, so the old
+ * property keys keep working (e.g., in reports).</P>
+ *
+ * <P>The slots are registered by name for the lifetime of the class
+ * loader and are not reset between runs (the declaring classes aren't
+ * initialized again). Declaring a slot that has already been declared
+ * returns the existing slot; declaring it with another type is an error.
+ * At most {@value #MAX_SLOTS} slots can be declared. Declaring copies the
+ * registry and publishes the copy, so looking up slots (which every
+ * string-keyed property access does) doesn't need to lock.</P>
+ */
+public final class PropertySlot implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** Type of int valued slots */
+	public static final int INT = 0;
+	/** Type of double valued slots */
+	public static final int DOUBLE = 1;
+	/** Type of boolean valued slots */
+	public static final int BOOLEAN = 2;
+	/** Type of {@link Coord} valued slots */
+	public static final int COORD = 3;
+	/** Maximum number of slots ({@value}) */
+	public static final int MAX_SLOTS = 64;
+
+	private static final String[] TYPE_NAMES = {"int", "double", "boolean",
+		"Coord"};
+
+	/** the declared slots by their names (an immutable snapshot that is
+	 * replaced when a slot is declared) */
+	private static volatile Map<String, PropertySlot> slots =
+		Collections.emptyMap();
+	/** the declared slots by their indexes (replaced like the map) */
+	private static volatile PropertySlot[] slotArray = new PropertySlot[0];
+
+	private final String name;
+	private final int type;
+	private final int index;
+
+	private PropertySlot(String name, int type, int index) {
+		this.name = name;
+		this.type = type;
+		this.index = index;
+	}
+
+	/**
+	 * Declares an int valued slot
+	 * @param name Name of the slot (the property key)
+	 * @return The slot
+	 * @throws SimError if the slot is already declared with another type
+	 */
+	public static PropertySlot intSlot(String name) {
+		return declare(name, INT);
+	}
+
+	/**
+	 * Declares a double valued slot
+	 * @param name Name of the slot (the property key)
+	 * @return The slot
+	 * @throws SimError if the slot is already declared with another type
+	 */
+	public static PropertySlot doubleSlot(String name) {
+		return declare(name, DOUBLE);
+	}
+
+	/**
+	 * Declares a boolean valued slot
+	 * @param name Name of the slot (the property key)
+	 * @return The slot
+	 * @throws SimError if the slot is already declared with another type
+	 */
+	public static PropertySlot booleanSlot(String name) {
+		return declare(name, BOOLEAN);
+	}
+
+	/**
+	 * Declares a {@link Coord} valued slot. Like all property values, the
+	 * coordinates should not be modified after they have been stored.
+	 * @param name Name of the slot (the property key)
+	 * @return The slot
+	 * @throws SimError if the slot is already declared with another type
+	 */
+	public static PropertySlot coordSlot(String name) {
+		return declare(name, COORD);
+	}
+
+	/**
+	 * Declares a slot or returns the already declared slot
+	 * @param name Name of the slot
+	 * @param type Type of the slot
+	 * @return The slot
+	 * @throws SimError if the slot is already declared with another type or
+	 * there are too many slots
+	 */
+	public static synchronized PropertySlot declare(String name, int type) {
+		PropertySlot slot = slots.get(name);
+		if (slot != null) {
+			if (slot.type != type) {
+				throw new SimError("Property slot " + name + " is already " +
+						"declared as " + TYPE_NAMES[slot.type]);
+			}
+			return slot;
+		}
+		int index = slotArray.length;
+		if (index == MAX_SLOTS) {
+			throw new SimError("Too many property slots (max " + MAX_SLOTS +
+					") when declaring " + name);
+		}
+
+		slot = new PropertySlot(name, type, index);
+		Map<String, PropertySlot> newSlots =
+			new HashMap<String, PropertySlot>(slots);
+		newSlots.put(name, slot);
+		PropertySlot[] newSlotArray = Arrays.copyOf(slotArray, index + 1);
+		newSlotArray[index] = slot;
+		/* publish the array first so that every slot found by name can
+		 * also be found by index */
+		slotArray = newSlotArray;
+		slots = Collections.unmodifiableMap(newSlots);
+		return slot;
+	}
+
+	/**
+	 * Returns the slot with the given name
+	 * @param name Name of the slot
+	 * @return The slot or null if no slot with the name has been declared
+	 */
+	public static PropertySlot forName(String name) {
+		return slots.get(name);
+	}
+
+	/**
+	 * Returns the slot with the given index
+	 */
+	static PropertySlot forIndex(int index) {
+		return slotArray[index];
+	}
+
+	/**
+	 * Returns the name of the slot
+	 * @return The name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the type of the slot
+	 * @return The type (e.g., {@link #INT})
+	 */
+	public int getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the index of the slot in the slot arrays
+	 */
+	int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Checks that the slot has the given type
+	 * @param type The expected type
+	 * @throws SimError if the slot has another type
+	 */
+	void checkType(int type) {
+		if (this.type != type) {
+			throw new SimError("Property slot " + this.name + " is of type " +
+					TYPE_NAMES[this.type] + ", not " + TYPE_NAMES[type]);
+		}
+	}
+
+	/**
+	 * Returns the declared slot with the name of a deserialized slot (so
+	 * that the indexes match the slots of this class loader)
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return declare(this.name, this.type);
+	}
+
+	public String toString() {
+		return this.name + ":" + TYPE_NAMES[this.type];
+	}
+}
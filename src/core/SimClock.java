@@ -4,10 +4,14 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
  * Wall clock for checking the simulation time.
  */
-public class SimClock {
+public class SimClock implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	private static double clockTime = 0.0;
 	private static SimClock clock = null;
 	
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <P>Run-scoped context of one simulation run. Every context loads its own
+ * copy of the simulator classes from the class path, so all the static
+ * state of the simulator (the {@link SimClock}, the host address and message
+ * id counters, the connectivity grids, the scenario singletons, the
+ * settings, the movement models' random number generators, etc.) belongs
+ * to the context. Runs in different contexts don't see each other's state
+ * and can be run concurrently in the same JVM. A run in a new context is
+ * equal to the first run of a new JVM, so its reports are identical to the
+ * reports of the same run index in the sequential batch mode.</P>
+ *
+ * <P>Only the classes found from the class path are loaded separately for
+ * every context; the Java platform classes are shared. The
+ * {@link #SHARED_CLASSES shared simulator classes} are also loaded only
+ * once, so immutable assets of those classes (e.g., the maps in the
+ * {@link input.AssetCache#getShared() shared asset cache}) can be shared
+ * by the runs.</P>
+ */
+public class SimContext {
+	/** Name of the static method of the main class that runs one batch run
+	 * ({@value}). The method must take the configuration file names, the
+	 * index of the first configuration file and the run index. */
+	public static final String RUN_METHOD_NAME = "runBatchRun";
+	/** Names of the simulator classes that are shared by all contexts.
+	 * The classes (and their nested classes) must not have any static
+	 * state that belongs to a run. */
+	public static final String[] SHARED_CLASSES = {"input.AssetCache",
+		"core.Coord", "movement.map.SimMap", "movement.map.MapNode"};
+
+	private int runIndex;
+	private ClassLoader loader;
+
+	/**
+	 * Creates a new context for a run
+	 * @param runIndex Run index of the run
+	 */
+	public SimContext(int runIndex) {
+		this.runIndex = runIndex;
+		this.loader = new ContextClassLoader(getClassPath(),
+				SimContext.class.getClassLoader());
+	}
+
+	/**
+	 * Returns the run index of this context
+	 * @return the run index of this context
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Loads a class in this context. The static state of the returned class
+	 * is separate from the same class in other contexts.
+	 * @param className Full name of the class
+	 * @return The class
+	 * @throws ClassNotFoundException if the class is not found
+	 */
+	public Class<?> loadClass(String className)
+		throws ClassNotFoundException {
+		return Class.forName(className, true, this.loader);
+	}
+
+	/**
+	 * Runs the batch run of this context with the given main class (e.g.,
+	 * {@link DTNSim}) in the calling thread
+	 * @param mainClass Full name of the main class whose
+	 * {@value #RUN_METHOD_NAME} method runs the simulation
+	 * @param confFiles The configuration file names
+	 * @param firstConfIndex Index of the first configuration file name
+	 * @throws SimError if the run can't be started (the exceptions of a
+	 * failed run are passed on as is)
+	 */
+	public void run(String mainClass, String[] confFiles, int firstConfIndex) {
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(this.loader);
+		try {
+			Method m = loadClass(mainClass).getMethod(RUN_METHOD_NAME,
+					String[].class, int.class, int.class);
+			m.invoke(null, confFiles, firstConfIndex, this.runIndex);
+		} catch (InvocationTargetException e) {
+			rethrow(e.getCause());
+		} catch (Exception e) {
+			throw new SimError("Can't start run " + (runIndex + 1) +
+					" with main class " + mainClass + ": " + e, e);
+		} finally {
+			thread.setContextClassLoader(oldLoader);
+		}
+	}
+
+	/**
+	 * Runs the given range of run indexes concurrently, each in its own
+	 * context, and waits until all of them are done.
+	 * @param mainClass Full name of the main class
+	 * @param confFiles The configuration file names
+	 * @param firstConfIndex Index of the first configuration file name
+	 * @param firstRun The first run index (inclusive)
+	 * @param lastRun The last run index (exclusive)
+	 * @param nrofThreads How many runs are run at the same time
+	 * @throws SimError if a run can't be started (the exceptions of the
+	 * first failed run are passed on as is)
+	 */
+	public static void runAll(final String mainClass,
+			final String[] confFiles, final int firstConfIndex,
+			int firstRun, final int lastRun, int nrofThreads) {
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads,
+				new ThreadFactory() {
+			private int count = 0;
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "run-" + (count++));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i=firstRun; i<lastRun; i++) {
+			final int runIndex = i;
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					System.out.println("Run " + (runIndex+1) + "/" + lastRun
+							+ " started");
+					new SimContext(runIndex).run(mainClass, confFiles,
+							firstConfIndex);
+					System.out.println("Run " + (runIndex+1) + "/" + lastRun
+							+ " done");
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		} catch (ExecutionException e) {
+			rethrow(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Throws the given exception or error of a run again. Checked exceptions
+	 * are wrapped in a SimError.
+	 * @param t The exception or error
+	 */
+	private static void rethrow(Throwable t) {
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new SimError((Exception)t);
+	}
+
+	/**
+	 * Returns the URLs of the class path entries
+	 * @return the URLs of the class path entries
+	 */
+	private static URL[] getClassPath() {
+		String[] entries = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i=0; i<entries.length; i++) {
+			try {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + entries[i]);
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Returns true if the class is one of the shared classes or a class
+	 * nested in them
+	 * @param name Full name of the class
+	 * @return true if the class is shared by all contexts
+	 */
+	private static boolean isShared(String name) {
+		for (String shared : SHARED_CLASSES) {
+			if (name.equals(shared) || name.startsWith(shared + "$")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Class loader that loads the classes of the class path (other than the
+	 * shared classes) itself before asking the parent loader
+	 */
+	private static class ContextClassLoader extends URLClassLoader {
+		public ContextClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve)
+			throws ClassNotFoundException {
+			synchronized (getClassLoadingLock(name)) {
+				if (isShared(name)) {
+					return super.loadClass(name, resolve);
+				}
+				Class<?> c = findLoadedClass(name);
+				if (c == null) {
+					try {
+						c = findClass(name);
+					} catch (ClassNotFoundException e) {
+						return super.loadClass(name, resolve);
+					}
+				}
+				if (resolve) {
+					resolveClass(c);
+				}
+				return c;
+			}
+		}
+	}
+}
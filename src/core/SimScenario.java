@@ -308,6 +308,16 @@ public class SimScenario implements Serializable {
 		return this.appListeners;
 	}
 	
+	/**
+	 * Returns all the global listener lists of the scenario. The lists are 
+	 * not saved to {@link Checkpoint}s.
+	 * @return all the global listener lists
+	 */
+	public List<?>[] getListenerLists() {
+		return new List<?>[] {connectionListeners, messageListeners, 
+				movementListeners, updateListeners, appListeners};
+	}
+	
 	/**
 	 * Creates hosts for the scenario
 	 */
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Values of the {@link PropertySlot property slots} of a message. The
+ * primitive values are stored in a long array and the coordinates in an
+ * object array, both indexed by the slot indexes. The values are shared
+ * with the replicates of the message and copied when either one is
+ * modified. The static methods take the values of a message (null if the
+ * message has no slot values yet) and the setters return the values the
+ * message should use after the modification.
+ */
+final class SlotValues implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** primitive values by slot indexes */
+	private transient long[] values;
+	/** coordinate values by slot indexes (null if there are none) */
+	private transient Object[] objects;
+	/** bit mask of the slots that have a value */
+	private transient long setMask;
+	/** are the values shared with another message */
+	private boolean shared;
+
+	private SlotValues(int length) {
+		this.values = new long[length];
+	}
+
+	/**
+	 * Returns the values to give to a replicate of the message. The values
+	 * are shared until either message modifies them.
+	 * @param v The values of the message
+	 * @return The values of the replicate
+	 */
+	static SlotValues share(SlotValues v) {
+		if (v != null) {
+			v.shared = true;
+		}
+		return v;
+	}
+
+	/**
+	 * Returns true if the slot has a value
+	 */
+	static boolean isSet(SlotValues v, PropertySlot slot) {
+		return v != null && (v.setMask & (1L << slot.getIndex())) != 0;
+	}
+
+	static int getInt(SlotValues v, PropertySlot slot) {
+		slot.checkType(PropertySlot.INT);
+		return isSet(v, slot) ? (int)v.values[slot.getIndex()] : 0;
+	}
+
+	static double getDouble(SlotValues v, PropertySlot slot) {
+		slot.checkType(PropertySlot.DOUBLE);
+		return isSet(v, slot) ?
+				Double.longBitsToDouble(v.values[slot.getIndex()]) : 0;
+	}
+
+	static boolean getBoolean(SlotValues v, PropertySlot slot) {
+		slot.checkType(PropertySlot.BOOLEAN);
+		return isSet(v, slot) && v.values[slot.getIndex()] != 0;
+	}
+
+	static Coord getCoord(SlotValues v, PropertySlot slot) {
+		slot.checkType(PropertySlot.COORD);
+		return isSet(v, slot) ? (Coord)v.objects[slot.getIndex()] : null;
+	}
+
+	static SlotValues setInt(SlotValues v, PropertySlot slot, int value) {
+		slot.checkType(PropertySlot.INT);
+		return set(v, slot, value);
+	}
+
+	static SlotValues setDouble(SlotValues v, PropertySlot slot,
+			double value) {
+		slot.checkType(PropertySlot.DOUBLE);
+		return set(v, slot, Double.doubleToRawLongBits(value));
+	}
+
+	static SlotValues setBoolean(SlotValues v, PropertySlot slot,
+			boolean value) {
+		slot.checkType(PropertySlot.BOOLEAN);
+		return set(v, slot, value ? 1 : 0);
+	}
+
+	static SlotValues setCoord(SlotValues v, PropertySlot slot,
+			Coord value) {
+		slot.checkType(PropertySlot.COORD);
+		if (value == null) {
+			return clear(v, slot);
+		}
+		v = forWrite(v, slot);
+		if (v.objects == null) {
+			v.objects = new Object[v.values.length];
+		}
+		v.objects[slot.getIndex()] = value;
+		v.setMask |= 1L << slot.getIndex();
+		return v;
+	}
+
+	/**
+	 * Returns the value of a slot as an object
+	 * @return The boxed value or null if the slot has no value
+	 */
+	static Object getBoxed(SlotValues v, PropertySlot slot) {
+		if (!isSet(v, slot)) {
+			return null;
+		}
+		switch (slot.getType()) {
+		case PropertySlot.INT:
+			return getInt(v, slot);
+		case PropertySlot.DOUBLE:
+			return getDouble(v, slot);
+		case PropertySlot.BOOLEAN:
+			return getBoolean(v, slot);
+		default:
+			return getCoord(v, slot);
+		}
+	}
+
+	/**
+	 * Sets the value of a slot from an object. Null value removes the
+	 * value of the slot.
+	 * @throws SimError if the value is not of the slot's type
+	 */
+	static SlotValues setBoxed(SlotValues v, PropertySlot slot,
+			Object value) {
+		if (value == null) {
+			return clear(v, slot);
+		}
+		switch (slot.getType()) {
+		case PropertySlot.INT:
+			if (value instanceof Integer) {
+				return setInt(v, slot, (Integer)value);
+			}
+			break;
+		case PropertySlot.DOUBLE:
+			if (value instanceof Double) {
+				return setDouble(v, slot, (Double)value);
+			}
+			break;
+		case PropertySlot.BOOLEAN:
+			if (value instanceof Boolean) {
+				return setBoolean(v, slot, (Boolean)value);
+			}
+			break;
+		default:
+			if (value instanceof Coord) {
+				return setCoord(v, slot, (Coord)value);
+			}
+		}
+		throw new SimError("Invalid value " + value + " for property slot " +
+				slot);
+	}
+
+	/**
+	 * Removes the value of a slot
+	 */
+	static SlotValues clear(SlotValues v, PropertySlot slot) {
+		if (!isSet(v, slot)) {
+			return v;
+		}
+		v = forWrite(v, slot);
+		v.setMask &= ~(1L << slot.getIndex());
+		if (v.objects != null) {
+			v.objects[slot.getIndex()] = null;
+		}
+		return v;
+	}
+
+	private static SlotValues set(SlotValues v, PropertySlot slot,
+			long value) {
+		v = forWrite(v, slot);
+		v.values[slot.getIndex()] = value;
+		v.setMask |= 1L << slot.getIndex();
+		return v;
+	}
+
+	/**
+	 * Returns values that can be modified and have room for the slot: the
+	 * given values or a copy of them if they are shared or too short
+	 */
+	private static SlotValues forWrite(SlotValues v, PropertySlot slot) {
+		int length = slot.getIndex() + 1;
+		if (v == null) {
+			return new SlotValues(length);
+		}
+		if (!v.shared && v.values.length >= length) {
+			return v;
+		}
+
+		SlotValues copy = new SlotValues(Math.max(length, v.values.length));
+		System.arraycopy(v.values, 0, copy.values, 0, v.values.length);
+		if (v.objects != null) {
+			copy.objects = new Object[copy.values.length];
+			System.arraycopy(v.objects, 0, copy.objects, 0, v.objects.length);
+		}
+		copy.setMask = v.setMask;
+		return copy;
+	}
+
+	/**
+	 * Writes the values with their slots so that they can be read by a
+	 * class loader that has declared the slots in a different order
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(Long.bitCount(this.setMask));
+		for (int i = 0; i < this.values.length; i++) {
+			if ((this.setMask & (1L << i)) == 0) {
+				continue;
+			}
+			out.writeObject(PropertySlot.forIndex(i));
+			out.writeLong(this.values[i]);
+			out.writeObject(this.objects == null ? null : this.objects[i]);
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+		throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int count = in.readInt();
+		PropertySlot[] slots = new PropertySlot[count];
+		long[] slotValues = new long[count];
+		Object[] slotObjects = new Object[count];
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			slots[i] = (PropertySlot)in.readObject();
+			slotValues[i] = in.readLong();
+			slotObjects[i] = in.readObject();
+			length = Math.max(length, slots[i].getIndex() + 1);
+		}
+
+		this.values = new long[length];
+		this.setMask = 0;
+		for (int i = 0; i < count; i++) {
+			int index = slots[i].getIndex();
+			this.values[index] = slotValues[i];
+			if (slotObjects[i] != null) {
+				if (this.objects == null) {
+					this.objects = new Object[length];
+				}
+				this.objects[index] = slotObjects[i];
+			}
+			this.setMask |= 1L << index;
+		}
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Hierarchical timing wheel for timers that expire at a given simulation
+ * time (e.g., the TTLs of buffered messages). Scheduling and cancelling a
+ * timer take constant time and advancing the wheel takes time proportional
+ * to the number of expiring timers (and the number of ticks passed), not to
+ * the number of scheduled timers.</P>
+ *
+ * <P>The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots. A slot
+ * of the first level covers one tick (of {@link #getResolution()} seconds)
+ * and a slot of every other level covers all the slots of the previous
+ * level. Timers further in the future are kept on higher levels and moved
+ * to lower levels when the wheel turns. Timers expire exactly at their
+ * times: a timer is expired by the first {@link #advance(double)} to a time
+ * that is not less than the timer's time.</P>
+ *
+ * <P>The simulation-wide wheel for the TTLs of the buffered messages is
+ * returned by {@link #getExpiryWheel()}.</P>
+ */
+public class TimingWheel implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** number of slots on every level ({@value}) */
+	public static final int SLOTS = 64;
+	/** number of levels ({@value}) */
+	public static final int LEVELS = 6;
+	/** resolution of the message expiry wheel in seconds ({@value}) */
+	public static final double EXPIRY_RESOLUTION = 1.0;
+
+	private static final int BITS = 6;
+	private static final int MASK = SLOTS - 1;
+
+	/** the simulation-wide wheel for message TTLs */
+	private static TimingWheel expiryWheel;
+
+	static {
+		DTNSim.registerForReset(TimingWheel.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Listener for expired timers
+	 */
+	public interface Listener {
+		/**
+		 * Called when a timer expires
+		 * @param key The key the timer was scheduled with
+		 */
+		public void timerExpired(Object key);
+	}
+
+	/** seconds per tick */
+	private double resolution;
+	/** the last tick the wheel has turned to */
+	private long currentTick;
+	/** the slots (list heads) by level */
+	private Timer[][] wheel;
+	/** timers of the current tick that haven't expired yet */
+	private Timer current;
+	/** number of scheduled timers */
+	private int size;
+	/** reused list for the timers expired by an advance (null while the
+	 * listeners of the timers are being informed) */
+	private transient List<Timer> expired;
+
+	/**
+	 * Creates a new timing wheel
+	 * @param resolution Length of one tick in seconds
+	 * @param startTime The simulation time the wheel starts from
+	 */
+	public TimingWheel(double resolution, double startTime) {
+		this.resolution = resolution;
+		this.currentTick = toTick(startTime);
+		this.wheel = new Timer[LEVELS][SLOTS];
+		for (int i=0; i<LEVELS; i++) {
+			for (int j=0; j<SLOTS; j++) {
+				this.wheel[i][j] = new Timer(0, null, null);
+			}
+		}
+		this.current = new Timer(0, null, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the simulation-wide timing wheel for the TTLs of buffered
+	 * messages. The wheel is created (starting from the current simulation
+	 * time) when this method is called for the first time in a run.
+	 * @return The message expiry wheel
+	 */
+	public static TimingWheel getExpiryWheel() {
+		if (expiryWheel == null) {
+			expiryWheel = new TimingWheel(EXPIRY_RESOLUTION,
+					SimClock.getTime());
+		}
+		return expiryWheel;
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		expiryWheel = null;
+	}
+
+	/**
+	 * Returns the length of one tick of the wheel
+	 * @return The resolution in seconds
+	 */
+	public double getResolution() {
+		return this.resolution;
+	}
+
+	/**
+	 * Returns the number of scheduled timers
+	 * @return The number of timers that haven't expired or been cancelled
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Schedules a new timer
+	 * @param time The simulation time when the timer expires
+	 * @param listener The listener to inform when the timer expires
+	 * @param key The key to give to the listener
+	 * @return The timer (that can be {@link #cancel(Timer) cancelled})
+	 */
+	public Timer schedule(double time, Listener listener, Object key) {
+		Timer t = new Timer(time, listener, key);
+		add(t);
+		this.size++;
+		return t;
+	}
+
+	/**
+	 * Cancels a timer. Cancelling a timer that has already expired or been
+	 * cancelled does nothing.
+	 * @param t The timer to cancel
+	 */
+	public void cancel(Timer t) {
+		if (t.isScheduled()) {
+			t.unlink();
+			this.size--;
+		}
+	}
+
+	/**
+	 * Turns the wheel to the given time and informs the listeners of all
+	 * the timers that have expired by that time. The listeners are informed
+	 * in the order of the timers' ticks.
+	 * @param time The simulation time to advance to
+	 */
+	public void advance(double time) {
+		long target = toTick(time);
+		if (this.size == 0) {
+			this.currentTick = Math.max(this.currentTick, target);
+			return;
+		}
+
+		List<Timer> expired = this.expired;
+		if (expired == null) { /* first advance, or called by a listener */
+			expired = new ArrayList<Timer>();
+		}
+		this.expired = null;
+
+		collectExpired(time, expired);
+		while (this.currentTick < target) {
+			this.currentTick++;
+			cascade();
+			collectExpired(time, expired);
+		}
+
+		for (int i=0, n=expired.size(); i<n; i++) {
+			Timer t = expired.get(i);
+			t.listener.timerExpired(t.key);
+		}
+		expired.clear();
+		this.expired = expired;
+	}
+
+	/**
+	 * Moves the timers of the slots the current tick has reached on the
+	 * higher levels to the lower levels and the timers of the current tick
+	 * to the current timers list
+	 */
+	private void cascade() {
+		for (int level=1; level<LEVELS; level++) {
+			if ((this.currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+				break; // lower levels haven't wrapped around
+			}
+			int slot = (int)((this.currentTick >>> (BITS * level)) & MASK);
+			Timer head = this.wheel[level][slot];
+			Timer t = detach(head);
+			while (t != head) {
+				Timer next = t.next;
+				add(t);
+				t = next;
+			}
+		}
+
+		Timer head = this.wheel[0][(int)(this.currentTick & MASK)];
+		if (head.next != head) { /* splice the slot to the current list */
+			Timer first = head.next;
+			Timer last = head.prev;
+			Timer tail = this.current.prev;
+			tail.next = first;
+			first.prev = tail;
+			last.next = this.current;
+			this.current.prev = last;
+			head.next = head;
+			head.prev = head;
+		}
+	}
+
+	/**
+	 * Unlinks the timers of the current tick that expire by the given time
+	 * and adds them to the list
+	 */
+	private void collectExpired(double time, List<Timer> expired) {
+		Timer t = this.current.next;
+		while (t != this.current) {
+			Timer next = t.next;
+			if (t.time <= time) {
+				t.unlink();
+				this.size--;
+				expired.add(t);
+			}
+			t = next;
+		}
+	}
+
+	/**
+	 * Adds a timer to the slot of its tick
+	 */
+	private void add(Timer t) {
+		long tick = toTick(t.time);
+		long delta = tick - this.currentTick;
+		if (delta <= 0) {
+			t.linkBefore(this.current);
+			return;
+		}
+
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+			level++;
+		}
+		int slot = (int)((tick >>> (BITS * level)) & MASK);
+		t.linkBefore(this.wheel[level][slot]);
+	}
+
+	/**
+	 * Empties a slot without unlinking its timers from each other. The
+	 * timers can be iterated by following the next links from the returned
+	 * timer until the head is reached again (the last timer still links to
+	 * the head).
+	 * @param head The list head of the slot
+	 * @return The first timer of the slot (or the head if it was empty)
+	 */
+	private static Timer detach(Timer head) {
+		Timer first = head.next;
+		head.next = head;
+		head.prev = head;
+		return first;
+	}
+
+	/**
+	 * Returns the tick of a simulation time
+	 */
+	private long toTick(double time) {
+		return (long)Math.floor(time / this.resolution);
+	}
+
+	/**
+	 * A timer of the wheel. The timers are kept in doubly linked lists
+	 * so that they can be cancelled in constant time.
+	 */
+	public static class Timer implements Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private double time;
+		private Listener listener;
+		private Object key;
+		private Timer prev;
+		private Timer next;
+
+		private Timer(double time, Listener listener, Object key) {
+			this.time = time;
+			this.listener = listener;
+			this.key = key;
+			this.prev = this; // an empty list head links to itself
+			this.next = this;
+		}
+
+		/**
+		 * Returns the simulation time when this timer expires
+		 * @return The expiry time
+		 */
+		public double getTime() {
+			return this.time;
+		}
+
+		/**
+		 * Returns true if the timer is scheduled (i.e., it hasn't expired
+		 * or been cancelled)
+		 * @return True if the timer is scheduled
+		 */
+		public boolean isScheduled() {
+			return this.next != this;
+		}
+
+		private void linkBefore(Timer other) {
+			this.prev = other.prev;
+			this.next = other;
+			other.prev.next = this;
+			other.prev = this;
+		}
+
+		private void unlink() {
+			this.prev.next = this.next;
+			this.next.prev = this.prev;
+			this.prev = this;
+			this.next = this;
+		}
+	}
+}
@@ -11,6 +11,8 @@ import routing.MessageRouter;
  * is updated every round from the end point transmission speeds
  */
 public class VBRConnection extends Connection {
+	private static final long serialVersionUID = 42L;
+
 	private int msgsize;
 	private int msgsent;
 	private int currentspeed = 0;
@@ -57,6 +59,7 @@ public class VBRConnection extends Connection {
 		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
 		
 		if (retVal == MessageRouter.RCV_OK) {
+			Profiler.count(Profiler.Counter.TRANSFERS_STARTED);
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
@@ -93,6 +96,7 @@ public class VBRConnection extends Connection {
 		int retVal = ((GeoDTNHost) getOtherNode(from)).receiveGeoMessage(newMessage, (GeoDTNHost) from);
 		
 		if (retVal == MessageRouter.RCV_OK) {
+			Profiler.count(Profiler.Counter.TRANSFERS_STARTED);
 			this.gMsgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
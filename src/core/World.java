@@ -6,18 +6,32 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
+import interfaces.ConnectivityOptimizer;
+import interfaces.ConnectivityOptimizer.PairVisitor;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
+import util.ChunkedExecutor;
+
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** name space of optimization settings ({@value})*/
 	public static final String OPTIMIZATION_SETTINGS_NS = "Optimization";
 
@@ -37,13 +51,80 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Number of threads used for moving the hosts -setting id ({@value}).
+	 * Integer value. With more than one thread, the hosts are moved in 
+	 * parallel chunks and only the new path requests (that use the shared
+	 * random number generator of the movement models) are done sequentially
+	 * in host address order, so the results are identical to a sequential 
+	 * run. Default is {@link #DEF_MOVEMENT_THREADS}.
+	 */
+	public static final String MOVEMENT_THREADS_S = "movementThreads";
+	/** default number of movement threads ({@value}) */
+	public static final int DEF_MOVEMENT_THREADS = 1;
+	
+	/**
+	 * Number of threads used for detecting connectivity -setting id 
+	 * ({@value}). Integer value. If zero, every interface searches for new 
+	 * connections when its host is updated. With one or more threads, the 
+	 * interfaces within range of every interface are first detected from 
+	 * the (frozen) host locations in a read-only pass that is run in 
+	 * parallel with more than one thread. The connections are then created
+	 * and torn down when the hosts are updated (in the normal update order).
+	 * The results don't depend on the number of threads. 
+	 * Default is {@link #DEF_CONNECTIVITY_THREADS}.
+	 */
+	public static final String CONNECTIVITY_THREADS_S = "connectivityThreads";
+	/** default number of connectivity detection threads ({@value}) */
+	public static final int DEF_CONNECTIVITY_THREADS = 0;
+
+	/**
+	 * Should the contact start and end times of moving hosts be predicted
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, the
+	 * times when hosts moving along their paths get in and out of range
+	 * are solved analytically and the hosts are updated at those times 
+	 * instead of only at update interval boundaries. See 
+	 * {@link ContactPredictor}. Default is {@link #DEF_PREDICT_CONTACTS}.
+	 */
+	public static final String PREDICT_CONTACTS_S = "predictContacts";
+	/** default value for the predict contacts setting ({@value}) */
+	public static final boolean DEF_PREDICT_CONTACTS = false;
+
+	/**
+	 * Should idle hosts be skipped in the movement and update phases 
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, hosts
+	 * that wait for their next path are kept in a queue by the time they
+	 * may move again and are not moved before that time, and the routers 
+	 * that are idle (see {@link routing.MessageRouter#isIdle()}) are not 
+	 * updated. The movement activeness of waiting hosts is not checked 
+	 * until they wake up. Default is {@link #DEF_SKIP_IDLE_HOSTS}.
+	 */
+	public static final String SKIP_IDLE_HOSTS_S = "skipIdleHosts";
+	/** default value for the skip idle hosts setting ({@value}) */
+	public static final boolean DEF_SKIP_IDLE_HOSTS = false;
+
+	/**
+	 * Should all hosts be updated after every external event -setting id 
+	 * ({@value}). Boolean (true/false) variable. If false, only the hosts 
+	 * the event touched (see {@link ExternalEvent#getTouchedHosts()}) and 
+	 * the hosts connected to them are updated after the event. Events that
+	 * don't tell which hosts they touch (e.g., scheduled update requests)
+	 * always update all hosts. Set to true to update all hosts after every
+	 * event like older versions did. 
+	 * Default is {@link #DEF_UPDATE_ALL_AFTER_EVENTS}.
+	 */
+	public static final String UPDATE_ALL_AFTER_EVENTS_S = 
+		"updateAllAfterEvents";
+	/** default value for the update all after events setting ({@value}) */
+	public static final boolean DEF_UPDATE_ALL_AFTER_EVENTS = false;
+
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;
 	private double updateInterval;
 	private SimClock simClock; 
 	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** all event queues (scheduled updates first) merged in time order */
+	private MergedEventQueue mergedQueue;
 	/** list of nodes; nodes are indexed by their network address */
 	protected List<? extends DTNHost> hosts; //#changed private list<DTNHost> to protected list<? extends DTNHost>
 	private boolean simulateConnections;
@@ -57,6 +138,49 @@ public class World {
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
 	private boolean isConSimulated;
+	/** number of movement threads */
+	private int movementThreads;
+	/** executor for the parallel movement phase (null if not started) */
+	private transient ChunkedExecutor movementExecutor;
+	/** flags for hosts whose deferred move is pending */
+	private boolean[] pendingMoves;
+	/** is connectivity detected in a separate pass before host updates */
+	private boolean detectConnectivity;
+	/** number of connectivity detection threads */
+	private int conThreads;
+	/** executor for the parallel connectivity detection (null if not 
+	 * started) */
+	private transient ChunkedExecutor connectivityExecutor;
+	/** all network interfaces of all hosts (for connectivity detection) */
+	private transient List<NetworkInterface> interfaces;
+	/** detector optimizers of the interfaces (in the same order as the
+	 * interfaces; null for interfaces without an optimizer) */
+	private transient List<ConnectivityOptimizer> detectors;
+	/** all different detector optimizers */
+	private transient List<ConnectivityOptimizer> optimizers;
+	/** visitor that marks near interface pairs within range as detected */
+	private transient PairVisitor pairDetector;
+	/** contact time predictor (null if contacts are not predicted) */
+	private ContactPredictor contactPredictor;
+	/** are the hosts that can't move skipped in the movement phase */
+	private boolean skipIdleHosts;
+	/** indexes of the hosts that may move, in ascending order */
+	private int[] awakeHosts;
+	/** number of valid indexes in the awake hosts array */
+	private int nrofAwake;
+	/** indexes of the hosts waiting for their next path, by wake up time */
+	private transient PriorityQueue<Integer> sleepingHosts;
+	/** indexes of the sleeping hosts in a checkpoint (the queue's order 
+	 * depends on the hosts, so it is created again after restoring) */
+	private int[] savedSleepingHosts;
+	/** are all hosts updated after every external event */
+	private boolean updateAllAfterEvents;
+	/** addresses of the hosts to update after an external event */
+	private int[] touchedHosts;
+	/** the stamp of the latest event that touched each host (by address) */
+	private int[] touchStamps;
+	/** the stamp of the latest external event that touched hosts */
+	private int touchStamp;
 
 	/**
 	 * Constructor.
@@ -70,10 +194,13 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		List<EventQueue> allQueues = new ArrayList<EventQueue>();
+		allQueues.add(this.scheduledUpdates);
+		allQueues.addAll(eventQueues);
+		this.mergedQueue = new MergedEventQueue(allQueues);
 		this.isCancelled = false;
 		this.isConSimulated = false;
 
@@ -93,6 +220,34 @@ public class World {
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
 		
+		this.movementThreads = s.getInt(MOVEMENT_THREADS_S, 
+				DEF_MOVEMENT_THREADS);
+		s.ensurePositiveValue(movementThreads, MOVEMENT_THREADS_S);
+		
+		this.conThreads = s.getInt(CONNECTIVITY_THREADS_S, 
+				DEF_CONNECTIVITY_THREADS);
+		s.ensurePositiveValue(conThreads, CONNECTIVITY_THREADS_S);
+		this.detectConnectivity = conThreads > 0;
+		
+		if (s.getBoolean(PREDICT_CONTACTS_S, DEF_PREDICT_CONTACTS)) {
+			this.contactPredictor = new ContactPredictor(this);
+		}
+		
+		this.skipIdleHosts = s.getBoolean(SKIP_IDLE_HOSTS_S, 
+				DEF_SKIP_IDLE_HOSTS);
+		if (this.skipIdleHosts) {
+			for (DTNHost host : this.hosts) {
+				host.setSkipIdleUpdates(true);
+			}
+			this.sleepingHosts = createSleepingHostsQueue();
+		}
+		
+		this.updateAllAfterEvents = s.getBoolean(UPDATE_ALL_AFTER_EVENTS_S,
+				DEF_UPDATE_ALL_AFTER_EVENTS);
+		this.touchedHosts = new int[hosts.size()];
+		this.touchStamps = new int[hosts.size()];
+		this.touchStamp = 0;
+		
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -102,6 +257,53 @@ public class World {
 		}
 	}
 
+	/**
+	 * Stops the worker threads of the parallel movement and connectivity
+	 * detection phases (if any are running). Should be called when the 
+	 * world is not updated anymore, e.g., at the end of a run. The threads
+	 * are started again if the world is updated after this.
+	 */
+	public void shutdown() {
+		if (this.movementExecutor != null) {
+			movementExecutor.shutdown();
+			this.movementExecutor = null;
+		}
+		if (this.connectivityExecutor != null) {
+			connectivityExecutor.shutdown();
+			this.connectivityExecutor = null;
+		}
+	}
+	
+	/**
+	 * Saves the world to a {@link Checkpoint}
+	 * @param out The output stream to write the world to
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (this.sleepingHosts != null) {
+			this.savedSleepingHosts = new int[sleepingHosts.size()];
+			int i = 0;
+			for (int index : sleepingHosts) {
+				savedSleepingHosts[i++] = index;
+			}
+		}
+		out.defaultWriteObject();
+		this.savedSleepingHosts = null;
+	}
+	
+	/**
+	 * Creates an empty queue for the sleeping hosts
+	 * @return An empty queue ordered by the hosts' wake up times
+	 */
+	private PriorityQueue<Integer> createSleepingHostsQueue() {
+		return new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				int c = Double.compare(hosts.get(i1).getNextTimeToMove(),
+						hosts.get(i2).getNextTimeToMove());
+				return (c != 0 ? c : i1.compareTo(i2));
+			}
+		});
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
@@ -125,23 +327,11 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Goes through all event Queues and sets the time of the next event.
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.mergedQueue.refresh();
+		this.nextQueueEventTime = this.mergedQueue.nextEventsTime();
 	}
 
 	/** 
@@ -151,27 +341,60 @@ public class World {
 	 */
 	public void update () {
 		double runUntil = SimClock.getTime() + this.updateInterval;
+		double movedUntil = SimClock.getTime();
 
 		setNextEventQueue();
+		if (this.contactPredictor != null) {
+			this.contactPredictor.update();
+			setNextEventQueue();
+		}
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
+			if (this.contactPredictor != null && 
+					this.nextQueueEventTime > movedUntil) {
+				/* move the hosts to the event's time so that contacts
+				 * are detected at the exact (predicted) times */
+				moveHosts(this.nextQueueEventTime - movedUntil);
+				movedUntil = this.nextQueueEventTime;
+				simClock.setTime(movedUntil);
+				this.contactPredictor.update();
+				// new predictions may be due earlier
+				this.nextQueueEventTime = this.mergedQueue.nextEventsTime();
+				continue;
+			}
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			ExternalEvent ee = this.mergedQueue.nextEvent();
+			long start = Profiler.start();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
+			Profiler.stop(Profiler.Phase.EVENTS, start);
+			int[] touched = ee.getTouchedHosts();
+			if (touched == null || this.updateAllAfterEvents) {
+				updateHosts(); // update all hosts after the event
+			}
+			else {
+				updateTouchedHosts(touched);
+			}
+			this.nextQueueEventTime = this.mergedQueue.nextEventsTime();
 		}
 
-		moveHosts(this.updateInterval);
+		if (this.contactPredictor != null) {
+			moveHosts(runUntil - movedUntil);
+		}
+		else {
+			moveHosts(this.updateInterval);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
 
 		/* inform all update listeners */
+		long start = Profiler.start();
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
+		Profiler.stop(Profiler.Phase.UPDATE_LISTENERS, start);
+		Profiler.update();
 	}
 
 	/**
@@ -180,6 +403,12 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (this.detectConnectivity && simulateConnections) {
+			long start = Profiler.start();
+			detectConnectivity();
+			Profiler.stop(Profiler.Phase.CONNECTIVITY, start);
+		}
+		
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -206,15 +435,262 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates the hosts an external event touched and the hosts that are
+	 * connected to them, in host address order. The other hosts are 
+	 * updated in the next full update.
+	 * @param addresses The addresses of the touched hosts
+	 */
+	private void updateTouchedHosts(int[] addresses) {
+		if (touchStamp == Integer.MAX_VALUE) {
+			Arrays.fill(touchStamps, 0);
+			touchStamp = 0;
+		}
+		touchStamp++;
+		int n = 0;
+		for (int address : addresses) {
+			DTNHost host = getNodeByAddress(address);
+			n = touch(address, n);
+			for (Connection con : host.getConnections()) {
+				n = touch(con.getOtherNode(host).getAddress(), n);
+			}
+		}
+		Arrays.sort(touchedHosts, 0, n);
+		
+		for (int i=0; i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			hosts.get(touchedHosts[i]).update(simulateConnections);
+		}
+	}
+
+	/**
+	 * Adds a host to the touched hosts unless the current event has
+	 * already touched it
+	 * @param address Address of the host
+	 * @param n Number of touched hosts so far
+	 * @return Number of touched hosts after adding the host
+	 */
+	private int touch(int address, int n) {
+		if (touchStamps[address] != touchStamp) {
+			touchStamps[address] = touchStamp;
+			touchedHosts[n++] = address;
+		}
+		return n;
+	}
+
+	/**
+	 * Detects which interfaces are within range of each other before the
+	 * hosts are updated. The detection uses separate detector optimizers
+	 * (see {@link ConnectivityOptimizer#newInstance()}) so that the 
+	 * interfaces' own optimizers, and thus the order in which the updates
+	 * find the near interfaces, stay the same as without the detection 
+	 * pass. First the locations of all interfaces are updated to the 
+	 * detectors (in host address order) and then the interfaces within 
+	 * range of each other are found. The latter is a read-only pass. If more
+	 * than one connectivity thread is used, every interface searches for its
+	 * neighbors in parallel. Otherwise all the near interface pairs of every
+	 * detector are checked once.
+	 * @see NetworkInterface#detectNearInterfaces(ConnectivityOptimizer)
+	 * @see ConnectivityOptimizer#forEachNearPair(PairVisitor)
+	 */
+	private void detectConnectivity() {
+		if (this.interfaces == null) {
+			initDetection();
+		}
+		
+		for (int i=0, n=interfaces.size(); i<n; i++) {
+			if (detectors.get(i) != null) {
+				detectors.get(i).updateLocation(interfaces.get(i));
+			}
+		}
+		
+		if (this.conThreads > 1) {
+			if (this.connectivityExecutor == null) {
+				this.connectivityExecutor = new ChunkedExecutor(conThreads, 
+						"connectivity");
+			}
+			connectivityExecutor.run(interfaces.size(), 
+					new ChunkedExecutor.ChunkTask() {
+				public void run(int from, int to) {
+					for (int i=from; i<to; i++) {
+						if (detectors.get(i) != null) {
+							interfaces.get(i).detectNearInterfaces(
+									detectors.get(i));
+						}
+					}
+				}
+			});
+			return;
+		}
+		
+		for (int i=0, n=interfaces.size(); i<n; i++) {
+			interfaces.get(i).beginDetection();
+		}
+		for (int i=0, n=optimizers.size(); i<n; i++) {
+			optimizers.get(i).forEachNearPair(pairDetector);
+		}
+		for (int i=0, n=interfaces.size(); i<n; i++) {
+			if (detectors.get(i) != null) {
+				interfaces.get(i).endDetection();
+			}
+		}
+	}
+	
+	/**
+	 * Collects the interfaces of all hosts for the connectivity detection 
+	 * and creates a detector optimizer for every connectivity optimizer in
+	 * use
+	 */
+	private void initDetection() {
+		this.interfaces = new ArrayList<NetworkInterface>();
+		this.detectors = new ArrayList<ConnectivityOptimizer>();
+		this.optimizers = new ArrayList<ConnectivityOptimizer>();
+		IdentityHashMap<ConnectivityOptimizer, ConnectivityOptimizer> 
+			detectorOf = new IdentityHashMap<ConnectivityOptimizer, 
+			ConnectivityOptimizer>();
+		for (DTNHost host : this.hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				ConnectivityOptimizer opt = ni.getOptimizer();
+				ConnectivityOptimizer detector = null;
+				if (opt != null) {
+					detector = detectorOf.get(opt);
+					if (detector == null) {
+						detector = opt.newInstance();
+						detectorOf.put(opt, detector);
+						this.optimizers.add(detector);
+					}
+					detector.addInterface(ni);
+				}
+				this.interfaces.add(ni);
+				this.detectors.add(detector);
+			}
+		}
+		
+		this.pairDetector = new PairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				if (ni1.isWithinRange(ni2)) {
+					ni1.addDetected(ni2);
+					ni2.addDetected(ni1);
+				}
+			}
+		};
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
-			host.move(timeIncrement);			
-		}		
+		long start = Profiler.start();
+		if (this.awakeHosts == null) {
+			this.nrofAwake = hosts.size();
+			this.awakeHosts = new int[nrofAwake];
+			for (int i=0; i<nrofAwake; i++) {
+				this.awakeHosts[i] = i;
+			}
+		}
+		if (this.skipIdleHosts) {
+			if (this.sleepingHosts == null) { // restored from a checkpoint
+				this.sleepingHosts = createSleepingHostsQueue();
+				for (int index : savedSleepingHosts) {
+					sleepingHosts.add(index);
+				}
+				this.savedSleepingHosts = null;
+			}
+			wakeUpHosts();
+		}
+		
+		if (this.movementThreads > 1) {
+			moveHostsInParallel(timeIncrement);
+		}
+		else {
+			for (int k=0; k<nrofAwake; k++) {
+				DTNHost host = hosts.get(awakeHosts[k]);
+				host.move(timeIncrement);
+			}
+		}
+		
+		if (this.skipIdleHosts) {
+			putHostsToSleep();
+		}
+		Profiler.stop(Profiler.Phase.MOVEMENT, start);
+	}
+	
+	/**
+	 * Moves the sleeping hosts whose next path is available at this time
+	 * to the awake hosts. The awake hosts are kept in ascending index order
+	 * so that the movement models' shared random number generator is used
+	 * in the same order as when all hosts are moved.
+	 */
+	private void wakeUpHosts() {
+		double now = SimClock.getTime();
+		int oldNrofAwake = nrofAwake;
+		while (!sleepingHosts.isEmpty() && 
+				hosts.get(sleepingHosts.peek()).getNextTimeToMove() <= now) {
+			awakeHosts[nrofAwake++] = sleepingHosts.poll();
+		}
+		if (nrofAwake > oldNrofAwake) {
+			Arrays.sort(awakeHosts, 0, nrofAwake);
+		}
+	}
+	
+	/**
+	 * Moves the awake hosts that can't move before their next path is 
+	 * available to the sleeping hosts queue
+	 */
+	private void putHostsToSleep() {
+		double now = SimClock.getTime();
+		int stillAwake = 0;
+		for (int k=0; k<nrofAwake; k++) {
+			int i = awakeHosts[k];
+			if (hosts.get(i).getNextTimeToMove() > now) {
+				sleepingHosts.add(i);
+			}
+			else {
+				awakeHosts[stillAwake++] = i;
+			}
+		}
+		nrofAwake = stillAwake;
+	}
+
+	/**
+	 * Moves all awake hosts in the world for a given amount of time using the
+	 * movement executor. Hosts are first moved in parallel up to the point 
+	 * where they would need a new path. Then the pending moves are finished
+	 * and the buffered movement listener calls are delivered in host address
+	 * order. 
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(final double timeIncrement) {
+		final int n = nrofAwake;
+		if (this.pendingMoves == null || 
+				this.pendingMoves.length != hosts.size()) {
+			this.pendingMoves = new boolean[hosts.size()];
+		}
+		if (this.movementExecutor == null) {
+			this.movementExecutor = new ChunkedExecutor(movementThreads, 
+					"movement");
+		}
+		
+		movementExecutor.run(n, new ChunkedExecutor.ChunkTask() {
+			public void run(int from, int to) {
+				for (int k=from; k<to; k++) {
+					pendingMoves[k] = 
+						!hosts.get(awakeHosts[k]).moveDeferred(timeIncrement);
+				}
+			}
+		});
+		
+		for (int k=0; k<n; k++) {
+			if (pendingMoves[k]) {
+				hosts.get(awakeHosts[k]).finishDeferredMove();
+			}
+		}
+		for (int k=0; k<n; k++) {
+			hosts.get(awakeHosts[k]).flushMovementEvents();
+		}
 	}
 
 	/**
@@ -273,5 +749,19 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		mergedQueue.update(0);
+	}
+	
+	/**
+	 * Schedules update requests to all nodes to happen at all the specified
+	 * simulation times. This is faster than scheduling the updates one by 
+	 * one.
+	 * @param simTimes The times of the updates
+	 * @param count How many times (from the beginning of the array) to 
+	 * schedule
+	 */
+	public void scheduleUpdates(double[] simTimes, int count) {
+		scheduledUpdates.addUpdates(simTimes, count);
+		mergedQueue.update(0);
 	}
 }
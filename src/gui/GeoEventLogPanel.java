@@ -406,7 +406,7 @@ public class GeoEventLogPanel extends JPanel
 			if (firstDelivery) {
 				processGeoEvent(gMsgDeliveredCheck, "GeoMessage delivered" + m.toString(), from, to, m); 
 			}
-			else if (getTo.checkThePoint(to.getLocation())) { 
+			else if (getTo.checkThePoint(to)) { 
 				processGeoEvent(gMsgDeliveredCheck, "GeoMessage delivered again", 
 						from, to, m);
 			}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <P>Cache for parsed input assets (maps, casts, points of interest, event
+ * traces, ...) that are read from files. The assets are keyed by their
+ * kind, the paths, modification times and sizes of the files they are
+ * read from, and the parameters of any transformations done to them (see
+ * {@link #key(String, String, File...)}), so a changed file is read again.
+ * Every asset is loaded only once even if it is requested concurrently
+ * from multiple threads.</P>
+ *
+ * <P>The cached assets are shared by everyone who requests them, so they
+ * must not be modified after loading. The {@link #getShared() shared cache}
+ * is shared by all runs of the JVM, including the runs in different
+ * {@link core.SimContext}s, and can only hold assets whose classes are
+ * shared by the contexts. Assets of other classes must be cached in a
+ * cache created by a class of the context.</P>
+ */
+public class AssetCache {
+	/** the cache shared by all simulation contexts */
+	private static final AssetCache shared = new AssetCache();
+	/** the assets by their keys */
+	private Map<String, Asset> assets;
+
+	/**
+	 * Loader of an asset
+	 * @param <T> Type of the asset
+	 */
+	public interface Loader<T> {
+		/**
+		 * Loads (reads, parses and transforms) the asset
+		 * @return The loaded asset
+		 * @throws IOException if the asset's file(s) can't be read
+		 */
+		public T load() throws IOException;
+	}
+
+	/**
+	 * Creates a new, empty, cache
+	 */
+	public AssetCache() {
+		this.assets = new HashMap<String, Asset>();
+	}
+
+	/**
+	 * Returns the cache that is shared by all simulation contexts
+	 * @return the shared cache
+	 */
+	public static AssetCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Creates the key of an asset
+	 * @param kind Kind of the asset (e.g., "map")
+	 * @param params The parameters of the transformations done to the asset
+	 * after reading (e.g., offsets) or an empty string if there are none
+	 * @param files The files the asset is read from
+	 * @return The key
+	 */
+	public static String key(String kind, String params, File... files) {
+		StringBuilder key = new StringBuilder(kind);
+		key.append('[').append(params).append(']');
+		for (File f : files) {
+			String path;
+			try {
+				path = f.getCanonicalPath();
+			} catch (IOException e) {
+				path = f.getAbsolutePath();
+			}
+			key.append('|').append(path).append(':').append(f.lastModified())
+				.append(':').append(f.length());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns an asset from the cache. If the asset is not in the cache yet,
+	 * it is loaded using the loader. If the loader fails, nothing is cached.
+	 * @param key Key of the asset (see {@link #key(String, String, File...)})
+	 * @param loader The loader that loads the asset if it's not cached
+	 * @return The asset
+	 * @throws IOException if the loader fails to read the asset
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key, Loader<T> loader) throws IOException {
+		Asset asset;
+		synchronized (this) {
+			asset = assets.get(key);
+			if (asset == null) {
+				asset = new Asset();
+				assets.put(key, asset);
+			}
+		}
+
+		synchronized (asset) {
+			if (!asset.loaded) {
+				asset.value = loader.load();
+				asset.loaded = true;
+			}
+			return (T)asset.value;
+		}
+	}
+
+	/**
+	 * Returns the number of assets in the cache
+	 * @return the number of assets in the cache
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (Asset a : assets.values()) {
+			if (a.loaded) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Removes all assets from the cache
+	 */
+	public synchronized void clear() {
+		this.assets.clear();
+	}
+
+	/** A cached asset */
+	private static class Asset {
+		private Object value;
+		private boolean loaded;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+
+import core.Coord;
+import core.SimError;
+
+/**
+ * <P>Reads a binary contact plan recorded with
+ * {@link report.ContactPlanReport}. As an external events reader, returns
+ * the link up and down records of the plan as {@link ConnectionEvent}s so
+ * a recorded run's connectivity can be replayed without simulating the
+ * connectivity (or movement) again. The movement records of the plan can
+ * be read with {@link #readMovements()}
+ * (see {@link movement.ContactPlanMovement}).</P>
+ *
+ * <P>File format (big-endian, as written by {@link java.io.DataOutput}):
+ * an integer {@link #MAGIC}, an integer {@link #VERSION} and then records
+ * that start with a type byte:
+ * <UL>
+ * <LI>{@link #INTERFACE_TYPE}: short id, UTF string interface type</LI>
+ * <LI>{@link #LINK_UP}/{@link #LINK_DOWN}: double time, int address,
+ * int address, short interface type id (-1 if unknown)</LI>
+ * <LI>{@link #NEW_DESTINATION}: double time, int address, double x,
+ * double y, double speed</LI>
+ * <LI>{@link #INITIAL_LOCATION}: int address, double x, double y</LI>
+ * </UL>
+ * Records are in time order.</P>
+ */
+public class ContactPlanReader implements ExternalEventsReader {
+	/** Extension of contact plan files ({@value}) */
+	public static final String CONTACT_PLAN_EXT = ".cplan";
+	/** Identifier in the beginning of contact plan files ({@value}) */
+	public static final int MAGIC = 0x4F4E4350;
+	/** Version of the contact plan format ({@value}) */
+	public static final int VERSION = 1;
+
+	/** Record type of interface type definitions ({@value}) */
+	public static final byte INTERFACE_TYPE = 1;
+	/** Record type of link up events ({@value}) */
+	public static final byte LINK_UP = 2;
+	/** Record type of link down events ({@value}) */
+	public static final byte LINK_DOWN = 3;
+	/** Record type of new destinations of hosts ({@value}) */
+	public static final byte NEW_DESTINATION = 4;
+	/** Record type of initial locations of hosts ({@value}) */
+	public static final byte INITIAL_LOCATION = 5;
+
+	private DataInputStream in;
+	private File planFile;
+	private Map<Short, String> interfaceTypes;
+	private boolean isDone;
+
+	/**
+	 * Constructor.
+	 * @param planFile The contact plan file
+	 */
+	public ContactPlanReader(File planFile) {
+		this.planFile = planFile;
+		this.interfaceTypes = new HashMap<Short, String>();
+		this.isDone = false;
+		try {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(planFile)));
+			if (in.readInt() != MAGIC) {
+				throw new SimError("Not a contact plan file: " +
+						planFile.getAbsolutePath());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported contact plan version " +
+						version + " in " + planFile.getAbsolutePath());
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Reads link up and down events from the plan
+	 * @param nrof Maximum number of events to read
+	 * @return Events in a List (empty list if there were no more events)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		try {
+			while (events.size() < nrof && !isDone) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					close();
+					break;
+				}
+
+				if (type == LINK_UP || type == LINK_DOWN) {
+					double time = in.readDouble();
+					int from = in.readInt();
+					int to = in.readInt();
+					String iType = interfaceTypes.get(in.readShort());
+					events.add(new ConnectionEvent(from, to, iType,
+							type == LINK_UP, time));
+				}
+				else {
+					readOtherRecord(type, null);
+				}
+			}
+		} catch (IOException e) {
+			throw new SimError("Error reading contact plan " +
+					planFile.getAbsolutePath(), e);
+		}
+
+		return events;
+	}
+
+	/**
+	 * Reads all the movement records of the plan. The reader can't be used
+	 * for reading events after this.
+	 * @return Mapping from host addresses to a tuple of the initial
+	 * location (or null if it wasn't recorded) and the list of new
+	 * destinations (each as an array of time, x, y and speed)
+	 */
+	public Map<Integer, Tuple<Coord, List<double[]>>> readMovements() {
+		Map<Integer, Tuple<Coord, List<double[]>>> movements =
+			new HashMap<Integer, Tuple<Coord, List<double[]>>>();
+
+		try {
+			while (!isDone) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					close();
+					break;
+				}
+
+				if (type == LINK_UP || type == LINK_DOWN) {
+					in.readDouble();
+					in.readInt();
+					in.readInt();
+					in.readShort();
+				}
+				else {
+					readOtherRecord(type, movements);
+				}
+			}
+		} catch (IOException e) {
+			throw new SimError("Error reading contact plan " +
+					planFile.getAbsolutePath(), e);
+		}
+
+		return movements;
+	}
+
+	/**
+	 * Reads a record that is not a link record
+	 * @param type Type of the record
+	 * @param movements Where the movement records are stored (or null if
+	 * they are skipped)
+	 * @throws IOException if reading failed
+	 */
+	private void readOtherRecord(byte type,
+			Map<Integer, Tuple<Coord, List<double[]>>> movements)
+			throws IOException {
+		switch (type) {
+		case INTERFACE_TYPE:
+			short id = in.readShort();
+			interfaceTypes.put(id, in.readUTF());
+			break;
+		case NEW_DESTINATION:
+			double time = in.readDouble();
+			int addr = in.readInt();
+			double[] dest = {time, in.readDouble(), in.readDouble(),
+					in.readDouble()};
+			if (movements != null) {
+				getMovement(movements, addr).getValue().add(dest);
+			}
+			break;
+		case INITIAL_LOCATION:
+			int host = in.readInt();
+			Coord loc = new Coord(in.readDouble(), in.readDouble());
+			if (movements != null) {
+				Tuple<Coord, List<double[]>> old = getMovement(movements, host);
+				movements.put(host, new Tuple<Coord, List<double[]>>(loc,
+						old.getValue()));
+			}
+			break;
+		default:
+			throw new SimError("Invalid record type " + type +
+					" in contact plan " + planFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Returns the movement tuple of a host (creates a new if needed)
+	 */
+	private Tuple<Coord, List<double[]>> getMovement(
+			Map<Integer, Tuple<Coord, List<double[]>>> movements, int addr) {
+		Tuple<Coord, List<double[]>> t = movements.get(addr);
+		if (t == null) {
+			t = new Tuple<Coord, List<double[]>>(null,
+					new ArrayList<double[]>());
+			movements.put(addr, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Checks if the given file is a contact plan file
+	 * @param file The file to check
+	 * @return True if the file has the contact plan extension and header
+	 */
+	public static boolean isContactPlanFile(File file) {
+		if (!file.getName().endsWith(CONTACT_PLAN_EXT)) {
+			return false;
+		}
+
+		try {
+			new ContactPlanReader(file).close();
+		}
+		catch (SimError e) {
+			return false;
+		}
+		return true;
+	}
+
+	public void close() {
+		this.isDone = true;
+		try {
+			this.in.close();
+		}
+		catch (IOException ioe) {
+			throw new SimError(ioe);
+		}
+	}
+}
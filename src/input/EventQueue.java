@@ -4,6 +4,8 @@
  */
 package input;
 
+import java.io.Serializable;
+
 /**
  * Interface for event queues. Any class that is not a movement model or a 
  * routing module but wishes to provide events for the simulation (like creating
@@ -11,7 +13,7 @@ package input;
  * simulator. See the {@link EventQueueHandler} class for configuration 
  * instructions.
  */
-public interface EventQueue {
+public interface EventQueue extends Serializable {
 	
 	/**
 	 * Returns the next event in the queue or ExternalEvent with time of 
@@ -28,6 +28,17 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 	public void processEvent(World world) {
 		// this is just a dummy event
 	}
+	
+	/**
+	 * Returns the addresses of the hosts whose state processing this event 
+	 * may change. The world updates only these hosts (and their peers) 
+	 * after the event unless all hosts should be updated.
+	 * @return The addresses of the touched hosts or null if the event
+	 * concerns all hosts (as this dummy event does)
+	 */
+	public int[] getTouchedHosts() {
+		return null;
+	}
 
 	/**
 	 * Returns the time when this event should happen.
@@ -5,32 +5,49 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import core.Settings;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
  * the events and preloading only a proper amount of them.
  */
 public class ExternalEventsQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
+
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** cache all events of the file -setting id ({@value}). Boolean valued.
+	 * If true, all the events of the file are read at once and shared
+	 * by all the queues (and runs) of the simulation context that read the
+	 * same file. Default is false (events are preloaded in parts). */
+	public static final String CACHE_SETTING = "cacheEvents";
 	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 	
 	private File eventsFile;
-	private ExternalEventsReader reader;
+	private transient ExternalEventsReader reader;
+	/** how many events have been read from the reader */
+	private int nrofEventsRead;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	private boolean cacheEvents = false;
+	
+	/** the event lists read in this simulation context. Events refer to the
+	 * classes of the context, so they can't be shared by all contexts. */
+	private static final AssetCache cache = new AssetCache();
 	
 	/**
 	 * Creates a new Queue from a file
@@ -58,6 +75,9 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		if (s.contains(CACHE_SETTING)) {
+			this.cacheEvents = s.getBoolean(CACHE_SETTING);
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -76,16 +96,83 @@ public class ExternalEventsQueue implements EventQueue {
 	
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
+		this.nextEventIndex = 0;
 		
+		if (cacheEvents) {
+			this.queue = readAllEvents();
+			this.allEventsRead = true;
+			return;
+		}
+		
+		this.reader = createReader(eventsFile);
+		this.queue = readEvents(nrofPreload);
+	}
+	
+	/**
+	 * Creates a reader for the events file based on the type of the file
+	 * @param eventsFile The events file
+	 * @return A reader for the file
+	 */
+	private static ExternalEventsReader createReader(File eventsFile) {
 		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
-			this.reader = new BinaryEventsReader(eventsFile);
+			return new BinaryEventsReader(eventsFile);
+		}
+		else if (ContactPlanReader.isContactPlanFile(eventsFile)) {
+			return new ContactPlanReader(eventsFile);
 		}
 		else {
-			this.reader = new StandardEventsReader(eventsFile);
+			return new StandardEventsReader(eventsFile);
+		}
+	}
+	
+	/**
+	 * Returns all the events of the events file from the cache. The file is
+	 * read only once per simulation context; the returned list is shared and
+	 * must not be modified.
+	 * @return All the events of the file
+	 */
+	private List<ExternalEvent> readAllEvents() {
+		final int nrof = this.nrofPreload;
+		try {
+			return cache.get(AssetCache.key("events", "", eventsFile),
+					new AssetCache.Loader<List<ExternalEvent>>() {
+				public List<ExternalEvent> load() {
+					ExternalEventsReader r = createReader(eventsFile);
+					List<ExternalEvent> all = new ArrayList<ExternalEvent>();
+					List<ExternalEvent> events;
+					while ((events = r.readEvents(nrof)).size() > 0) {
+						all.addAll(events);
+					}
+					r.close();
+					return all;
+				}
+			});
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+	
+	/**
+	 * Restores a queue from a {@link core.Checkpoint}. The reader is opened
+	 * again and the events that were already read are skipped.
+	 * @param in The input stream to read the queue from
+	 */
+	private void readObject(ObjectInputStream in) 
+		throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (allEventsRead) {
+			return;
 		}
 		
-		this.queue = readEvents(nrofPreload);
-		this.nextEventIndex = 0;
+		this.reader = createReader(eventsFile);
+		for (int left = nrofEventsRead; left > 0; ) {
+			int skipped = reader.readEvents(Math.min(left, nrofPreload)).size();
+			if (skipped == 0) {
+				throw new SimError("Events file " + eventsFile + " has " +
+						"less events than were read before the checkpoint");
+			}
+			left -= skipped;
+		}
 	}
 	
 	/**
@@ -151,6 +238,7 @@ public class ExternalEventsQueue implements EventQueue {
 		}
 		
 		List<ExternalEvent> events = reader.readEvents(nrof);
+		nrofEventsRead += events.size();
 		
 		if (nrof > 0 && events.size() == 0) {
 			reader.close();
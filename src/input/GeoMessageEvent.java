@@ -33,6 +33,14 @@ public abstract class GeoMessageEvent extends ExternalEvent {
 		this.id = id;
 	}
 	
+	/**
+	 * Returns the address of the message's sender
+	 */
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[] {this.fromAddr};
+	}
+	
 	@Override
 	public String toString() {
 		return "MSG @" + this.time + " " + id;
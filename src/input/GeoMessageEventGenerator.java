@@ -9,6 +9,7 @@ import core.GeoSimScenario;
 import core.Settings;
 
 public class GeoMessageEventGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 42L;
 
 	public GeoMessageEventGenerator(Settings s) {
 		super(s);
@@ -0,0 +1,182 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.util.List;
+
+/**
+ * Event queue that merges the events of other event queues in time order.
+ * The queues are kept in a binary min-heap keyed by their next event's 
+ * time, so taking the next event costs O(log n) instead of checking every
+ * queue. Events with the same time are taken from the queues in the order
+ * the queues were given. 
+ * <P>The next event times of the queues are cached. The queue whose event
+ * is taken is re-checked automatically, and the time of the first queue 
+ * is always re-checked before it is used. If the next event of some other
+ * queue may have become earlier, {@link #update(int)} or 
+ * {@link #refresh()} must be called.</P>
+ */
+public class MergedEventQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
+
+	/** the merged queues */
+	private EventQueue[] queues;
+	/** cached next event times of the queues (indexed by queue) */
+	private double[] times;
+	/** indexes of the queues in heap order */
+	private int[] heap;
+	/** positions of the queues in the heap (indexed by queue) */
+	private int[] positions;
+	
+	/**
+	 * Constructor.
+	 * @param queues The queues to merge
+	 */
+	public MergedEventQueue(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+		for (int i=0; i<n; i++) {
+			this.heap[i] = i;
+			this.positions[i] = i;
+		}
+		refresh();
+	}
+	
+	/**
+	 * Re-checks the next event times of all queues
+	 */
+	public void refresh() {
+		int n = this.queues.length;
+		for (int i=0; i<n; i++) {
+			this.times[i] = this.queues[i].nextEventsTime();
+		}
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Re-checks the next event time of one queue
+	 * @param index Index of the queue (in the list given to the constructor)
+	 */
+	public void update(int index) {
+		double time = this.queues[index].nextEventsTime();
+		double oldTime = this.times[index];
+		this.times[index] = time;
+		if (time < oldTime) {
+			siftUp(this.positions[index]);
+		}
+		else if (time > oldTime) {
+			siftDown(this.positions[index]);
+		}
+	}
+	
+	/**
+	 * Returns the next event of the queue that has the earliest event or
+	 * event with time Double.MAX_VALUE if there are no queues
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (this.queues.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		int first = firstQueue();
+		ExternalEvent ee = this.queues[first].nextEvent();
+		update(first);
+		return ee;
+	}
+	
+	/**
+	 * Returns the earliest next event time of the queues or 
+	 * Double.MAX_VALUE if there are no events left
+	 * @return The next event's time
+	 */
+	public double nextEventsTime() {
+		if (this.queues.length == 0) {
+			return Double.MAX_VALUE;
+		}
+		return this.times[firstQueue()];
+	}
+	
+	/**
+	 * Returns the index of the queue that has the earliest event after
+	 * re-checking the event time of the first queue in the heap
+	 * @return Index of the queue
+	 */
+	private int firstQueue() {
+		int first = this.heap[0];
+		while (this.queues[first].nextEventsTime() != this.times[first]) {
+			update(first);
+			first = this.heap[0];
+		}
+		return first;
+	}
+	
+	/**
+	 * Returns true if the queue a should be before the queue b in the heap
+	 * @param a Index of the first queue
+	 * @param b Index of the second queue
+	 * @return True if a has an earlier event or, in case of a tie, was 
+	 * given first
+	 */
+	private boolean isBefore(int a, int b) {
+		return this.times[a] < this.times[b] || 
+			(this.times[a] == this.times[b] && a < b);
+	}
+	
+	/**
+	 * Moves the queue at the given heap position up until its parent is
+	 * before it
+	 * @param pos Position of the queue in the heap
+	 */
+	private void siftUp(int pos) {
+		int queue = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(queue, this.heap[parent])) {
+				break;
+			}
+			setHeap(pos, this.heap[parent]);
+			pos = parent;
+		}
+		setHeap(pos, queue);
+	}
+	
+	/**
+	 * Moves the queue at the given heap position down until its children 
+	 * are after it
+	 * @param pos Position of the queue in the heap
+	 */
+	private void siftDown(int pos) {
+		int queue = this.heap[pos];
+		int n = this.heap.length;
+		while (2 * pos + 1 < n) {
+			int child = 2 * pos + 1;
+			if (child + 1 < n && isBefore(this.heap[child + 1], 
+					this.heap[child])) {
+				child++;
+			}
+			if (!isBefore(this.heap[child], queue)) {
+				break;
+			}
+			setHeap(pos, this.heap[child]);
+			pos = child;
+		}
+		setHeap(pos, queue);
+	}
+	
+	/**
+	 * Puts a queue to the given heap position
+	 * @param pos The position
+	 * @param queue Index of the queue
+	 */
+	private void setHeap(int pos, int queue) {
+		this.heap[pos] = queue;
+		this.positions[queue] = pos;
+	}
+}
@@ -46,6 +46,14 @@ public class MessageCreateEvent extends MessageEvent {
 		from.createNewMessage(m);
 	}
 	
+	/**
+	 * Returns the address of the message's creator
+	 */
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[] {this.fromAddr};
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
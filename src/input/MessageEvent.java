@@ -29,6 +29,14 @@ public abstract class MessageEvent extends ExternalEvent {
 		this.id = id;
 	}
 	
+	/**
+	 * Returns the addresses of the message's sender and receiver
+	 */
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[] {this.fromAddr, this.toAddr};
+	}
+	
 	@Override
 	public String toString() {
 		return "MSG @" + this.time + " " + id;
@@ -4,25 +4,31 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. The update times are kept in a binary
+ * min-heap of primitive doubles; duplicate times are merged when the 
+ * update is taken from the queue.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	private static final long serialVersionUID = 42L;
+
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+	/** the update times in heap order */
+	private double[] times;
+	/** number of update times in the heap */
+	private int size;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.times = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 	
 	/**
@@ -31,16 +37,16 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
 		
-		return event;
+		double time = this.times[0];
+		do { // remove also all the duplicates of the time
+			removeFirst();
+		} while (this.size > 0 && this.times[0] == time);
+		
+		return new ExternalEvent(time);
 	}
 	
 	/**
@@ -49,7 +55,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return (this.size == 0 ? Double.MAX_VALUE : this.times[0]);
 	}
 
 	/**
@@ -57,47 +63,109 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
+		if (this.size > 0 && this.times[0] == simTime) {
+			return; // this update is already next
+		}
+		ensureCapacity(this.size + 1);
+		this.times[this.size] = simTime;
+		siftUp(this.size++);
+	}
+	
+	/**
+	 * Adds new update requests for all the given times at once. Adding many
+	 * updates this way is faster than adding them one by one.
+	 * @param simTimes The times when the updates should happen
+	 * @param count How many times (from the beginning of the array) to add
+	 */
+	public void addUpdates(double[] simTimes, int count) {
+		if (count < this.size) {
+			for (int i=0; i<count; i++) {
+				addUpdate(simTimes[i]);
+			}
 			return;
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		
+		/* many new times -> rebuild the whole heap */
+		ensureCapacity(this.size + count);
+		System.arraycopy(simTimes, 0, this.times, this.size, count);
+		this.size += count;
+		for (int i = this.size / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Removes the first (earliest) time from the heap
+	 */
+	private void removeFirst() {
+		this.size--;
+		if (this.size > 0) {
+			this.times[0] = this.times[this.size];
+			siftDown(0);
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+	}
+	
+	/**
+	 * Moves the time at the given index up in the heap until its parent is
+	 * not later than it
+	 * @param index Index of the time
+	 */
+	private void siftUp(int index) {
+		double time = this.times[index];
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (this.times[parent] <= time) {
+				break;
+			}
+			this.times[index] = this.times[parent];
+			index = parent;
 		}
+		this.times[index] = time;
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Moves the time at the given index down in the heap until its children
+	 * are not earlier than it
+	 * @param index Index of the time
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+	private void siftDown(int index) {
+		double time = this.times[index];
+		int half = this.size / 2;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < this.size && 
+					this.times[child + 1] < this.times[child]) {
+				child++;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (time <= this.times[child]) {
+				break;
 			}
+			this.times[index] = this.times[child];
+			index = child;
+		}
+		this.times[index] = time;
+	}
+	
+	/**
+	 * Grows the heap array if it can't hold the given number of times
+	 * @param capacity The number of times the heap must be able to hold
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.times.length) {
+			this.times = Arrays.copyOf(this.times, 
+					Math.max(capacity, 2 * this.times.length));
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		double[] sorted = Arrays.copyOf(this.times, this.size);
+		Arrays.sort(sorted);
+		String times = "updates @ " + nextEventsTime();
 		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i=1; i<sorted.length; i++) {
+			if (sorted[i] != sorted[i-1]) {
+				times += ", " + sorted[i];
+			}
 		}
 		
 		return times;
@@ -5,13 +5,14 @@
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 
 import movement.MovementModel;
 
-import core.Coord;
 import core.DTNSim;
+import core.HostStateStore;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
@@ -40,6 +41,7 @@ import core.World;
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Cell based optimization cell size multiplier -setting id ({@value}).
@@ -54,8 +56,31 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface, GridCell> ginterfaces;
+	/** how many interfaces a cell can hold initially */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+	/** how many interfaces the grid can hold initially */
+	private static final int EXPECTED_GRID_INTERFACE_COUNT = 64;
+
+	/** interfaces in each cell (as grid indexes of the interfaces); cells
+	 * are stored row by row and allocated when first needed */
+	private int[][] cellMembers;
+	/** number of interfaces in each cell */
+	private int[] cellCounts;
+	/** interfaces of the grid by their grid index */
+	private NetworkInterface[] members;
+	/** the cell of each interface (by grid index) */
+	private int[] cellOf;
+	/** the slot of each interface in its cell's member array */
+	private int[] slotOf;
+	/** number of interfaces in the grid */
+	private int nrofMembers;
+	/** grid indexes of the interfaces by interface address (-1 for the
+	 * interfaces that are not in the grid) */
+	private int[] indexByAddress;
+	/** cell index offsets of the cell itself and its 8 neighbors */
+	private int[] neighborOffsets;
+	/** cell index offsets of the "forward" half of the neighbors */
+	private int[] forwardOffsets;
 	private int cellSize;
 	private int rows;
 	private int cols;
@@ -101,15 +126,26 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
+		int width = cols + 2;
+		this.cellMembers = new int[(rows+2) * width][];
+		this.cellCounts = new int[(rows+2) * width];
 		this.cellSize = cellSize;
 
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		this.members = new NetworkInterface[EXPECTED_GRID_INTERFACE_COUNT];
+		this.cellOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.slotOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.nrofMembers = 0;
+		this.indexByAddress = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		Arrays.fill(indexByAddress, -1);
+
+		this.neighborOffsets = new int[] {
+			-width-1, -width, -width+1, // 1st row
+			-1, 0, 1,					// 2nd row
+			width-1, width, width+1		// 3rd row
+		};
+		/* every pair of neighboring cells is found exactly once from one
+		 * of the cells when only these offsets are checked */
+		this.forwardOffsets = new int[] {1, width-1, width, width+1};
 	}
 
 	/**
@@ -132,14 +168,40 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 
+	/**
+	 * Creates a new, empty grid with the same cell size as this grid
+	 * @return The new grid
+	 */
+	public ConnectivityOptimizer newInstance() {
+		return new ConnectivityGrid(this.cellSize);
+	}
+
 	/**
 	 * Adds a network interface to the overlay grid
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		if (indexOf(ni) >= 0) {
+			return;
+		}
+		if (nrofMembers == members.length) {
+			int newSize = members.length * 2;
+			members = Arrays.copyOf(members, newSize);
+			cellOf = Arrays.copyOf(cellOf, newSize);
+			slotOf = Arrays.copyOf(slotOf, newSize);
+		}
+		
+		int index = nrofMembers++;
+		members[index] = ni;
+		int address = ni.getAddress();
+		if (address >= indexByAddress.length) {
+			int oldSize = indexByAddress.length;
+			indexByAddress = Arrays.copyOf(indexByAddress,
+					Math.max(address + 1, oldSize * 2));
+			Arrays.fill(indexByAddress, oldSize, indexByAddress.length, -1);
+		}
+		indexByAddress[address] = index;
+		addToCell(index, cellOfHost(ni));
 	}
 
 	/** 
@@ -147,11 +209,34 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		int index = indexOf(ni);
+		if (index < 0) {
+			return;
 		}
-		ginterfaces.remove(ni);
+		indexByAddress[ni.getAddress()] = -1;
+		
+		removeFromCell(index);
+		/* move the last interface to the freed grid index */
+		int last = --nrofMembers;
+		if (index != last) {
+			members[index] = members[last];
+			cellOf[index] = cellOf[last];
+			slotOf[index] = slotOf[last];
+			cellMembers[cellOf[index]][slotOf[index]] = index;
+			indexByAddress[members[index].getAddress()] = index;
+		}
+		members[last] = null;
+	}
+
+	/**
+	 * Returns the grid index of an interface
+	 * @param ni The interface
+	 * @return The grid index or -1 if the interface is not in the grid
+	 */
+	private int indexOf(NetworkInterface ni) {
+		int address = ni.getAddress();
+		return (address < indexByAddress.length ?
+				indexByAddress[address] : -1);
 	}
 
 	/**
@@ -169,63 +254,85 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int index = indexByAddress[ni.getAddress()];
+		int newCell = cellOfHost(ni);
 
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		if (newCell != cellOf[index]) {
+			removeFromCell(index);
+			addToCell(index, newCell);
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Adds an interface to the end of a cell's member array
+	 * @param index Grid index of the interface
+	 * @param cell Index of the cell
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	private void addToCell(int index, int cell) {
+		int[] cellArray = cellMembers[cell];
+		int count = cellCounts[cell];
+		
+		if (cellArray == null) {
+			cellArray = new int[EXPECTED_INTERFACE_COUNT];
+			cellMembers[cell] = cellArray;
+		}
+		else if (count == cellArray.length) {
+			cellArray = Arrays.copyOf(cellArray, count * 2);
+			cellMembers[cell] = cellArray;
+		}
+		
+		cellArray[count] = index;
+		cellCounts[cell] = count + 1;
+		cellOf[index] = cell;
+		slotOf[index] = count;
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Removes an interface from its cell by moving the last interface of 
+	 * the cell to its slot
+	 * @param index Grid index of the interface
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	private void removeFromCell(int index) {
+		int cell = cellOf[index];
+		int slot = slotOf[index];
+		int[] cellArray = cellMembers[cell];
+		int last = --cellCounts[cell];
+		
+		assert cellArray[slot] == index : "interface " + members[index] + 
+			" not found from cell " + cell;
+		
+		if (slot != last) {
+			int moved = cellArray[last];
+			cellArray[slot] = moved;
+			slotOf[moved] = slot;
+		}
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
-	 * @param c Coordinates
-	 * @return The cell
+	 * Get the index of the cell where the host of an interface is
+	 * @param ni The interface
+	 * @return The cell index
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellOfHost(NetworkInterface ni) {
+		int address = ni.getHost().getAddress();
+		double x = HostStateStore.getX(address);
+		double y = HostStateStore.getY(address);
 		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1; 
-		int col = (int)(c.getX()/cellSize) + 1;
+		int row = (int)(y/cellSize) + 1; 
+		int col = (int)(x/cellSize) + 1;
 
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
-		c + " is out of world's bounds";
+		ni.getLocation() + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * (cols + 2) + col;
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		return new ArrayList<NetworkInterface>(
+				Arrays.asList(members).subList(0, nrofMembers));
 	}
 
 	/**
@@ -236,88 +343,109 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
-		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);
-		
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(ni.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				niList.addAll(neighbors[i].getInterfaces());
+		final ArrayList<NetworkInterface> niList = 
+			new ArrayList<NetworkInterface>();
+		forEachNearInterface(ni, new InterfaceVisitor() {
+			public void visit(NetworkInterface near) {
+				niList.add(near);
 			}
-		}
-		
+		});
 		return niList;
 	}
 
-
 	/**
-	 * Returns a string representation of the ConnectivityCells object
-	 * @return a string representation of the ConnectivityCells object
+	 * Calls the visitor for all interfaces in the same and neighboring grid
+	 * cells as the given interface (including the interface itself). The 
+	 * cell of the interface is the one it was put to in the last location
+	 * update. Doesn't create any new objects.
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor to call
 	 */
-	public String toString() {
-		return getClass().getSimpleName() + " of size " + 
-			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	@Override
+	public void forEachNearInterface(NetworkInterface ni, 
+			InterfaceVisitor visitor) {
+		int index = indexOf(ni);
+		if (index < 0) {
+			return;
+		}
+		
+		int cell = cellOf[index];
+		for (int i=0; i < neighborOffsets.length; i++) {
+			int neighbor = cell + neighborOffsets[i];
+			int[] cellArray = cellMembers[neighbor];
+			for (int j=0, n=cellCounts[neighbor]; j < n; j++) {
+				visitor.visit(members[cellArray[j]]);
+			}
+		}
 	}
 
 	/**
-	 * A single cell in the cell grid. Contains the interfaces that are 
-	 * currently in that part of the grid.
+	 * Returns the position of an interface in the order 
+	 * {@link #forEachNearInterface(NetworkInterface, InterfaceVisitor)} 
+	 * visits the near interfaces of another interface, i.e., the index of 
+	 * the neighbor cell combined with the interface's slot in the cell
+	 * @param ni The interface whose near interfaces are visited
+	 * @param near The near interface
+	 * @return The position or -1 if the interface wouldn't be visited
 	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
-		}
-
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
+	@Override
+	public long getVisitOrder(NetworkInterface ni, NetworkInterface near) {
+		int index = indexOf(ni);
+		int other = indexOf(near);
+		if (index < 0 || other < 0) {
+			return -1;
 		}
-
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
+		
+		int offset = cellOf[other] - cellOf[index];
+		for (int i=0; i < neighborOffsets.length; i++) {
+			if (neighborOffsets[i] == offset) {
+				return ((long)i << 32) | slotOf[other];
+			}
 		}
+		return -1;
+	}
 
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
-			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces.toString();
+	/**
+	 * Calls the visitor once for every pair of interfaces that are in the 
+	 * same or neighboring cells. Pairs within a cell are visited from that 
+	 * cell and pairs of neighboring cells only from the cell that precedes 
+	 * the other one (i.e., only the "forward" half of the neighborhood is 
+	 * checked) so that every pair is found only once. Doesn't create any 
+	 * new objects.
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void forEachNearPair(PairVisitor visitor) {
+		for (int cell=0; cell < cellCounts.length; cell++) {
+			int count = cellCounts[cell];
+			if (count == 0) {
+				continue;
+			}
+			int[] cellArray = cellMembers[cell];
+			
+			for (int i=0; i < count; i++) {
+				NetworkInterface ni = members[cellArray[i]];
+				for (int j=i+1; j < count; j++) {
+					visitor.visit(ni, members[cellArray[j]]);
+				}
+				for (int k=0; k < forwardOffsets.length; k++) {
+					int neighbor = cell + forwardOffsets[k];
+					int[] neighborArray = cellMembers[neighbor];
+					for (int j=0, n=cellCounts[neighbor]; j < n; j++) {
+						visitor.visit(ni, members[neighborArray[j]]);
+					}
+				}
+			}
 		}
+	}
 
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
-		}
+	/**
+	 * Returns a string representation of the ConnectivityCells object
+	 * @return a string representation of the ConnectivityCells object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " + 
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
 	}
-	
+
 }
\ No newline at end of file
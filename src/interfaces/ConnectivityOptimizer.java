@@ -4,7 +4,11 @@
  */
 package interfaces;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
 
 import core.NetworkInterface;
 
@@ -12,7 +16,34 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Visitor for the interfaces found by 
+	 * {@link ConnectivityOptimizer#forEachNearInterface(NetworkInterface, 
+	 * InterfaceVisitor)}
+	 */
+	public interface InterfaceVisitor {
+		/**
+		 * Visits a network interface
+		 * @param ni The interface
+		 */
+		public void visit(NetworkInterface ni);
+	}
+
+	/**
+	 * Visitor for the interface pairs found by 
+	 * {@link ConnectivityOptimizer#forEachNearPair(PairVisitor)}
+	 */
+	public interface PairVisitor {
+		/**
+		 * Visits a pair of network interfaces
+		 * @param ni1 The first interface of the pair
+		 * @param ni2 The second interface of the pair
+		 */
+		public void visit(NetworkInterface ni1, NetworkInterface ni2);
+	}
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -30,6 +61,14 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void updateLocation(NetworkInterface ni);
 
+	/**
+	 * Creates a new, empty optimizer with the same cell layout as this one.
+	 * The new optimizer can be used to index the same interfaces separately
+	 * from this optimizer.
+	 * @return The new optimizer
+	 */
+	abstract public ConnectivityOptimizer newInstance();
+
 	/**
 	 * Finds all network interfaces that might be located so that they can be
 	 * connected with the network interface
@@ -45,4 +84,70 @@ abstract public class ConnectivityOptimizer {
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Calls the visitor for all network interfaces that might be located so
+	 * that they can be connected with the network interface (i.e., the same 
+	 * interfaces {@link #getNearInterfaces(NetworkInterface)} returns). 
+	 * Subclasses should override this to find the interfaces without 
+	 * creating new collections. The visitor must not change the locations 
+	 * of the interfaces in the optimizer.
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call for every near interface
+	 */
+	public void forEachNearInterface(NetworkInterface ni, 
+			InterfaceVisitor visitor) {
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			visitor.visit(near);
+		}
+	}
+
+	/**
+	 * Returns the position of an interface in the order 
+	 * {@link #forEachNearInterface(NetworkInterface, InterfaceVisitor)} 
+	 * visits the near interfaces of another interface. Positions of the 
+	 * interfaces near the same interface can be compared with each other 
+	 * as long as the optimizer doesn't change. Subclasses should override 
+	 * this to compute the position without visiting the near interfaces.
+	 * @param ni The interface whose near interfaces are visited
+	 * @param near The near interface
+	 * @return The position or -1 if the interface wouldn't be visited
+	 */
+	public long getVisitOrder(NetworkInterface ni, NetworkInterface near) {
+		long position = 0;
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			if (other == near) {
+				return position;
+			}
+			position++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Calls the visitor once for every (unordered) pair of different 
+	 * interfaces that might be located so that they can be connected with 
+	 * each other. Subclasses should override this with a more efficient 
+	 * implementation. The visitor must not change the locations of the 
+	 * interfaces in the optimizer.
+	 * @param visitor The visitor to call for every pair
+	 */
+	public void forEachNearPair(PairVisitor visitor) {
+		List<NetworkInterface> all = 
+			new ArrayList<NetworkInterface>(getAllInterfaces());
+		IdentityHashMap<NetworkInterface, Integer> indexes = 
+			new IdentityHashMap<NetworkInterface, Integer>();
+		for (int i=0, n=all.size(); i<n; i++) {
+			indexes.put(all.get(i), i);
+		}
+		
+		for (int i=0, n=all.size(); i<n; i++) {
+			for (NetworkInterface near : getNearInterfaces(all.get(i))) {
+				Integer j = indexes.get(near);
+				if (j != null && j > i) {
+					visitor.visit(all.get(i), near);
+				}
+			}
+		}
+	}
 }
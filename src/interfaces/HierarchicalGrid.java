@@ -0,0 +1,641 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import movement.MovementModel;
+import core.DTNSim;
+import core.HostStateStore;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
+
+/**
+ * <P>
+ * Multi-resolution overlay grid that is shared by the interfaces of all
+ * types. The grid has levels whose cell sizes grow in powers of two
+ * (starting from {@link #BASE_CELL_SIZE_S}) and every interface is put to
+ * the finest level whose cells are at least as large as its current
+ * transmit range. Interfaces with very different ranges (e.g., bluetooth
+ * and a long range link) can thus use the same optimizer and neither of
+ * them makes the cells of the other too large or too small.</P>
+ *
+ * <P>Two interfaces can connect only if their distance is at most the
+ * smaller one of their ranges. Hence, when searching for the near
+ * interfaces of an interface, the search radius on each level is the
+ * smaller one of the interface's own range and the level's cell size, and
+ * at most 3x3 cells are checked on each level. Only interfaces of the
+ * same type are returned.</P>
+ *
+ * <P>If the transmit range of an interface changes (e.g., through the
+ * {@link NetworkInterface#RANGE_ID} module communication bus property), the
+ * interface is moved to the matching level on its next location update.
+ * </P>
+ *
+ * <P>The grid is taken into use with the {@link #HIERARCHICAL_GRID_S}
+ * setting. Like {@link ConnectivityGrid}, it does NOT support negative
+ * coordinates.</P>
+ */
+public class HierarchicalGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Should the hierarchical grid be used instead of the per interface type
+	 * connectivity grids -setting id ({@value}). Boolean (true/false)
+	 * variable. Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space.
+	 * Default value is {@link #DEF_HIERARCHICAL_GRID}.
+	 */
+	public static final String HIERARCHICAL_GRID_S = "hierarchicalGrid";
+	/** default value for the hierarchical grid setting ({@value}) */
+	public static final boolean DEF_HIERARCHICAL_GRID = false;
+
+	/**
+	 * Cell size of the finest level of the hierarchical grid -setting id
+	 * ({@value}). Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space.
+	 * Should be about the smallest radio range in use.
+	 * Default value is {@link #DEF_BASE_CELL_SIZE}.
+	 */
+	public static final String BASE_CELL_SIZE_S = "hierarchicalGridCellSize";
+	/** default value for the base cell size ({@value}) */
+	public static final double DEF_BASE_CELL_SIZE = 10;
+
+	/** maximum number of cells on a level; finer levels are not used */
+	private static final int MAX_CELLS_PER_LEVEL = 1 << 22;
+	/** how many interfaces a cell can hold initially */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+	/** how many interfaces the grid can hold initially */
+	private static final int EXPECTED_GRID_INTERFACE_COUNT = 64;
+
+	private static int worldSizeX;
+	private static int worldSizeY;
+	private static double baseCellSize;
+	private static boolean inUse;
+	private static HierarchicalGrid instance;
+
+	/** cell sizes of the levels */
+	private double[] cellSizes;
+	private int[] cols;
+	private int[] rows;
+	/** the finest level in use */
+	private int minLevel;
+	/** the coarsest level (one cell covers the whole world) */
+	private int maxLevel;
+	/** interfaces (grid indexes) in every cell of every level; the cells
+	 * of a level are stored row by row and allocated when first needed */
+	private int[][][] cellMembers;
+	/** number of interfaces in every cell of every level */
+	private int[][] cellCounts;
+	/** number of interfaces on each level */
+	private int[] levelCounts;
+
+	/* per interface data (indexed by grid index) */
+	private NetworkInterface[] members;
+	private int[] typeOf;
+	private int[] levelOf;
+	private int[] cellOf;
+	private int[] slotOf;
+	/** location and range of the interface at the last location update */
+	private double[] xs;
+	private double[] ys;
+	private double[] ranges;
+	private int nrofMembers;
+
+	/** grid indexes of the interfaces by interface address (-1 for the
+	 * interfaces that are not in the grid) */
+	private int[] indexByAddress;
+	/** identifiers of the interface types */
+	private HashMap<String, Integer> typeIds;
+
+	static {
+		DTNSim.registerForReset(HierarchicalGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		instance = null;
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+
+		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+		inUse = s.getBoolean(HIERARCHICAL_GRID_S, DEF_HIERARCHICAL_GRID);
+		baseCellSize = s.getDouble(BASE_CELL_SIZE_S, DEF_BASE_CELL_SIZE);
+		if (baseCellSize <= 0) {
+			throw new SettingsError("Too small value (" + baseCellSize +
+					") for " + World.OPTIMIZATION_SETTINGS_NS +
+					"." + BASE_CELL_SIZE_S);
+		}
+	}
+
+	/**
+	 * Returns true if the hierarchical grid should be used as the
+	 * connectivity optimizer of all interfaces
+	 * @return true if the hierarchical grid is in use
+	 */
+	public static boolean isInUse() {
+		return inUse;
+	}
+
+	/**
+	 * Returns the hierarchical grid shared by all interfaces
+	 * @return the hierarchical grid
+	 */
+	public static HierarchicalGrid getInstance() {
+		if (instance == null) {
+			instance = new HierarchicalGrid();
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new hierarchical grid
+	 */
+	private HierarchicalGrid() {
+		int nrofLevels = 1;
+		double size = baseCellSize;
+		while (size < worldSizeX || size < worldSizeY) {
+			size *= 2;
+			nrofLevels++;
+		}
+
+		this.cellSizes = new double[nrofLevels];
+		this.cols = new int[nrofLevels];
+		this.rows = new int[nrofLevels];
+		this.minLevel = -1;
+		this.maxLevel = nrofLevels - 1;
+		size = baseCellSize;
+		for (int l=0; l < nrofLevels; l++) {
+			cellSizes[l] = size;
+			cols[l] = (int)(worldSizeX / size) + 1;
+			rows[l] = (int)(worldSizeY / size) + 1;
+			if (minLevel < 0 && (long)cols[l] * rows[l] <= MAX_CELLS_PER_LEVEL){
+				minLevel = l;
+			}
+			size *= 2;
+		}
+
+		this.cellMembers = new int[nrofLevels][][];
+		this.cellCounts = new int[nrofLevels][];
+		this.levelCounts = new int[nrofLevels];
+
+		this.members = new NetworkInterface[EXPECTED_GRID_INTERFACE_COUNT];
+		this.typeOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.levelOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.cellOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.slotOf = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		this.xs = new double[EXPECTED_GRID_INTERFACE_COUNT];
+		this.ys = new double[EXPECTED_GRID_INTERFACE_COUNT];
+		this.ranges = new double[EXPECTED_GRID_INTERFACE_COUNT];
+		this.nrofMembers = 0;
+		this.indexByAddress = new int[EXPECTED_GRID_INTERFACE_COUNT];
+		Arrays.fill(indexByAddress, -1);
+		this.typeIds = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Creates a new, empty hierarchical grid with the same levels as this
+	 * grid. Unlike the instance returned by {@link #getInstance()}, the new 
+	 * grid is not shared.
+	 * @return The new grid
+	 */
+	public ConnectivityOptimizer newInstance() {
+		return new HierarchicalGrid();
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (indexOf(ni) >= 0) {
+			return;
+		}
+		if (nrofMembers == members.length) {
+			int newSize = members.length * 2;
+			members = Arrays.copyOf(members, newSize);
+			typeOf = Arrays.copyOf(typeOf, newSize);
+			levelOf = Arrays.copyOf(levelOf, newSize);
+			cellOf = Arrays.copyOf(cellOf, newSize);
+			slotOf = Arrays.copyOf(slotOf, newSize);
+			xs = Arrays.copyOf(xs, newSize);
+			ys = Arrays.copyOf(ys, newSize);
+			ranges = Arrays.copyOf(ranges, newSize);
+		}
+
+		Integer typeId = typeIds.get(ni.getInterfaceType());
+		if (typeId == null) {
+			typeId = typeIds.size();
+			typeIds.put(ni.getInterfaceType(), typeId);
+		}
+
+		int index = nrofMembers++;
+		members[index] = ni;
+		typeOf[index] = typeId;
+		int address = ni.getAddress();
+		if (address >= indexByAddress.length) {
+			int oldSize = indexByAddress.length;
+			indexByAddress = Arrays.copyOf(indexByAddress,
+					Math.max(address + 1, oldSize * 2));
+			Arrays.fill(indexByAddress, oldSize, indexByAddress.length, -1);
+		}
+		indexByAddress[address] = index;
+		setLocation(index, ni);
+		addToCell(index, levelFor(ranges[index]),
+				cellFromCoord(levelFor(ranges[index]), xs[index], ys[index]));
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int index = indexOf(ni);
+		if (index < 0) {
+			return;
+		}
+		indexByAddress[ni.getAddress()] = -1;
+
+		removeFromCell(index);
+		/* move the last interface to the freed grid index */
+		int last = --nrofMembers;
+		if (index != last) {
+			members[index] = members[last];
+			typeOf[index] = typeOf[last];
+			levelOf[index] = levelOf[last];
+			cellOf[index] = cellOf[last];
+			slotOf[index] = slotOf[last];
+			xs[index] = xs[last];
+			ys[index] = ys[last];
+			ranges[index] = ranges[last];
+			cellMembers[levelOf[index]][cellOf[index]][slotOf[index]] = index;
+			indexByAddress[members[index].getAddress()] = index;
+		}
+		members[last] = null;
+	}
+
+	/**
+	 * Returns the grid index of an interface
+	 * @param ni The interface
+	 * @return The grid index or -1 if the interface is not in the grid
+	 */
+	private int indexOf(NetworkInterface ni) {
+		int address = ni.getAddress();
+		return (address < indexByAddress.length ?
+				indexByAddress[address] : -1);
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Updates the interface's location and level (if its range has changed)
+	 * in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int index = indexByAddress[ni.getAddress()];
+		setLocation(index, ni);
+
+		int level = levelOf[index];
+		if (ranges[index] > cellSizes[level] ||
+				(level > minLevel && ranges[index] <= cellSizes[level-1])) {
+			level = levelFor(ranges[index]);
+		}
+		int cell = cellFromCoord(level, xs[index], ys[index]);
+
+		if (level != levelOf[index] || cell != cellOf[index]) {
+			removeFromCell(index);
+			addToCell(index, level, cell);
+		}
+	}
+
+	/**
+	 * Stores the current location and range of an interface
+	 * @param index Grid index of the interface
+	 * @param ni The interface
+	 */
+	private void setLocation(int index, NetworkInterface ni) {
+		int address = ni.getHost().getAddress();
+		xs[index] = HostStateStore.getX(address);
+		ys[index] = HostStateStore.getY(address);
+		ranges[index] = ni.getTransmitRange();
+	}
+
+	/**
+	 * Returns the finest level whose cells are at least as large as the
+	 * range (or the coarsest level if there is no such level)
+	 * @param range The range
+	 * @return The level
+	 */
+	private int levelFor(double range) {
+		int level = minLevel;
+		while (level < maxLevel && cellSizes[level] < range) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the index of the cell of a level where the coordinates are
+	 * @param level The level
+	 * @param x The X coordinate
+	 * @param y The Y coordinate
+	 * @return The cell index
+	 */
+	private int cellFromCoord(int level, double x, double y) {
+		return row(level, y) * cols[level] + col(level, x);
+	}
+
+	/**
+	 * Returns the column of a level where an X coordinate is
+	 * (limited to the world's area)
+	 */
+	private int col(int level, double x) {
+		int col = (int)(x / cellSizes[level]);
+		return Math.max(0, Math.min(col, cols[level] - 1));
+	}
+
+	/**
+	 * Returns the row of a level where an Y coordinate is
+	 * (limited to the world's area)
+	 */
+	private int row(int level, double y) {
+		int row = (int)(y / cellSizes[level]);
+		return Math.max(0, Math.min(row, rows[level] - 1));
+	}
+
+	/**
+	 * Adds an interface to the end of a cell's member array
+	 * @param index Grid index of the interface
+	 * @param level Level of the cell
+	 * @param cell Index of the cell
+	 */
+	private void addToCell(int index, int level, int cell) {
+		if (cellMembers[level] == null) {
+			cellMembers[level] = new int[cols[level] * rows[level]][];
+			cellCounts[level] = new int[cols[level] * rows[level]];
+		}
+		int[] cellArray = cellMembers[level][cell];
+		int count = cellCounts[level][cell];
+
+		if (cellArray == null) {
+			cellArray = new int[EXPECTED_INTERFACE_COUNT];
+			cellMembers[level][cell] = cellArray;
+		}
+		else if (count == cellArray.length) {
+			cellArray = Arrays.copyOf(cellArray, count * 2);
+			cellMembers[level][cell] = cellArray;
+		}
+
+		cellArray[count] = index;
+		cellCounts[level][cell] = count + 1;
+		levelCounts[level]++;
+		levelOf[index] = level;
+		cellOf[index] = cell;
+		slotOf[index] = count;
+	}
+
+	/**
+	 * Removes an interface from its cell by moving the last interface of
+	 * the cell to its slot
+	 * @param index Grid index of the interface
+	 */
+	private void removeFromCell(int index) {
+		int level = levelOf[index];
+		int cell = cellOf[index];
+		int slot = slotOf[index];
+		int[] cellArray = cellMembers[level][cell];
+		int last = --cellCounts[level][cell];
+		levelCounts[level]--;
+
+		assert cellArray[slot] == index : "interface " + members[index] +
+			" not found from cell " + cell + " of level " + level;
+
+		if (slot != last) {
+			int moved = cellArray[last];
+			cellArray[slot] = moved;
+			slotOf[moved] = slot;
+		}
+	}
+
+	/**
+	 * Returns all interfaces in the grid (of all types)
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return new ArrayList<NetworkInterface>(
+				Arrays.asList(members).subList(0, nrofMembers));
+	}
+
+	/**
+	 * Returns all interfaces of the same type that are close enough to the
+	 * given interface to be possibly within range of it (including the
+	 * interface itself)
+	 * @param ni The interface whose near interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		final ArrayList<NetworkInterface> niList =
+			new ArrayList<NetworkInterface>();
+		forEachNearInterface(ni, new InterfaceVisitor() {
+			public void visit(NetworkInterface near) {
+				niList.add(near);
+			}
+		});
+		return niList;
+	}
+
+	/**
+	 * Calls the visitor for all interfaces of the same type that are close
+	 * enough to the given interface to be possibly within range of it
+	 * (including the interface itself). The location and range of the
+	 * interface are the ones of its last location update. Doesn't create
+	 * any new objects.
+	 * @param ni The interface whose near interfaces are visited
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		int index = indexOf(ni);
+		if (index < 0) {
+			return;
+		}
+
+		for (int l = minLevel; l <= maxLevel; l++) {
+			if (levelCounts[l] == 0) {
+				continue;
+			}
+			double radius = Math.min(ranges[index], cellSizes[l]);
+			visitArea(l, typeOf[index], xs[index], ys[index], radius, -1,
+					null, visitor);
+		}
+	}
+
+	/**
+	 * Returns the position of an interface in the order
+	 * {@link #forEachNearInterface(NetworkInterface, InterfaceVisitor)}
+	 * visits the near interfaces of another interface, i.e., the level,
+	 * cell and slot of the interface combined
+	 * @param ni The interface whose near interfaces are visited
+	 * @param near The near interface
+	 * @return The position or -1 if the interface wouldn't be visited
+	 */
+	@Override
+	public long getVisitOrder(NetworkInterface ni, NetworkInterface near) {
+		int index = indexOf(ni);
+		int other = indexOf(near);
+		if (index < 0 || other < 0 || typeOf[other] != typeOf[index]) {
+			return -1;
+		}
+
+		int l = levelOf[other];
+		double radius = Math.min(ranges[index], cellSizes[l]);
+		int col = cellOf[other] % cols[l];
+		int row = cellOf[other] / cols[l];
+		if (col < col(l, xs[index] - radius) ||
+				col > col(l, xs[index] + radius) ||
+				row < row(l, ys[index] - radius) ||
+				row > row(l, ys[index] + radius)) {
+			return -1;
+		}
+		/* cells of a level are visited row by row, i.e., in index order,
+		 * and a level has at most MAX_CELLS_PER_LEVEL (2^22) cells */
+		return ((long)l << 54) | ((long)cellOf[other] << 32) | slotOf[other];
+	}
+
+	/**
+	 * Calls the visitor once for every pair of interfaces of the same type
+	 * that are close enough to be possibly within range of each other.
+	 * Pairs on the same level are found by checking the same cell and the
+	 * "forward" half of the neighboring cells. Pairs on different levels are
+	 * found from the interface on the finer level by checking the cells
+	 * within its range on the coarser levels. Doesn't create any new objects.
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void forEachNearPair(PairVisitor visitor) {
+		for (int i=0; i < nrofMembers; i++) {
+			int level = levelOf[i];
+			int type = typeOf[i];
+			NetworkInterface ni = members[i];
+
+			/* the same cell (only the interfaces after this one) */
+			int[] cellArray = cellMembers[level][cellOf[i]];
+			for (int s = slotOf[i] + 1, n = cellCounts[level][cellOf[i]];
+					s < n; s++) {
+				visitPair(ni, type, cellArray[s], visitor);
+			}
+
+			/* forward half of the neighbor cells on the same level */
+			int col = cellOf[i] % cols[level];
+			int row = cellOf[i] / cols[level];
+			visitCellPairs(ni, type, level, col + 1, row, visitor);
+			visitCellPairs(ni, type, level, col - 1, row + 1, visitor);
+			visitCellPairs(ni, type, level, col, row + 1, visitor);
+			visitCellPairs(ni, type, level, col + 1, row + 1, visitor);
+
+			/* coarser levels */
+			double radius = Math.min(ranges[i], cellSizes[level]);
+			for (int l = level + 1; l <= maxLevel; l++) {
+				if (levelCounts[l] > 0) {
+					visitArea(l, type, xs[i], ys[i], radius, i, visitor, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits the interfaces of one cell as pairs with the given interface
+	 */
+	private void visitCellPairs(NetworkInterface ni, int type, int level,
+			int col, int row, PairVisitor visitor) {
+		if (col < 0 || col >= cols[level] || row >= rows[level]) {
+			return;
+		}
+		int cell = row * cols[level] + col;
+		int[] cellArray = cellMembers[level][cell];
+		for (int s=0, n = cellCounts[level][cell]; s < n; s++) {
+			visitPair(ni, type, cellArray[s], visitor);
+		}
+	}
+
+	/**
+	 * Visits a pair if the other interface is of the given type
+	 */
+	private void visitPair(NetworkInterface ni, int type, int other,
+			PairVisitor visitor) {
+		if (typeOf[other] == type) {
+			visitor.visit(ni, members[other]);
+		}
+	}
+
+	/**
+	 * Visits the interfaces of the given type in all cells of a level that
+	 * intersect with the square around a location. Either an interface or a
+	 * pair visitor is called.
+	 * @param level The level
+	 * @param type The interface type
+	 * @param x The X coordinate of the location
+	 * @param y The Y coordinate of the location
+	 * @param radius Half of the square's edge length
+	 * @param index Grid index of the first interface of pairs
+	 * @param pairVisitor The pair visitor (or null)
+	 * @param visitor The interface visitor (or null)
+	 */
+	private void visitArea(int level, int type, double x, double y,
+			double radius, int index, PairVisitor pairVisitor,
+			InterfaceVisitor visitor) {
+		int col1 = col(level, x - radius);
+		int col2 = col(level, x + radius);
+		int row1 = row(level, y - radius);
+		int row2 = row(level, y + radius);
+		int[][] levelCells = cellMembers[level];
+		int[] levelCellCounts = cellCounts[level];
+
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				int cell = row * cols[level] + col;
+				int[] cellArray = levelCells[cell];
+				for (int s=0, n = levelCellCounts[cell]; s < n; s++) {
+					int other = cellArray[s];
+					if (typeOf[other] != type) {
+						continue;
+					}
+					if (pairVisitor != null) {
+						pairVisitor.visit(members[index], members[other]);
+					}
+					else {
+						visitor.visit(members[other]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a string representation of the object
+	 * @return a string representation of the object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + (maxLevel-minLevel+1) +
+			" levels, cell sizes " + cellSizes[minLevel] + "-" +
+			cellSizes[maxLevel];
+	}
+}
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.CBRConnection;
 import core.Connection;
 import core.NetworkInterface;
@@ -16,6 +14,7 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
 	
 	/**
 	 * Reads the interface settings from the Settings file
@@ -60,6 +59,19 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Tries to connect this host to another host that the detection pass
+	 * found within range, without checking the range again
+	 * @param anotherInterface The interface to connect to
+	 */
+	@Override
+	protected void connectDetected(NetworkInterface anotherInterface) {
+		if (isScanning()
+				&& anotherInterface.getHost().isRadioActive()) {
+			createConnection(anotherInterface);
+		}
+	}
+
 	/**
 	 * Updates the state of current connections (i.e. tears down connections
 	 * that are out of range and creates new ones).
@@ -87,11 +99,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		connectToNearInterfaces();
 	}
 
 	/** 
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import input.ContactPlanReader;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import util.Tuple;
+
+import core.Coord;
+import core.DTNSim;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * <P>Movement model that replays the movement recorded in a contact plan
+ * (see {@link report.ContactPlanReport}). The hosts follow the same
+ * waypoints, with the same speeds and at the same times as in the recording
+ * run, so the routers that use the locations of the hosts (e.g., the geo
+ * routers) can be run on top of the contact plan without simulating the
+ * original movement model again. Hosts are matched by their addresses, so
+ * the groups must be created in the same order and sizes as in the
+ * recording run.</P>
+ *
+ * <P>The waypoints that the host moved through without stopping are
+ * combined into one path and the paths start at the recorded times. This
+ * reproduces the recorded movement when the update interval, movement
+ * warm up time and the movement activeness settings are the same as in the
+ * recording run. Contact prediction sub-steps are not reproduced.</P>
+ */
+public class ContactPlanMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
+	/** Namespace for settings */
+	public static final String CONTACT_PLAN_MOVEMENT_NS =
+		"ContactPlanMovement";
+	/** contact plan file's path -setting id ({@value})*/
+	public static final String PLAN_FILE_S = "file";
+	/** largest time difference (seconds) of a continuous move ({@value}) */
+	public static final double TIME_EPSILON = 0.001;
+
+	/** movements of all the hosts in the plan, by host address */
+	private static Map<Integer, Tuple<Coord, List<double[]>>> movements;
+
+	/** the very first location of the node */
+	private Coord initialLocation;
+	/** queue of path-start-time, path tuples */
+	private Queue<Tuple<Double, Path>> pathQueue;
+
+	static {
+		DTNSim.registerForReset(ContactPlanMovement.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor for the prototype. Run once per group.
+	 * @param settings Where settings are read from
+	 */
+	public ContactPlanMovement(Settings settings) {
+		super(settings);
+
+		if (movements == null) {
+			Settings s = new Settings(CONTACT_PLAN_MOVEMENT_NS);
+			File planFile = new File(s.valueFillString(
+					s.getSetting(PLAN_FILE_S)));
+			movements = new ContactPlanReader(planFile).readMovements();
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param cpm The movement model to copy from
+	 */
+	protected ContactPlanMovement(ContactPlanMovement cpm) {
+		super(cpm);
+	}
+
+	/**
+	 * Returns the recorded initial location of the host. The paths of the
+	 * host are read from the plan here (the host must be set before this
+	 * is called).
+	 */
+	@Override
+	public Coord getInitialLocation() {
+		Tuple<Coord, List<double[]>> movement =
+			movements.get(getHost().getAddress());
+		if (movement == null) {
+			throw new SimError("No movement for host " + getHost() +
+					" in the contact plan");
+		}
+
+		this.initialLocation = movement.getKey();
+		if (this.initialLocation == null) {
+			/* initial location is where the first path starts */
+			double[] first = movement.getValue().get(0);
+			this.initialLocation = new Coord(first[1], first[2]);
+		}
+		createPaths(movement.getValue());
+
+		return this.initialLocation.clone();
+	}
+
+	/**
+	 * Combines the recorded destinations to paths that start from the
+	 * initial location. A destination continues the previous path if it was
+	 * received before the host had arrived to the previous destination.
+	 * @param destinations The destinations (time, x, y, speed) in time order
+	 */
+	private void createPaths(List<double[]> destinations) {
+		this.pathQueue = new LinkedList<Tuple<Double, Path>>();
+		Path path = null;
+		Coord location = this.initialLocation;
+		double arrival = 0;
+
+		for (double[] d : destinations) {
+			Coord dest = new Coord(d[1], d[2]);
+			double speed = d[3];
+			if (path == null || d[0] > arrival + TIME_EPSILON) {
+				path = new Path();
+				pathQueue.add(new Tuple<Double, Path>(d[0], path));
+				arrival = d[0];
+			}
+			path.addWaypoint(dest, speed);
+
+			double distance = location.distance(dest);
+			if (distance > 0) {
+				arrival = (speed > 0 ? arrival + distance / speed :
+					Double.MAX_VALUE);
+			}
+			location = dest;
+		}
+	}
+
+	/**
+	 * Returns the next recorded path if it is the time for it
+	 * @return The next path or null if it's not the time for it yet
+	 */
+	@Override
+	public Path getPath() {
+		if (pathQueue.size() == 0 ||
+				SimClock.getTime() < pathQueue.element().getKey()) {
+			return null;
+		}
+		return pathQueue.remove().getValue();
+	}
+
+	/**
+	 * Returns the start time of the next recorded path
+	 * @return The start time of the next path or Double.MAX_VALUE if there
+	 * are no more paths
+	 */
+	@Override
+	public double nextPathAvailable() {
+		if (pathQueue == null || pathQueue.size() == 0) {
+			return Double.MAX_VALUE;
+		}
+		return pathQueue.element().getKey();
+	}
+
+	@Override
+	public ContactPlanMovement replicate() {
+		return new ContactPlanMovement(this);
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		movements = null;
+	}
+}
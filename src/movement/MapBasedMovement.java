@@ -4,6 +4,7 @@
  */
 package movement;
 
+import input.AssetCache;
 import input.WKTMapReader;
 
 import java.io.File;
@@ -29,6 +30,8 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
+
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -60,10 +63,8 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	
 	/** how many map files are read */
 	private int nrofMapFilesRead = 0;
-	/** map cache -- in case last mm read the same map, use it without loading*/
-	private static SimMap cachedMap = null;
-	/** names of the previously cached map's files (for hit comparison) */
-	private static List<String> cachedMapFiles = null;
+	/** kind of the map assets in the asset cache ({@value}) */
+	private static final String MAP_ASSET = "map";
 	
 	/**
 	 * Creates a new MapBasedMovement based on a Settings object's settings.
@@ -259,53 +260,59 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	
 	/**
 	 * Reads a sim map from location set to the settings, mirrors the map and
-	 * moves its upper left corner to origo.
-	 * @return A new SimMap based on the settings
+	 * moves its upper left corner to origo. The map is read only once and 
+	 * the same map is shared by all movement models (and runs) that use the 
+	 * same map files.
+	 * @return A SimMap based on the settings
 	 */
 	private SimMap readMap() {
 		SimMap simMap;
 		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
-		WKTMapReader r = new WKTMapReader(true);
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		final File[] mapFiles = new File[nrofMapFiles];
 		
-		if (cachedMap == null) {
-			cachedMapFiles = new ArrayList<String>(); // no cache present
-		}
-		else { // something in cache
-			// check out if previously asked map was asked again
-			SimMap cached = checkCache(settings);
-			if (cached != null) {
-				nrofMapFilesRead = cachedMapFiles.size();
-				return cached; // we had right map cached -> return it
-			}
-			else { // no hit -> reset cache
-				cachedMapFiles = new ArrayList<String>();
-				cachedMap = null;
-			}
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			mapFiles[i-1] = new File(settings.getSetting(FILE_S + i));
 		}
-
+		
 		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
-
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
-			}
-			
-			nrofMapFilesRead = nrofMapFiles;
+			simMap = AssetCache.getShared().get(
+					AssetCache.key(MAP_ASSET, "", mapFiles),
+					new AssetCache.Loader<SimMap>() {
+				public SimMap load() throws IOException {
+					return loadMap(mapFiles);
+				}
+			});
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
-
-		simMap = r.getMap();
+		
+		nrofMapFilesRead = nrofMapFiles;
+		checkCoordValidity(simMap.getNodes());
+		return simMap;
+	}
+	
+	/**
+	 * Reads a sim map from the given files, checks that it is connected,
+	 * mirrors the map and moves its upper left corner to origo
+	 * @param mapFiles The map files (the index of the file in the array
+	 * + 1 is the type of the map nodes read from that file)
+	 * @return A new SimMap
+	 * @throws IOException if some map file can't be read
+	 */
+	private SimMap loadMap(File[] mapFiles) throws IOException {
+		WKTMapReader r = new WKTMapReader(true);
+		for (int i = 1; i <= mapFiles.length; i++ ) {
+			r.addPaths(mapFiles[i-1], i);
+		}
+		
+		SimMap simMap = r.getMap();
 		checkMapConnectedness(simMap.getNodes());
 		// mirrors the map (y' = -y) and moves its upper left corner to origo
 		simMap.mirror();
 		Coord offset = simMap.getMinBound().clone();		
 		simMap.translate(-offset.getX(), -offset.getY());
-		checkCoordValidity(simMap.getNodes());
 		
-		cachedMap = simMap;
 		return simMap;
 	}
 	
@@ -326,13 +333,13 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		
 		firstNode = nodes.get(0);
 		
+		/* nodes are marked visited when they are queued */
 		visited.add(firstNode);
-		unvisited.addAll(firstNode.getNeighbors());
+		unvisited.add(firstNode);
 		
 		while ((next = unvisited.poll()) != null) {
-			visited.add(next);
 			for (MapNode n: next.getNeighbors()) {
-				if (!visited.contains(n) && ! unvisited.contains(n)) {
+				if (visited.add(n)) {
 					unvisited.add(n);
 				}
 			}
@@ -372,30 +379,6 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		}
 	}
 	
-	/**
-	 * Checks map cache if the requested map file(s) match to the cached
-	 * sim map
-	 * @param settings The Settings where map file names are found 
-	 * @return A cached map or null if the cached map didn't match
-	 */
-	private SimMap checkCache(Settings settings) {
-		int nrofMapFiles = settings.getInt(NROF_FILES_S);
-
-		if (nrofMapFiles != cachedMapFiles.size() || cachedMap == null) {
-			return null; // wrong number of files
-		}
-		
-		for (int i = 1; i <= nrofMapFiles; i++ ) {
-			String pathFile = settings.getSetting(FILE_S + i);
-			if (!pathFile.equals(cachedMapFiles.get(i-1))) {
-				return null;	// found wrong file name
-			}
-		}
-		
-		// all files matched -> return cached map
-		return cachedMap;
-	}
-	
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -4,10 +4,12 @@
  */
 package movement.map;
 
+import input.AssetCache;
 import input.WKTReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -22,7 +24,9 @@ import core.SettingsError;
 /**
  * Handler for points of interest data.
  */
-public class PointsOfInterest {
+public class PointsOfInterest implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** Points Of Interest settings namespace ({@value})*/
 	public static final String POI_NS = "PointsOfInterest";
 	/** Points Of Interest file path -prefix id ({@value})*/
@@ -38,6 +42,9 @@ public class PointsOfInterest {
 	 *  <CODE>1-sum</CODE>.
 	 */
 	public static final String POI_SELECT_S = "pois";
+	/** kind of the POI assets in the asset cache ({@value}) */
+	private static final String POI_ASSET = "poi";
+	
 	/** map whose points all POIs are */
 	private SimMap map;
 	/** map node types that are OK to visit */
@@ -175,13 +182,12 @@ public class PointsOfInterest {
 	private List<MapNode> readPoisOf(int index, Coord offset) {
 		List<MapNode> nodes = new ArrayList<MapNode>();
 		Settings fileSettings = new Settings(POI_NS);
-		WKTReader reader = new WKTReader();
 		
 		File poiFile = null;
 		List<Coord> coords = null;
 		try {
 			poiFile = new File(fileSettings.getSetting(POI_FILE_S + index));
-			coords = reader.readPoints(poiFile);
+			coords = readPoints(poiFile);
 		}
 		catch (IOException ioe){
 			throw new SettingsError("Couldn't read POI-data from file '" + 
@@ -194,7 +200,8 @@ public class PointsOfInterest {
 			throw new SettingsError("Read a POI group of size 0 from "+poiFile);
 		}
 		
-		for (Coord c : coords) {
+		for (Coord poi : coords) {
+			Coord c = poi.clone(); // the read coordinates are shared
 			if (map.isMirrored()) { // mirror POIs if map data is also mirrored
 				c.setLocation(c.getX(), -c.getY()); // flip around X axis
 			}
@@ -220,4 +227,22 @@ public class PointsOfInterest {
 				
 		return nodes;
 	}
+	
+	/**
+	 * Reads the points of a POI file. The points of every file are read only
+	 * once and shared by all POI groups and runs that use the file, so they
+	 * must not be modified.
+	 * @param poiFile The POI file
+	 * @return The points in the file
+	 * @throws IOException if the file can't be read
+	 */
+	private List<Coord> readPoints(final File poiFile) throws IOException {
+		return AssetCache.getShared().get(
+				AssetCache.key(POI_ASSET, "", poiFile),
+				new AssetCache.Loader<List<Coord>>() {
+			public List<Coord> load() throws IOException {
+				return new WKTReader().readPoints(poiFile);
+			}
+		});
+	}
 }
@@ -26,9 +26,6 @@ public class SimMap implements Serializable {
 	/** is this map data mirrored after reading */
 	private boolean isMirrored;
 	
-	/** is re-hash needed before using hash mode (some coordinates changed) */
-	private boolean needsRehash = false;
-	
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
 		this.nodes = new ArrayList<MapNode>(nodes.values());
@@ -52,13 +49,6 @@ public class SimMap implements Serializable {
 	 * @return The map node in that location or null if it doesn't exist
 	 */
 	public MapNode getNodeByCoord(Coord c) {
-		if (needsRehash) { // some coordinates have changed after creating hash
-			nodesMap.clear();
-			for (MapNode node : getNodes()) {
-				nodesMap.put(node.getLocation(), node); // re-hash
-			}
-		}
-	
 		return nodesMap.get(c);
 	}
 	
@@ -110,7 +100,7 @@ public class SimMap implements Serializable {
 		maxBound.translate(dx, dy);
 		offset.translate(dx, dy);
 		
-		needsRehash = true;
+		rehash();
 	}
 	
 	/**
@@ -126,7 +116,18 @@ public class SimMap implements Serializable {
 		}
 		setBounds();
 		this.isMirrored = true;
-		needsRehash = true;
+		rehash();
+	}
+	
+	/**
+	 * Re-hashes the nodes by their (changed) coordinates. Re-hashing is done
+	 * right after the changes so that the map can be read concurrently.
+	 */
+	private void rehash() {
+		nodesMap.clear();
+		for (MapNode node : nodes) {
+			nodesMap.put(node.getLocation(), node);
+		}
 	}
 	
 	/**
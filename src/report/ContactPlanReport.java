@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.ContactPlanReader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.SimError;
+import core.UpdateListener;
+
+/**
+ * <P>Records the connectivity and movement of a simulation run as a binary
+ * contact plan (see {@link ContactPlanReader} for the format). The plan can
+ * be replayed in later runs as an external events file (with
+ * <CODE>Scenario.simulateConnections = false</CODE>) and, for routers
+ * that need the locations of the hosts, with
+ * {@link movement.ContactPlanMovement}, so that only the routing is
+ * simulated again.</P>
+ *
+ * <P>The output file name should end with
+ * {@value input.ContactPlanReader#CONTACT_PLAN_EXT} (set with the
+ * <CODE>output</CODE> setting) for the events queue to recognize it.
+ * The plan should be recorded with a single movement thread, because the
+ * initial locations are read when the hosts get their first destinations.
+ * This report ignores the warm up settings.</P>
+ */
+public class ContactPlanReport extends Report implements ConnectionListener,
+	MovementListener, UpdateListener {
+	private DataOutputStream planOut;
+	private Map<String, Short> interfaceTypes;
+	private Set<Integer> locatedHosts;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactPlanReport() {
+		this.interfaceTypes = new HashMap<String, Short>();
+		this.locatedHosts = new HashSet<Integer>();
+		try {
+			this.planOut = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(getOutFileName())));
+			planOut.writeInt(ContactPlanReader.MAGIC);
+			planOut.writeInt(ContactPlanReader.VERSION);
+		} catch (IOException e) {
+			throw new SimError("Couldn't open file '" + getOutFileName() +
+					"' for report output\n" + e.getMessage(), e);
+		}
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		writeLink(ContactPlanReader.LINK_UP, host1, host2, true);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		writeLink(ContactPlanReader.LINK_DOWN, host1, host2, false);
+	}
+
+	public void newDestination(DTNHost host, Coord destination, double speed) {
+		try {
+			writeLocation(host, host.getLocation());
+			planOut.writeByte(ContactPlanReader.NEW_DESTINATION);
+			planOut.writeDouble(getSimTime());
+			planOut.writeInt(host.getAddress());
+			planOut.writeDouble(destination.getX());
+			planOut.writeDouble(destination.getY());
+			planOut.writeDouble(speed);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		try {
+			writeLocation(host, location);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Records the locations of the hosts that haven't moved (so far)
+	 */
+	public void updated(List<? extends DTNHost> hosts) {
+		if (locatedHosts.size() == hosts.size()) {
+			return;
+		}
+		try {
+			for (DTNHost h : hosts) {
+				writeLocation(h, h.getLocation());
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Writes the initial location of a host if it hasn't been written yet
+	 * @param host The host
+	 * @param location Location of the host
+	 * @throws IOException if writing failed
+	 */
+	private void writeLocation(DTNHost host, Coord location)
+			throws IOException {
+		if (!locatedHosts.add(host.getAddress())) {
+			return;
+		}
+		planOut.writeByte(ContactPlanReader.INITIAL_LOCATION);
+		planOut.writeInt(host.getAddress());
+		planOut.writeDouble(location.getX());
+		planOut.writeDouble(location.getY());
+	}
+
+	/**
+	 * Writes a link up or down record
+	 * @param type Type of the record
+	 * @param host1 Host whose interface created or removed the connection
+	 * @param host2 The other host
+	 * @param up State of the connection when the listeners are notified
+	 */
+	private void writeLink(byte type, DTNHost host1, DTNHost host2,
+			boolean up) {
+		try {
+			short typeId = getInterfaceTypeId(host1, host2, up);
+			planOut.writeByte(type);
+			planOut.writeDouble(getSimTime());
+			planOut.writeInt(host1.getAddress());
+			planOut.writeInt(host2.getAddress());
+			planOut.writeShort(typeId);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the id of the interface type of the connection between the
+	 * hosts (and writes the type's record when the type is seen first time)
+	 * @param host1 Host whose interface has the connection
+	 * @param host2 The other host
+	 * @param up State of the connection
+	 * @return The id of the interface type or -1 if the connection
+	 * wasn't found
+	 * @throws IOException if writing failed
+	 */
+	private short getInterfaceTypeId(DTNHost host1, DTNHost host2,
+			boolean up) throws IOException {
+		String interfaceType = null;
+		for (NetworkInterface ni : host1.getInterfaces()) {
+			List<Connection> cons = ni.getConnections();
+			/* a new connection is the last one of its interface */
+			for (int i = (up ? cons.size() - 1 : 0); i < cons.size(); i++) {
+				Connection c = cons.get(i);
+				if (c.isUp() == up && c.getOtherNode(host1) == host2) {
+					interfaceType = ni.getInterfaceType();
+				}
+			}
+		}
+		if (interfaceType == null) {
+			return -1;
+		}
+
+		Short id = interfaceTypes.get(interfaceType);
+		if (id == null) {
+			id = (short)interfaceTypes.size();
+			interfaceTypes.put(interfaceType, id);
+			planOut.writeByte(ContactPlanReader.INTERFACE_TYPE);
+			planOut.writeShort(id);
+			planOut.writeUTF(interfaceType);
+		}
+		return id;
+	}
+
+	@Override
+	public void done() {
+		try {
+			planOut.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		super.done();
+	}
+}
@@ -6,6 +6,7 @@ package report;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +18,7 @@ import core.Message;
 import core.GeoMessage;
 import core.MessageListener;
 import core.GeoMessageListener;
+import core.TimingWheel;
 import core.UpdateListener;
 
 /**
@@ -27,7 +29,8 @@ import core.UpdateListener;
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
  */
-public class GMStatsReport extends Report implements MessageListener, GeoMessageListener, UpdateListener {
+public class GMStatsReport extends Report implements MessageListener, GeoMessageListener, UpdateListener,
+	TimingWheel.Listener {
 	
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
@@ -53,9 +56,11 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 	private List<Double> geoMsgBufferTime;
 	private List<Double> geoRtt; // round trip times
 	private Map<String, List<GeoDTNHost>> geoDestination;
-	private Map<String, Double> ttlTable;
+	/** expiry timers of the existing geomessages (by ID) */
+	private TimingWheel ttlWheel;
 	private List<GeoMessage> createdGeoMessages;
-	private List<GeoMessage> existedGeoMessages;
+	/** geomessages whose TTL hasn't expired yet (by ID) */
+	private Map<String, GeoMessage> existedGeoMessages;
 	
 	private int nrofGeoDropped;
 	private int nrofGeoRemoved;
@@ -99,9 +104,10 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 		this.geoHopCounts = new ArrayList<Integer>();
 		this.geoRtt = new ArrayList<Double>();
 		this.geoDestination = new HashMap<String, List<GeoDTNHost>>();
-		this.ttlTable = new HashMap<String, Double>();
+		this.ttlWheel = new TimingWheel(TimingWheel.EXPIRY_RESOLUTION,
+				getSimTime());
 		this.createdGeoMessages = new ArrayList<GeoMessage>();
-		this.existedGeoMessages = new ArrayList<GeoMessage>();
+		this.existedGeoMessages = new LinkedHashMap<String, GeoMessage>();
 		
 		this.nrofGeoDropped = 0;
 		this.nrofGeoRemoved = 0;
@@ -266,10 +272,11 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 		List <GeoDTNHost> Nodes = new ArrayList<GeoDTNHost>();
 		this.geoDestination.put(temp, Nodes);
 		this.createdGeoMessages.add(m.replicate());
-		this.existedGeoMessages.add(m.replicate());
+		this.existedGeoMessages.put(temp, m.replicate());
 		
-		double time = this.getSimTime() + (60.0 * m.getTtl()); //ttl returns as minutes, but simTime is based on seconds
-		this.ttlTable.put(temp, time);
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			this.ttlWheel.schedule(m.getExpiryTime(), this, temp);
+		}
 		
 	}
 	
@@ -302,14 +309,14 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 		List<GeoDTNHost> Hosts = GeoSimScenario.getInstance().getHosts();
 		for(int i=0; i<Hosts.size(); i++)
 		{
-			for(int j=0; j<existedGeoMessages.size(); j++)
+			for(GeoMessage gm : existedGeoMessages.values())
 			{
-				for(Cast getTo : existedGeoMessages.get(j).getTo()) {
-					Boolean check = getTo.checkThePoint(Hosts.get(i).getLocation());
+				for(Cast getTo : gm.getTo()) {
+					Boolean check = getTo.checkThePoint(Hosts.get(i));
 					if (check)
 					{
 						Boolean existed = false;
-						List<GeoDTNHost> Destinations = this.geoDestination.get(existedGeoMessages.get(j).getId());
+						List<GeoDTNHost> Destinations = this.geoDestination.get(gm.getId());
 						for(int k=0; k<Destinations.size(); k++)
 						{
 							if(Destinations.get(k).toString() == Hosts.get(i).toString())
@@ -317,10 +324,10 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 								existed = true;
 							}
 						}
-						if (!existed)// && (this.getSimTime() <= (this.ttlTable.get(existedGeoMessages.get(j).toString())-(1200.0)))) //:D
+						if (!existed)// && (this.getSimTime() <= (this.ttlTable.get(gm.toString())-(1200.0)))) //:D
 						{
 							Destinations.add(Hosts.get(i));
-							this.geoDestination.put(existedGeoMessages.get(j).getId(), Destinations);
+							this.geoDestination.put(gm.getId(), Destinations);
 						}
 					}
 				}
@@ -328,19 +335,15 @@ public class GMStatsReport extends Report implements MessageListener, GeoMessage
 		}
 	}
 
+	/**
+	 * Forgets the geomessages whose TTL has expired
+	 */
 	private void dropExpired() {
-		for (Map.Entry<String, Double> entry : ttlTable.entrySet()) {
-		    String key = entry.getKey();
-		    double value = entry.getValue();
-		    if (value <= this.getSimTime()){
-		    	for (int i = 0; i < existedGeoMessages.size(); i++) {
-		    		if (key == existedGeoMessages.get(i).getId()){
-		    		existedGeoMessages.remove(i);
-		    		}
-		    	}
-		    }
-		}
-		
+		this.ttlWheel.advance(getSimTime());
+	}
+
+	public void timerExpired(Object key) {
+		this.existedGeoMessages.remove(key);
 	}
 
 	@Override
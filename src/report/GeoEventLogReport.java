@@ -112,7 +112,7 @@ public class GeoEventLogReport extends Report
 		else {
 			boolean flag = false;
 			for(Cast getTo : m.getTo()) {
-				flag = flag || getTo.checkThePoint(to.getLocation()) ;
+				flag = flag || getTo.checkThePoint(to) ;
 			}
 			if(flag)
 				extra = MESSAGE_TRANS_DELIVERED_AGAIN;
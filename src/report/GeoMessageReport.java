@@ -62,7 +62,7 @@ public class GeoMessageReport extends Report implements MessageListener, GeoMess
 					+ format(getSimTime()));
 		} else {
 			for(Cast getTo : m.getTo()) {
-				if (getTo.checkThePoint(to.getLocation())) { 
+				if (getTo.checkThePoint(to)) { 
 					write(m.getId() + " " 
 							+ format(m.getCreationTime()) + " "  
 							+ format(getSimTime()) + " duplicate");
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,6 +27,7 @@ import core.Message;
 import core.GeoMessage;
 import core.MessageListener;
 import core.GeoMessageListener;
+import core.TimingWheel;
 import core.UpdateListener;
 import core.Cast;
 
@@ -37,7 +39,8 @@ import core.Cast;
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
  */
-public class GeoReport extends Report implements MessageListener, GeoMessageListener, UpdateListener {
+public class GeoReport extends Report implements MessageListener, GeoMessageListener, UpdateListener,
+	TimingWheel.Listener {
 	
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
@@ -69,9 +72,11 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 	private Map<String, List<Double>> perCastLatencies;
 	private Map<String, List<Double>> perGroup;
 	private Map<Integer, Integer> quantity;
-	private Map<String, Double> ttlTable;
+	/** expiry timers of the existing geomessages (by ID) */
+	private TimingWheel ttlWheel;
 	private List<GeoMessage> createdGeoMessages;
-	private List<GeoMessage> existedGeoMessages;
+	/** geomessages whose TTL hasn't expired yet (by ID) */
+	private Map<String, GeoMessage> existedGeoMessages;
 	
 	private int nrofGeoDropped;
 	private int nrofGeoRemoved;
@@ -120,9 +125,10 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 		this.perCastLatencies = new HashMap<String, List<Double>>();
 		this.perGroup = new HashMap<String, List<Double>>();
 		this.quantity = new HashMap<Integer, Integer>();
-		this.ttlTable = new HashMap<String, Double>();
+		this.ttlWheel = new TimingWheel(TimingWheel.EXPIRY_RESOLUTION,
+				getSimTime());
 		this.createdGeoMessages = new ArrayList<GeoMessage>();
-		this.existedGeoMessages = new ArrayList<GeoMessage>();
+		this.existedGeoMessages = new LinkedHashMap<String, GeoMessage>();
 		
 		this.nrofGeoDropped = 0;
 		this.nrofGeoRemoved = 0;
@@ -297,10 +303,11 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 		List <Pair> Nodes = new ArrayList<Pair>();
 		this.geoDestination.put(temp, Nodes);
 		this.createdGeoMessages.add(m.replicate());
-		this.existedGeoMessages.add(m.replicate());
+		this.existedGeoMessages.put(temp, m.replicate());
 		
-		double time = this.getSimTime() + (60.0 * m.getTtl()); //ttl returns as minutes, but simTime is based on seconds
-		this.ttlTable.put(temp, time);
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			this.ttlWheel.schedule(m.getExpiryTime(), this, temp);
+		}
 		
 	}
 	
@@ -334,14 +341,14 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 		List<GeoDTNHost> Hosts = GeoSimScenario.getInstance().getHosts();
 		for(int i=0; i<Hosts.size(); i++)
 		{
-			for(int j=0; j<existedGeoMessages.size(); j++)
+			for(GeoMessage gm : existedGeoMessages.values())
 			{
-				for(Cast getTo : existedGeoMessages.get(j).getTo()) {
-					Boolean check = getTo.checkThePoint(Hosts.get(i).getLocation());
+				for(Cast getTo : gm.getTo()) {
+					Boolean check = getTo.checkThePoint(Hosts.get(i));
 					if (check)
 					{
 						Boolean existed = false;
-						List<Pair> Destinations = this.geoDestination.get(existedGeoMessages.get(j).getId(true));
+						List<Pair> Destinations = this.geoDestination.get(gm.getId(true));
 						for(int k=0; k<Destinations.size(); k++)
 						{
 							if(Destinations.get(k).getGeoHost().toString() == Hosts.get(i).toString())
@@ -349,11 +356,11 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 								existed = true;
 							}
 						}
-						if (!existed)// && (this.getSimTime() <= (this.ttlTable.get(existedGeoMessages.get(j).toString())-(1200.0)))) //:D
+						if (!existed)// && (this.getSimTime() <= (this.ttlTable.get(gm.toString())-(1200.0)))) //:D
 						{
 							Pair temp = new Pair(Hosts.get(i), this.getSimTime());
 							Destinations.add(temp);
-							this.geoDestination.put(existedGeoMessages.get(j).getId(true), Destinations);
+							this.geoDestination.put(gm.getId(true), Destinations);
 						}
 					}				
 				}
@@ -362,11 +369,11 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 	}
 
 	private void updatePairs() {
-		for(int i=0; i<existedGeoMessages.size(); i++){
-			List<Pair> temp = this.geoDestination.get(existedGeoMessages.get(i).getId(true));
+		for(GeoMessage gm : existedGeoMessages.values()){
+			List<Pair> temp = this.geoDestination.get(gm.getId(true));
 			for(int j=0; j<temp.size(); j++){
-				for(Cast getTo : existedGeoMessages.get(i).getTo()) {
-					Boolean check = getTo.checkThePoint(temp.get(j).getGeoHost().getLocation());
+				for(Cast getTo : gm.getTo()) {
+					Boolean check = getTo.checkThePoint(temp.get(j).getGeoHost());
 					if (!check){
 						temp.get(j).setPair(this.getSimTime());
 					}
@@ -376,19 +383,15 @@ public class GeoReport extends Report implements MessageListener, GeoMessageList
 		
 	}
 
+	/**
+	 * Forgets the geomessages whose TTL has expired
+	 */
 	private void dropExpired() {
-		for (Map.Entry<String, Double> entry : ttlTable.entrySet()) {
-		    String key = entry.getKey();
-		    double value = entry.getValue();
-		    if (value <= this.getSimTime()){
-		    	for (int i = 0; i < existedGeoMessages.size(); i++) {
-		    		if (key == existedGeoMessages.get(i).getId(true)){
-		    		existedGeoMessages.remove(i);
-		    		}
-		    	}
-		    }
-		}
-		
+		this.ttlWheel.advance(getSimTime());
+	}
+
+	public void timerExpired(Object key) {
+		this.existedGeoMessages.remove(key);
 	}
 
 	@Override
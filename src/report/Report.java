@@ -284,6 +284,15 @@ public abstract class Report {
 		return this.scenarioName;
 	}
 	
+	/**
+	 * Returns the name of the report's output file (without the number 
+	 * suffix of intervalled reports)
+	 * @return the name of the output file
+	 */
+	protected String getOutFileName() {
+		return this.outFileName;
+	}
+	
 	/**
 	 * Returns the current simulation time from the SimClock
 	 * @return the current simulation time from the SimClock
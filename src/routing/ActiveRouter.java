@@ -5,12 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 import routing.util.EnergyModel;
+import routing.util.MessageBuffer;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
 import util.Tuple;
@@ -22,6 +22,7 @@ import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
 import core.SimClock;
+import core.TimingWheel;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
@@ -29,6 +30,8 @@ import core.SimClock;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -40,12 +43,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	
-	/** how often TTL check (discarding old messages) is performed */
-	private static int ttlCheckInterval = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** IDs of the messages whose TTL has expired but that haven't been
+	 * dropped yet */
+	private ArrayList<String> expiredMessages;
 	
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
@@ -67,10 +69,6 @@ public abstract class ActiveRouter extends MessageRouter {
 		} else {
 			this.energy = null; /* no energy model */
 		}
-		
-		ttlCheckInterval = 
-				(new Settings().getBoolean(Message.TTL_SECONDS_S, false) 
-						? 1 : 60);
 	}
 	
 	/**
@@ -88,7 +86,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiredMessages = new ArrayList<String>();
+		watchTtls();
 	}
 	
 	/**
@@ -237,12 +236,13 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 	
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getHandle()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getHandle())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
-		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
+		if (m.getExpiryTime() <= SimClock.getTime() &&
+				m.getTo() != getHost()) {
 			/* TTL has expired and this host is not the final recipient */
 			return DENIED_TTL; 
 		}
@@ -293,16 +293,27 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Called when the TTL of a buffered message expires. The message is
+	 * dropped when the router isn't sending anything.
+	 * @param id ID of the message
+	 */
+	@Override
+	protected void ttlExpired(String id) {
+		this.expiredMessages.add(id);
+	}
+	
+	/**
+	 * Drops the messages whose TTL has expired (and that are still in the
+	 * buffer).
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		for (String id : this.expiredMessages) {
+			Message m = getMessage(id);
+			if (m != null && m.getExpiryTime() <= SimClock.getTime()) {
+				deleteMessage(id, true);
 			}
 		}
+		this.expiredMessages.clear();
 	}
 	
 	/**
@@ -318,38 +329,34 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the next message to drop from the message buffer according
+	 * to the drop policy (by default the oldest message by receive time)
+	 * that is not being sent if excludeMsgBeingSent is true.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
+	 * being sent from the check (i.e. if the oldest message is
 	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * @return The message to drop or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
+	 * @see MessageBuffer#DROP_POLICY_S
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		for (Message m : getMessagesInDropOrder()) {
+			if (excludeMsgBeingSent && isSending(m.getHandle())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
+	 * recipient is some host that we're connected to at the moment. The
+	 * tuples are in the send queue order of the messages (see
+	 * {@link MessageRouter#getMessagesInQueueOrder()}), so they can be
+	 * tried without sorting.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
@@ -360,7 +367,7 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
+		for (Message m : getMessagesInQueueOrder()) {
 			for (Connection con : getConnections()) {
 				DTNHost to = con.getOtherNode(getHost());
 				if (m.getTo() == to) {
@@ -446,8 +453,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are tried in the send queue order
+	 * (see {@link MessageRouter#getMessagesInQueueOrder()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -458,11 +465,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getMessagesInQueueOrder(),
+				connections);
 	}
 		
 	/**
@@ -480,9 +484,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 		
-		@SuppressWarnings(value = "unchecked")
+		/* the tuples are already in the send queue order */
 		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
+			tryMessagesForConnected(getMessagesForConnected());
 
 		if (t != null) {
 			return t.getValue(); // started transfer
@@ -567,6 +571,25 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;
 	}
 	
+	/**
+	 * Returns true if this router is currently sending a message with
+	 * the given ID handle.
+	 * @param handle Handle of the ID of the message
+	 * @return True if the message is being sent false if not
+	 * @see Message#getHandle()
+	 */
+	public boolean isSending(int handle) {
+		for (Connection con : this.sendingConnections) {
+			if (con.getMessage() == null) {
+				continue; // transmission is finalized
+			}
+			if (con.getMessage().getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Returns true if the node has energy left (i.e., energy modeling is
 	 * enabled OR (is enabled and model has energy left))
@@ -576,15 +599,36 @@ public abstract class ActiveRouter extends MessageRouter {
 		return this.energy == null || this.energy.getEnergy() > 0;
 	}
 	
+	/**
+	 * Returns true if the router has no messages, connections, transfers,
+	 * applications or energy model to update. The TTL expiry notifications
+	 * of already removed messages are cleared as the update would do.
+	 * @return True if the router is idle, false if not
+	 */
+	@Override
+	public boolean isIdle() {
+		if (this.getNrofMessages() > 0 || this.sendingConnections.size() > 0 ||
+				this.getConnections().size() > 0 || this.energy != null ||
+				this.hasApplications()) {
+			return false;
+		}
+		
+		this.expiredMessages.clear(); /* nothing to drop */
+		return true;
+	}
+	
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
-	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * and abort those whose connection went down. Also drops the messages
+	 * whose TTL has expired (see {@link #ttlExpired(String)}).
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
 	public void update() {		
 		super.update();
+		/* the first router updated at a time expires the TTLs of all the
+		 * routers' messages */
+		TimingWheel.getExpiryWheel().advance(SimClock.getTime());
 		
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
@@ -622,11 +666,10 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval && 
+		/* drop expired messages, but only if not sending */
+		if (this.expiredMessages.size() > 0 && 
 				sendingConnections.size() == 0) {
 			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
 		}
 		
 		if (energy != null) {
@@ -11,6 +11,7 @@ import java.util.List;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -20,6 +21,8 @@ import core.Settings;
  *
  */
 public class DirectionBasedRoutingProtocol extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	//public static final String NROF_COPIES = "nrofCopies";
 	/** SprayAndWait router's settings name space ({@value})*/ 
@@ -30,6 +33,9 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = DBRP_NS + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 	protected HashSet<Integer> initialDirections;
 	protected int initialNrofCopies;
 
@@ -66,10 +72,10 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 		
 		HashSet<Integer> directions = new HashSet<Integer>();
 		directions = (HashSet<Integer>) msg.getProperty(MSG_DIRECTION_PROPERTY);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
 
 		assert directions != null : "Not a DBRP message: " + msg;
-		assert nrofCopies != null : "Not a DBRP message: " + msg;		
+		assert msg.hasProperty(COPIES_SLOT) : "Not a DBRP message: " + msg;		
 
 		/* if n is more than one: reduce nrofCopies */
 		if (nrofCopies != 0) { nrofCopies--; }
@@ -84,7 +90,7 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 		}
 		else{ directions.clear(); }
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		msg.updateProperty(MSG_DIRECTION_PROPERTY, directions);
 		return msg;
 	}
@@ -94,7 +100,7 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, initialNrofCopies);
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
 		HashSet<Integer> directions = new HashSet<Integer>();
 		directions.add(1);
 		directions.add(2);
@@ -120,8 +126,7 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<Message> copiesLeft = sortByQueueMode(getMessagesWithCopiesLeft());
+		List<Message> copiesLeft = getMessagesWithCopiesLeft();
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -170,13 +175,14 @@ public class DirectionBasedRoutingProtocol extends ActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (!directions.isEmpty();).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	@SuppressWarnings("unchecked")
 	protected List<Message> getMessagesWithCopiesLeft() {
 		List<Message> list = new ArrayList<Message>();
 
-		for (Message m : getMessageCollection()) {
+		for (Message m : getMessagesInQueueOrder()) {
 			HashSet<Integer> directions = new HashSet<Integer>();
 			directions = (HashSet<Integer>) m.getProperty(MSG_DIRECTION_PROPERTY);
 			assert directions != null : "DBRP message " + m + " didn't have " + 
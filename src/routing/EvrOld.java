@@ -16,6 +16,7 @@ import core.Connection;
 import core.GeoDTNHost;
 import core.GeoMessage;
 import core.GeoSimScenario;
+import core.PropertySlot;
 import core.Settings;
 import core.SimClock;
 
@@ -25,12 +26,19 @@ import core.SimClock;
  *
  */
 public class EvrOld extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** Message EVR Rate key */
 	public static final String MSG_EVR_PROPERTY = "EVRRouter" + "." +"rate";
+	/** Message property slot for the EVR rate */
+	protected static final PropertySlot EVR_SLOT =
+		PropertySlot.doubleSlot(MSG_EVR_PROPERTY);
 	
 	/** Message arrived in cast flag */
 	public static final String MSG_EVRF_PROPERTY = "EVRRouter" + "." +"flag";
+	/** Message property slot for the EVR flag */
+	protected static final PropertySlot EVR_FLAG_SLOT =
+		PropertySlot.booleanSlot(MSG_EVRF_PROPERTY);
 	
 	/** Initial EVR rate */
 	protected double initialEVR = 0;
@@ -72,7 +80,7 @@ public class EvrOld extends GeoActiveRouter {
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
 		double evrRate = 0;
-		msg.updateProperty(MSG_EVR_PROPERTY, evrRate);
+		msg.setDouble(EVR_SLOT, evrRate);
 		return msg;
 	}
 	
@@ -83,8 +91,8 @@ public class EvrOld extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_EVR_PROPERTY, new Double(initialEVR));
-		msg.addProperty(MSG_EVRF_PROPERTY, new Boolean(false));
+		msg.setDouble(EVR_SLOT, initialEVR);
+		msg.setBoolean(EVR_FLAG_SLOT, false);
 		addToGeoMessages(msg, true);
 		return true;
 	}
@@ -101,26 +109,16 @@ public class EvrOld extends GeoActiveRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
-		
 		//First deliver the deliverable messages
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				
-				//Flooding phase
-				if (m.getTo().checkThePoint(to.getLocation())) {
-					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-				}
-			}
-		}
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			super.getMessagesForConnected();
 		
 		//Second - hand in messages with better chance of delivery
 		for (GeoMessage m : getGeoMessageCollection()) {
 			for (Connection con : getConnections()) {
 				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				double messageEvrRate = (Double) m.getProperty(MSG_EVR_PROPERTY);
-				boolean messageEvrFlag = (Boolean) m.getProperty(MSG_EVRF_PROPERTY);
+				double messageEvrRate = m.getDouble(EVR_SLOT);
+				boolean messageEvrFlag = m.getBoolean(EVR_FLAG_SLOT);
 				
 				//First Phase of Routing procedure
 				if ( !messageEvrFlag && messageEvrRate < ((EvrOld) to.getGeoRouter()).getLambda(m.getTo())) {
@@ -132,6 +130,15 @@ public class EvrOld extends GeoActiveRouter {
 		return forTuples;
 	}
 	
+	/**
+	 * The cell visiting times and the EVR rate are tracked on every update,
+	 * so the router is never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -151,11 +158,11 @@ public class EvrOld extends GeoActiveRouter {
 		
 		for(Cast key : cellVisitingTimes.keySet()) {
 			
-			if (key.checkThePoint(this.getGeoHost().getLocation())) {
+			if (key.checkThePoint(this.getGeoHost())) {
 				inCellFlag = true;
 			}
 			
-			if (key.checkThePoint(this.getGeoHost().getLocation()) && key != currentCell) {
+			if (key.checkThePoint(this.getGeoHost()) && key != currentCell) {
 				
 				ArrayList<Double> times = new ArrayList<Double>();
 				if (this.cellVisitingTimes.get(key) != null){
@@ -197,8 +204,8 @@ public class EvrOld extends GeoActiveRouter {
 	private void updateEvrArrivedInDestenitionFlag() {
 		
 		for (GeoMessage m : getGeoMessageCollection()) {
-			boolean insideRecipient = m.getTo().checkThePoint(this.getGeoHost().getLocation());
-			m.updateProperty(MSG_EVRF_PROPERTY, insideRecipient);
+			boolean insideRecipient = m.getTo().checkThePoint(this.getGeoHost());
+			m.setBoolean(EVR_FLAG_SLOT, insideRecipient);
 		}		
 	}
 
@@ -210,7 +217,7 @@ public class EvrOld extends GeoActiveRouter {
 		for (GeoMessage m : getGeoMessageCollection()) {
 			Cast recipient = m.getTo();
 			double evrRate = getLambda(recipient);
-			m.updateProperty(MSG_EVR_PROPERTY, evrRate);
+			m.setDouble(EVR_SLOT, evrRate);
 		}
 	}
 	
@@ -33,6 +33,8 @@ import core.*;
  */
 
 public class FloatingContentRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
+
 	public static final int REPL_FIFO  = 0;
 	public static final int REPL_RND   = 1;
 	public static final int REPL_SAF   = 2;
@@ -100,6 +102,18 @@ public class FloatingContentRouter extends ActiveRouter {
 	public static final String FC_TTL = "ttl";
 	public static final String FC_TTL_VAL = "ttlval";
 
+	/** Message property slots of the keys */
+	public static final PropertySlot ANCHOR_SLOT =
+		PropertySlot.coordSlot(FC_ANCHOR);
+	public static final PropertySlot A_SLOT =
+		PropertySlot.doubleSlot(FC_A);
+	public static final PropertySlot R_SLOT =
+		PropertySlot.doubleSlot(FC_R);
+	public static final PropertySlot TTL_SLOT =
+		PropertySlot.doubleSlot(FC_TTL);
+	public static final PropertySlot TTL_VAL_SLOT =
+		PropertySlot.doubleSlot(FC_TTL_VAL);
+
 	protected Random rng;
 	protected Random replRng;
 	protected Random delRng;
@@ -268,6 +282,15 @@ public class FloatingContentRouter extends ActiveRouter {
 		}
 	}
 
+	/**
+	 * The location of the node is tracked on every update, so the router is
+	 * never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 
@@ -302,8 +325,8 @@ public class FloatingContentRouter extends ActiveRouter {
 				d_list2 = new ArrayList<String> ();
 
 				for (Message m : m_set2) {
-					distance_curr = loc.distance ((Coord) m.getProperty (FC_ANCHOR));
-					if  (distance_curr > (Double) m.getProperty (FC_A)) {
+					distance_curr = loc.distance (m.getCoord (ANCHOR_SLOT));
+					if  (distance_curr > m.getDouble (A_SLOT)) {
 						d_list2.add (m.getId ());
 					}
 				}
@@ -356,8 +379,8 @@ public class FloatingContentRouter extends ActiveRouter {
 			 */
              for (Connection c : new_conns) {
 				for (Message m : m_set) {
-					distance_curr = loc.distance ((Coord) m.getProperty (FC_ANCHOR));
-					if ((deletion_check (distance_curr, (Double) m.getProperty (FC_R), (Double) m.getProperty (FC_A)) == 1)) {
+					distance_curr = loc.distance (m.getCoord (ANCHOR_SLOT));
+					if ((deletion_check (distance_curr, m.getDouble (R_SLOT), m.getDouble (A_SLOT)) == 1)) {
 					    if (!d_list.contains (m.getId ()))
 							d_list.add (m.getId ());
 					}
@@ -382,8 +405,8 @@ public class FloatingContentRouter extends ActiveRouter {
 			Collections.sort (m_ordered_list, new Comparator<Message> () {
 				public int compare (Message m1, Message m2) {
 					double  a1, a2;
-					a1 = (Double) m1.getProperty (FC_A);
-					a2 = (Double) m2.getProperty (FC_A);
+					a1 = m1.getDouble (A_SLOT);
+					a2 = m2.getDouble (A_SLOT);
 
 					if (a1 == a2)
 						return 0;
@@ -395,8 +418,8 @@ public class FloatingContentRouter extends ActiveRouter {
 			Collections.sort (m_ordered_list, new Comparator<Message> () {
 				public int compare (Message m1, Message m2) {
 					double  v1, v2;
-					v1 = (Double) m1.getProperty (FC_A) * (double) m1.getSize ();
-					v2 = (Double) m2.getProperty (FC_A) * (double) m2.getSize ();
+					v1 = m1.getDouble (A_SLOT) * (double) m1.getSize ();
+					v2 = m2.getDouble (A_SLOT) * (double) m2.getSize ();
 
 					if (v1 == v2)
 						return 0;
@@ -408,8 +431,8 @@ public class FloatingContentRouter extends ActiveRouter {
 			Collections.sort (m_ordered_list, new Comparator<Message> () {
 				public int compare (Message m1, Message m2) {
 					double  v1, v2;
-					v1 = (Double) m1.getProperty (FC_A) * (Double) m1.getProperty (FC_A) * (double) m1.getSize ();
-					v2 = (Double) m2.getProperty (FC_A) * (Double) m2.getProperty (FC_A) * (double) m2.getSize ();
+					v1 = m1.getDouble (A_SLOT) * m1.getDouble (A_SLOT) * (double) m1.getSize ();
+					v2 = m2.getDouble (A_SLOT) * m2.getDouble (A_SLOT) * (double) m2.getSize ();
 
 					if (v1 == v2)
 						return 0;
@@ -421,11 +444,11 @@ public class FloatingContentRouter extends ActiveRouter {
 			Collections.sort (m_ordered_list, new Comparator<Message> () {
 				public int compare (Message m1, Message m2) {
 					double  t1, t2;
-					t1 = (Double) m1.getProperty (FC_A);
-					t1 *= (Double) m1.getProperty (FC_TTL_VAL);
+					t1 = m1.getDouble (A_SLOT);
+					t1 *= m1.getDouble (TTL_VAL_SLOT);
 					t1 *= m1.getSize ();
-					t2 = (Double) m2.getProperty (FC_A);
-					t2 *= (Double) m2.getProperty (FC_TTL_VAL);
+					t2 = m2.getDouble (A_SLOT);
+					t2 *= m2.getDouble (TTL_VAL_SLOT);
 					t2 *= m2.getSize ();
 
 					if (t1 == t2)
@@ -439,13 +462,13 @@ public class FloatingContentRouter extends ActiveRouter {
 				public int compare (Message m1, Message m2) {
 					double  t1, t2;
 
-					t1 = (Double) m1.getProperty (FC_A);
+					t1 = m1.getDouble (A_SLOT);
 					t1 *= t1;
-					t1 *= (Double) m1.getProperty (FC_TTL_VAL);
+					t1 *= m1.getDouble (TTL_VAL_SLOT);
 					t1 *= m1.getSize ();
-					t2 = (Double) m2.getProperty (FC_A);
+					t2 = m2.getDouble (A_SLOT);
 					t2 *= t2;
-					t2 *= (Double) m2.getProperty (FC_TTL_VAL);
+					t2 *= m2.getDouble (TTL_VAL_SLOT);
 					t2 *= m2.getSize ();
 
 					if (t1 == t2)
@@ -480,23 +503,23 @@ public class FloatingContentRouter extends ActiveRouter {
 				if (peer_router.getLocationSource () == LOC_SRC_GPS) {
 				    /* the remote node knows where it is -> use its location */
 				    peer_loc = peer_router.getLocation ();
-				    h = peer_loc.distance ((Coord) m.getProperty (FC_ANCHOR));
+				    h = peer_loc.distance (m.getCoord (ANCHOR_SLOT));
 				} else if (location_valid) {
 				    /* we know where we are (or at least approximately -> our our location as a backup */
-				    h = loc.distance ((Coord) m.getProperty (FC_ANCHOR));
+				    h = loc.distance (m.getCoord (ANCHOR_SLOT));
 				} else if ((peer_loc = peer_router.getLastKnownLocation ()) != null) {
 				    /* if we don't know either, let's try the most recent peer location */
-				    h = peer_loc.distance ((Coord) m.getProperty (FC_ANCHOR));
+				    h = peer_loc.distance (m.getCoord (ANCHOR_SLOT));
 				} else if (last_known_location != null) { 
 				    /* last resort: our most recently known location if not established in this round */
-				    h = last_known_location.distance ((Coord) m.getProperty (FC_ANCHOR));
+				    h = last_known_location.distance (m.getCoord (ANCHOR_SLOT));
 				} else {
 				    /* no idea about location on either side -> don't replicate */
 				    continue;
 				}
 
-				r = (Double) m.getProperty (FC_R);
-				a = (Double) m.getProperty (FC_A);
+				r = m.getDouble (R_SLOT);
+				a = m.getDouble (A_SLOT);
 				// Rule 1: if within core radius -> replicate
 				// d <= r
 				if (h <= r) {
@@ -11,6 +11,7 @@ import java.util.List;
 import core.Connection;
 import core.GeoDTNHost;
 import core.GeoMessage;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -18,6 +19,7 @@ import core.Settings;
  *
  */
 public class GSAFRouter extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "copyticket";
@@ -26,6 +28,9 @@ public class GSAFRouter extends GeoActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = "GSAFRouter" + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 	
 	protected int initialNrofCopies;
 	
@@ -55,9 +60,9 @@ public class GSAFRouter extends GeoActiveRouter {
 	//receiverSide
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
 		
-		assert nrofCopies != null : "Not a GSAF message: " + msg;
+		assert msg.hasProperty(COPIES_SLOT) : "Not a GSAF message: " + msg;
 		
 		if (nrofCopies > 0) {
 			nrofCopies --;
@@ -66,7 +71,7 @@ public class GSAFRouter extends GeoActiveRouter {
 			nrofCopies = 0;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		return msg;
 	}
 	
@@ -74,7 +79,7 @@ public class GSAFRouter extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
 		String payload = msg.getPayload();
 		BigInteger[] payload_codes = GeoMessage.encrypt(payload);
 		String[] payload_parts = new String[4];
@@ -102,8 +107,7 @@ public class GSAFRouter extends GeoActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<GeoMessage> copiesLeft = sortByQueueMode(getGeoMessagesWithCopiesLeft());
+		List<GeoMessage> copiesLeft = getGeoMessagesWithCopiesLeft();
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -114,16 +118,16 @@ public class GSAFRouter extends GeoActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<GeoMessage> getGeoMessagesWithCopiesLeft() {
 		List<GeoMessage> list = new ArrayList<GeoMessage>();
 
-		for (GeoMessage m : getGeoMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "GSAF message " + m + " didn't have " + 
-				"nrof copies property!";
-			if (nrofCopies > 0) {
+		for (GeoMessage m : getGeoMessagesInQueueOrder()) {
+			assert m.hasProperty(COPIES_SLOT) : "GSAF message " + m + 
+				" didn't have nrof copies property!";
+			if (m.getInt(COPIES_SLOT) > 0) {
 				list.add(m);
 			}
 		}
@@ -139,7 +143,7 @@ public class GSAFRouter extends GeoActiveRouter {
 	@Override
 	//senderSide
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getGeoMessage().getId();
 		/* get this router's copy of the message */
 		GeoMessage msg = getGeoMessage(msgId);
@@ -149,14 +153,14 @@ public class GSAFRouter extends GeoActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getInt(COPIES_SLOT);
 		if (nrofCopies > 0) {
 			nrofCopies --;
 		}
 		else {
 			nrofCopies = 0;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 	}
 	
 	@Override
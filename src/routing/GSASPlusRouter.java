@@ -13,6 +13,7 @@ import core.Connection;
 import core.Coord;
 import core.GeoDTNHost;
 import core.GeoMessage;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -20,6 +21,7 @@ import core.Settings;
  *
  */
 public class GSASPlusRouter extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "copyticket";
@@ -28,17 +30,29 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = "GSAFRouter" + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 	/** Message recipient direction key */
 	public static final String MSG_GSAS_DIRECTION_PROPERTY = "GSASRouterDirection" + "." +
 		"copies";
+	/** Message property slot for the recipient direction */
+	protected static final PropertySlot DIRECTION_SLOT =
+		PropertySlot.intSlot(MSG_GSAS_DIRECTION_PROPERTY);
 	
 	/** Message delete flag */
 	public static final String MSG_GSAS_DELETE_PROPERTY = "GSASDeleteFlag" + "." +
 		"copies";
+	/** Message property slot for the delete flag */
+	protected static final PropertySlot DELETE_SLOT =
+		PropertySlot.booleanSlot(MSG_GSAS_DELETE_PROPERTY);
 	
 	/** Message delete flag */
 	public static final String MSG_GSAS_SELECT_PROPERTY = "GSASSelectFlag" + "." +
 		"copies";
+	/** Message property slot for the select flag */
+	protected static final PropertySlot SELECT_SLOT =
+		PropertySlot.booleanSlot(MSG_GSAS_SELECT_PROPERTY);
 	
 	protected int initialNrofCopies;
 	
@@ -67,9 +81,9 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	//receiverSide
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
 		
-		assert nrofCopies != null : "Not a GSAF message: " + msg;
+		assert msg.hasProperty(COPIES_SLOT) : "Not a GSAF message: " + msg;
 		
 		if (nrofCopies > 0) {
 			nrofCopies --;
@@ -78,8 +92,8 @@ public class GSASPlusRouter extends GeoActiveRouter {
 			nrofCopies = 0;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
-		msg.updateProperty(MSG_GSAS_DELETE_PROPERTY, false);
+		msg.setInt(COPIES_SLOT, nrofCopies);
+		msg.setBoolean(DELETE_SLOT, false);
 		return msg;
 	}
 	
@@ -87,10 +101,10 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
-		msg.addProperty(MSG_GSAS_DIRECTION_PROPERTY, new Integer(0));
-		msg.addProperty(MSG_GSAS_DELETE_PROPERTY, new Boolean(false));
-		msg.addProperty(MSG_GSAS_SELECT_PROPERTY, new Boolean(true));
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
+		msg.setInt(DIRECTION_SLOT, 0);
+		msg.setBoolean(DELETE_SLOT, false);
+		msg.setBoolean(SELECT_SLOT, true);
 		addToGeoMessages(msg, true);
 		return true;
 	}
@@ -107,31 +121,21 @@ public class GSASPlusRouter extends GeoActiveRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			super.getMessagesForConnected();
 		
 		for (GeoMessage m : getGeoMessageCollection()) {
 			for (Connection con : getConnections()) {
 				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-
-				if (m.getTo().checkThePoint(to.getLocation())) {
-					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-					continue;
-				}
-			}
-		}
-		
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				int recipientDirection = (Integer) m.getProperty(MSG_GSAS_DIRECTION_PROPERTY);
-				int copyTicket = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
-				boolean changeHand = (Boolean) m.getProperty(MSG_GSAS_SELECT_PROPERTY);
+				int recipientDirection = m.getInt(DIRECTION_SLOT);
+				int copyTicket = m.getInt(COPIES_SLOT);
+				boolean changeHand = m.getBoolean(SELECT_SLOT);
 				
 				//First Phase of Routing procedure
 				if ((copyTicket == 0) && (this.getGeoHost().getDirection() != recipientDirection) && (to.getDirection() == recipientDirection) && changeHand) {
 					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-					m.updateProperty(MSG_GSAS_DELETE_PROPERTY, true);
-					m.updateProperty(MSG_GSAS_SELECT_PROPERTY, false);
+					m.setBoolean(DELETE_SLOT, true);
+					m.setBoolean(SELECT_SLOT, false);
 				}
 			}
 		}
@@ -148,10 +152,19 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	@Override
 	protected void transferAborted(Connection con) {
 		super.transferAborted(con);
-		con.getGeoMessage().updateProperty(MSG_GSAS_DELETE_PROPERTY, false);
-		con.getGeoMessage().updateProperty(MSG_GSAS_SELECT_PROPERTY, true);	
+		con.getGeoMessage().setBoolean(DELETE_SLOT, false);
+		con.getGeoMessage().setBoolean(SELECT_SLOT, true);	
 	}
 	
+	/**
+	 * The directions to the recipients are updated on every update, so the
+	 * router is never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -168,8 +181,7 @@ public class GSASPlusRouter extends GeoActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<GeoMessage> copiesLeft = sortByQueueMode(getGeoMessagesWithCopiesLeft());
+		List<GeoMessage> copiesLeft = getGeoMessagesWithCopiesLeft();
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -180,14 +192,15 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<GeoMessage> getGeoMessagesWithCopiesLeft() {
 		List<GeoMessage> list = new ArrayList<GeoMessage>();
 
-		for (GeoMessage m : getGeoMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "GSAF message " + m + " didn't have " + 
+		for (GeoMessage m : getGeoMessagesInQueueOrder()) {
+			int nrofCopies = m.getInt(COPIES_SLOT);
+			assert m.hasProperty(COPIES_SLOT) : "GSAF message " + m + " didn't have " + 
 				"nrof copies property!";
 			if (nrofCopies > 0) {
 				list.add(m);
@@ -205,7 +218,7 @@ public class GSASPlusRouter extends GeoActiveRouter {
 	@Override
 	//senderSide
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getGeoMessage().getId();
 		/* get this router's copy of the message */
 		GeoMessage msg = getGeoMessage(msgId);
@@ -215,16 +228,16 @@ public class GSASPlusRouter extends GeoActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getInt(COPIES_SLOT);
 		if (nrofCopies > 0) {
 			nrofCopies --;
 		}
 		else {
 			nrofCopies = 0;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		
-		Boolean DeleteFlag = (Boolean) con.getGeoMessage().getProperty(MSG_GSAS_DELETE_PROPERTY);
+		boolean DeleteFlag = con.getGeoMessage().getBoolean(DELETE_SLOT);
 		if (DeleteFlag) {
 			this.removeFromGeoMessages(msgId);
 		}
@@ -264,7 +277,7 @@ public class GSASPlusRouter extends GeoActiveRouter {
 				else if (pX > cX) { direction = 2; }
 			}
 			
-			m.updateProperty(MSG_GSAS_DIRECTION_PROPERTY, direction);
+			m.setInt(DIRECTION_SLOT, direction);
 		}
 	}
 	
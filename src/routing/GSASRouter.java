@@ -13,6 +13,7 @@ import core.Connection;
 import core.Coord;
 import core.GeoDTNHost;
 import core.GeoMessage;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -20,6 +21,7 @@ import core.Settings;
  *
  */
 public class GSASRouter extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "copyticket";
@@ -28,13 +30,22 @@ public class GSASRouter extends GeoActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = "GSAFRouter" + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 	/** Message recipient direction key */
 	public static final String MSG_GSAS_DIRECTION_PROPERTY = "GSASRouterDirection" + "." +
 		"copies";
+	/** Message property slot for the recipient direction */
+	protected static final PropertySlot DIRECTION_SLOT =
+		PropertySlot.intSlot(MSG_GSAS_DIRECTION_PROPERTY);
 	
 	/** Message delete flag */
 	public static final String MSG_GSAS_DELETE_PROPERTY = "GSASDeleteFlag" + "." +
 		"copies";
+	/** Message property slot for the delete flag */
+	protected static final PropertySlot DELETE_SLOT =
+		PropertySlot.booleanSlot(MSG_GSAS_DELETE_PROPERTY);
 	
 	protected int initialNrofCopies;
 	
@@ -63,9 +74,9 @@ public class GSASRouter extends GeoActiveRouter {
 	//receiverSide
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
 		
-		assert nrofCopies != null : "Not a GSAF message: " + msg;
+		assert msg.hasProperty(COPIES_SLOT) : "Not a GSAF message: " + msg;
 		
 		if (nrofCopies > 0) {
 			nrofCopies --;
@@ -74,8 +85,8 @@ public class GSASRouter extends GeoActiveRouter {
 			nrofCopies = 0;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
-		msg.updateProperty(MSG_GSAS_DELETE_PROPERTY, false);
+		msg.setInt(COPIES_SLOT, nrofCopies);
+		msg.setBoolean(DELETE_SLOT, false);
 		return msg;
 	}
 	
@@ -83,9 +94,9 @@ public class GSASRouter extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
-		msg.addProperty(MSG_GSAS_DIRECTION_PROPERTY, new Integer(0));
-		msg.addProperty(MSG_GSAS_DELETE_PROPERTY, new Boolean(false));
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
+		msg.setInt(DIRECTION_SLOT, 0);
+		msg.setBoolean(DELETE_SLOT, false);
 		addToGeoMessages(msg, true);
 		return true;
 	}
@@ -102,29 +113,19 @@ public class GSASRouter extends GeoActiveRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			super.getMessagesForConnected();
 		
 		for (GeoMessage m : getGeoMessageCollection()) {
 			for (Connection con : getConnections()) {
 				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				
-				if (m.getTo().checkThePoint(to.getLocation())) {
-					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-					continue;
-				}
-			}
-		}
-		
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				int recipientDirection = (Integer) m.getProperty(MSG_GSAS_DIRECTION_PROPERTY);
-				int copyTicket = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
+				int recipientDirection = m.getInt(DIRECTION_SLOT);
+				int copyTicket = m.getInt(COPIES_SLOT);
 				
 				//First Phase of Routing procedure
 				if ((copyTicket == 0) && (this.getGeoHost().getDirection() != recipientDirection) && (to.getDirection() == recipientDirection)) {
 					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-					m.updateProperty(MSG_GSAS_DELETE_PROPERTY, true);
+					m.setBoolean(DELETE_SLOT, true);
 				}
 			}
 		}
@@ -141,9 +142,18 @@ public class GSASRouter extends GeoActiveRouter {
 	@Override
 	protected void transferAborted(Connection con) {
 		super.transferAborted(con);
-		con.getGeoMessage().updateProperty(MSG_GSAS_DELETE_PROPERTY, false);
+		con.getGeoMessage().setBoolean(DELETE_SLOT, false);
 	}
 	
+	/**
+	 * The directions to the recipients are updated on every update, so the
+	 * router is never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -160,8 +170,7 @@ public class GSASRouter extends GeoActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<GeoMessage> copiesLeft = sortByQueueMode(getGeoMessagesWithCopiesLeft());
+		List<GeoMessage> copiesLeft = getGeoMessagesWithCopiesLeft();
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -172,14 +181,15 @@ public class GSASRouter extends GeoActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<GeoMessage> getGeoMessagesWithCopiesLeft() {
 		List<GeoMessage> list = new ArrayList<GeoMessage>();
 
-		for (GeoMessage m : getGeoMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "GSAF message " + m + " didn't have " + 
+		for (GeoMessage m : getGeoMessagesInQueueOrder()) {
+			int nrofCopies = m.getInt(COPIES_SLOT);
+			assert m.hasProperty(COPIES_SLOT) : "GSAF message " + m + " didn't have " + 
 				"nrof copies property!";
 			if (nrofCopies > 0) {
 				list.add(m);
@@ -197,7 +207,7 @@ public class GSASRouter extends GeoActiveRouter {
 	@Override
 	//senderSide
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getGeoMessage().getId();
 		/* get this router's copy of the message */
 		GeoMessage msg = getGeoMessage(msgId);
@@ -207,16 +217,16 @@ public class GSASRouter extends GeoActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getInt(COPIES_SLOT);
 		if (nrofCopies > 0) {
 			nrofCopies --;
 		}
 		else {
 			nrofCopies = 0;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		
-		Boolean DeleteFlag = (Boolean) con.getGeoMessage().getProperty(MSG_GSAS_DELETE_PROPERTY);
+		boolean DeleteFlag = con.getGeoMessage().getBoolean(DELETE_SLOT);
 		if (DeleteFlag) {
 			this.removeFromGeoMessages(msgId);
 		}
@@ -256,7 +266,7 @@ public class GSASRouter extends GeoActiveRouter {
 				else if (pX > cX) { direction = 2; }
 			}
 			
-			m.updateProperty(MSG_GSAS_DIRECTION_PROPERTY, direction);
+			m.setInt(DIRECTION_SLOT, direction);
 		}
 	}
 	
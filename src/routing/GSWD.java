@@ -13,6 +13,7 @@ import core.Connection;
 import core.Coord;
 import core.GeoDTNHost;
 import core.GeoMessage;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -21,6 +22,7 @@ import core.Settings;
  *
  */
 public class GSWD extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "copyticket";
@@ -29,9 +31,15 @@ public class GSWD extends GeoActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = "GSWDRouter" + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 	/** Message recipient direction key */
 	public static final String MSG_GSWD_DIRECTION_PROPERTY = "GSWDRouterDirection" + "." +
 		"copies";
+	/** Message property slot for the recipient direction */
+	protected static final PropertySlot DIRECTION_SLOT =
+		PropertySlot.intSlot(MSG_GSWD_DIRECTION_PROPERTY);
 	
 	/** Message delete flag */
 	//public static final String MSG_GSWD_DELETE_PROPERTY = "GSWDDeleteFlag" + "." +
@@ -64,9 +72,9 @@ public class GSWD extends GeoActiveRouter {
 	//receiverSide
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
 		
-		assert nrofCopies != null : "Not a GSAF message: " + msg;
+		assert msg.hasProperty(COPIES_SLOT) : "Not a GSAF message: " + msg;
 		
 		if (nrofCopies > 0) {
 			nrofCopies --;
@@ -75,7 +83,7 @@ public class GSWD extends GeoActiveRouter {
 			nrofCopies = 0;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		//msg.updateProperty(MSG_GSWD_DELETE_PROPERTY, false);
 		return msg;
 	}
@@ -84,8 +92,8 @@ public class GSWD extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
-		msg.addProperty(MSG_GSWD_DIRECTION_PROPERTY, new Integer(0));
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
+		msg.setInt(DIRECTION_SLOT, 0);
 		//msg.addProperty(MSG_GSWD_DELETE_PROPERTY, new Boolean(false));
 		addToGeoMessages(msg, true);
 		return true;
@@ -103,24 +111,14 @@ public class GSWD extends GeoActiveRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			super.getMessagesForConnected();
 		
 		for (GeoMessage m : getGeoMessageCollection()) {
 			for (Connection con : getConnections()) {
 				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				
-				if (m.getTo().checkThePoint(to.getLocation())) {
-					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-					continue;
-				}
-			}
-		}
-		
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				int recipientDirection = (Integer) m.getProperty(MSG_GSWD_DIRECTION_PROPERTY);
-				int copyTicket = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
+				int recipientDirection = m.getInt(DIRECTION_SLOT);
+				int copyTicket = m.getInt(COPIES_SLOT);
 				
 				//First Phase of Routing procedure
 				if ((copyTicket > 0) && (this.getGeoHost().getDirection() != recipientDirection) && (to.getDirection() == recipientDirection)) {
@@ -145,6 +143,15 @@ public class GSWD extends GeoActiveRouter {
 		//con.getGeoMessage().updateProperty(MSG_GSWD_DELETE_PROPERTY, false);
 	}
 	
+	/**
+	 * The directions to the recipients are updated on every update, so the
+	 * router is never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -170,7 +177,7 @@ public class GSWD extends GeoActiveRouter {
 	@Override
 	//senderSide
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getGeoMessage().getId();
 		/* get this router's copy of the message */
 		GeoMessage msg = getGeoMessage(msgId);
@@ -180,14 +187,14 @@ public class GSWD extends GeoActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getInt(COPIES_SLOT);
 		if (nrofCopies > 0) {
 			nrofCopies --;
 		}
 		else {
 			nrofCopies = 0;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(COPIES_SLOT, nrofCopies);
 		
 		//Boolean DeleteFlag = (Boolean) con.getGeoMessage().getProperty(MSG_GSWD_DELETE_PROPERTY);
 		//if (DeleteFlag) {
@@ -229,7 +236,7 @@ public class GSWD extends GeoActiveRouter {
 				else if (pX > cX) { direction = 2; }
 			}
 			
-			m.updateProperty(MSG_GSWD_DIRECTION_PROPERTY, direction);
+			m.setInt(DIRECTION_SLOT, direction);
 		}
 	}
 	
@@ -5,17 +5,19 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
 import routing.util.EnergyModel;
 import routing.util.GeoMessageTransferAcceptPolicy; //#changed
+import routing.util.MessageBuffer;
 import routing.util.RoutingInfo;
+import util.LongHashMap;
 import util.Tuple;
 import core.Cast;
+import core.CastLookup;
 import core.Connection;
 import core.GeoDTNHost; //#changed
 import core.GeoMessage; //#changed
@@ -23,6 +25,7 @@ import core.GeoMessageListener; //#changed
 import core.NetworkInterface;
 import core.Settings;
 import core.SimClock;
+import core.TimingWheel;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
@@ -30,6 +33,8 @@ import core.SimClock;
  * {@link #update()}).
  */
 public abstract class GeoActiveRouter extends GeoMessageRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -41,12 +46,11 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	
-	/** how often TTL check (discarding old messages) is performed */
-	private static int ttlCheckInterval = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** IDs of the messages whose TTL has expired but that haven't been
+	 * dropped yet */
+	private ArrayList<String> expiredMessages;
 	
 	private GeoMessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
@@ -68,10 +72,6 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		} else {
 			this.energy = null; /* no energy model */
 		}
-		
-		ttlCheckInterval = 
-				(new Settings().getBoolean(GeoMessage.TTL_SECONDS_S, false) 
-						? 1 : 60);
 	}
 	
 	/**
@@ -89,7 +89,8 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 	public void init(GeoDTNHost geohost, List<GeoMessageListener> gmListeners) {
 		super.init(geohost, gmListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiredMessages = new ArrayList<String>();
+		watchTtls();
 	}
 	
 	/**
@@ -112,6 +113,7 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		}
 		
 		GeoDTNHost other = (GeoDTNHost) con.getOtherNode(getGeoHost());
+		GeoMessageRouter otherRouter = other.getGeoRouter();
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
 		ArrayList<GeoMessage> temp = new ArrayList<GeoMessage>(this.getGeoMessageCollection());
@@ -119,12 +121,11 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 
 		for (GeoMessage m : temp) {
 			flag =false;
+			if (otherRouter.mayKnowGeoMessage(m)) {
+				continue; // the peer would reject the message as old
+			}
 			for(Cast getTo : m.getTo()) {
-				boolean flag2 = true;
-				Collection<GeoMessage> otherMessages = other.getGeoMessageCollection();
-				if(otherMessages.contains(m.getId(true)))
-					flag2 = false;
-				if (flag2 && getTo.checkThePoint(other.getLocation())) {
+				if (getTo.checkThePoint(other)) {
 					if (startTransfer(m, con) == RCV_OK) {
 						flag = flag || true;
 					}
@@ -213,7 +214,7 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		else if (deleteDelivered && retVal == DENIED_OLD ) {
 			boolean flag = false;
 			for(Cast getTo : m.getTo()) {
-				flag = flag && getTo.checkThePoint(con.getOtherNode(this.getGeoHost()).getLocation());
+				flag = flag && getTo.checkThePoint(con.getOtherNode(this.getGeoHost()));
 			}
 			/* this final recipient has already received the msg -> delete it *//** Check if this condition is needed or not*/
 			if(flag)
@@ -256,15 +257,15 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 	
-		if ( hasGeoMessage(m.getId()) || isDeliveredGeoMessage(m) ||
-				super.isBlacklistedGeoMessage(m.getId())) {
+		if ( hasGeoMessage(m.getHandle()) || isDeliveredGeoMessage(m) ||
+				super.isBlacklistedGeoMessage(m.getHandle())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
-		if (m.getTtl() <= 0 ) { 
+		if (m.getExpiryTime() <= SimClock.getTime()) {
 			boolean flag = false;
 			for(Cast getTo : m.getTo()) {
-				flag = flag || getTo.checkThePoint(getGeoHost().getLocation()) ;
+				flag = flag || getTo.checkThePoint(getGeoHost()) ;
 			}
 			/* TTL has expired and this host is not the final recipient */
 			if(!flag)
@@ -317,16 +318,27 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Called when the TTL of a buffered message expires. The message is
+	 * dropped when the router isn't sending anything.
+	 * @param id ID of the message
+	 */
+	@Override
+	protected void ttlExpired(String id) {
+		this.expiredMessages.add(id);
+	}
+	
+	/**
+	 * Drops the messages whose TTL has expired (and that are still in the
+	 * buffer).
 	 */
 	protected void dropExpiredMessages() {
-		GeoMessage[] messages = getGeoMessageCollection().toArray(new GeoMessage[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteGeoMessage(messages[i].getId(), true);
+		for (String id : this.expiredMessages) {
+			GeoMessage m = getGeoMessage(id);
+			if (m != null && m.getExpiryTime() <= SimClock.getTime()) {
+				deleteGeoMessage(id, true);
 			}
 		}
+		this.expiredMessages.clear();
 	}
 	
 	/**
@@ -342,38 +354,38 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 
 	
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the next message to drop from the message buffer according
+	 * to the drop policy (by default the oldest message by receive time)
+	 * that is not being sent if excludeMsgBeingSent is true.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
+	 * being sent from the check (i.e. if the oldest message is
 	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * @return The message to drop or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
+	 * @see MessageBuffer#DROP_POLICY_S
 	 */
 	protected GeoMessage getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<GeoMessage> geomessages = this.getGeoMessageCollection();
-		GeoMessage oldest = null;
-		for (GeoMessage m : geomessages) {
-			
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		for (GeoMessage m : getGeoMessagesInDropOrder()) {
+			if (excludeMsgBeingSent && isSending(m.getHandle())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
+	 * recipient is some host that we're connected to at the moment. The
+	 * tuples are in the send queue order of the messages (see
+	 * {@link GeoMessageRouter#getGeoMessagesInQueueOrder()}), so they can be
+	 * tried without sorting. For every connection, the casts that contain
+	 * the peer are looked up from the shared {@link CastLookup} and joined
+	 * with the messages to those casts, so only the deliverable pairs are
+	 * visited. A message gets a tuple for every destination cast that
+	 * contains the peer.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<GeoMessage, Connection>> getMessagesForConnected() {
@@ -382,26 +394,60 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
-		boolean flag = true;
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				flag = true;
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				Collection<GeoMessage> otherMessages = to.getGeoMessageCollection();
-				if(otherMessages.contains(m.getId(true)))
-					flag = false;
-				for(Cast getTo : m.getTo()) {
-					if ( flag && getTo.checkThePoint(to.getLocation())) {
-						forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
+		List<GeoMessage> queue = getGeoMessagesInQueueOrder();
+		List<Connection> connections = getConnections();
+		/* queue positions and connection indexes of the pairs */
+		long[] pairs = new long[16];
+		int nrofPairs = 0;
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
+			for (Cast cast : CastLookup.getCastsAt(to)) {
+				for (GeoMessage m : getGeoMessagesTo(cast)) {
+					if (peerMayKnow(m, con)) {
+						continue; // the peer would reject the message as old
 					}
-				}				
+					long pair = LongHashMap.pair(
+							getGeoMessageQueuePosition(m), i);
+					for (Cast getTo : m.getTo()) {
+						if (getTo != cast) {
+							continue;
+						}
+						if (nrofPairs == pairs.length) {
+							pairs = Arrays.copyOf(pairs, nrofPairs * 2);
+						}
+						pairs[nrofPairs++] = pair;
+					}
+				}
 			}
 		}
 		
+		Arrays.sort(pairs, 0, nrofPairs);
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			new ArrayList<Tuple<GeoMessage, Connection>>(nrofPairs);
+		for (int i=0; i<nrofPairs; i++) {
+			GeoMessage m = queue.get((int)(pairs[i] >>> 32));
+			Connection con = connections.get((int)pairs[i]);
+			forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
+		}
+		
 		return forTuples;
 	}
 	
+	/**
+	 * Returns true if the peer of a connection may already know a message
+	 * (according to the summary of its router), i.e., there's no point in
+	 * offering the message to it
+	 * @param m The message
+	 * @param con The connection to the peer
+	 * @return True if the peer may know the message
+	 * @see GeoMessageRouter#mayKnowGeoMessage(GeoMessage)
+	 */
+	protected boolean peerMayKnow(GeoMessage m, Connection con) {
+		GeoDTNHost other = (GeoDTNHost)con.getOtherNode(getGeoHost());
+		return other.getGeoRouter().mayKnowGeoMessage(m);
+	}
+	
 	/**
 	 * Tries to send messages for the connections that are mentioned
 	 * in the Tuples in the order they are in the list until one of
@@ -419,6 +465,9 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		for (Tuple<GeoMessage, Connection> t : tuples) {
 			GeoMessage m = t.getKey();
 			Connection con = t.getValue();
+			if (peerMayKnow(m, con)) {
+				continue; // the peer would reject the message as old
+			}
 			if (startTransfer(m, con) == RCV_OK) {
 				return t;
 			}
@@ -437,26 +486,20 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 	  * transfer was started. 
 	  */
 	protected GeoMessage tryAllMessages(Connection con, List<GeoMessage> messages) {
-		Collection<GeoMessage> OtherMessages = ((GeoDTNHost)con.getOtherNode(getGeoHost())).getGeoMessageCollection();
-		HashMap<String,Integer[] > map = new HashMap<String,Integer[] >();
-		for (GeoMessage m : OtherMessages) {
-			if(!map.containsKey(m.getId(true))) {
-				map.put(m.getId(true),new Integer[4]);
-				for(int i=0;i<4;i++) {
-					map.get(m.getId(true))[i] = 0;
-				}
-			}
-			map.get(m.getId(true))[Math.max(0,m.getPartID()-1)] = 1;
-		}
+		GeoMessageRouter otherRouter =
+			((GeoDTNHost)con.getOtherNode(getGeoHost())).getGeoRouter();
 		for (GeoMessage m : messages) {
 
 			int retVal = 1;
 			int t = m.getPartID()-1;
-			String id = m.getId(true);
-			if(t==-1) {
-				retVal = startTransfer(m,con);
-			}else if(!map.containsKey(id)||(map.get(id)[(t+1)%4]!=1 && map.get(id)[(t+3)%4]!=1)) {
-				retVal = startTransfer(m, con);
+			/* don't offer a part if the peer has a neighbouring part */
+			int held = otherRouter.getGeoMessagePartMask(m.getBaseHandle());
+			if(t==-1 || (!hasPart(held, (t+1)%4) && !hasPart(held, (t+3)%4))) {
+				if (otherRouter.mayKnowGeoMessage(m)) {
+					retVal = DENIED_OLD; // the peer would reject it anyway
+				} else {
+					retVal = startTransfer(m, con);
+				}
 			}
 
 			if (retVal == RCV_OK) {
@@ -468,6 +511,20 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		return null;
 	}
 
+	/**
+	 * Returns true if a part mask (see
+	 * {@link GeoMessageRouter#getGeoMessagePartMask(int)}) has the part with
+	 * the given index. Index n is part n+1; a whole message counts as the
+	 * first part (index 0).
+	 * @param mask The part mask
+	 * @param index The part index
+	 * @return True if the mask has the part
+	 */
+	private static boolean hasPart(int mask, int index) {
+		int bits = (index == 0 ? 0x3 : 1 << (index + 1));
+		return (mask & bits) != 0;
+	}
+
 	/**
 	 * Tries to send all given messages to all given connections. Connections
 	 * are first iterated in the order they are in the list and for every
@@ -494,8 +551,8 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are tried in the send queue order
+	 * (see {@link GeoMessageRouter#getGeoMessagesInQueueOrder()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -506,11 +563,8 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 			return null;
 		}
 
-		List<GeoMessage> messages = 
-			new ArrayList<GeoMessage>(this.getGeoMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getGeoMessagesInQueueOrder(),
+				connections);
 	}
 		
 	/**
@@ -528,9 +582,9 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 			return null;
 		}
 		
-		@SuppressWarnings(value = "unchecked")
+		/* the tuples are already in the send queue order */
 		Tuple<GeoMessage, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
+			tryMessagesForConnected(getMessagesForConnected());
 
 		if (t != null) {
 			return t.getValue(); // started transfer
@@ -615,6 +669,25 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		return false;
 	}
 	
+	/**
+	 * Returns true if this router is currently sending a message with
+	 * the given ID handle.
+	 * @param handle Handle of the ID of the message
+	 * @return True if the message is being sent false if not
+	 * @see GeoMessage#getHandle()
+	 */
+	public boolean isSending(int handle) {
+		for (Connection con : this.sendingConnections) {
+			if (con.getGeoMessage() == null) {
+				continue; // transmission is finalized
+			}
+			if (con.getGeoMessage().getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Returns true if the node has energy left (i.e., energy modeling is
 	 * enabled OR (is enabled and model has energy left))
@@ -624,15 +697,36 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 		return this.energy == null || this.energy.getEnergy() > 0;
 	}
 	
+	/**
+	 * Returns true if the router has no messages, connections, transfers,
+	 * applications or energy model to update. The TTL expiry notifications
+	 * of already removed messages are cleared as the update would do.
+	 * @return True if the router is idle, false if not
+	 */
+	@Override
+	public boolean isIdle() {
+		if (this.getNrofGeoMessages() > 0 || this.sendingConnections.size() > 0 ||
+				this.getConnections().size() > 0 || this.energy != null ||
+				this.hasApplications()) {
+			return false;
+		}
+		
+		this.expiredMessages.clear(); /* nothing to drop */
+		return true;
+	}
+	
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
-	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * and abort those whose connection went down. Also drops the messages
+	 * whose TTL has expired (see {@link #ttlExpired(String)}).
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
 	public void update() {		
 		super.update();
+		/* the first router updated at a time expires the TTLs of all the
+		 * routers' messages */
+		TimingWheel.getExpiryWheel().advance(SimClock.getTime());
 		
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
@@ -670,11 +764,10 @@ public abstract class GeoActiveRouter extends GeoMessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval && 
+		/* drop expired messages, but only if not sending */
+		if (this.expiredMessages.size() > 0 && 
 				sendingConnections.size() == 0) {
 			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
 		}
 		
 		if (energy != null) {
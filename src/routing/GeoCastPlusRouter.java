@@ -10,6 +10,7 @@ import java.util.List;
 import core.Connection;
 import core.GeoDTNHost;
 import core.GeoMessage;
+import core.PropertySlot;
 import core.Settings;
 
 /**
@@ -20,6 +21,8 @@ import core.Settings;
  *
  */
 public class GeoCastPlusRouter extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
+
 //	
 //	/** identifier for the initial number of copies setting ({@value})*/ 
 //	public static final String NROF_COPIES = "nrofCopies";
@@ -30,10 +33,16 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 //	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = "GeoCastFinderRouter" + "." +
 		"copies";
+	/** Message property slot for the number of copies */
+	protected static final PropertySlot COPIES_SLOT =
+		PropertySlot.intSlot(MSG_COUNT_PROPERTY);
 //	
 //	/** Message property key */
 	public static final String MSG_CAST_FLAG = "GeoCastPlusRouter" + "." +
 		"flag";
+	/** Message property slot for the cast flag */
+	protected static final PropertySlot CAST_FLAG_SLOT =
+		PropertySlot.booleanSlot(MSG_CAST_FLAG);
 //
 	protected int initialNrofCopies;
 //	protected boolean isBinary;
@@ -68,10 +77,10 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 	//receiverSide
 	public GeoMessage geoMessageTransferred(String id, GeoDTNHost from) {
 		GeoMessage msg = super.geoMessageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-		Boolean flag = (Boolean)msg.getProperty(MSG_CAST_FLAG);
+		int nrofCopies = msg.getInt(COPIES_SLOT);
+		boolean flag = msg.getBoolean(CAST_FLAG_SLOT);
 		
-		assert nrofCopies != null : "Not a CastPlus message: " + msg;
+		assert msg.hasProperty(COPIES_SLOT) : "Not a CastPlus message: " + msg;
 		
 		if (nrofCopies > 0) {
 			nrofCopies --;
@@ -81,8 +90,8 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 			flag = true;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
-		msg.updateProperty(MSG_CAST_FLAG, flag);
+		msg.setInt(COPIES_SLOT, nrofCopies);
+		msg.setBoolean(CAST_FLAG_SLOT, flag);
 		return msg;
 	}
 	
@@ -91,8 +100,8 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 		makeRoomForNewGeoMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
-		msg.addProperty(MSG_CAST_FLAG, new Boolean(Cast_FLAG));
+		msg.setInt(COPIES_SLOT, initialNrofCopies);
+		msg.setBoolean(CAST_FLAG_SLOT, Cast_FLAG);
 		addToGeoMessages(msg, true);
 		return true;
 	}
@@ -110,8 +119,7 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<GeoMessage> copiesLeft = sortByQueueMode(getGeoMessagesWithCopiesLeft());
+		List<GeoMessage> copiesLeft = getGeoMessagesWithCopiesLeft();
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -122,14 +130,15 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<GeoMessage> getGeoMessagesWithCopiesLeft() {
 		List<GeoMessage> list = new ArrayList<GeoMessage>();
 
-		for (GeoMessage m : getGeoMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "CastFinder message " + m + " didn't have " + 
+		for (GeoMessage m : getGeoMessagesInQueueOrder()) {
+			int nrofCopies = m.getInt(COPIES_SLOT);
+			assert m.hasProperty(COPIES_SLOT) : "CastFinder message " + m + " didn't have " + 
 				"nrof copies property!";
 			if (nrofCopies > 0) {
 				list.add(m);
@@ -149,8 +158,8 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 	@Override
 	//senderSide
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
-		Boolean flag;
+		int nrofCopies;
+		boolean flag;
 		String msgId = con.getGeoMessage().getId();
 		/* get this router's copy of the message */
 		GeoMessage msg = getGeoMessage(msgId);
@@ -160,8 +169,8 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-		flag = (Boolean)msg.getProperty(MSG_CAST_FLAG); 
+		nrofCopies = msg.getInt(COPIES_SLOT);
+		flag = msg.getBoolean(CAST_FLAG_SLOT); 
 		if (nrofCopies > 0) {
 			nrofCopies --;
 		}
@@ -169,21 +178,21 @@ public class GeoCastPlusRouter extends GeoActiveRouter {
 			nrofCopies = 0;
 			flag = true;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
-		msg.updateProperty(MSG_CAST_FLAG, flag);
+		msg.setInt(COPIES_SLOT, nrofCopies);
+		msg.setBoolean(CAST_FLAG_SLOT, flag);
 	}
 	
 	@Override
 	protected int startTransfer(GeoMessage m, Connection con) {
 		
-		int nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-		boolean flag = (Boolean)m.getProperty(MSG_CAST_FLAG);
-		if (flag == true && !m.getTo().checkThePoint(getGeoHost().getLocation())) 
+		int nrofCopies = m.getInt(COPIES_SLOT);
+		boolean flag = m.getBoolean(CAST_FLAG_SLOT);
+		if (flag == true && !m.getTo().checkThePoint(getGeoHost())) 
 		{
 			flag = false;
 			nrofCopies ++;
-			m.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
-			m.updateProperty(MSG_CAST_FLAG, flag);
+			m.setInt(COPIES_SLOT, nrofCopies);
+			m.setBoolean(CAST_FLAG_SLOT, flag);
 		}
 		
 		//if (flag true && !m.getto checkThePoint (theOther Host.getLocation ))
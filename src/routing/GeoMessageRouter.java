@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java. util.ArrayList;
 import core.Cast;
@@ -15,24 +16,35 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.MessageBuffer;
+import routing.util.MessageSummary;
 import routing.util.RoutingInfo;
 
+import util.LongHashMap;
+import util.LongIntHashMap;
 import util.Tuple;
 
 import core.Application;
+import core.CastLookup;
 import core.Connection;
+import core.DTNHost;
 import core.GeoDTNHost; //#changed
 import core.GeoMessage; //#changed
 import core.GeoMessageListener; //#changed
+import core.MessageIds;
+import core.Profiler;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.TimingWheel;
 
 /**
  * Superclass for geomessage routers.
  */
-public abstract class GeoMessageRouter {
+public abstract class GeoMessageRouter implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** GeoMessage buffer size -setting id ({@value}). Integer value in bytes.*/
 	public static final String B_SIZE_S = "bufferSize";
 	/**
@@ -89,17 +101,32 @@ public abstract class GeoMessageRouter {
 	/** Receive return value for unspecified reason */
 	public static final int DENIED_UNSPECIFIED = -99;
 	
+	/** Number of parts a split geomessage has */
+	private static final int NROF_PARTS = 4;
+	/** Part mask with all the parts (1 - {@value #NROF_PARTS}) set */
+	private static final int ALL_PARTS = ((1 << NROF_PARTS) - 1) << 1;
+	
 	private List<GeoMessageListener> gmListeners;
-	/** The geomessages being transferred with msgID_hostName keys */
-	private HashMap<String, GeoMessage> incomingGeoMessages;
-	/** The parts of messages that are transferred with msgID */
-	private HashMap<String, GeoMessage[]> deliveredParts;
+	/** The geomessages being transferred keyed by the handle of the ID and the
+	 * address of the sender (see {@link #incomingKey(int, DTNHost)}) */
+	private LongHashMap<GeoMessage> incomingGeoMessages;
+	/** The parts of split geomessages delivered to this router by the
+	 * handles of their base IDs */
+	private LongHashMap<GeoMessage[]> deliveredParts;
+	/** Bit masks of the delivered parts (see {@link #partBit(GeoMessage)})
+	 * by the handles of the base IDs */
+	private LongIntHashMap deliveredPartMasks;
+	/** Bit masks of the carried parts (see {@link #partBit(GeoMessage)})
+	 * by the handles of the base IDs */
+	private LongIntHashMap partMasks;
+	/** The carried geomessages by their destination casts (and handles) */
+	private HashMap<Cast, LongHashMap<GeoMessage>> castIndex;
 	/** The geomessages this router is carrying */
-	private HashMap<String, GeoMessage> geomessages; 
+	private MessageBuffer<GeoMessage> geomessages; 
 	/** The geomessages this router has received as the final recipient */
-	private HashMap<String, GeoMessage> deliveredGeoMessages;
+	private LongHashMap<GeoMessage> deliveredGeoMessages;
 	/** The geomessages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedGeoMessages;
+	private LongHashMap<Object> blacklistedGeoMessages;
 	/** Host where this router belongs to */
 	private GeoDTNHost geohost;
 	/** size of the buffer */
@@ -108,6 +135,14 @@ public abstract class GeoMessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending geomessages */
 	private int sendQueueMode;
+	/** random number generator for shuffling lists in the random queue mode */
+	private Random queueRng;
+	/** Policy for dropping geomessages from a full buffer */
+	private int dropPolicy;
+	/** Maximum number of distinct keys in an exact summary */
+	private int summaryExactLimit;
+	/** Summary of the carried, delivered and blacklisted geomessages */
+	private MessageSummary summary;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -115,7 +150,11 @@ public abstract class GeoMessageRouter {
 	/**
 	 * Constructor. Creates a new geomessage router based on the settings in
 	 * the given Settings object. Size of the geomessage buffer is read from
-	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE.
+	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE. The
+	 * order in which geomessages are dropped from a full buffer is read from
+	 * the {@link MessageBuffer#DROP_POLICY_S} setting and the size of the
+	 * exact geomessage summary from the {@link MessageSummary#EXACT_LIMIT_S}
+	 * setting.
 	 * @param s The settings object
 	 */
 	public GeoMessageRouter(Settings s) {
@@ -139,7 +178,8 @@ public abstract class GeoMessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
-		
+		this.dropPolicy = MessageBuffer.readDropPolicy(s);
+		this.summaryExactLimit = MessageSummary.readExactLimit(s);
 	}
 	
 	/**
@@ -150,11 +190,16 @@ public abstract class GeoMessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(GeoDTNHost geohost, List<GeoMessageListener> gmListeners) {
-		this.incomingGeoMessages = new HashMap<String, GeoMessage>();
-		this.deliveredParts = new HashMap<String, GeoMessage[]>();
-		this.geomessages = new HashMap<String, GeoMessage>();
-		this.deliveredGeoMessages = new HashMap<String, GeoMessage>();
-		this.blacklistedGeoMessages = new HashMap<String, Object>();
+		this.incomingGeoMessages = new LongHashMap<GeoMessage>();
+		this.deliveredParts = new LongHashMap<GeoMessage[]>();
+		this.deliveredPartMasks = new LongIntHashMap();
+		this.partMasks = new LongIntHashMap();
+		this.castIndex = new HashMap<Cast, LongHashMap<GeoMessage>>();
+		this.geomessages = new Buffer(this.dropPolicy, this.sendQueueMode);
+		this.queueRng = new Random();
+		this.deliveredGeoMessages = new LongHashMap<GeoMessage>();
+		this.blacklistedGeoMessages = new LongHashMap<Object>();
+		this.summary = new MessageSummary(this.summaryExactLimit);
 		this.gmListeners = gmListeners;
 		this.geohost = geohost;
 	}
@@ -166,6 +211,8 @@ public abstract class GeoMessageRouter {
 	protected GeoMessageRouter(GeoMessageRouter r) {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
+		this.dropPolicy = r.dropPolicy;
+		this.summaryExactLimit = r.summaryExactLimit;
 		this.sendQueueMode = r.sendQueueMode;
 
 		this.applications = new HashMap<String, Collection<Application>>();
@@ -182,11 +229,33 @@ public abstract class GeoMessageRouter {
 	 * interval to update the status of transfer(s). 
 	 */
 	public void update(){
+		long start = Profiler.start();
 		for (Collection<Application> apps : this.applications.values()) {
 			for (Application app : apps) {
 				app.update(this.geohost);
 			}
 		}
+		Profiler.stop(Profiler.Phase.APPLICATIONS, start);
+	}
+	
+	/**
+	 * Returns true if calling {@link #update()} at this time would not change
+	 * the state of the router (other than what this method takes care of).
+	 * Hosts may skip the updates of idle routers, so routers that return
+	 * true must do here the bookkeeping that the skipped update would have
+	 * done. This implementation returns always false.
+	 * @return True if the router is idle, false if not
+	 */
+	public boolean isIdle() {
+		return false;
+	}
+	
+	/**
+	 * Returns true if any applications are attached to this router
+	 * @return True if the router has applications
+	 */
+	protected boolean hasApplications() {
+		return !this.applications.isEmpty();
 	}
 	
 	/**
@@ -213,6 +282,16 @@ public abstract class GeoMessageRouter {
 		return this.geomessages.containsKey(id);
 	}
 	
+	/**
+	 * Checks if this router has a geomessage with certain id buffered.
+	 * @param handle Handle of the identifier of the geomessage
+	 * @return True if the router has geomessage with this id, false if not
+	 * @see GeoMessage#getHandle()
+	 */
+	public boolean hasGeoMessage(int handle) {
+		return this.geomessages.containsKey(handle);
+	}
+	
 	/**
 	 * Returns true if a full geomessage with same ID as the given geomessage has been
 	 * received by this geohost as the <strong>final</strong> recipient 
@@ -222,7 +301,7 @@ public abstract class GeoMessageRouter {
 	 * this host as the final recipient.
 	 */
 	public boolean isDeliveredGeoMessage(GeoMessage m) {
-		return (this.deliveredGeoMessages.containsKey(m.getId(true)));
+		return (this.deliveredGeoMessages.containsKey(m.getBaseHandle()));
 	}
 	
 	/** 
@@ -235,7 +314,92 @@ public abstract class GeoMessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedGeoMessage(String id) {
-		return this.blacklistedGeoMessages.containsKey(id);
+		int handle = MessageIds.getHandle(id);
+		return handle != MessageIds.NO_HANDLE &&
+			this.blacklistedGeoMessages.containsKey(handle);
+	}
+	
+	/** 
+	 * Returns <code>true</code> if the geomessage has been blacklisted.
+	 * @param handle	handle of the id of the geomessage
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 * @see #isBlacklistedGeoMessage(String)
+	 */
+	protected boolean isBlacklistedGeoMessage(int handle) {
+		return this.blacklistedGeoMessages.containsKey(handle);
+	}
+	
+	/**
+	 * Returns true if this router may already know the given geomessage,
+	 * i.e., it may carry a geomessage with the same ID or the geomessage
+	 * may have been delivered to or blacklisted by this router. A peer
+	 * can skip the geomessages this method returns true for, because this
+	 * router would reject them as old (see
+	 * {@link GeoActiveRouter#checkReceiving(GeoMessage, GeoDTNHost)}).
+	 * The answer is exact while the summary is small; for large summaries
+	 * false positives are possible.
+	 * @param m The geomessage
+	 * @return False if this router certainly doesn't know the geomessage,
+	 * true if it does (or may)
+	 * @see #getGeoMessageSummary()
+	 */
+	public boolean mayKnowGeoMessage(GeoMessage m) {
+		return this.summary.mightContain(heldKey(m.getHandle())) ||
+			this.summary.mightContain(deliveredKey(m.getBaseHandle()));
+	}
+	
+	/**
+	 * Returns the summary of the geomessages this router knows about (the
+	 * carried, delivered and blacklisted geomessages). The summary is
+	 * updated as the buffers of the router change.
+	 * @return The summary
+	 * @see #mayKnowGeoMessage(GeoMessage)
+	 */
+	public MessageSummary getGeoMessageSummary() {
+		return this.summary;
+	}
+	
+	/**
+	 * Returns the summary key of a carried or blacklisted geomessage
+	 * @param handle Handle of the ID of the geomessage
+	 */
+	private static int heldKey(int handle) {
+		return handle << 1;
+	}
+	
+	/**
+	 * Returns the summary key of a delivered geomessage
+	 * @param handle Handle of the ID of the geomessage
+	 */
+	private static int deliveredKey(int handle) {
+		return (handle << 1) | 1;
+	}
+	
+	/**
+	 * Adds a key to the summary and rebuilds the summary from the buffers
+	 * if its Bloom filter has filled up
+	 * @param key The key to add
+	 */
+	private void addToSummary(int key) {
+		this.summary.add(key);
+		if (!this.summary.isSaturated()) {
+			return;
+		}
+
+		int[] keys = new int[this.geomessages.size() +
+		                     this.deliveredGeoMessages.size() +
+		                     this.blacklistedGeoMessages.size()];
+		int n = 0;
+		for (GeoMessage m : this.geomessages.values()) {
+			keys[n++] = heldKey(m.getHandle());
+		}
+		for (long handle : this.deliveredGeoMessages.keys()) {
+			keys[n++] = deliveredKey((int)handle);
+		}
+		for (long handle : this.blacklistedGeoMessages.keys()) {
+			keys[n++] = heldKey((int)handle);
+		}
+		this.summary.rebuild(keys, n);
 	}
 	
 	/**
@@ -274,17 +438,39 @@ public abstract class GeoMessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (GeoMessage m : getGeoMessageCollection()) {
-			occupancy += m.getSize();
-		}
-		
-		return this.getBufferSize() - occupancy;
+		return (int)(this.getBufferSize() - this.geomessages.getOccupancy());
+	}
+	
+	/**
+	 * Starts watching the TTLs of the buffered geomessages. After this,
+	 * {@link #ttlExpired(String)} is called when the TTL of a buffered
+	 * geomessage expires. Must be called before any geomessages are added to the
+	 * buffer (i.e., in {@link #init}).
+	 */
+	protected void watchTtls() {
+		this.geomessages.setExpiryListener(new ExpiryListener(this));
+	}
+	
+	/**
+	 * Called when the TTL of a buffered geomessage expires if the TTLs are
+	 * {@link #watchTtls() watched}. This implementation does nothing.
+	 * @param id ID of the geomessage
+	 */
+	protected void ttlExpired(String id) { }
+	
+	/**
+	 * Returns the geomessages of this router in the order they should be
+	 * dropped in when room is needed in the buffer (according to the
+	 * {@link MessageBuffer#DROP_POLICY_S} setting). The buffer must not be
+	 * modified while iterating.
+	 * @return The geomessages in drop order
+	 */
+	protected Iterable<GeoMessage> getGeoMessagesInDropOrder() {
+		return this.geomessages.inDropOrder();
 	}
 	
 	/**
@@ -375,7 +561,7 @@ public abstract class GeoMessageRouter {
 		// If the application re-targets the message (changes 'to')
 		// then the message is not considered as 'delivered' to this host.
 		for(Cast getTo : aGeoMessage.getTo()) {
-			isFinalRecipient = isFinalRecipient || getTo.checkThePoint(this.geohost.getLocation());
+			isFinalRecipient = isFinalRecipient || getTo.checkThePoint(this.geohost);
 		}
 //		isFinalRecipient = aGeoMessage.getTo().checkThePoint(this.geohost.getLocation());
 		isFirstDelivery = isFinalRecipient && !isDeliveredGeoMessage(aGeoMessage);
@@ -388,16 +574,21 @@ public abstract class GeoMessageRouter {
 		} else if (isFinalRecipient) {
 			if (isFirstDelivery) {
 				if(aGeoMessage.getPartID()!=0) {
-					String key = aGeoMessage.getId(true);
-					if(!this.deliveredParts.containsKey(key)) {
-						this.deliveredParts.put(key, new GeoMessage[4]);
+					int key = aGeoMessage.getBaseHandle();
+					GeoMessage[] parts = this.deliveredParts.get(key);
+					if (parts == null) {
+						parts = new GeoMessage[NROF_PARTS];
+						this.deliveredParts.put(key, parts);
 					}
-					this.deliveredParts.get(key)[aGeoMessage.getPartID()-1] = aGeoMessage;
-					if(allParts(key)) {
+					parts[aGeoMessage.getPartID()-1] = aGeoMessage;
+					int mask = this.deliveredPartMasks.get(key) |
+						partBit(aGeoMessage);
+					this.deliveredPartMasks.put(key, mask);
+					if (mask == ALL_PARTS) {
 						String payload = new String();
-						BigInteger[] arr = new BigInteger[4];
-						for(int i=0;i<4;i++) {
-							arr[i] = GeoMessage.encode(deliveredParts.get(key)[i].getPayload());
+						BigInteger[] arr = new BigInteger[NROF_PARTS];
+						for(int i=0;i<NROF_PARTS;i++) {
+							arr[i] = GeoMessage.encode(parts[i].getPayload());
 						}
 						payload = GeoMessage.decrypt(arr);
 						aGeoMessage = aGeoMessage.replicate(aGeoMessage.getId(true));
@@ -409,15 +600,20 @@ public abstract class GeoMessageRouter {
 						put_to_buffer = false;
 					}
 				}
-				if(put_to_buffer)
-					this.deliveredGeoMessages.put(id, aGeoMessage); 
+				if (put_to_buffer && this.deliveredGeoMessages.put(
+						incoming.getHandle(), aGeoMessage) == null) {
+					addToSummary(deliveredKey(incoming.getHandle()));
+				}
 			}
 			// -> put to buffer (because of the nature of the Geocasting)
 			addToGeoMessages(aGeoMessage, false);
 		} else if (outgoing == null) {
 			// Blacklist geomessages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedGeoMessages.put(id, null);
+			if (this.blacklistedGeoMessages.put(incoming.getHandle(),
+					Boolean.TRUE) == null) {
+				addToSummary(heldKey(incoming.getHandle()));
+			}
 		}
 		
 		for (GeoMessageListener gml : this.gmListeners) {
@@ -429,13 +625,37 @@ public abstract class GeoMessageRouter {
 		return aGeoMessage;
 	}
 	
+	/**
+	 * Returns true if all the parts of a split geomessage have been
+	 * delivered to this router
+	 * @param key The base ID of the geomessage (see
+	 * {@link GeoMessage#getId(boolean)})
+	 * @return True if all the parts have been delivered
+	 */
 	protected boolean allParts(String key) {
-
-		for(int i=0;i<4;i++) {
-			if(deliveredParts.get(key)[i]==null)
-				return false;
-		}
-		return true;
+		return this.deliveredPartMasks.get(MessageIds.getHandle(key)) ==
+			ALL_PARTS;
+	}
+	
+	/**
+	 * Returns the parts of a geomessage this router carries as a bit mask.
+	 * Bit n is set if the router carries part n of the geomessage and bit 0
+	 * is set if it carries the whole (not split) geomessage.
+	 * @param baseHandle Handle of the base ID of the geomessage (see
+	 * {@link GeoMessage#getBaseHandle()})
+	 * @return The bit mask of the carried parts (0 if none)
+	 */
+	public int getGeoMessagePartMask(int baseHandle) {
+		return this.partMasks.get(baseHandle);
+	}
+	
+	/**
+	 * Returns the bit of a geomessage in the part masks
+	 * @param m The geomessage
+	 * @return The bit (bit n for part n, bit 0 for a whole geomessage)
+	 */
+	private static int partBit(GeoMessage m) {
+		return 1 << m.getPartID();
 	}
 	
 	/**
@@ -445,7 +665,7 @@ public abstract class GeoMessageRouter {
 	 * @param from Who the geomessage was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(GeoMessage m, GeoDTNHost from) {
-		this.incomingGeoMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingGeoMessages.put(incomingKey(m.getHandle(), from), m);
 	}
 	
 	/**
@@ -456,7 +676,21 @@ public abstract class GeoMessageRouter {
 	 * @return The found geomessage or null if such geomessage wasn't found
 	 */
 	protected GeoMessage removeFromIncomingBuffer(String id, GeoDTNHost from) {
-		return this.incomingGeoMessages.remove(id + "_" + from.toString());
+		int handle = MessageIds.getHandle(id);
+		if (handle == MessageIds.NO_HANDLE) {
+			return null;
+		}
+		return this.incomingGeoMessages.remove(incomingKey(handle, from));
+	}
+	
+	/**
+	 * Returns the key of an incoming geomessage
+	 * @param handle Handle of the ID of the geomessage
+	 * @param from The host that sent the geomessage
+	 * @return The key
+	 */
+	private static long incomingKey(int handle, DTNHost from) {
+		return LongHashMap.pair(handle, from.getAddress());
 	}
 	
 	/**
@@ -466,7 +700,13 @@ public abstract class GeoMessageRouter {
 	 * @return True if such geomessage is incoming right now
 	 */
 	protected boolean isIncomingGeoMessage(String id) {
-		return this.incomingGeoMessages.containsKey(id);
+		int handle = MessageIds.getHandle(id);
+		for (GeoMessage m : this.incomingGeoMessages.values()) {
+			if (m.getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -477,7 +717,15 @@ public abstract class GeoMessageRouter {
 	 * geomessage, if false, nothing is informed.
 	 */
 	protected void addToGeoMessages(GeoMessage m, boolean newGeoMessage) {
-		this.geomessages.put(m.getId(), m);
+		GeoMessage old = this.geomessages.put(m);
+		if (old == null) {
+			addToSummary(heldKey(m.getHandle()));
+			this.partMasks.put(m.getBaseHandle(),
+					getGeoMessagePartMask(m.getBaseHandle()) | partBit(m));
+		} else {
+			removeFromCastIndex(old);
+		}
+		addToCastIndex(m);
 		
 		if (newGeoMessage) {
 			for (GeoMessageListener gml : this.gmListeners) {
@@ -493,9 +741,69 @@ public abstract class GeoMessageRouter {
 	 */
 	protected GeoMessage removeFromGeoMessages(String id) {
 		GeoMessage m = this.geomessages.remove(id);
+		if (m != null) {
+			removeFromCastIndex(m);
+			this.summary.remove(heldKey(m.getHandle()));
+			/* the mapping is removed when no parts are left */
+			this.partMasks.put(m.getBaseHandle(),
+					getGeoMessagePartMask(m.getBaseHandle()) & ~partBit(m));
+		}
 		return m;
 	}
 	
+	/**
+	 * Returns the carried geomessages that have the given cast as one of
+	 * their destinations
+	 * @param cast The destination cast
+	 * @return The geomessages in no particular order (read-only)
+	 */
+	protected Collection<GeoMessage> getGeoMessagesTo(Cast cast) {
+		LongHashMap<GeoMessage> byCast = this.castIndex.get(cast);
+		if (byCast == null) {
+			return Collections.emptyList();
+		}
+		return byCast.values();
+	}
+
+	/**
+	 * Returns the position of a carried geomessage in the send queue order
+	 * (see {@link #getGeoMessagesInQueueOrder()})
+	 * @param m The geomessage
+	 * @return The position or -1 if the geomessage isn't in the buffer
+	 */
+	protected int getGeoMessageQueuePosition(GeoMessage m) {
+		return this.geomessages.getSendPosition(m.getHandle());
+	}
+
+	/**
+	 * Adds a geomessage to the cast index under all of its destination
+	 * casts. The casts are registered to the shared {@link CastLookup}.
+	 */
+	private void addToCastIndex(GeoMessage m) {
+		for (Cast cast : m.getTo()) {
+			LongHashMap<GeoMessage> byCast = this.castIndex.get(cast);
+			if (byCast == null) {
+				CastLookup.register(cast);
+				byCast = new LongHashMap<GeoMessage>();
+				this.castIndex.put(cast, byCast);
+			}
+			byCast.put(m.getHandle(), m);
+		}
+	}
+
+	/**
+	 * Removes a geomessage from the cast index
+	 */
+	private void removeFromCastIndex(GeoMessage m) {
+		for (Cast cast : m.getTo()) {
+			LongHashMap<GeoMessage> byCast = this.castIndex.get(cast);
+			if (byCast != null && byCast.remove(m.getHandle()) != null &&
+					byCast.isEmpty()) {
+				this.castIndex.remove(cast);
+			}
+		}
+	}
+
 	/**
 	 * This method should be called (on the receiving host) when a gomessage 
 	 * transfer was aborted.
@@ -546,138 +854,64 @@ public abstract class GeoMessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns the geomessages of this router in the order they should be sent in
+	 * (according to the send queue mode). The order is kept up to date as
+	 * the buffer changes, so it doesn't have to be sorted. In the random
+	 * mode the order is a permutation that changes every simulated second.
+	 * The returned list is a read-only snapshot that isn't affected by
+	 * later changes of the buffer.
+	 * @return The geomessages in send queue order
+	 * @see MessageBuffer#inSendOrder()
+	 */
+	protected List<GeoMessage> getGeoMessagesInQueueOrder() {
+		return this.geomessages.inSendOrder();
+	}
+
 	/**
 	 * Sorts/shuffles the given list according to the current sending queue 
-	 * mode. The list can contain either GeoMessage or Tuple<GeoMessage, GeoConnection> 
-	 * objects. Other objects cause error. 
+	 * mode. The list can contain either GeoMessage or Tuple<GeoMessage, Connection> 
+	 * objects. Other objects cause error. Lists of the router's own
+	 * geomessages don't need sorting: see {@link #getGeoMessagesInQueueOrder()}.
 	 * @param list The list to sort or shuffle
 	 * @return The sorted/shuffled list
 	 */
 	@SuppressWarnings(value = "unchecked") /* ugly way to make this generic */
 	protected List sortByQueueMode(List list) {
-		switch (sendQueueMode) {
-		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
-			break;
-		case Q_MODE_FIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getReceiveTime() - m2.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
-			break;
-		case Q_MODE_LIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m2.getReceiveTime() - m1.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
-			break;
-		case Q_MODE_HTFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
+		if (sendQueueMode == Q_MODE_RANDOM) {
+			this.queueRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(list, this.queueRng);
+			return list;
+		}
+		if (sendQueueMode < Q_MODE_RANDOM || sendQueueMode > Q_MODE_LTFO) {
+			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+		if (list.size() < 2) {
+			return list;
+		}
+		
+		/* check the type once instead of on every comparison */
+		Object first = list.get(0);
+		if (first instanceof Tuple) {
+			Collections.sort(list, new Comparator() {
+				/** Compares two tuples by their geomessages' send keys */
 				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m2.getTtl() - m1.getTtl();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
+					return compareKeys(
+							((Tuple<GeoMessage, Connection>)o1).getKey(),
+							((Tuple<GeoMessage, Connection>)o2).getKey());
 				}
 			});
-			break;
-		case Q_MODE_LTFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
+		}
+		else if (first instanceof GeoMessage) {
+			Collections.sort(list, new Comparator() {
+				/** Compares two geomessages by their send keys */
 				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getTtl() - m2.getTtl();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
+					return compareKeys((GeoMessage)o1, (GeoMessage)o2);
 				}
 			});
-			break;
-		/* add more queue modes here */
-		default:
-			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+		else {
+			throw new SimError("Invalid type of objects in the list");
 		}
 		
 		return list;
@@ -697,34 +931,32 @@ public abstract class GeoMessageRouter {
 			/* return randomly (enough) but consistently -1, 0 or 1 */
 			return (m1.hashCode()/2 + m2.hashCode()/2) % 3 - 1; 
 		case Q_MODE_FIFO:
-			double diff1 = m1.getReceiveTime() - m2.getReceiveTime();
-			if (diff1 == 0) {
-				return 0;
-			}
-			return (diff1 < 0 ? -1 : 1);
 		case Q_MODE_LIFO:
-			double diff2 = m2.getReceiveTime() - m1.getReceiveTime();
-			if (diff2 == 0) {
-				return 0;
-			}
-			return (diff2 < 0 ? -1 : 1);
 		case Q_MODE_HTFO:
-			double diff3 = m2.getTtl() - m1.getTtl();
-			if (diff3 == 0) {
-				return 0;
-			}
-			return (diff3 < 0 ? -1 : 1);
 		case Q_MODE_LTFO:
-			double diff4 = m1.getTtl() - m2.getTtl();
-			if (diff4 == 0) {
-				return 0;
-			}
-			return (diff4 < 0 ? -1 : 1);
+			return compareKeys(m1, m2);
 		/* add more queue modes here */
 		default:
 			throw new SimError("Unknown queue mode " + sendQueueMode);
 		}
 	}
+
+	/**
+	 * Compares two geomessages by their send keys (see
+	 * {@link MessageBuffer#getSendKey(int, double, double)}); the TTL
+	 * modes compare the expiry times, which orders the geomessages like their
+	 * remaining TTLs without computing them
+	 */
+	private int compareKeys(GeoMessage m1, GeoMessage m2) {
+		double k1 = MessageBuffer.getSendKey(sendQueueMode,
+				m1.getReceiveTime(), m1.getExpiryTime());
+		double k2 = MessageBuffer.getSendKey(sendQueueMode,
+				m2.getReceiveTime(), m2.getExpiryTime());
+		if (k1 == k2) {
+			return 0;
+		}
+		return (k1 < k2 ? -1 : 1);
+	}
 	
 	/**
 	 * Returns routing information about this router.
@@ -812,4 +1044,53 @@ public abstract class GeoMessageRouter {
 			this.getGeoHost().toString() + " with " + getNrofGeoMessages() 
 			+ " geomessages";
 	}
+	
+	/**
+	 * Message buffer for {@link GeoMessage}s
+	 */
+	private static class Buffer extends MessageBuffer<GeoMessage> {
+		private static final long serialVersionUID = 42L;
+
+		public Buffer(int dropPolicy, int sendQueueMode) {
+			super(dropPolicy, sendQueueMode);
+		}
+		
+		protected String getId(GeoMessage m) {
+			return m.getId();
+		}
+		
+		protected int getHandle(GeoMessage m) {
+			return m.getHandle();
+		}
+		
+		protected int getSize(GeoMessage m) {
+			return m.getSize();
+		}
+		
+		protected double getReceiveTime(GeoMessage m) {
+			return m.getReceiveTime();
+		}
+		
+		protected double getExpiryTime(GeoMessage m) {
+			return m.getExpiryTime();
+		}
+	}
+	
+	/**
+	 * Passes the TTL expiry timers of the buffer to the router
+	 */
+	private static class ExpiryListener implements TimingWheel.Listener,
+		Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private GeoMessageRouter router;
+		
+		public ExpiryListener(GeoMessageRouter router) {
+			this.router = router;
+		}
+		
+		public void timerExpired(Object key) {
+			router.ttlExpired((String)key);
+		}
+	}
 }
@@ -17,6 +17,7 @@ import core.Equation;
 import core.GeoDTNHost;
 import core.GeoMessage;
 import core.GeoSimScenario;
+import core.PropertySlot;
 import core.Settings;
 import core.SimClock;
 
@@ -26,12 +27,19 @@ import core.SimClock;
  *
  */
 public class GeooppRouter extends GeoActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** Message Geoopp pi Rate key */
 	public static final String MSG_GEOOPP_PROPERTY = "GeooppRouter" + "." +"maxPi";
+	/** Message property slot for the maximum Pi */
+	protected static final PropertySlot PI_SLOT =
+		PropertySlot.doubleSlot(MSG_GEOOPP_PROPERTY);
 	
 	/** Message Geoopp flag */
 	public static final String MSG_GEOOPPFLAG_PROPERTY = "GeooppRouter" + "." +"flag";
+	/** Message property slot for the flag */
+	protected static final PropertySlot FLAG_SLOT =
+		PropertySlot.booleanSlot(MSG_GEOOPPFLAG_PROPERTY);
 	
 	/** List of cells in the map (pre-defined)*/
 	List<Cast> cellList;
@@ -77,8 +85,8 @@ public class GeooppRouter extends GeoActiveRouter {
 	public boolean createNewGeoMessage(GeoMessage msg) {
 		makeRoomForNewGeoMessage(msg.getSize());
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_GEOOPP_PROPERTY, new Double(initialMaxPi));
-		msg.addProperty(MSG_GEOOPPFLAG_PROPERTY, new Boolean(false));
+		msg.setDouble(PI_SLOT, initialMaxPi);
+		msg.setBoolean(FLAG_SLOT, false);
 		addToGeoMessages(msg, true);
 		return true;
 	}
@@ -95,26 +103,16 @@ public class GeooppRouter extends GeoActiveRouter {
 			return new ArrayList<Tuple<GeoMessage, Connection>>(0); 
 		}
 
-		List<Tuple<GeoMessage, Connection>> forTuples = new ArrayList<Tuple<GeoMessage, Connection>>();
-		
 		//First deliver the deliverable messages
-		for (GeoMessage m : getGeoMessageCollection()) {
-			for (Connection con : getConnections()) {
-				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				
-				//Flooding Phase
-				if (m.getTo().checkThePoint(to.getLocation())) {
-					forTuples.add(new Tuple<GeoMessage, Connection>(m,con));
-				}
-			}
-		}
+		List<Tuple<GeoMessage, Connection>> forTuples =
+			super.getMessagesForConnected();
 		
 		//Second - hand in messages with better chance of delivery
 		for (GeoMessage m : getGeoMessageCollection()) {
 			for (Connection con : getConnections()) {
 				GeoDTNHost to = (GeoDTNHost) con.getOtherNode(getGeoHost());
-				double messageGeooppPiRate = (Double) m.getProperty(MSG_GEOOPP_PROPERTY);
-				boolean messageGeooppFlag = (Boolean) m.getProperty(MSG_GEOOPPFLAG_PROPERTY);
+				double messageGeooppPiRate = m.getDouble(PI_SLOT);
+				boolean messageGeooppFlag = m.getBoolean(FLAG_SLOT);
 				
 				//First Phase of Routing procedure
 				if ( !messageGeooppFlag && messageGeooppPiRate < ((GeooppRouter) to.getGeoRouter()).getPiCast(m)) {
@@ -126,6 +124,15 @@ public class GeooppRouter extends GeoActiveRouter {
 		return forTuples;
 	}
 	
+	/**
+	 * The cell visiting times and contact history are tracked on every
+	 * update, so the router is never idle.
+	 */
+	@Override
+	public boolean isIdle() {
+		return false;
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -149,7 +156,7 @@ public class GeooppRouter extends GeoActiveRouter {
 		
 		for(Cast key : cellVisitingTimes.keySet()) {
 					
-			if (key.checkThePoint(this.getGeoHost().getLocation())) {
+			if (key.checkThePoint(this.getGeoHost())) {
 				inCellFlag = true;
 				
 				//for Pi(c)
@@ -157,7 +164,7 @@ public class GeooppRouter extends GeoActiveRouter {
 				if (!lc.isEmpty()) {this.currentCellVisitAny = 1;}
 			}
 			
-			if (key.checkThePoint(this.getGeoHost().getLocation()) && key != currentCell) {
+			if (key.checkThePoint(this.getGeoHost()) && key != currentCell) {
 						
 				ArrayList<Double> times = new ArrayList<Double>();
 				if (this.cellVisitingTimes.get(key) != null){
@@ -210,8 +217,8 @@ public class GeooppRouter extends GeoActiveRouter {
 	private void updateArrivedInDestenitionFlag() {
 		
 		for (GeoMessage m : getGeoMessageCollection()) {
-			boolean insideRecipient = m.getTo().checkThePoint(this.getGeoHost().getLocation());
-			m.updateProperty(MSG_GEOOPPFLAG_PROPERTY, insideRecipient);
+			boolean insideRecipient = m.getTo().checkThePoint(this.getGeoHost());
+			m.setBoolean(FLAG_SLOT, insideRecipient);
 		}		
 	}
 
@@ -222,7 +229,7 @@ public class GeooppRouter extends GeoActiveRouter {
 
 		for (GeoMessage m : getGeoMessageCollection()) {
 			double pi = getPiCast(m);
-			m.updateProperty(MSG_GEOOPP_PROPERTY, pi);
+			m.setDouble(PI_SLOT, pi);
 		}
 	}
 	
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -12,23 +13,29 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.MessageBuffer;
 import routing.util.RoutingInfo;
+import util.LongHashMap;
 import util.Tuple;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
-import core.GeoMessage;
 import core.Message;
+import core.MessageIds;
 import core.MessageListener;
+import core.Profiler;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.TimingWheel;
 
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	/** Message buffer size -setting id ({@value}). Integer value in bytes.*/
 	public static final String B_SIZE_S = "bufferSize";
 	/**
@@ -86,14 +93,15 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 	
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred keyed by the handle of the ID and the
+	 * address of the sender (see {@link #incomingKey(int, DTNHost)}) */
+	private LongHashMap<Message> incomingMessages;
 	/** The messages this router is carrying */
-	private HashMap<String, Message> messages; 
+	private MessageBuffer<Message> messages; 
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
+	private LongHashMap<Message> deliveredMessages;
 	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private LongHashMap<Object> blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -102,6 +110,10 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** random number generator for shuffling lists in the random queue mode */
+	private Random queueRng;
+	/** Policy for dropping messages from a full buffer */
+	private int dropPolicy;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -109,7 +121,9 @@ public abstract class MessageRouter {
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object. Size of the message buffer is read from
-	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE.
+	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE. The
+	 * order in which messages are dropped from a full buffer is read from
+	 * the {@link MessageBuffer#DROP_POLICY_S} setting.
 	 * @param s The settings object
 	 */
 	public MessageRouter(Settings s) {
@@ -133,7 +147,7 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
-		
+		this.dropPolicy = MessageBuffer.readDropPolicy(s);
 	}
 	
 	/**
@@ -144,10 +158,11 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new LongHashMap<Message>();
+		this.messages = new Buffer(this.dropPolicy, this.sendQueueMode);
+		this.queueRng = new Random();
+		this.deliveredMessages = new LongHashMap<Message>();
+		this.blacklistedMessages = new LongHashMap<Object>();
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -160,6 +175,7 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.dropPolicy = r.dropPolicy;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -175,11 +191,33 @@ public abstract class MessageRouter {
 	 * interval to update the status of transfer(s). 
 	 */
 	public void update(){
+		long start = Profiler.start();
 		for (Collection<Application> apps : this.applications.values()) {
 			for (Application app : apps) {
 				app.update(this.host);
 			}
 		}
+		Profiler.stop(Profiler.Phase.APPLICATIONS, start);
+	}
+	
+	/**
+	 * Returns true if calling {@link #update()} at this time would not change
+	 * the state of the router (other than what this method takes care of).
+	 * Hosts may skip the updates of idle routers, so routers that return
+	 * true must do here the bookkeeping that the skipped update would have
+	 * done. This implementation returns always false.
+	 * @return True if the router is idle, false if not
+	 */
+	public boolean isIdle() {
+		return false;
+	}
+	
+	/**
+	 * Returns true if any applications are attached to this router
+	 * @return True if the router has applications
+	 */
+	protected boolean hasApplications() {
+		return !this.applications.isEmpty();
 	}
 	
 	/**
@@ -206,6 +244,16 @@ public abstract class MessageRouter {
 		return this.messages.containsKey(id);
 	}
 	
+	/**
+	 * Checks if this router has a message with certain id buffered.
+	 * @param handle Handle of the identifier of the message
+	 * @return True if the router has message with this id, false if not
+	 * @see Message#getHandle()
+	 */
+	public boolean hasMessage(int handle) {
+		return this.messages.containsKey(handle);
+	}
+	
 	/**
 	 * Returns true if a full message with same ID as the given message has been
 	 * received by this host as the <strong>final</strong> recipient 
@@ -215,7 +263,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.containsKey(m.getHandle()));
 	}
 	
 	/** 
@@ -228,7 +276,19 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		int handle = MessageIds.getHandle(id);
+		return handle != MessageIds.NO_HANDLE &&
+			this.blacklistedMessages.containsKey(handle);
+	}
+	
+	/** 
+	 * Returns <code>true</code> if the message has been blacklisted.
+	 * @param handle	handle of the id of the message
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 * @see #isBlacklistedMessage(String)
+	 */
+	protected boolean isBlacklistedMessage(int handle) {
+		return this.blacklistedMessages.containsKey(handle);
 	}
 	
 	/**
@@ -267,17 +327,39 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-		
-		return this.getBufferSize() - occupancy;
+		return (int)(this.getBufferSize() - this.messages.getOccupancy());
+	}
+	
+	/**
+	 * Starts watching the TTLs of the buffered messages. After this,
+	 * {@link #ttlExpired(String)} is called when the TTL of a buffered
+	 * message expires. Must be called before any messages are added to the
+	 * buffer (i.e., in {@link #init}).
+	 */
+	protected void watchTtls() {
+		this.messages.setExpiryListener(new ExpiryListener(this));
+	}
+	
+	/**
+	 * Called when the TTL of a buffered message expires if the TTLs are
+	 * {@link #watchTtls() watched}. This implementation does nothing.
+	 * @param id ID of the message
+	 */
+	protected void ttlExpired(String id) { }
+	
+	/**
+	 * Returns the messages of this router in the order they should be
+	 * dropped in when room is needed in the buffer (according to the
+	 * {@link MessageBuffer#DROP_POLICY_S} setting). The buffer must not be
+	 * modified while iterating.
+	 * @return The messages in drop order
+	 */
+	protected Iterable<Message> getMessagesInDropOrder() {
+		return this.messages.inDropOrder();
 	}
 	
 	/**
@@ -376,11 +458,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getHandle(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.put(incoming.getHandle(), Boolean.TRUE);
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -398,7 +480,7 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.put(incomingKey(m.getHandle(), from), m);
 	}
 	
 	/**
@@ -409,7 +491,21 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int handle = MessageIds.getHandle(id);
+		if (handle == MessageIds.NO_HANDLE) {
+			return null;
+		}
+		return this.incomingMessages.remove(incomingKey(handle, from));
+	}
+	
+	/**
+	 * Returns the key of an incoming message
+	 * @param handle Handle of the ID of the message
+	 * @param from The host that sent the message
+	 * @return The key
+	 */
+	private static long incomingKey(int handle, DTNHost from) {
+		return LongHashMap.pair(handle, from.getAddress());
 	}
 	
 	/**
@@ -419,7 +515,13 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		int handle = MessageIds.getHandle(id);
+		for (Message m : this.incomingMessages.values()) {
+			if (m.getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -430,7 +532,7 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		this.messages.put(m);
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -499,138 +601,64 @@ public abstract class MessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns the messages of this router in the order they should be sent in
+	 * (according to the send queue mode). The order is kept up to date as
+	 * the buffer changes, so it doesn't have to be sorted. In the random
+	 * mode the order is a permutation that changes every simulated second.
+	 * The returned list is a read-only snapshot that isn't affected by
+	 * later changes of the buffer.
+	 * @return The messages in send queue order
+	 * @see MessageBuffer#inSendOrder()
+	 */
+	protected List<Message> getMessagesInQueueOrder() {
+		return this.messages.inSendOrder();
+	}
+
 	/**
 	 * Sorts/shuffles the given list according to the current sending queue 
 	 * mode. The list can contain either Message or Tuple<Message, Connection> 
-	 * objects. Other objects cause error. 
+	 * objects. Other objects cause error. Lists of the router's own
+	 * messages don't need sorting: see {@link #getMessagesInQueueOrder()}.
 	 * @param list The list to sort or shuffle
 	 * @return The sorted/shuffled list
 	 */
 	@SuppressWarnings(value = "unchecked") /* ugly way to make this generic */
 	protected List sortByQueueMode(List list) {
-		switch (sendQueueMode) {
-		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
-			break;
-		case Q_MODE_FIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their messages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					Message m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<Message, Connection>)o1).getKey();
-						m2 = ((Tuple<Message, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof Message) {
-						m1 = (Message)o1;
-						m2 = (Message)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getReceiveTime() - m2.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
-			break;
-		case Q_MODE_LIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their messages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					Message m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<Message, Connection>)o1).getKey();
-						m2 = ((Tuple<Message, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof Message) {
-						m1 = (Message)o1;
-						m2 = (Message)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m2.getReceiveTime() - m1.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
-			break;
-		case Q_MODE_HTFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
+		if (sendQueueMode == Q_MODE_RANDOM) {
+			this.queueRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(list, this.queueRng);
+			return list;
+		}
+		if (sendQueueMode < Q_MODE_RANDOM || sendQueueMode > Q_MODE_LTFO) {
+			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+		if (list.size() < 2) {
+			return list;
+		}
+		
+		/* check the type once instead of on every comparison */
+		Object first = list.get(0);
+		if (first instanceof Tuple) {
+			Collections.sort(list, new Comparator() {
+				/** Compares two tuples by their messages' send keys */
 				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m2.getTtl() - m1.getTtl();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
+					return compareKeys(
+							((Tuple<Message, Connection>)o1).getKey(),
+							((Tuple<Message, Connection>)o2).getKey());
 				}
 			});
-			break;
-		case Q_MODE_LTFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their geomessages' receiving time */
+		}
+		else if (first instanceof Message) {
+			Collections.sort(list, new Comparator() {
+				/** Compares two messages by their send keys */
 				public int compare(Object o1, Object o2) {
-					double diff;
-					GeoMessage m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<GeoMessage, Connection>)o1).getKey();
-						m2 = ((Tuple<GeoMessage, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof GeoMessage) {
-						m1 = (GeoMessage)o1;
-						m2 = (GeoMessage)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getTtl() - m2.getTtl();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
+					return compareKeys((Message)o1, (Message)o2);
 				}
 			});
-			break;
-		/* add more queue modes here */
-		default:
-			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+		else {
+			throw new SimError("Invalid type of objects in the list");
 		}
 		
 		return list;
@@ -650,34 +678,32 @@ public abstract class MessageRouter {
 			/* return randomly (enough) but consistently -1, 0 or 1 */
 			return (m1.hashCode()/2 + m2.hashCode()/2) % 3 - 1; 
 		case Q_MODE_FIFO:
-			double diff1 = m1.getReceiveTime() - m2.getReceiveTime();
-			if (diff1 == 0) {
-				return 0;
-			}
-			return (diff1 < 0 ? -1 : 1);
 		case Q_MODE_LIFO:
-			double diff2 = m2.getReceiveTime() - m1.getReceiveTime();
-			if (diff2 == 0) {
-				return 0;
-			}
-			return (diff2 < 0 ? -1 : 1);
 		case Q_MODE_HTFO:
-			double diff3 = m2.getTtl() - m1.getTtl();
-			if (diff3 == 0) {
-				return 0;
-			}
-			return (diff3 < 0 ? -1 : 1);
 		case Q_MODE_LTFO:
-			double diff4 = m1.getTtl() - m2.getTtl();
-			if (diff4 == 0) {
-				return 0;
-			}
-			return (diff4 < 0 ? -1 : 1);
+			return compareKeys(m1, m2);
 		/* add more queue modes here */
 		default:
 			throw new SimError("Unknown queue mode " + sendQueueMode);
 		}
 	}
+
+	/**
+	 * Compares two messages by their send keys (see
+	 * {@link MessageBuffer#getSendKey(int, double, double)}); the TTL
+	 * modes compare the expiry times, which orders the messages like their
+	 * remaining TTLs without computing them
+	 */
+	private int compareKeys(Message m1, Message m2) {
+		double k1 = MessageBuffer.getSendKey(sendQueueMode,
+				m1.getReceiveTime(), m1.getExpiryTime());
+		double k2 = MessageBuffer.getSendKey(sendQueueMode,
+				m2.getReceiveTime(), m2.getExpiryTime());
+		if (k1 == k2) {
+			return 0;
+		}
+		return (k1 < k2 ? -1 : 1);
+	}
 	
 	/**
 	 * Returns routing information about this router.
@@ -765,4 +791,53 @@ public abstract class MessageRouter {
 			this.getHost().toString() + " with " + getNrofMessages() 
 			+ " messages";
 	}
+	
+	/**
+	 * Message buffer for {@link Message}s
+	 */
+	private static class Buffer extends MessageBuffer<Message> {
+		private static final long serialVersionUID = 42L;
+
+		public Buffer(int dropPolicy, int sendQueueMode) {
+			super(dropPolicy, sendQueueMode);
+		}
+		
+		protected String getId(Message m) {
+			return m.getId();
+		}
+		
+		protected int getHandle(Message m) {
+			return m.getHandle();
+		}
+		
+		protected int getSize(Message m) {
+			return m.getSize();
+		}
+		
+		protected double getReceiveTime(Message m) {
+			return m.getReceiveTime();
+		}
+		
+		protected double getExpiryTime(Message m) {
+			return m.getExpiryTime();
+		}
+	}
+	
+	/**
+	 * Passes the TTL expiry timers of the buffer to the router
+	 */
+	private static class ExpiryListener implements TimingWheel.Listener,
+		Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private MessageRouter router;
+		
+		public ExpiryListener(MessageRouter router) {
+			this.router = router;
+		}
+		
+		public void timerExpired(Object key) {
+			router.ttlExpired((String)key);
+		}
+	}
 }
@@ -15,6 +15,8 @@ import core.*;
  * increase from {@link #scanEnergy} value).
  */
 public class EnergyModel implements ModuleCommunicationListener {
+	private static final long serialVersionUID = 42L;
+
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
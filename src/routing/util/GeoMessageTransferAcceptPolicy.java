@@ -4,6 +4,7 @@
  */
 package routing.util;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import util.Range;
@@ -43,7 +44,8 @@ import core.Settings;
  * </P>
  * @author Ari
  */
-public class GeoMessageTransferAcceptPolicy {
+public class GeoMessageTransferAcceptPolicy implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/** Namespace for all "Message Transfer Accept policy" settings ({@value})*/
 	public static final String MTA_POLICY_NS = "mtaPolicy";
@@ -318,7 +320,7 @@ public class GeoMessageTransferAcceptPolicy {
 					return false;
 				}
 				
-				if ( !getTo.checkThePoint(to.getLocation()) && 
+				if ( !getTo.checkThePoint(to) && 
 						!checkHopCountPolicy(m, this.hopCountSendPolicy)){
 					return false;
 				}
@@ -348,7 +350,7 @@ public class GeoMessageTransferAcceptPolicy {
 					return false;
 				}
 				
-			if (!getTo.checkThePoint(to.getLocation()) && 
+			if (!getTo.checkThePoint(to) && 
 					!checkHopCountPolicy(m, this.hopCountReceivePolicy)) {
 				return false;
 			}
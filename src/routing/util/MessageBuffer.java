@@ -0,0 +1,532 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import util.LongHashMap;
+import core.MessageIds;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.TimingWheel;
+
+/**
+ * Message buffer of a router. Keeps the messages by the interned handles
+ * of their IDs (see {@link MessageIds}) in a primitive keyed map and in a
+ * dense list for fast iteration, tracks the
+ * occupancy of the buffer incrementally and keeps the messages indexed in
+ * the order they should be dropped in (according to the drop policy) so
+ * that the next message to drop can be found in logarithmic time. The
+ * messages are also kept in the order they should be sent in (according
+ * to the send queue mode), so the routers don't have to sort their
+ * buffers on every update. The
+ * ordering keys (receive time, expiry time and size) are read when the
+ * message is added to the buffer, so the messages should not be modified
+ * while they are in the buffer. If an expiry listener is set, a timer of
+ * the {@link TimingWheel#getExpiryWheel() expiry wheel} is scheduled for
+ * every message (with a finite TTL) in the buffer and the listener is
+ * informed (with the message ID as the key) when the TTL expires.
+ * @param <M> Type of the messages in the buffer
+ */
+public abstract class MessageBuffer<M> implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Message drop policy -setting id ({@value}). Defines which messages
+	 * are dropped first when room is needed in the buffer. Valid values are
+	 * <BR>
+	 * <UL>
+	 * <LI/> 1 : drop oldest (smallest receive time; default option)
+	 * <LI/> 2 : drop youngest (largest receive time)
+	 * <LI/> 3 : drop lowest TTL (earliest expiry time)
+	 * <LI/> 4 : drop largest (biggest size)
+	 * </UL>
+	 */
+	public static final String DROP_POLICY_S = "dropPolicy";
+
+	/** Setting value for the drop oldest policy */
+	public static final int DROP_OLDEST = 1;
+	/** Setting value for the drop youngest policy */
+	public static final int DROP_YOUNGEST = 2;
+	/** Setting value for the drop lowest TTL policy */
+	public static final int DROP_LOWEST_TTL = 3;
+	/** Setting value for the drop largest policy */
+	public static final int DROP_LARGEST = 4;
+
+	/** Send queue mode for random order (same as the routers' Q_MODE_RANDOM) */
+	public static final int SEND_RANDOM = 1;
+	/** Send queue mode for smallest receive time first */
+	public static final int SEND_FIFO = 2;
+	/** Send queue mode for largest receive time first */
+	public static final int SEND_LIFO = 3;
+	/** Send queue mode for latest expiry time (highest TTL) first */
+	public static final int SEND_HIGHEST_TTL = 4;
+	/** Send queue mode for earliest expiry time (lowest TTL) first */
+	public static final int SEND_LOWEST_TTL = 5;
+
+	private int dropPolicy;
+	private int sendQueueMode;
+	/** index entries of the messages by the handles of their IDs */
+	private LongHashMap<Entry<M>> entries;
+	/** the index entries in no particular order (without gaps) */
+	private ArrayList<Entry<M>> entryList;
+	/** read-only view of the messages (created when first needed) */
+	private transient Collection<M> messageView;
+	/** the index entries in the drop order */
+	private TreeSet<Entry<M>> dropOrder;
+	/** the index entries in the send order (null until the order is first
+	 * needed and always in the random mode) */
+	private TreeSet<Entry<M>> sendOrder;
+	/** the messages in the send order as they were returned the last time
+	 * (null if the buffer has been modified since) */
+	private transient List<M> sendSnapshot;
+	/** simulation time (seconds) the random send order was drawn for */
+	private transient int sendSnapshotTime;
+	/** random number generator for the random send order */
+	private Random sendRng;
+	/** sum of the sizes of the messages in the buffer */
+	private long occupancy;
+	/** sequence number of the next index entry */
+	private long nextSeq;
+	/** listener for the TTL expiry timers (null if TTLs aren't watched) */
+	private TimingWheel.Listener expiryListener;
+
+	/**
+	 * Creates a new, empty, message buffer that sends the messages in
+	 * random order
+	 * @param dropPolicy The drop policy (e.g. {@link #DROP_OLDEST})
+	 */
+	public MessageBuffer(int dropPolicy) {
+		this(dropPolicy, SEND_RANDOM);
+	}
+
+	/**
+	 * Creates a new, empty, message buffer
+	 * @param dropPolicy The drop policy (e.g. {@link #DROP_OLDEST})
+	 * @param sendQueueMode The send queue mode (e.g. {@link #SEND_FIFO})
+	 */
+	public MessageBuffer(int dropPolicy, int sendQueueMode) {
+		this.dropPolicy = dropPolicy;
+		this.sendQueueMode = sendQueueMode;
+		this.sendRng = new Random();
+		this.entries = new LongHashMap<Entry<M>>();
+		this.entryList = new ArrayList<Entry<M>>();
+		this.dropOrder = new TreeSet<Entry<M>>();
+		this.occupancy = 0;
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Reads the drop policy from the {@link #DROP_POLICY_S} setting
+	 * @param s The settings object to read the setting from
+	 * @return The drop policy ({@link #DROP_OLDEST} if the setting isn't
+	 * defined)
+	 * @throws SettingsError if the value of the setting is invalid
+	 */
+	public static int readDropPolicy(Settings s) {
+		if (!s.contains(DROP_POLICY_S)) {
+			return DROP_OLDEST;
+		}
+		int policy = s.getInt(DROP_POLICY_S);
+		if (policy < DROP_OLDEST || policy > DROP_LARGEST) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(DROP_POLICY_S));
+		}
+		return policy;
+	}
+
+	/**
+	 * Returns the send queue ordering key of a message; messages with
+	 * smaller keys are sent first
+	 * @param sendQueueMode The send queue mode (e.g. {@link #SEND_FIFO})
+	 * @param receiveTime The time when the message was received
+	 * @param expiryTime The time when the TTL of the message expires
+	 * @return The key (0 for the random mode)
+	 */
+	public static double getSendKey(int sendQueueMode, double receiveTime,
+			double expiryTime) {
+		switch (sendQueueMode) {
+		case SEND_FIFO:
+			return receiveTime;
+		case SEND_LIFO:
+			return -receiveTime;
+		case SEND_HIGHEST_TTL:
+			return -expiryTime;
+		case SEND_LOWEST_TTL:
+			return expiryTime;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the ID of a message
+	 * @param m The message
+	 * @return The ID
+	 */
+	protected abstract String getId(M m);
+
+	/**
+	 * Returns the interned handle of the ID of a message
+	 * @param m The message
+	 * @return The handle
+	 * @see MessageIds
+	 */
+	protected abstract int getHandle(M m);
+
+	/**
+	 * Returns the size of a message
+	 * @param m The message
+	 * @return The size (in bytes)
+	 */
+	protected abstract int getSize(M m);
+
+	/**
+	 * Returns the time when a message was received
+	 * @param m The message
+	 * @return The receive time
+	 */
+	protected abstract double getReceiveTime(M m);
+
+	/**
+	 * Returns the time when the TTL of a message expires
+	 * @param m The message
+	 * @return The expiry time
+	 */
+	protected abstract double getExpiryTime(M m);
+
+	/**
+	 * Sets the listener that is informed when the TTL of a message in the
+	 * buffer expires. Must be set before any messages are put to the buffer.
+	 * @param listener The listener
+	 */
+	public void setExpiryListener(TimingWheel.Listener listener) {
+		this.expiryListener = listener;
+	}
+
+	/**
+	 * Returns the drop policy of this buffer
+	 * @return The drop policy
+	 */
+	public int getDropPolicy() {
+		return this.dropPolicy;
+	}
+
+	/**
+	 * Puts a message to the buffer. A message with the same ID that was
+	 * in the buffer is replaced.
+	 * @param m The message to put
+	 * @return The replaced message or null if there was no message with the
+	 * same ID in the buffer
+	 */
+	public M put(M m) {
+		int handle = getHandle(m);
+		M old = remove(handle);
+
+		Entry<M> e = new Entry<M>(m, getSize(m), getKey(m), nextSeq++);
+		e.sendKey = getSendKey(this.sendQueueMode, getReceiveTime(m),
+				getExpiryTime(m));
+		double expiry = getExpiryTime(m);
+		if (this.expiryListener != null && expiry != Double.MAX_VALUE) {
+			e.timer = TimingWheel.getExpiryWheel().schedule(expiry,
+					this.expiryListener, getId(m));
+		}
+		this.entries.put(handle, e);
+		e.pos = this.entryList.size();
+		this.entryList.add(e);
+		this.dropOrder.add(e);
+		if (this.sendOrder != null) {
+			this.sendOrder.add(e);
+		}
+		this.sendSnapshot = null;
+		this.occupancy += e.size;
+
+		return old;
+	}
+
+	/**
+	 * Removes a message from the buffer
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with the
+	 * ID in the buffer
+	 */
+	public M remove(String id) {
+		int handle = MessageIds.getHandle(id);
+		return (handle == MessageIds.NO_HANDLE ? null : remove(handle));
+	}
+
+	/**
+	 * Removes a message from the buffer
+	 * @param handle Handle of the ID of the message to remove
+	 * @return The removed message or null if there was no message with the
+	 * ID in the buffer
+	 */
+	public M remove(int handle) {
+		Entry<M> e = this.entries.remove(handle);
+		if (e == null) {
+			return null;
+		}
+
+		this.dropOrder.remove(e);
+		if (this.sendOrder != null) {
+			this.sendOrder.remove(e);
+		}
+		this.sendSnapshot = null;
+		Entry<M> last = this.entryList.remove(this.entryList.size() - 1);
+		if (last != e) { /* fill the gap with the last entry */
+			last.pos = e.pos;
+			this.entryList.set(e.pos, last);
+		}
+		this.occupancy -= e.size;
+		if (e.timer != null) {
+			TimingWheel.getExpiryWheel().cancel(e.timer);
+		}
+
+		return e.message;
+	}
+
+	/**
+	 * Returns a message from the buffer
+	 * @param id ID of the message
+	 * @return The message or null if there's no message with the ID
+	 */
+	public M get(String id) {
+		int handle = MessageIds.getHandle(id);
+		return (handle == MessageIds.NO_HANDLE ? null : get(handle));
+	}
+
+	/**
+	 * Returns a message from the buffer
+	 * @param handle Handle of the ID of the message
+	 * @return The message or null if there's no message with the ID
+	 */
+	public M get(int handle) {
+		Entry<M> e = this.entries.get(handle);
+		return (e == null ? null : e.message);
+	}
+
+	/**
+	 * Returns true if the buffer contains a message with the given ID
+	 * @param id ID of the message
+	 * @return True if the message is in the buffer, false if not
+	 */
+	public boolean containsKey(String id) {
+		int handle = MessageIds.getHandle(id);
+		return handle != MessageIds.NO_HANDLE && containsKey(handle);
+	}
+
+	/**
+	 * Returns true if the buffer contains a message with the given ID
+	 * @param handle Handle of the ID of the message
+	 * @return True if the message is in the buffer, false if not
+	 */
+	public boolean containsKey(int handle) {
+		return this.entries.containsKey(handle);
+	}
+
+	/**
+	 * Returns the number of messages in the buffer
+	 * @return The number of messages
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Returns a read-only view of the messages in the buffer
+	 * @return The messages
+	 */
+	public Collection<M> values() {
+		if (this.messageView == null) {
+			this.messageView = new AbstractCollection<M>() {
+				public int size() {
+					return entryList.size();
+				}
+				public Iterator<M> iterator() {
+					return messageIterator(entryList.iterator());
+				}
+			};
+		}
+		return this.messageView;
+	}
+
+	/**
+	 * Returns the sum of the sizes of the messages in the buffer
+	 * @return The occupancy (in bytes)
+	 */
+	public long getOccupancy() {
+		return this.occupancy;
+	}
+
+	/**
+	 * Returns the messages in the order they should be dropped in
+	 * (according to the drop policy). Messages with equal ordering keys are
+	 * dropped in the order they were put to the buffer. The buffer must
+	 * not be modified while the iteration is in progress.
+	 * @return The messages in drop order
+	 */
+	public Iterable<M> inDropOrder() {
+		return new Iterable<M>() {
+			public Iterator<M> iterator() {
+				return messageIterator(dropOrder.iterator());
+			}
+		};
+	}
+
+	/**
+	 * Returns the messages in the order they should be sent in (according
+	 * to the send queue mode). Messages with equal ordering keys are in the
+	 * order they were put to the buffer. In the random mode the order is a
+	 * permutation of the buffer that is drawn once per simulated second
+	 * (with the integer simulation time as the seed), so it stays the same
+	 * while neither the time nor the buffer changes. The returned list is
+	 * a read-only snapshot: it's reused until the buffer is modified and
+	 * the modifications don't affect it.
+	 * @return The messages in send order
+	 */
+	public List<M> inSendOrder() {
+		if (this.sendQueueMode == SEND_RANDOM) {
+			int time = SimClock.getIntTime();
+			if (this.sendSnapshot == null || time != this.sendSnapshotTime) {
+				List<Entry<M>> order = new ArrayList<Entry<M>>(this.entryList);
+				this.sendRng.setSeed(time);
+				Collections.shuffle(order, this.sendRng);
+				this.sendSnapshot = snapshot(order);
+				this.sendSnapshotTime = time;
+			}
+			return this.sendSnapshot;
+		}
+
+		if (this.sendSnapshot == null) {
+			if (this.sendOrder == null) { /* index the entries lazily */
+				this.sendOrder = new TreeSet<Entry<M>>(new SendOrder<M>());
+				this.sendOrder.addAll(this.entryList);
+			}
+			this.sendSnapshot = snapshot(this.sendOrder);
+		}
+		return this.sendSnapshot;
+	}
+
+	/**
+	 * Returns the position of a message in the current send order (i.e.,
+	 * its index in the list returned by {@link #inSendOrder()})
+	 * @param handle Handle of the ID of the message
+	 * @return The position or -1 if there's no message with the ID
+	 */
+	public int getSendPosition(int handle) {
+		Entry<M> e = this.entries.get(handle);
+		if (e == null) {
+			return -1;
+		}
+		inSendOrder(); /* makes sure the positions are up to date */
+		return e.sendPos;
+	}
+
+	/**
+	 * Returns a read-only list of the messages of index entries and sets
+	 * the send positions of the entries
+	 */
+	private List<M> snapshot(Collection<Entry<M>> order) {
+		List<M> list = new ArrayList<M>(order.size());
+		for (Entry<M> e : order) {
+			e.sendPos = list.size();
+			list.add(e.message);
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Returns a read-only iterator over the messages of index entries
+	 */
+	private static <M> Iterator<M> messageIterator(
+			final Iterator<Entry<M>> i) {
+		return new Iterator<M>() {
+			public boolean hasNext() {
+				return i.hasNext();
+			}
+			public M next() {
+				return i.next().message;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the ordering key of a message; messages with smaller keys
+	 * are dropped first
+	 */
+	private double getKey(M m) {
+		switch (this.dropPolicy) {
+		case DROP_YOUNGEST:
+			return -getReceiveTime(m);
+		case DROP_LOWEST_TTL:
+			return getExpiryTime(m);
+		case DROP_LARGEST:
+			return -getSize(m);
+		default:
+			return getReceiveTime(m);
+		}
+	}
+
+	/**
+	 * Index entry of a message
+	 */
+	private static class Entry<M> implements Comparable<Entry<M>>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private M message;
+		/** position of the entry in the entry list */
+		private int pos;
+		private int size;
+		private double key;
+		private double sendKey;
+		/** position of the entry in the latest send order snapshot */
+		private int sendPos;
+		private long seq;
+		private TimingWheel.Timer timer;
+
+		public Entry(M message, int size, double key, long seq) {
+			this.message = message;
+			this.size = size;
+			this.key = key;
+			this.seq = seq;
+		}
+
+		public int compareTo(Entry<M> other) {
+			if (this.key != other.key) {
+				return (this.key < other.key ? -1 : 1);
+			}
+			return (this.seq < other.seq ? -1 : (this.seq == other.seq ? 0 : 1));
+		}
+	}
+
+	/**
+	 * Orders the index entries by their send keys
+	 */
+	private static class SendOrder<M> implements Comparator<Entry<M>>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+
+		public int compare(Entry<M> e1, Entry<M> e2) {
+			if (e1.sendKey != e2.sendKey) {
+				return (e1.sendKey < e2.sendKey ? -1 : 1);
+			}
+			return (e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1));
+		}
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Summary vector of the messages a router knows about (e.g., the ones it
+ * carries and the ones delivered to it), keyed by int keys derived from
+ * the message handles. Peers check the summary before offering a message,
+ * so messages the peer already has aren't even tried. The summary is
+ * updated incrementally as the router's buffers change.
+ *
+ * <P>While the number of distinct keys is at most the exact limit (see
+ * {@link #EXACT_LIMIT_S}), the keys are kept in a sorted int array and the
+ * summary is exact. After that the keys are kept in a counting Bloom
+ * filter, which can give false positives (a message is reported as
+ * known although it isn't) but never false negatives. The counting filter
+ * supports removals too. When the filter fills up (see
+ * {@link #isSaturated()}), the owner should rebuild the summary with
+ * {@link #rebuild(int[], int)} so that the false positive rate stays low.
+ * Every key is counted, so a key that is added twice is in the summary
+ * until it has been removed twice.</P>
+ */
+public class MessageSummary implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Exact summary limit -setting id ({@value}). Integer valued. The
+	 * maximum number of distinct keys that are kept in the exact summary
+	 * before switching to a Bloom filter. Default is
+	 * {@link #DEF_EXACT_LIMIT}.
+	 */
+	public static final String EXACT_LIMIT_S = "summaryExactLimit";
+	/** Default value for the exact summary limit ({@value}) */
+	public static final int DEF_EXACT_LIMIT = 1024;
+
+	/** number of hash functions of the Bloom filter */
+	private static final int NROF_HASHES = 3;
+	/** Bloom filter counters per key when the filter is (re)built */
+	private static final int COUNTERS_PER_KEY = 16;
+	/** maximum value of a counter; saturated counters are never
+	 * decremented */
+	private static final byte MAX_COUNT = Byte.MAX_VALUE;
+
+	private int exactLimit;
+
+	/** the distinct keys in ascending order (exact mode) */
+	private int[] keys;
+	/** the counts of the keys (exact mode) */
+	private int[] counts;
+	/** number of distinct keys (exact mode) */
+	private int nrofKeys;
+
+	/** the counters of the Bloom filter (null in exact mode) */
+	private byte[] counters;
+	/** number of keys (with repetitions) in the Bloom filter */
+	private int nrofFiltered;
+	/** number of keys the Bloom filter was sized for */
+	private int capacity;
+
+	/**
+	 * Creates a new, empty, exact summary
+	 * @param exactLimit The maximum number of distinct keys in the exact
+	 * summary
+	 */
+	public MessageSummary(int exactLimit) {
+		this.exactLimit = exactLimit;
+		clear();
+	}
+
+	/**
+	 * Reads the exact summary limit from the {@link #EXACT_LIMIT_S} setting
+	 * @param s The settings object to read the setting from
+	 * @return The limit ({@link #DEF_EXACT_LIMIT} if the setting isn't
+	 * defined)
+	 * @throws SettingsError if the value of the setting is negative
+	 */
+	public static int readExactLimit(Settings s) {
+		if (!s.contains(EXACT_LIMIT_S)) {
+			return DEF_EXACT_LIMIT;
+		}
+		int limit = s.getInt(EXACT_LIMIT_S);
+		if (limit < 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(EXACT_LIMIT_S));
+		}
+		return limit;
+	}
+
+	/**
+	 * Returns the exact summary limit of this summary
+	 * @return The limit
+	 */
+	public int getExactLimit() {
+		return this.exactLimit;
+	}
+
+	/**
+	 * Adds a key to the summary
+	 * @param key The key
+	 */
+	public void add(int key) {
+		if (this.counters != null) {
+			for (int i = 0; i < NROF_HASHES; i++) {
+				int c = index(key, i);
+				if (this.counters[c] != MAX_COUNT) {
+					this.counters[c]++;
+				}
+			}
+			this.nrofFiltered++;
+			return;
+		}
+
+		int i = Arrays.binarySearch(this.keys, 0, this.nrofKeys, key);
+		if (i >= 0) {
+			this.counts[i]++;
+			return;
+		}
+		if (this.nrofKeys == this.exactLimit) {
+			toFilter(this.nrofKeys + 1);
+			add(key);
+			return;
+		}
+
+		i = -i - 1;
+		if (this.nrofKeys == this.keys.length) {
+			int length = Math.min(Math.max(8, this.keys.length * 2),
+					this.exactLimit);
+			this.keys = Arrays.copyOf(this.keys, length);
+			this.counts = Arrays.copyOf(this.counts, length);
+		}
+		System.arraycopy(this.keys, i, this.keys, i + 1, this.nrofKeys - i);
+		System.arraycopy(this.counts, i, this.counts, i + 1,
+				this.nrofKeys - i);
+		this.keys[i] = key;
+		this.counts[i] = 1;
+		this.nrofKeys++;
+	}
+
+	/**
+	 * Removes a key from the summary. The key must have been added to the
+	 * summary (and not removed since).
+	 * @param key The key
+	 */
+	public void remove(int key) {
+		if (this.counters != null) {
+			for (int i = 0; i < NROF_HASHES; i++) {
+				int c = index(key, i);
+				if (this.counters[c] != MAX_COUNT && this.counters[c] != 0) {
+					this.counters[c]--;
+				}
+			}
+			this.nrofFiltered--;
+			return;
+		}
+
+		int i = Arrays.binarySearch(this.keys, 0, this.nrofKeys, key);
+		if (i < 0) {
+			return;
+		}
+		if (--this.counts[i] == 0) {
+			System.arraycopy(this.keys, i + 1, this.keys, i,
+					this.nrofKeys - i - 1);
+			System.arraycopy(this.counts, i + 1, this.counts, i,
+					this.nrofKeys - i - 1);
+			this.nrofKeys--;
+		}
+	}
+
+	/**
+	 * Returns true if the key may be in the summary. If the summary is
+	 * exact, the result is exact too; otherwise it can be a false positive.
+	 * @param key The key
+	 * @return False if the key is certainly not in the summary, true if
+	 * it is (or may be)
+	 */
+	public boolean mightContain(int key) {
+		if (this.counters == null) {
+			return Arrays.binarySearch(this.keys, 0, this.nrofKeys, key) >= 0;
+		}
+		for (int i = 0; i < NROF_HASHES; i++) {
+			if (this.counters[index(key, i)] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the summary is exact (i.e., not a Bloom filter)
+	 * @return True if the summary is exact
+	 */
+	public boolean isExact() {
+		return this.counters == null;
+	}
+
+	/**
+	 * Returns true if the Bloom filter of the summary holds more keys than
+	 * it was sized for and should be rebuilt
+	 * @return True if the summary should be rebuilt
+	 */
+	public boolean isSaturated() {
+		return this.counters != null && this.nrofFiltered > this.capacity;
+	}
+
+	/**
+	 * Returns the size of the summary as it would be sent to a peer
+	 * @return The size in bytes: 4 bytes per key for an exact summary,
+	 * one bit per counter for a Bloom filter
+	 */
+	public int getSizeBytes() {
+		if (this.counters == null) {
+			return this.nrofKeys * 4;
+		}
+		return this.counters.length / 8;
+	}
+
+	/**
+	 * Removes all keys from the summary and makes it exact again
+	 */
+	public void clear() {
+		this.keys = new int[0];
+		this.counts = new int[0];
+		this.nrofKeys = 0;
+		this.counters = null;
+		this.nrofFiltered = 0;
+		this.capacity = 0;
+	}
+
+	/**
+	 * Replaces the contents of the summary with the given keys
+	 * @param newKeys The keys (the array may contain repetitions and it may
+	 * be modified by this method)
+	 * @param n Number of keys in the array
+	 */
+	public void rebuild(int[] newKeys, int n) {
+		clear();
+		Arrays.sort(newKeys, 0, n);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || newKeys[i] != newKeys[i - 1]) {
+				distinct++;
+			}
+		}
+
+		if (distinct > this.exactLimit) {
+			toFilter(n);
+			for (int i = 0; i < n; i++) {
+				add(newKeys[i]);
+			}
+			return;
+		}
+
+		this.keys = new int[distinct];
+		this.counts = new int[distinct];
+		for (int i = 0; i < n; i++) {
+			if (this.nrofKeys > 0 && this.keys[this.nrofKeys - 1] == newKeys[i]) {
+				this.counts[this.nrofKeys - 1]++;
+			} else {
+				this.keys[this.nrofKeys] = newKeys[i];
+				this.counts[this.nrofKeys] = 1;
+				this.nrofKeys++;
+			}
+		}
+	}
+
+	/**
+	 * Moves the keys of the exact summary to a new Bloom filter with room
+	 * for twice the given number of keys
+	 */
+	private void toFilter(int nrofKeys) {
+		int[] oldKeys = this.keys;
+		int[] oldCounts = this.counts;
+		int oldNrofKeys = this.nrofKeys;
+
+		this.capacity = Math.max(nrofKeys * 2, 32);
+		this.counters = new byte[Integer.highestOneBit(
+				this.capacity * COUNTERS_PER_KEY - 1) << 1];
+		this.nrofFiltered = 0;
+		this.keys = new int[0];
+		this.counts = new int[0];
+		this.nrofKeys = 0;
+
+		for (int i = 0; i < oldNrofKeys; i++) {
+			for (int j = 0; j < oldCounts[i]; j++) {
+				add(oldKeys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the counter index of a key for the i:th hash function
+	 * (double hashing with two halves of a 64 bit mix of the key)
+	 */
+	private int index(int key, int i) {
+		long h = (key + 1) * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 29);
+		h *= 0xBF58476D1CE4E5B9L;
+		int h1 = (int)h;
+		int h2 = (int)(h >>> 32) | 1;
+		return (h1 + i * h2) & (this.counters.length - 1);
+	}
+}
@@ -49,6 +49,28 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(ParallelMovementTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(HierarchicalGridTest.class);
+		suite.addTestSuite(ConnectivityDetectionTest.class);
+		suite.addTestSuite(ContactPredictorTest.class);
+		suite.addTestSuite(ContactPlanTest.class);
+		suite.addTestSuite(HostStateStoreTest.class);
+		suite.addTestSuite(SkipIdleHostsTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(SimContextTest.class);
+		suite.addTestSuite(AssetCacheTest.class);
+		suite.addTestSuite(CheckpointTest.class);
+		suite.addTestSuite(ProfilerTest.class);
+		suite.addTestSuite(MessageBufferTest.class);
+		suite.addTestSuite(TimingWheelTest.class);
+		suite.addTestSuite(PropertySlotTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(LongIntHashMapTest.class);
+		suite.addTestSuite(MessageSummaryTest.class);
+		suite.addTestSuite(GeoMessageRouterTest.class);
+		suite.addTestSuite(CastLookupTest.class);
+		suite.addTestSuite(BoxGridTest.class);
 		//$JUnit-END$
 		return suite;
 	}
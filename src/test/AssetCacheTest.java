@@ -0,0 +1,104 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.AssetCache;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the AssetCache
+ */
+public class AssetCacheTest extends TestCase {
+	private AssetCache cache;
+	private File file;
+	private int nrofLoads;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		cache = new AssetCache();
+		file = File.createTempFile("assetCacheTest", ".txt");
+		file.deleteOnExit();
+		write("first");
+		nrofLoads = 0;
+	}
+	
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+	
+	public void testLoadOnce() throws Exception {
+		String key = AssetCache.key("test", "", file);
+		Object a1 = cache.get(key, new CountingLoader());
+		Object a2 = cache.get(key, new CountingLoader());
+		
+		assertSame(a1, a2);
+		assertEquals(1, nrofLoads);
+		assertEquals(1, cache.size());
+	}
+	
+	public void testDifferentKeys() throws Exception {
+		Object a1 = cache.get(AssetCache.key("test", "", file),
+				new CountingLoader());
+		Object a2 = cache.get(AssetCache.key("test", "1,2", file),
+				new CountingLoader());
+		Object a3 = cache.get(AssetCache.key("other", "", file),
+				new CountingLoader());
+		
+		assertNotSame(a1, a2);
+		assertNotSame(a2, a3);
+		assertEquals(3, nrofLoads);
+		assertEquals(3, cache.size());
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+	
+	public void testChangedFile() throws Exception {
+		String key1 = AssetCache.key("test", "", file);
+		write("second, longer, content");
+		String key2 = AssetCache.key("test", "", file);
+		
+		assertFalse(key1.equals(key2));
+		assertEquals(key2, AssetCache.key("test", "", 
+				new File(file.getParentFile(), file.getName())));
+	}
+	
+	public void testFailingLoad() throws Exception {
+		String key = AssetCache.key("test", "", file);
+		try {
+			cache.get(key, new AssetCache.Loader<Object>() {
+				public Object load() throws IOException {
+					throw new IOException("test failure");
+				}
+			});
+			fail("Loader's exception wasn't passed on");
+		} catch (IOException e) {
+			// expected
+		}
+		
+		assertEquals(0, cache.size());
+		cache.get(key, new CountingLoader()); // failures are not cached
+		assertEquals(1, nrofLoads);
+	}
+	
+	private void write(String content) throws IOException {
+		FileWriter out = new FileWriter(file);
+		out.write(content);
+		out.close();
+	}
+	
+	private class CountingLoader implements AssetCache.Loader<Object> {
+		public Object load() {
+			nrofLoads++;
+			return new Object();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.BoxGrid;
+
+/**
+ * Tests for the bounding box grid
+ */
+public class BoxGridTest extends TestCase {
+	private static final int NROF_IDS = 300;
+
+	private BoxGrid grid;
+	private List<Integer> found;
+	private BoxGrid.BoxVisitor collector;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		grid = new BoxGrid(10);
+		found = new ArrayList<Integer>();
+		collector = new BoxGrid.BoxVisitor() {
+			public void visit(int id) {
+				found.add(id);
+			}
+		};
+	}
+
+	public void testPutAndRemove() {
+		grid.put(3, 0, 0, 5, 5);
+		grid.put(100, -50, -50, 500, 20);
+		assertEquals(2, grid.size());
+		assertTrue(grid.contains(3));
+		assertFalse(grid.contains(4));
+
+		assertEquals(list(3, 100), query(4, 4, 6, 6));
+		assertEquals(list(100), query(-30, -30, -20, -20));
+		assertEquals(list(), query(-30, 30, 30, 40));
+
+		grid.put(3, 200, 200, 201, 201); // moves the box
+		assertEquals(2, grid.size());
+		assertEquals(list(100), query(4, 4, 6, 6));
+		assertEquals(list(3), query(201, 201, 300, 300));
+
+		assertTrue(grid.remove(100));
+		assertFalse(grid.remove(100));
+		assertEquals(1, grid.size());
+		assertEquals(list(), query(4, 4, 6, 6));
+	}
+
+	public void testTouchingBoxesOverlap() {
+		grid.put(0, 0, 0, 10, 10);
+		assertEquals(list(0), query(10, 10, 20, 20));
+		assertEquals(list(0), query(-5, 0, 0, 0));
+		assertEquals(list(), query(10.01, 0, 20, 20));
+	}
+
+	public void testSameResultsAsCheckingAllBoxes() {
+		Random rng = new Random(1);
+		double[][] boxes = new double[NROF_IDS][];
+
+		for (int round=0; round < 50; round++) {
+			for (int k=0; k < 100; k++) {
+				int id = rng.nextInt(NROF_IDS);
+				if (rng.nextInt(5) == 0) {
+					grid.remove(id);
+					boxes[id] = null;
+				} else {
+					boxes[id] = randomBox(rng);
+					grid.put(id, boxes[id][0], boxes[id][1], boxes[id][2],
+							boxes[id][3]);
+				}
+			}
+
+			for (int k=0; k < 20; k++) {
+				double[] q = randomBox(rng);
+				List<Integer> expected = new ArrayList<Integer>();
+				int size = 0;
+				for (int id=0; id < NROF_IDS; id++) {
+					double[] b = boxes[id];
+					if (b == null) {
+						continue;
+					}
+					size++;
+					if (b[0] <= q[2] && b[2] >= q[0] && b[1] <= q[3] &&
+							b[3] >= q[1]) {
+						expected.add(id);
+					}
+				}
+				assertEquals(size, grid.size());
+				assertEquals(expected, query(q[0], q[1], q[2], q[3]));
+			}
+		}
+	}
+
+	/**
+	 * Returns a random box with sizes from zero to the whole area
+	 */
+	private double[] randomBox(Random rng) {
+		double size = Math.pow(rng.nextDouble(), 3) * 2000;
+		double x = rng.nextDouble() * 2000 - 1000;
+		double y = rng.nextDouble() * 2000 - 1000;
+		return new double[] {x, y, x + size * rng.nextDouble(),
+				y + size * rng.nextDouble()};
+	}
+
+	/**
+	 * Returns the (sorted) ids of the boxes overlapping the query box
+	 */
+	private List<Integer> query(double minX, double minY, double maxX,
+			double maxY) {
+		found.clear();
+		grid.forEachOverlapping(minX, minY, maxX, maxY, collector);
+		List<Integer> result = new ArrayList<Integer>(found);
+		Collections.sort(result);
+		return result;
+	}
+
+	private static List<Integer> list(Integer... ids) {
+		List<Integer> result = new ArrayList<Integer>();
+		Collections.addAll(result, ids);
+		return result;
+	}
+}
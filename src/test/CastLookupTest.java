@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.Cast;
+import core.CastLookup;
+import core.Coord;
+import core.DTNHost;
+
+/**
+ * Tests for the shared cast lookup
+ */
+public class CastLookupTest extends TestCase {
+	private TestUtils utils;
+	private Cast square;
+	private Cast triangle;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		DTNHost.reset();
+		CastLookup.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+		square = cast(0, 0, 100, 0, 100, 100, 0, 100);
+		triangle = cast(50, 50, 150, 50, 100, 150);
+	}
+
+	public void testCastsAt() {
+		CastLookup.register(square);
+		CastLookup.register(triangle);
+		CastLookup.register(square); // registered only once
+		assertEquals(2, CastLookup.size());
+
+		DTNHost h = utils.createHost(new Coord(10, 10));
+		assertEquals(Arrays.asList(square), CastLookup.getCastsAt(h));
+		h.setLocation(new Coord(90, 60));
+		assertEquals(Arrays.asList(square, triangle),
+				CastLookup.getCastsAt(h));
+		h.setLocation(new Coord(120, 60));
+		assertEquals(Arrays.asList(triangle), CastLookup.getCastsAt(h));
+		h.setLocation(new Coord(500, 60));
+		assertTrue(CastLookup.getCastsAt(h).isEmpty());
+	}
+
+	public void testRegisteringInvalidatesResults() {
+		DTNHost h = utils.createHost(new Coord(90, 60));
+		CastLookup.register(square);
+		assertEquals(Arrays.asList(square), CastLookup.getCastsAt(h));
+		assertSame(CastLookup.getCastsAt(h), CastLookup.getCastsAt(h));
+
+		CastLookup.register(triangle);
+		assertEquals(Arrays.asList(square, triangle),
+				CastLookup.getCastsAt(h));
+	}
+
+	public void testSameAsCheckThePoint() {
+		Random rng = new Random(1);
+		List<Cast> casts = new ArrayList<Cast>();
+		casts.add(square);
+		casts.add(triangle);
+		casts.add(cast(10, 0, 10.000001, 200, 30, 100)); // steep edges
+		for (int i = 0; i < 10; i++) {
+			double x = rng.nextDouble() * 150;
+			double y = rng.nextDouble() * 150;
+			casts.add(cast(x, y, x + rng.nextDouble() * 50, y + 10,
+					x + 5, y + rng.nextDouble() * 50));
+		}
+		for (Cast c : casts) {
+			CastLookup.register(c);
+		}
+
+		DTNHost h = utils.createHost(new Coord(0, 0));
+		for (int i = 0; i < 5000; i++) {
+			assertSameCasts(h, casts, new Coord(rng.nextDouble() * 220 - 10,
+					rng.nextDouble() * 220 - 10));
+		}
+		for (Cast c : casts) { /* the corners and the edges */
+			List<Coord> corners = c.getTheCast();
+			for (int i = 0; i < corners.size(); i++) {
+				Coord c1 = corners.get(i);
+				Coord c2 = corners.get((i + 1) % corners.size());
+				assertSameCasts(h, casts, c1);
+				assertSameCasts(h, casts, new Coord((c1.getX() + c2.getX()) / 2,
+						(c1.getY() + c2.getY()) / 2));
+			}
+		}
+	}
+
+	public void testManyCastsOfDifferentSizes() {
+		Random rng = new Random(2);
+		List<Cast> casts = new ArrayList<Cast>();
+		for (int i = 0; i < 300; i++) {
+			/* mostly small casts and some that cover most of the area */
+			double size = 5 + Math.pow(rng.nextDouble(), 4) * 3000;
+			double x = rng.nextDouble() * 3000;
+			double y = rng.nextDouble() * 3000;
+			casts.add(cast(x, y, x + size, y + rng.nextDouble() * size,
+					x + rng.nextDouble() * size, y + size));
+		}
+		for (Cast c : casts) {
+			CastLookup.register(c);
+		}
+
+		DTNHost h = utils.createHost(new Coord(0, 0));
+		for (int i = 0; i < 2000; i++) {
+			assertSameCasts(h, casts, new Coord(rng.nextDouble() * 3500,
+					rng.nextDouble() * 3500));
+		}
+	}
+
+	private void assertSameCasts(DTNHost h, List<Cast> casts, Coord loc) {
+		h.setLocation(loc);
+		List<Cast> expected = new ArrayList<Cast>();
+		for (Cast c : casts) {
+			if (c.checkThePoint(h)) {
+				expected.add(c);
+			}
+		}
+		assertEquals(expected, CastLookup.getCastsAt(h));
+	}
+
+	private static Cast cast(double... xys) {
+		List<Coord> points = new ArrayList<Coord>();
+		for (int i = 0; i < xys.length; i += 2) {
+			points.add(new Coord(xys[i], xys[i + 1]));
+		}
+		return new Cast(points);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import core.Checkpoint;
+import core.DTNHost;
+import core.DTNSim;
+import core.Profiler;
+import core.SimClock;
+
+/**
+ * Tests for the Checkpoint class
+ */
+public class CheckpointTest extends TestCase {
+	private TestSettings ts;
+	private File dir;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		DTNSim.resetForNextRun(); // forget the state of the other tests
+		clock = SimClock.getInstance();
+
+		dir = File.createTempFile("checkpointTest", "");
+		dir.delete();
+		dir.mkdir();
+		ts.putSetting(Checkpoint.CHECKPOINT_NS + "." + Checkpoint.SAVE_FILE_S,
+				new File(dir, "ck").getPath());
+	}
+
+	protected void tearDown() throws Exception {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+		super.tearDown();
+	}
+
+	public void testSaveAndRestore() {
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.createHost();
+		utils.createHost();
+		clock.setTime(42.5);
+
+		File f = checkpointFile("test");
+		Checkpoint.save(f);
+		assertTrue(f.exists());
+		assertEquals(1, dir.listFiles().length); // no temporary files left
+
+		SimClock.reset();
+		DTNHost.reset();
+		Checkpoint.restore(f);
+
+		assertEquals(42.5, SimClock.getTime());
+		assertEquals(2, utils.createHost().getAddress());
+	}
+
+	public void testProfilerNotSaved() {
+		ts.putSetting(Profiler.PROFILER_NS + "." + Profiler.ENABLED_S, "true");
+		ts.putSetting(Profiler.PROFILER_NS + "." + Profiler.OUTPUT_FILE_S,
+				new File(dir, "profile.csv").getPath());
+		Profiler.init(); // has an open (not serializable) output file
+		try {
+			File f = checkpointFile("test");
+			Checkpoint.save(f);
+
+			Profiler.reset();
+			Checkpoint.restore(f);
+			assertFalse(Profiler.isEnabled()); // not restored either
+		} finally {
+			Profiler.reset();
+		}
+	}
+
+	public void testRestoreMissingFile() {
+		try {
+			Checkpoint.restore(checkpointFile("missing"));
+			fail("Restoring a missing checkpoint didn't fail");
+		} catch (core.SimError e) {
+			// expected
+		}
+	}
+
+	public void testSaveTimes() {
+		putSetting(Checkpoint.SAVE_TIMES_S, "5, 2");
+		Checkpoint c = new Checkpoint();
+		assertFalse(c.isRestoring());
+
+		for (int t=1; t<=6; t++) {
+			clock.setTime(t);
+			c.update();
+		}
+
+		assertSaved("2", "5");
+	}
+
+	public void testSaveInterval() {
+		putSetting(Checkpoint.SAVE_INTERVAL_S, "2");
+		Checkpoint c = new Checkpoint();
+
+		for (int t=0; t<=7; t+=3) {
+			clock.setTime(t);
+			c.update();
+		}
+
+		assertSaved("3", "6");
+	}
+
+	public void testRestoreSkipsEarlierSaves() {
+		clock.setTime(3);
+		Checkpoint.save(checkpointFile("start"));
+		clock.setTime(0);
+
+		putSetting(Checkpoint.SAVE_TIMES_S, "2, 5");
+		putSetting(Checkpoint.RESTORE_FILE_S, checkpointFile("start").getPath());
+		Checkpoint c = new Checkpoint();
+		assertTrue(c.isRestoring());
+		c.restore();
+		assertEquals(3.0, SimClock.getTime());
+
+		for (int t=4; t<=6; t++) {
+			clock.setTime(t);
+			c.update();
+		}
+
+		assertTrue(checkpointFile("ck_5").exists());
+		assertFalse(checkpointFile("ck_2").exists());
+		assertFalse(checkpointFile("ck_4").exists());
+	}
+
+	private void putSetting(String name, String value) {
+		ts.putSetting(Checkpoint.CHECKPOINT_NS + "." + name, value);
+	}
+
+	private File checkpointFile(String name) {
+		return new File(dir, name + Checkpoint.FILE_SUFFIX);
+	}
+
+	private void assertSaved(String... times) {
+		assertEquals(times.length, dir.listFiles().length);
+		for (String t : times) {
+			assertTrue("No checkpoint at " + t,
+					checkpointFile("ck_" + t).exists());
+		}
+	}
+}
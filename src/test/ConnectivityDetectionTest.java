@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import interfaces.HierarchicalGrid;
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import core.Connection;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests the separate (and parallel) connectivity detection pass of the World
+ */
+public class ConnectivityDetectionTest extends TestCase {
+	private static final int NROF_HOSTS = 300;
+	private static final int NROF_ROUNDS = 1000;
+
+	private TestSettings s;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		s = new TestSettings();
+		s.putSetting(MovementModel.SPEED, "0.5,15");
+		s.putSetting(MovementModel.WAIT_TIME, "0,30");
+		s.putSetting("Optimization.randomizeUpdateOrder", "true");
+	}
+
+	public void testSameEventsWithMultipleThreads() {
+		String[] oneThread = runScenario(1);
+		String[] threads = runScenario(4);
+
+		assertTrue(oneThread[0].length() > 0);
+		assertEquals(oneThread[0], threads[0]);
+		assertEquals(oneThread[1], threads[1]);
+	}
+
+	public void testSameEventsAsWithoutDetection() {
+		String[] legacy = runScenario(0);
+		String[] oneThread = runScenario(1);
+		String[] threads = runScenario(4);
+
+		assertTrue(legacy[0].length() > 0);
+		assertEquals(legacy[0], oneThread[0]);
+		assertEquals(legacy[1], oneThread[1]);
+		assertEquals(legacy[0], threads[0]);
+		assertEquals(legacy[1], threads[1]);
+	}
+
+	public void testSameEventsAsWithoutDetectionInHierarchicalGrid() {
+		s.putSetting("Optimization." + HierarchicalGrid.HIERARCHICAL_GRID_S,
+				"true");
+		String[] legacy = runScenario(0);
+		String[] threads = runScenario(4);
+
+		assertTrue(legacy[0].length() > 0);
+		assertEquals(legacy[0], threads[0]);
+		assertEquals(legacy[1], threads[1]);
+	}
+
+	/**
+	 * Runs a scenario with the given number of connectivity threads
+	 * @param nrofThreads The number of threads (0 = no detection pass)
+	 * @return The connection events and connection states (after every
+	 * update) of the run as strings
+	 */
+	private String[] runScenario(int nrofThreads) {
+		final StringBuilder events = new StringBuilder();
+		final StringBuilder states = new StringBuilder();
+
+		s.putSetting("Optimization." + World.CONNECTIVITY_THREADS_S,
+				"" + nrofThreads);
+		TestUtils.resetWorld();
+
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		cls.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				events.append(SimClock.getTime() + " up " + host1 + " " +
+						host2 + "\n");
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				events.append(SimClock.getTime() + " down " + host1 + " " +
+						host2 + "\n");
+			}
+		});
+
+		List<UpdateListener> uls = new ArrayList<UpdateListener>();
+		uls.add(new UpdateListener() {
+			public void updated(List<? extends DTNHost> hosts) {
+				states.append(SimClock.getTime() + ":");
+				for (DTNHost h : hosts) {
+					List<Integer> peers = new ArrayList<Integer>();
+					for (Connection c : h.getConnections()) {
+						peers.add(c.getOtherNode(h).getAddress());
+					}
+					java.util.Collections.sort(peers);
+					states.append(" " + h.getAddress() + peers);
+				}
+				states.append("\n");
+			}
+		});
+
+		TestUtils utils = new TestUtils(cls, null, s);
+		utils.setBroadcastRange(30);
+		MovementModel mmProto = new RandomWaypoint(s);
+		for (int i=0; i<NROF_HOSTS; i++) {
+			utils.createBroadcastHost(mmProto);
+		}
+
+		World world = utils.createWorld(1.0, uls, true, null);
+		TestUtils.updateWorld(world, NROF_ROUNDS);
+		world.shutdown();
+
+		return new String[] {events.toString(), states.toString()};
+	}
+}
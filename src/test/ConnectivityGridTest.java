@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests the neighbor and pair queries of the ConnectivityGrid
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final int NROF_HOSTS = 300;
+	private static final double RANGE = 10;
+	private static final int AREA_SIZE = 400;
+
+	private Random rng;
+	private List<NetworkInterface> interfaces;
+	private ConnectivityGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings s = new TestSettings();
+		DTNHost.reset();
+		ConnectivityGrid.reset();
+
+		s.setNameSpace(TestUtils.IFACE_NS);
+		s.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		s.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null, null, s);
+
+		rng = new Random(42);
+		interfaces = new ArrayList<NetworkInterface>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			DTNHost h = utils.createHost(randomCoord());
+			interfaces.add(h.getInterfaces().get(0));
+		}
+		grid = (ConnectivityGrid)interfaces.get(0).getOptimizer();
+	}
+
+	public void testPairsAreVisitedOnce() {
+		assertPairs();
+	}
+
+	public void testPairsAfterMovingAndRemoving() {
+		for (int round=0; round<10; round++) {
+			for (NetworkInterface ni : interfaces) {
+				ni.getHost().setLocation(randomCoord());
+				grid.updateLocation(ni);
+			}
+			for (int i=0; i<10; i++) {
+				grid.removeInterface(interfaces.remove(
+						rng.nextInt(interfaces.size())));
+			}
+			assertEquals(interfaces.size(), grid.getAllInterfaces().size());
+			assertPairs();
+		}
+	}
+
+	public void testNearInterfacesContainAllWithinRange() {
+		for (NetworkInterface ni : interfaces) {
+			Set<NetworkInterface> near =
+				new HashSet<NetworkInterface>(grid.getNearInterfaces(ni));
+			assertTrue(near.contains(ni));
+			for (NetworkInterface other : interfaces) {
+				if (inRange(ni, other)) {
+					assertTrue(near.contains(other));
+				}
+			}
+		}
+	}
+
+	public void testSameInterfacesInTwoGrids() {
+		ConnectivityGrid other = (ConnectivityGrid)grid.newInstance();
+		for (NetworkInterface ni : interfaces) {
+			grid.updateLocation(ni);
+		}
+		List<NetworkInterface> kept = new ArrayList<NetworkInterface>();
+		for (int i=interfaces.size()-1; i>=0; i--) { // different grid indexes
+			other.addInterface(interfaces.get(i));
+			if (i % 2 == 0) {
+				kept.add(interfaces.get(i));
+			} else {
+				other.removeInterface(interfaces.get(i));
+			}
+		}
+
+		assertEquals(NROF_HOSTS, grid.getAllInterfaces().size());
+		assertEquals(kept.size(), other.getAllInterfaces().size());
+		for (NetworkInterface ni : interfaces) {
+			Set<NetworkInterface> expected =
+				new HashSet<NetworkInterface>(grid.getNearInterfaces(ni));
+			assertTrue(expected.contains(ni));
+			if (kept.contains(ni)) {
+				expected.retainAll(kept);
+			} else {
+				expected.clear();
+			}
+			assertEquals(expected,
+					new HashSet<NetworkInterface>(other.getNearInterfaces(ni)));
+		}
+	}
+
+	/**
+	 * Checks that the pair scan visits every pair of different interfaces
+	 * at most once and all the pairs within range
+	 */
+	private void assertPairs() {
+		final Set<String> visited = new HashSet<String>();
+		grid.forEachNearPair(new ConnectivityOptimizer.PairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				assertNotSame(ni1, ni2);
+				assertTrue("Pair visited twice", visited.add(key(ni1, ni2)));
+			}
+		});
+
+		int nrofInRange = 0;
+		for (int i=0; i<interfaces.size(); i++) {
+			for (int j=i+1; j<interfaces.size(); j++) {
+				NetworkInterface ni1 = interfaces.get(i);
+				NetworkInterface ni2 = interfaces.get(j);
+				if (inRange(ni1, ni2)) {
+					nrofInRange++;
+					assertTrue(visited.contains(key(ni1, ni2)));
+				}
+			}
+		}
+		assertTrue(nrofInRange > 0);
+	}
+
+	private String key(NetworkInterface ni1, NetworkInterface ni2) {
+		int a1 = ni1.getHost().getAddress();
+		int a2 = ni2.getHost().getAddress();
+		return Math.min(a1, a2) + "-" + Math.max(a1, a2);
+	}
+
+	private boolean inRange(NetworkInterface ni1, NetworkInterface ni2) {
+		return ni1 != ni2 && ni1.getLocation().distance(
+				ni2.getLocation()) <= RANGE;
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * AREA_SIZE,
+				rng.nextDouble() * AREA_SIZE);
+	}
+}
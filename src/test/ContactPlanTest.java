@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ContactPlanReader;
+import input.EventQueue;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.ContactPlanMovement;
+import movement.MovementModel;
+import movement.Path;
+import report.ContactPlanReport;
+import report.Report;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MovementListener;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests recording a contact plan with the ContactPlanReport and replaying
+ * it with the ContactPlanReader and ContactPlanMovement
+ */
+public class ContactPlanTest extends TestCase {
+	private static final double UP_INT = 1.0;
+	private static final int NROF_UPDATES = 200;
+	private static final double RANGE = 10.0;
+	private static final double HOST_SPEED = 7.0;
+	private static final double HOST_WAIT_TIME = 4.5;
+
+	private TestSettings s;
+	private File planFile;
+	/* connection events ("time up/down") and locations after every update */
+	private List<String> connections;
+	private List<Coord> locations;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		s = new TestSettings();
+		planFile = File.createTempFile("cplantest",
+				ContactPlanReader.CONTACT_PLAN_EXT);
+		planFile.deleteOnExit();
+		s.putSetting(ContactPlanReport.class.getSimpleName() + "." +
+				Report.OUTPUT_SETTING, planFile.getAbsolutePath());
+		s.putSetting(ContactPlanMovement.CONTACT_PLAN_MOVEMENT_NS + "." +
+				ContactPlanMovement.PLAN_FILE_S, planFile.getAbsolutePath());
+		ContactPlanMovement.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		ContactPlanMovement.reset();
+	}
+
+	public void testReplayReproducesContactsAndMovement() {
+		ContactPlanReport report = new ContactPlanReport();
+		runScenario(new ShuttleMovement(), report, true, null);
+		report.done();
+		List<String> recordedConnections = connections;
+		List<Coord> recordedLocations = locations;
+		assertTrue(recordedConnections.size() > 4);
+
+		assertTrue(ContactPlanReader.isContactPlanFile(planFile));
+		List<ExternalEvent> events =
+			new ContactPlanReader(planFile).readEvents(1000);
+		assertEquals(recordedConnections.size(), events.size());
+
+		s.setNameSpace(TestUtils.IFACE_NS);
+		ContactPlanMovement replay = new ContactPlanMovement(s);
+		s.restoreNameSpace();
+		runScenario(replay, null, false,
+				new ExternalEventsQueue(planFile.getAbsolutePath(), 10));
+
+		assertEquals(recordedConnections, connections);
+		assertEquals(recordedLocations.size(), locations.size());
+		for (int i=0; i<locations.size(); i++) {
+			assertEquals(recordedLocations.get(i).getX(),
+					locations.get(i).getX(), 0.00001);
+			assertEquals(recordedLocations.get(i).getY(),
+					locations.get(i).getY(), 0.00001);
+		}
+	}
+
+	public void testNonPlanFileIsNotRecognized() throws Exception {
+		File other = File.createTempFile("cplantest", ".txt");
+		other.deleteOnExit();
+		assertFalse(ContactPlanReader.isContactPlanFile(other));
+	}
+
+	/**
+	 * Runs a scenario with a stationary host and a host with the given
+	 * movement model and stores the connections and locations
+	 */
+	private void runScenario(MovementModel mm, ContactPlanReport report,
+			boolean simulateConnections, EventQueue events) {
+		TestUtils.resetWorld();
+		connections = new ArrayList<String>();
+		locations = new ArrayList<Coord>();
+
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		List<MovementListener> mls = new ArrayList<MovementListener>();
+		List<UpdateListener> uls = new ArrayList<UpdateListener>();
+		if (report != null) {
+			cls.add(report);
+			mls.add(report);
+			uls.add(report);
+		}
+		cls.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				connections.add(SimClock.getTime() + " up");
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				connections.add(SimClock.getTime() + " down");
+			}
+		});
+
+		TestUtils utils = new TestUtils(cls, null, s);
+		utils.setMovListeners(mls);
+		utils.setBroadcastRange(RANGE);
+		utils.createBroadcastHost(new StationaryMovement(new Coord(200, 100)));
+		final DTNHost host = utils.createBroadcastHost(mm);
+
+		uls.add(new UpdateListener() {
+			public void updated(List<? extends DTNHost> hosts) {
+				locations.add(host.getLocation().clone());
+			}
+		});
+		List<EventQueue> eqs = new ArrayList<EventQueue>();
+		if (events != null) {
+			eqs.add(events);
+		}
+		World world = utils.createWorld(UP_INT, uls, simulateConnections, eqs);
+		TestUtils.updateWorld(world, NROF_UPDATES);
+	}
+
+	/**
+	 * Movement model that moves back and forth between two locations past
+	 * the stationary host and waits at both ends
+	 */
+	private static class ShuttleMovement extends MovementModel {
+		private static final long serialVersionUID = 42L;
+
+		private Coord[] ends = {new Coord(300, 100), new Coord(100, 100)};
+		private int nextEnd = 1;
+
+		@Override
+		public Coord getInitialLocation() {
+			return ends[0].clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(HOST_SPEED);
+			p.addWaypoint(ends[1 - nextEnd].clone());
+			p.addWaypoint(new Coord(200, 105));
+			p.addWaypoint(ends[nextEnd].clone());
+			nextEnd = 1 - nextEnd;
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + HOST_WAIT_TIME;
+		}
+
+		@Override
+		public ShuttleMovement replicate() {
+			return new ShuttleMovement();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.ConnectionListener;
+import core.ContactPredictor;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests the contact time prediction of the World
+ */
+public class ContactPredictorTest extends TestCase {
+	private static final double UP_INT = 10.0;
+	private static final double RANGE = 10.0;
+	private static final double HOST_SPEED = 7.0;
+	/* host moving from (300,100) to (100,100) is in range of a host in
+	 * (200,100) between these times */
+	private static final double CONTACT_UP = (100 - RANGE) / HOST_SPEED;
+	private static final double CONTACT_DOWN = (100 + RANGE) / HOST_SPEED;
+
+	private TestSettings s;
+	private List<Double> upTimes;
+	private List<Double> downTimes;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		s = new TestSettings();
+		upTimes = new ArrayList<Double>();
+		downTimes = new ArrayList<Double>();
+	}
+
+	public void testContactBetweenUpdatesIsMissedWithoutPrediction() {
+		runScenario(false);
+		assertEquals(0, upTimes.size());
+		assertEquals(0, downTimes.size());
+	}
+
+	public void testContactTimesArePredicted() {
+		runScenario(true);
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(CONTACT_UP, upTimes.get(0),
+				2 * ContactPredictor.CONTACT_TIME_EPSILON);
+		assertEquals(CONTACT_DOWN, downTimes.get(0),
+				2 * ContactPredictor.CONTACT_TIME_EPSILON);
+	}
+
+	public void testContactWithParkedHostIsPredicted() {
+		/* the first host stops at (200,100) before the second one passes */
+		runScenario(true, new LineMovement(new Coord(200, 23),
+				new Coord(200, 100)));
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(CONTACT_UP, upTimes.get(0),
+				2 * ContactPredictor.CONTACT_TIME_EPSILON);
+		assertEquals(CONTACT_DOWN, downTimes.get(0),
+				2 * ContactPredictor.CONTACT_TIME_EPSILON);
+	}
+
+	private void runScenario(boolean predict) {
+		runScenario(predict, new StationaryMovement(new Coord(200, 100)));
+	}
+
+	private void runScenario(boolean predict, MovementModel firstMovement) {
+		s.putSetting("Optimization." + World.PREDICT_CONTACTS_S, "" + predict);
+		TestUtils.resetWorld();
+
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		cls.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				upTimes.add(SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				downTimes.add(SimClock.getTime());
+			}
+		});
+
+		TestUtils utils = new TestUtils(cls, null, s);
+		utils.setBroadcastRange(RANGE);
+		utils.createBroadcastHost(firstMovement);
+		utils.createBroadcastHost(new LineMovement(new Coord(300, 100),
+				new Coord(100, 100)));
+
+		World world = utils.createWorld(UP_INT, null, true, null);
+		TestUtils.updateWorld(world, 4);
+	}
+
+	/**
+	 * Movement model that moves once from a start location to an end
+	 * location with a constant speed
+	 */
+	private static class LineMovement extends MovementModel {
+		private static final long serialVersionUID = 42L;
+
+		private Coord start;
+		private Coord end;
+		private boolean pathGiven;
+
+		public LineMovement(Coord start, Coord end) {
+			this.start = start;
+			this.end = end;
+			this.pathGiven = false;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return start.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			if (pathGiven) {
+				return null;
+			}
+			pathGiven = true;
+			Path p = new Path(HOST_SPEED);
+			p.addWaypoint(start.clone());
+			p.addWaypoint(end.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return pathGiven ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(start, end);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import routing.GeoEpidemicRouter;
+import routing.GeoMessageRouter;
+import routing.PassiveRouter;
+import core.CBRConnection;
+import core.Cast;
+import core.CastLookup;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.GeoDTNHost;
+import core.GeoMessage;
+import core.GeoMessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Tests for the part masks of split geomessages in GeoMessageRouter and
+ * the neighbouring part rule of GeoActiveRouter
+ */
+public class GeoMessageRouterTest extends TestCase {
+	private static final String PAYLOAD = "Hello geocast world!";
+
+	private TestSettings ts;
+	private List<Cast> to;
+	private GeoDTNHost h1;
+	private GeoDTNHost h2;
+	private TestGeoRouter r1;
+	private TestGeoRouter r2;
+	private Connection con;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		CastLookup.reset();
+		ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+
+		List<Coord> square = new ArrayList<Coord>();
+		square.add(new Coord(0, 0));
+		square.add(new Coord(100, 0));
+		square.add(new Coord(100, 100));
+		square.add(new Coord(0, 100));
+		to = new ArrayList<Cast>();
+		to.add(new Cast(square));
+
+		TestGeoRouter proto = new TestGeoRouter(ts);
+		h1 = createHost(new Coord(10, 10), proto);
+		h2 = createHost(new Coord(10, 10), proto);
+		r1 = (TestGeoRouter)h1.getGeoRouter();
+		r2 = (TestGeoRouter)h2.getGeoRouter();
+		con = new CBRConnection(h1, h1.getInterfaces().get(0), h2,
+				h2.getInterfaces().get(0), 1);
+	}
+
+	public void testAddAndRemoveUpdateCarriedMask() {
+		GeoMessage whole = msg("M1", 0);
+		int base = whole.getBaseHandle();
+		assertEquals(0, r1.getGeoMessagePartMask(base));
+
+		r1.add(whole);
+		assertEquals(1, r1.getGeoMessagePartMask(base));
+		r1.add(msg("M1$3", 3));
+		assertEquals(1 | 1 << 3, r1.getGeoMessagePartMask(base));
+		r1.add(msg("M1$3", 3)); // replaces the carried copy
+		assertEquals(1 | 1 << 3, r1.getGeoMessagePartMask(base));
+		r1.add(msg("M1$4", 4));
+		assertEquals(1 | 1 << 3 | 1 << 4, r1.getGeoMessagePartMask(base));
+
+		r1.remove("M1");
+		assertEquals(1 << 3 | 1 << 4, r1.getGeoMessagePartMask(base));
+		r1.remove("M1$3");
+		r1.remove("M1$3"); // not carried anymore
+		assertEquals(1 << 4, r1.getGeoMessagePartMask(base));
+		r1.remove("M1$4");
+		assertEquals(0, r1.getGeoMessagePartMask(base));
+		assertEquals(0, r2.getGeoMessagePartMask(base));
+	}
+
+	public void testNeighbouringPartsAreNotOffered() {
+		r2.add(msg("M1$2", 2));
+		assertFalse(offers(msg("M1$1", 1)));
+		assertFalse(offers(msg("M1$3", 3)));
+		assertTrue(offers(msg("M1$4", 4)));
+		assertTrue(offers(msg("M1", 0))); // whole message always offered
+		assertTrue(offers(msg("M2$1", 1))); // other message
+
+		r2.add(msg("M1$4", 4)); // parts wrap around: 4 and 1 are neighbours
+		assertFalse(offers(msg("M1$1", 1)));
+		assertFalse(offers(msg("M1$3", 3)));
+	}
+
+	public void testWholeMessageCountsAsFirstPart() {
+		r2.add(msg("M1", 0));
+		assertFalse(offers(msg("M1$2", 2)));
+		assertFalse(offers(msg("M1$4", 4)));
+		assertTrue(offers(msg("M1$3", 3)));
+
+		r2.remove("M1");
+		assertTrue(offers(msg("M1$2", 2)));
+	}
+
+	public void testAllPartsOnlyWhenAllDelivered() {
+		BigInteger[] codes = GeoMessage.encrypt(PAYLOAD);
+		int[] order = {3, 1, 4, 2};
+
+		for (int i = 0; i < order.length; i++) {
+			assertFalse(r2.allParts("M1"));
+			int part = order[i];
+			GeoMessage m = msg("M1$" + part, part);
+			m.setPayload(GeoMessage.decode(codes[part - 1]));
+			deliver(m);
+
+			if (part == 1) { // a duplicate doesn't complete the message
+				deliver(msg("M1$1", 1));
+				assertFalse(r2.allParts("M1"));
+			}
+		}
+
+		assertTrue(r2.allParts("M1"));
+		assertFalse(r2.allParts("M2"));
+		GeoMessage whole = r2.get("M1");
+		assertNotNull(whole);
+		assertEquals(0, whole.getPartID());
+		assertEquals(PAYLOAD, whole.getPayload());
+	}
+
+	/**
+	 * Returns true if h1 would offer the geomessage to h2
+	 */
+	private boolean offers(GeoMessage m) {
+		return r1.offers(con, m);
+	}
+
+	/**
+	 * Transfers a geomessage from h1 to h2
+	 */
+	private void deliver(GeoMessage m) {
+		if (r2.receiveGeoMessage(m, h1) == GeoMessageRouter.RCV_OK) {
+			r2.geoMessageTransferred(m.getId(), h1);
+		}
+	}
+
+	private GeoMessage msg(String id, int partID) {
+		return new GeoMessage(h1, to, id, 10, partID, "");
+	}
+
+	private GeoDTNHost createHost(Coord loc, GeoMessageRouter proto) {
+		MovementModel mmProto = new StationaryMovement(loc);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(ts));
+		return new GeoDTNHost(null, null, "h", li,
+				new ModuleCommunicationBus(), mmProto, new PassiveRouter(ts),
+				proto, new ArrayList<GeoMessageListener>());
+	}
+
+	/**
+	 * Router that exposes the buffer and records the offered geomessages
+	 * instead of transferring them
+	 */
+	private static class TestGeoRouter extends GeoEpidemicRouter {
+		private static final long serialVersionUID = 42L;
+
+		private List<GeoMessage> offered = new ArrayList<GeoMessage>();
+
+		public TestGeoRouter(Settings s) {
+			super(s);
+		}
+
+		protected TestGeoRouter(TestGeoRouter r) {
+			super(r);
+		}
+
+		public void add(GeoMessage m) {
+			addToGeoMessages(m, false);
+		}
+
+		public void remove(String id) {
+			removeFromGeoMessages(id);
+		}
+
+		public GeoMessage get(String id) {
+			return getGeoMessage(id);
+		}
+
+		@Override
+		public boolean allParts(String key) {
+			return super.allParts(key);
+		}
+
+		/**
+		 * Returns true if the geomessage would be offered to the peer of
+		 * the connection
+		 */
+		public boolean offers(Connection con, GeoMessage m) {
+			this.offered.clear();
+			tryAllMessages(con, Collections.singletonList(m));
+			return this.offered.contains(m);
+		}
+
+		@Override
+		protected int startTransfer(GeoMessage m, Connection con) {
+			this.offered.add(m);
+			return DENIED_UNSPECIFIED;
+		}
+
+		@Override
+		public TestGeoRouter replicate() {
+			return new TestGeoRouter(this);
+		}
+	}
+}
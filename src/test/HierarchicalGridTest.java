@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import interfaces.ConnectivityOptimizer;
+import interfaces.HierarchicalGrid;
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+
+/**
+ * Tests the neighbor and pair queries of the HierarchicalGrid with
+ * interfaces of different types and ranges
+ */
+public class HierarchicalGridTest extends TestCase {
+	private static final int NROF_HOSTS = 300;
+	private static final int AREA_SIZE = 1000;
+	/* interface types and their ranges */
+	private static final String[] TYPES = {"bt", "wlan", "bt"};
+	private static final double[] RANGES = {10, 250, 35};
+
+	private Random rng;
+	private List<NetworkInterface> interfaces;
+	private HierarchicalGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings s = new TestSettings();
+		s.putSetting("Optimization." + HierarchicalGrid.HIERARCHICAL_GRID_S,
+				"true");
+		DTNHost.reset();
+		HierarchicalGrid.reset();
+
+		rng = new Random(7);
+		interfaces = new ArrayList<NetworkInterface>();
+		PassiveRouter routerProto = new PassiveRouter(s);
+		for (int i=0; i<NROF_HOSTS; i++) {
+			int t = i % TYPES.length;
+			s.setNameSpace(TYPES[t]);
+			s.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGES[t]);
+			s.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new TestInterface(s));
+			s.restoreNameSpace();
+
+			DTNHost h = new DTNHost(null, null, "n", li,
+					new ModuleCommunicationBus(),
+					new StationaryMovement(randomCoord()), routerProto);
+			interfaces.add(h.getInterfaces().get(0));
+		}
+		grid = HierarchicalGrid.getInstance();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		new TestSettings(); /* don't leave the grid in use for other tests */
+		HierarchicalGrid.reset();
+	}
+
+	public void testAllInterfacesShareTheGrid() {
+		for (NetworkInterface ni : interfaces) {
+			assertSame(grid, ni.getOptimizer());
+		}
+		assertEquals(NROF_HOSTS, grid.getAllInterfaces().size());
+	}
+
+	public void testPairsAreVisitedOnce() {
+		assertPairs();
+	}
+
+	public void testNearInterfaces() {
+		assertNearInterfaces();
+	}
+
+	public void testRangeChangesAndMoving() {
+		for (int round=0; round<5; round++) {
+			for (NetworkInterface ni : interfaces) {
+				ni.getHost().setLocation(randomCoord());
+				if (rng.nextInt(4) == 0) {
+					ni.getHost().getComBus().updateProperty(
+							NetworkInterface.RANGE_ID,
+							RANGES[rng.nextInt(RANGES.length)]);
+				}
+				grid.updateLocation(ni);
+			}
+			for (int i=0; i<5; i++) {
+				grid.removeInterface(interfaces.remove(
+						rng.nextInt(interfaces.size())));
+			}
+			assertEquals(interfaces.size(), grid.getAllInterfaces().size());
+			assertPairs();
+			assertNearInterfaces();
+		}
+	}
+
+	/**
+	 * Checks that the near interfaces of every interface include all the
+	 * interfaces (of the same type) within range and nothing of other types
+	 */
+	private void assertNearInterfaces() {
+		for (NetworkInterface ni : interfaces) {
+			Set<NetworkInterface> near =
+				new HashSet<NetworkInterface>(grid.getNearInterfaces(ni));
+			assertTrue(near.contains(ni));
+			for (NetworkInterface other : near) {
+				assertEquals(ni.getInterfaceType(), other.getInterfaceType());
+			}
+			for (NetworkInterface other : interfaces) {
+				if (inRange(ni, other)) {
+					assertTrue(near.contains(other));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the pair scan visits every pair at most once, only pairs
+	 * of the same type and all the pairs within range
+	 */
+	private void assertPairs() {
+		final Set<String> visited = new HashSet<String>();
+		grid.forEachNearPair(new ConnectivityOptimizer.PairVisitor() {
+			public void visit(NetworkInterface ni1, NetworkInterface ni2) {
+				assertNotSame(ni1, ni2);
+				assertEquals(ni1.getInterfaceType(), ni2.getInterfaceType());
+				assertTrue("Pair visited twice", visited.add(key(ni1, ni2)));
+			}
+		});
+
+		int nrofInRange = 0;
+		for (int i=0; i<interfaces.size(); i++) {
+			for (int j=i+1; j<interfaces.size(); j++) {
+				NetworkInterface ni1 = interfaces.get(i);
+				NetworkInterface ni2 = interfaces.get(j);
+				if (inRange(ni1, ni2)) {
+					nrofInRange++;
+					assertTrue(visited.contains(key(ni1, ni2)));
+				}
+			}
+		}
+		assertTrue(nrofInRange > 0);
+	}
+
+	private String key(NetworkInterface ni1, NetworkInterface ni2) {
+		int a1 = ni1.getHost().getAddress();
+		int a2 = ni2.getHost().getAddress();
+		return Math.min(a1, a2) + "-" + Math.max(a1, a2);
+	}
+
+	private boolean inRange(NetworkInterface ni1, NetworkInterface ni2) {
+		double range = Math.min(ni1.getTransmitRange(),
+				ni2.getTransmitRange());
+		return ni1 != ni2 &&
+			ni1.getInterfaceType().equals(ni2.getInterfaceType()) &&
+			ni1.getLocation().distance(ni2.getLocation()) <= range;
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * AREA_SIZE,
+				rng.nextDouble() * AREA_SIZE);
+	}
+}
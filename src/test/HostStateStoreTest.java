@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.HostStateStore;
+
+/**
+ * Tests that the HostStateStore follows the state of the hosts
+ */
+public class HostStateStoreTest extends TestCase {
+	private TestUtils utils;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		DTNHost.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	public void testInitialLocations() {
+		for (int i=0; i<100; i++) { /* more than the initial capacity */
+			utils.createHost(new Coord(i, 2 * i));
+		}
+		for (DTNHost h : utils.getAllHosts()) {
+			assertLocationInStore(h);
+		}
+	}
+
+	public void testLocationChangesAreWrittenThrough() {
+		DTNHost h = utils.createHost(new Coord(10, 20));
+		DTNHost other = utils.createHost(new Coord(13, 24));
+		assertEquals(25.0, HostStateStore.distance2(h.getAddress(),
+				other.getAddress()));
+
+		h.setLocation(new Coord(30, 40));
+		assertLocationInStore(h);
+
+		h.getLocation().translate(1, 2);
+		assertEquals(31.0, HostStateStore.getX(h.getAddress()));
+		assertEquals(42.0, HostStateStore.getY(h.getAddress()));
+
+		Coord copy = h.getLocation().clone();
+		copy.setLocation(0, 0);
+		assertEquals(new Coord(31, 42), h.getLocation());
+		assertLocationInStore(h);
+	}
+
+	private void assertLocationInStore(DTNHost h) {
+		assertEquals(h.getLocation().getX(),
+				HostStateStore.getX(h.getAddress()));
+		assertEquals(h.getLocation().getY(),
+				HostStateStore.getY(h.getAddress()));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for the LongHashMap class
+ */
+public class LongHashMapTest extends TestCase {
+	private LongHashMap<String> map;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		map = new LongHashMap<String>();
+	}
+
+	public void testPutGetRemove() {
+		assertNull(map.get(1));
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-5, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertTrue(map.containsKey(-5));
+		assertFalse(map.containsKey(5));
+
+		assertEquals("b", map.remove(-5));
+		assertNull(map.remove(-5));
+		assertEquals(1, map.size());
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1));
+	}
+
+	public void testPair() {
+		long key = LongHashMap.pair(3, -1);
+		assertTrue(key != LongHashMap.pair(3, 1));
+		assertTrue(key != LongHashMap.pair(-1, 3));
+		map.put(key, "x");
+		assertEquals("x", map.get(LongHashMap.pair(3, -1)));
+		assertNull(map.get(LongHashMap.pair(3, 0)));
+	}
+
+	public void testNullValue() {
+		try {
+			map.put(1, null);
+			fail("Null value accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Compares the map to a HashMap over a random sequence of puts and
+	 * removes (that also grow the map and collide in the probe sequences)
+	 */
+	public void testAgainstHashMap() {
+		Map<Long, String> expected = new HashMap<Long, String>();
+		Random rng = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			long key = rng.nextInt(500);
+			if (rng.nextBoolean()) {
+				assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (long key = 0; key < 500; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+		assertEquals(new HashSet<String>(expected.values()),
+				new HashSet<String>(map.values()));
+		assertEquals(expected.size(), map.values().size());
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongIntHashMap;
+
+/**
+ * Tests for the LongIntHashMap class
+ */
+public class LongIntHashMapTest extends TestCase {
+	private LongIntHashMap map;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		map = new LongIntHashMap();
+	}
+
+	public void testPutGetRemove() {
+		assertEquals(0, map.get(1));
+		assertEquals(0, map.put(1, 7));
+		assertEquals(0, map.put(-5, -2));
+		assertEquals(7, map.put(1, 3));
+		assertEquals(2, map.size());
+		assertEquals(3, map.get(1));
+		assertTrue(map.containsKey(-5));
+		assertFalse(map.containsKey(5));
+
+		assertEquals(-2, map.remove(-5));
+		assertEquals(0, map.remove(-5));
+		assertEquals(1, map.size());
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertEquals(0, map.get(1));
+	}
+
+	public void testPuttingZeroRemoves() {
+		map.put(1, 4);
+		assertEquals(4, map.put(1, 0));
+		assertFalse(map.containsKey(1));
+		assertEquals(0, map.put(2, 0));
+		assertTrue(map.isEmpty());
+	}
+
+	/**
+	 * Compares the map to a HashMap over a random sequence of puts and
+	 * removes (that also grow the map and collide in the probe sequences)
+	 */
+	public void testAgainstHashMap() {
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		Random rng = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			long key = rng.nextInt(500);
+			if (rng.nextBoolean()) {
+				assertEquals(value(expected.put(key, i + 1)),
+						map.put(key, i + 1));
+			} else {
+				assertEquals(value(expected.remove(key)), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (long key = 0; key < 500; key++) {
+			assertEquals(value(expected.get(key)), map.get(key));
+		}
+	}
+
+	/**
+	 * Returns the int value of a HashMap value (zero for null)
+	 */
+	private static int value(Integer value) {
+		return (value == null ? 0 : value.intValue());
+	}
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private List<ScheduledUpdatesQueue> queues;
+	private MergedEventQueue mq;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		queues = new ArrayList<ScheduledUpdatesQueue>();
+		for (int i=0; i<5; i++) {
+			queues.add(new ScheduledUpdatesQueue());
+		}
+	}
+	
+	public void testMerging() {
+		queues.get(0).addUpdate(3);
+		queues.get(1).addUpdate(1);
+		queues.get(1).addUpdate(4);
+		queues.get(3).addUpdate(2);
+		queues.get(4).addUpdate(0.5);
+		queues.get(4).addUpdate(5);
+		mq = new MergedEventQueue(queues);
+		
+		double[] expected = {0.5, 1, 2, 3, 4, 5};
+		for (double time : expected) {
+			assertEquals(time, mq.nextEventsTime());
+			assertEquals(time, mq.nextEvent().getTime());
+		}
+		assertEquals(MAX, mq.nextEventsTime());
+		assertEquals(MAX, mq.nextEvent().getTime());
+	}
+	
+	public void testTiesInQueueOrder() {
+		List<EventQueue> tagged = new ArrayList<EventQueue>();
+		for (int i=0; i<4; i++) {
+			tagged.add(new TaggedQueue(i, 1.0));
+		}
+		mq = new MergedEventQueue(tagged);
+		
+		for (int i=0; i<4; i++) {
+			assertEquals("" + i, mq.nextEvent().toString());
+		}
+	}
+	
+	public void testUpdatedQueues() {
+		queues.get(2).addUpdate(5);
+		queues.get(3).addUpdate(6);
+		mq = new MergedEventQueue(queues);
+		
+		queues.get(4).addUpdate(1); // not seen before update
+		assertEquals(5.0, mq.nextEventsTime());
+		mq.update(4);
+		assertEquals(1.0, mq.nextEvent().getTime());
+		
+		queues.get(0).addUpdate(2);
+		queues.get(1).addUpdate(3);
+		mq.refresh();
+		assertEquals(2.0, mq.nextEvent().getTime());
+		assertEquals(3.0, mq.nextEvent().getTime());
+		
+		queues.get(2).nextEvent(); // first queue changed behind the back
+		assertEquals(6.0, mq.nextEvent().getTime());
+		assertEquals(MAX, mq.nextEventsTime());
+	}
+	
+	/** Queue with one event whose toString is the queue's tag */
+	private class TaggedQueue implements EventQueue {
+		private static final long serialVersionUID = 42L;
+
+		private double time;
+		private int tag;
+		
+		public TaggedQueue(int tag, double time) {
+			this.tag = tag;
+			this.time = time;
+		}
+		
+		public ExternalEvent nextEvent() {
+			ExternalEvent ee = new ExternalEvent(time) {
+				public String toString() {
+					return "" + tag;
+				}
+			};
+			this.time = MAX;
+			return ee;
+		}
+		
+		public double nextEventsTime() {
+			return this.time;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.MessageBuffer;
+import core.DTNHost;
+import core.Message;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Tests for the MessageBuffer class
+ */
+public class MessageBufferTest extends TestCase {
+	private TestSettings ts;
+	private DTNHost from;
+	private DTNHost to;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		SimClock.reset();
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		from = utils.createHost();
+		to = utils.createHost();
+	}
+
+	public void testOccupancy() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_OLDEST);
+		assertEquals(0, b.getOccupancy());
+
+		b.put(msg("M1", 10, 0, 10));
+		b.put(msg("M2", 20, 0, 10));
+		assertEquals(30, b.getOccupancy());
+		assertEquals(2, b.size());
+
+		Message m3 = msg("M1", 5, 0, 10); // replaces the old M1
+		assertNotNull(b.put(m3));
+		assertEquals(25, b.getOccupancy());
+		assertEquals(2, b.size());
+		assertSame(m3, b.get("M1"));
+		assertSame(m3, b.get(m3.getHandle()));
+		assertTrue(b.containsKey(m3.getHandle()));
+
+		assertNull(b.remove("unknown"));
+		assertNotNull(b.remove("M2"));
+		assertEquals(5, b.getOccupancy());
+		assertFalse(b.containsKey("M2"));
+		assertNotNull(b.remove("M1"));
+		assertEquals(0, b.getOccupancy());
+		assertEquals(0, b.size());
+	}
+
+	public void testDropOldest() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_OLDEST);
+		fill(b);
+		assertOrder(b, "M3", "M1", "M4", "M2");
+	}
+
+	public void testDropYoungest() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_YOUNGEST);
+		fill(b);
+		assertOrder(b, "M2", "M4", "M1", "M3");
+	}
+
+	public void testDropLowestTtl() {
+		MessageBuffer<Message> b =
+			new TestBuffer(MessageBuffer.DROP_LOWEST_TTL);
+		fill(b);
+		assertOrder(b, "M4", "M1", "M2", "M3");
+	}
+
+	public void testDropLargest() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_LARGEST);
+		fill(b);
+		assertOrder(b, "M1", "M4", "M3", "M2");
+	}
+
+	public void testEqualKeysInInsertionOrder() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_OLDEST);
+		b.put(msg("B", 1, 5, 10));
+		b.put(msg("A", 1, 5, 10));
+		b.put(msg("C", 1, 5, 10));
+		b.remove("A");
+		b.put(msg("A", 1, 5, 10));
+		assertOrder(b, "B", "C", "A");
+	}
+
+	public void testSendOrder() {
+		assertSendOrder(MessageBuffer.SEND_FIFO, "M3", "M1", "M4", "M2");
+		assertSendOrder(MessageBuffer.SEND_LIFO, "M2", "M4", "M1", "M3");
+		assertSendOrder(MessageBuffer.SEND_HIGHEST_TTL,
+				"M3", "M2", "M1", "M4");
+		assertSendOrder(MessageBuffer.SEND_LOWEST_TTL,
+				"M4", "M1", "M2", "M3");
+	}
+
+	public void testSendOrderFollowsChanges() {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_OLDEST,
+				MessageBuffer.SEND_FIFO);
+		fill(b);
+		List<Message> before = b.inSendOrder();
+		assertSame(before, b.inSendOrder());
+
+		b.remove("M1");
+		b.put(msg("M5", 1, 15, 1));
+		b.put(msg("M6", 1, 5, 1)); // same receive time as M3
+		assertEquals(Arrays.asList("M3", "M6", "M5", "M4", "M2"),
+				ids(b.inSendOrder()));
+		assertEquals(Arrays.asList("M3", "M1", "M4", "M2"), ids(before));
+		try {
+			b.inSendOrder().remove(0);
+			fail("Send order list was modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testRandomSendOrder() {
+		MessageBuffer<Message> b1 = new TestBuffer(MessageBuffer.DROP_OLDEST);
+		MessageBuffer<Message> b2 = new TestBuffer(MessageBuffer.DROP_OLDEST);
+		for (int i = 0; i < 20; i++) {
+			b1.put(msg("M" + i, 1, i, 1));
+			b2.put(msg("M" + i, 1, i, 1));
+		}
+
+		List<String> order = ids(b1.inSendOrder());
+		assertEquals(order, ids(b2.inSendOrder()));
+		assertEquals(20, new HashSet<String>(order).size());
+		assertSame(b1.inSendOrder(), b1.inSendOrder());
+
+		SimClock.getInstance().setTime(1);
+		assertFalse(order.equals(ids(b1.inSendOrder())));
+		assertEquals(ids(b2.inSendOrder()), ids(b1.inSendOrder()));
+	}
+
+	public void testReadDropPolicy() {
+		assertEquals(MessageBuffer.DROP_OLDEST,
+				MessageBuffer.readDropPolicy(ts));
+		ts.putSetting(MessageBuffer.DROP_POLICY_S, "4");
+		assertEquals(MessageBuffer.DROP_LARGEST,
+				MessageBuffer.readDropPolicy(ts));
+		ts.putSetting(MessageBuffer.DROP_POLICY_S, "5");
+		try {
+			MessageBuffer.readDropPolicy(ts);
+			fail("Invalid drop policy accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Puts messages M1-M4 to the buffer (receive times 10, 40, 5, 20; sizes
+	 * 400, 100, 200, 300; TTLs 3, 4, infinite, 1 minutes)
+	 */
+	private void fill(MessageBuffer<Message> b) {
+		b.put(msg("M1", 400, 10, 3));
+		b.put(msg("M2", 100, 40, 4));
+		b.put(msg("M3", 200, 5, Message.INFINITE_TTL));
+		b.put(msg("M4", 300, 20, 1));
+	}
+
+	private Message msg(String id, int size, double receiveTime, int ttl) {
+		Message m = new Message(from, to, id, size);
+		m.setReceiveTime(receiveTime);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	private void assertSendOrder(int mode, String... ids) {
+		MessageBuffer<Message> b = new TestBuffer(MessageBuffer.DROP_OLDEST,
+				mode);
+		fill(b);
+		assertEquals(Arrays.asList(ids), ids(b.inSendOrder()));
+	}
+
+	private List<String> ids(List<Message> messages) {
+		List<String> ids = new ArrayList<String>();
+		for (Message m : messages) {
+			ids.add(m.getId());
+		}
+		return ids;
+	}
+
+	private void assertOrder(MessageBuffer<Message> b, String... ids) {
+		List<String> order = new ArrayList<String>();
+		for (Message m : b.inDropOrder()) {
+			order.add(m.getId());
+		}
+		assertEquals(Arrays.asList(ids), order);
+	}
+
+	private static class TestBuffer extends MessageBuffer<Message> {
+		private static final long serialVersionUID = 42L;
+
+		public TestBuffer(int dropPolicy) {
+			super(dropPolicy);
+		}
+
+		public TestBuffer(int dropPolicy, int sendQueueMode) {
+			super(dropPolicy, sendQueueMode);
+		}
+
+		protected String getId(Message m) {
+			return m.getId();
+		}
+
+		protected int getHandle(Message m) {
+			return m.getHandle();
+		}
+
+		protected int getSize(Message m) {
+			return m.getSize();
+		}
+
+		protected double getReceiveTime(Message m) {
+			return m.getReceiveTime();
+		}
+
+		protected double getExpiryTime(Message m) {
+			return m.getExpiryTime();
+		}
+	}
+}
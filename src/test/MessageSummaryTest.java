@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.MessageSummary;
+import core.SettingsError;
+
+/**
+ * Tests for the MessageSummary class
+ */
+public class MessageSummaryTest extends TestCase {
+
+	public void testExact() {
+		MessageSummary s = new MessageSummary(10);
+		s.add(5);
+		s.add(1);
+		s.add(5);
+		assertTrue(s.isExact());
+		assertTrue(s.mightContain(1));
+		assertTrue(s.mightContain(5));
+		assertFalse(s.mightContain(3));
+		assertEquals(8, s.getSizeBytes());
+
+		s.remove(5);
+		assertTrue(s.mightContain(5)); // added twice
+		s.remove(5);
+		s.remove(1);
+		assertFalse(s.mightContain(5));
+		assertFalse(s.mightContain(1));
+	}
+
+	public void testBloomFilter() {
+		MessageSummary s = new MessageSummary(4);
+		for (int i = 0; i < 100; i += 2) {
+			s.add(i);
+		}
+		assertFalse(s.isExact());
+		for (int i = 0; i < 100; i += 2) {
+			assertTrue(s.mightContain(i));
+		}
+		int falsePositives = 0;
+		for (int i = 1; i < 10000; i += 2) {
+			if (s.mightContain(i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives,
+				falsePositives < 100);
+
+		for (int i = 0; i < 100; i += 2) {
+			s.remove(i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertFalse(s.mightContain(i));
+		}
+	}
+
+	public void testRebuild() {
+		MessageSummary s = new MessageSummary(4);
+		Random rng = new Random(1);
+		int[] keys = new int[200];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = rng.nextInt(1000);
+			s.add(keys[i]);
+		}
+		assertTrue(s.isSaturated());
+
+		s.rebuild(keys.clone(), keys.length);
+		assertFalse(s.isSaturated());
+		for (int key : keys) {
+			assertTrue(s.mightContain(key));
+		}
+
+		s.rebuild(new int[] {7, 3, 7}, 3);
+		assertTrue(s.isExact());
+		assertTrue(s.mightContain(3));
+		s.remove(7);
+		assertTrue(s.mightContain(7));
+	}
+
+	public void testReadExactLimit() {
+		TestSettings ts = new TestSettings();
+		assertEquals(MessageSummary.DEF_EXACT_LIMIT,
+				MessageSummary.readExactLimit(ts));
+		ts.putSetting(MessageSummary.EXACT_LIMIT_S, "0");
+		assertEquals(0, MessageSummary.readExactLimit(ts));
+		ts.putSetting(MessageSummary.EXACT_LIMIT_S, "-1");
+		try {
+			MessageSummary.readExactLimit(ts);
+			fail("Negative limit accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
@@ -11,7 +11,9 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.MessageIds;
 import core.SimClock;
+import core.SimError;
 
 public class MessageTest extends TestCase {
 
@@ -60,5 +62,54 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicateProperties() {
+		msg.addProperty("foo", "value1");
+		Message rep = msg.replicate();
+		assertEquals("value1", rep.getProperty("foo"));
+
+		rep.updateProperty("foo", "value2");
+		msg.addProperty("bar", "value3");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertEquals("value2", rep.getProperty("foo"));
+		assertNull(rep.getProperty("bar"));
+
+		Message rep2 = rep.replicate();
+		rep.updateProperty("foo", null);
+		assertNull(rep.getProperty("foo"));
+		assertEquals("value2", rep2.getProperty("foo"));
+		try {
+			rep2.addProperty("foo", "value4");
+			fail("Shared property added again");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReplicatePath() {
+		DTNHost h1 = new TestUtils(null, null, new TestSettings()).createHost();
+		Message rep = msg.replicate();
+		rep.addNodeOnPath(h1);
+		assertEquals(0, msg.getHopCount());
+		assertEquals(1, rep.getHopCount());
+		assertEquals(h1, rep.getHops().get(1));
+		assertTrue(rep.getHops().contains(h1));
+		assertFalse(msg.getHops().contains(h1));
+		assertTrue(msg.getUniqueId() != rep.getUniqueId());
+	}
+
+	@Test
+	public void testHandle() {
+		Message rep = msg.replicate();
+		Message other = new Message(from, to, "MessageTest.other", 100);
+		assertEquals(msg.getHandle(), rep.getHandle());
+		assertTrue(msg.getHandle() != other.getHandle());
+		assertEquals(msg.getHandle(), MessageIds.getHandle("M"));
+		assertEquals("MessageTest.other", MessageIds.getId(other.getHandle()));
+		assertEquals(MessageIds.NO_HANDLE,
+				MessageIds.getHandle("MessageTest.unknown"));
+	}
+
 
 }
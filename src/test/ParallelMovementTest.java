@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import core.Coord;
+import core.DTNHost;
+import core.MovementListener;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests that the parallel movement phase of the World produces the same
+ * results as the sequential one.
+ */
+public class ParallelMovementTest extends TestCase {
+	private static final int NROF_HOSTS = 200;
+	private static final double UP_INT = 1.0;
+	private static final int NROF_ROUNDS = 2000;
+
+	private TestSettings s;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		s = new TestSettings();
+		s.putSetting(MovementModel.SPEED, "0.5,15");
+		s.putSetting(MovementModel.WAIT_TIME, "0,30");
+		s.putSetting("Optimization.randomizeUpdateOrder", "false");
+	}
+
+	public void testSameResultsWithMultipleThreads() {
+		String sequential = runScenario(1);
+		assertTrue(sequential.length() > 0);
+		assertEquals(sequential, runScenario(2));
+		assertEquals(sequential, runScenario(4));
+	}
+
+	public void testWarmupWithMultipleThreads() {
+		String sequential = runWarmup(1);
+		assertEquals(sequential, runWarmup(3));
+	}
+
+	public void testShutdownStopsThreads() throws InterruptedException {
+		Set<Thread> before = getThreads("movement-");
+		World world = createWorld(3, new StringBuilder());
+		for (int i=0; i<10; i++) {
+			world.update();
+		}
+		Set<Thread> started = getThreads("movement-");
+		started.removeAll(before);
+		assertEquals(3, started.size());
+
+		world.shutdown();
+		for (Thread t : started) {
+			t.join(5000);
+			assertFalse(t.isAlive());
+		}
+
+		world.update(); // threads are started again if needed
+		world.shutdown();
+	}
+
+	/**
+	 * Returns the live threads whose name starts with the prefix
+	 */
+	private Set<Thread> getThreads(String prefix) {
+		Set<Thread> threads = new HashSet<Thread>();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.isAlive() && t.getName().startsWith(prefix)) {
+				threads.add(t);
+			}
+		}
+		return threads;
+	}
+
+	/**
+	 * Runs a random waypoint scenario and returns a report of all new
+	 * destinations and the final locations of the hosts.
+	 * @param nrofThreads Number of movement threads to use
+	 * @return The report as a string
+	 */
+	private String runScenario(int nrofThreads) {
+		StringBuilder report = new StringBuilder();
+		World world = createWorld(nrofThreads, report);
+
+		TestUtils.updateWorld(world, NROF_ROUNDS);
+		world.shutdown();
+
+		appendLocations(world, report);
+		return report.toString();
+	}
+
+	private String runWarmup(int nrofThreads) {
+		StringBuilder report = new StringBuilder();
+		World world = createWorld(nrofThreads, report);
+		double warmup = 500.5;
+
+		SimClock.getInstance().setTime(-warmup);
+		world.warmupMovementModel(warmup);
+		world.shutdown();
+
+		appendLocations(world, report);
+		return report.toString();
+	}
+
+	private World createWorld(int nrofThreads, final StringBuilder report) {
+		s.putSetting("Optimization." + World.MOVEMENT_THREADS_S,
+				"" + nrofThreads);
+		TestUtils.resetWorld();
+
+		MovementListener ml = new MovementListener() {
+			public void newDestination(DTNHost host, Coord destination,
+					double speed) {
+				report.append(SimClock.getTime() + " " + host + " " +
+						destination + " " + speed + "\n");
+			}
+			public void initialLocation(DTNHost host, Coord location) {
+				report.append(host + " " + location + "\n");
+			}
+		};
+		List<MovementListener> mls = new ArrayList<MovementListener>();
+		mls.add(ml);
+
+		TestUtils utils = new TestUtils(null, null, s);
+		utils.setMovListeners(mls);
+		utils.setBroadcastRange(10);
+		MovementModel mmProto = new RandomWaypoint(s);
+		for (int i=0; i<NROF_HOSTS; i++) {
+			utils.createBroadcastHost(mmProto);
+		}
+
+		return utils.createWorld(UP_INT, null, false, null);
+	}
+
+	private void appendLocations(World world, StringBuilder report) {
+		for (DTNHost h : world.getHosts()) {
+			Coord c = h.getLocation();
+			report.append(h + " " + c.getX() + " " + c.getY() + "\n");
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Cast;
+import core.Coord;
+import core.DTNHost;
+import core.Profiler;
+import core.Profiler.Counter;
+import core.Profiler.Phase;
+import core.SimClock;
+
+/**
+ * Tests for the Profiler class
+ */
+public class ProfilerTest extends TestCase {
+	private TestSettings ts;
+	private TestUtils utils;
+	private File outFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		SimClock.reset();
+		DTNHost.reset();
+		utils = new TestUtils(null, null, ts);
+	}
+
+	protected void tearDown() throws Exception {
+		Profiler.reset();
+		if (outFile != null) {
+			outFile.delete();
+		}
+		super.tearDown();
+	}
+
+	public void testDisabledByDefault() {
+		Profiler.init();
+		assertFalse(Profiler.isEnabled());
+		assertEquals(0, Profiler.start());
+
+		utils.createHost().forceConnection(utils.createHost(), null, true);
+		Profiler.stop(Phase.MOVEMENT, 0);
+		assertEquals(0, Profiler.getCount(Counter.CONTACTS));
+		assertEquals(0, Profiler.getNanos(Phase.MOVEMENT));
+	}
+
+	public void testPhaseTimes() {
+		enable();
+		long start = Profiler.start();
+		busyWait();
+		Profiler.stop(Phase.MOVEMENT, start);
+		long movement = Profiler.getNanos(Phase.MOVEMENT);
+		assertTrue(movement > 0);
+		assertEquals(0, Profiler.getNanos(Phase.ROUTING));
+
+		PassiveRouter router = new PassiveRouter(ts);
+		start = Profiler.start();
+		busyWait();
+		Profiler.stopRouter(Phase.ROUTING, router, start);
+		assertTrue(Profiler.getNanos(Phase.ROUTING) > 0);
+		assertEquals(Profiler.getNanos(Phase.ROUTING),
+				Profiler.getRouterNanos(PassiveRouter.class));
+		assertEquals(movement, Profiler.getNanos(Phase.MOVEMENT));
+	}
+
+	public void testCounters() {
+		enable();
+		DTNHost h1 = utils.createHost(new Coord(0,0));
+		DTNHost h2 = utils.createHost(new Coord(1,0));
+		h1.forceConnection(h2, null, true);
+		assertEquals(1, Profiler.getCount(Counter.CONTACTS));
+
+		List<Coord> points = new ArrayList<Coord>();
+		points.add(new Coord(0,0));
+		points.add(new Coord(10,0));
+		points.add(new Coord(10,10));
+		points.add(new Coord(0,10));
+		Cast cast = new Cast(points);
+		cast.checkThePoint(5, 5);
+		cast.checkThePoint(new Coord(20, 5));
+		assertEquals(2, Profiler.getCount(Counter.POLYGON_TESTS));
+		assertEquals(0, Profiler.getCount(Counter.TRANSFERS_STARTED));
+	}
+
+	public void testCsvOutput() throws IOException {
+		outFile = File.createTempFile("profilerTest", ".csv");
+		enableWithOutput();
+		Profiler.count(Counter.CONTACTS);
+
+		SimClock.getInstance().setTime(5);
+		Profiler.update();
+		assertEquals(1, readLines().size()); // only the header
+
+		SimClock.getInstance().setTime(10);
+		Profiler.update();
+		List<String> lines = readLines();
+		int rows = Phase.values().length + Counter.values().length;
+		assertEquals(1 + rows, lines.size());
+		assertTrue(lines.get(1).startsWith("10.0,"));
+		assertTrue(lines.contains(lines.get(1).substring(0,
+				lines.get(1).indexOf(",phase,")) + ",counter,contacts,1,"));
+
+		Profiler.done();
+		assertEquals(1 + 2 * rows, readLines().size());
+	}
+
+	public void testJsonOutput() throws IOException {
+		outFile = File.createTempFile("profilerTest", ".json");
+		enableWithOutput();
+		Profiler.count(Counter.POLYGON_TESTS);
+		Profiler.done();
+
+		List<String> lines = readLines();
+		assertEquals(1, lines.size());
+		String json = lines.get(0);
+		assertTrue(json.startsWith("{\"simTime\":0.0,"));
+		assertTrue(json.contains("\"phases\":{\"events\":"));
+		assertTrue(json.contains("\"polygonTests\":1}"));
+		assertTrue(json.endsWith("}}"));
+	}
+
+	private void enable() {
+		ts.putSetting(Profiler.PROFILER_NS + "." + Profiler.ENABLED_S, "true");
+		Profiler.init();
+		assertTrue(Profiler.isEnabled());
+	}
+
+	private void enableWithOutput() {
+		ts.putSetting(Profiler.PROFILER_NS + "." + Profiler.INTERVAL_S, "10");
+		ts.putSetting(Profiler.PROFILER_NS + "." + Profiler.OUTPUT_FILE_S,
+				outFile.getPath());
+		enable();
+	}
+
+	private List<String> readLines() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(outFile));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+
+	private static void busyWait() {
+		long end = System.nanoTime() + 100000;
+		while (System.nanoTime() < end) {
+			// wait
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.Message;
+import core.PropertySlot;
+import core.SimError;
+
+/**
+ * Tests for the typed message property slots
+ */
+public class PropertySlotTest extends TestCase {
+	private static final PropertySlot COUNT =
+		PropertySlot.intSlot("PropertySlotTest.count");
+	private static final PropertySlot RATE =
+		PropertySlot.doubleSlot("PropertySlotTest.rate");
+	private static final PropertySlot FLAG =
+		PropertySlot.booleanSlot("PropertySlotTest.flag");
+	private static final PropertySlot LOC =
+		PropertySlot.coordSlot("PropertySlotTest.loc");
+
+	private Message msg;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		msg = new Message(null, null, "M", 100);
+	}
+
+	public void testTypedValues() {
+		assertFalse(msg.hasProperty(COUNT));
+		assertEquals(0, msg.getInt(COUNT));
+		assertNull(msg.getCoord(LOC));
+
+		msg.setInt(COUNT, 5);
+		msg.setDouble(RATE, 0.25);
+		msg.setBoolean(FLAG, true);
+		msg.setCoord(LOC, new Coord(1, 2));
+		assertTrue(msg.hasProperty(COUNT));
+		assertEquals(5, msg.getInt(COUNT));
+		assertEquals(0.25, msg.getDouble(RATE));
+		assertTrue(msg.getBoolean(FLAG));
+		assertEquals(new Coord(1, 2), msg.getCoord(LOC));
+
+		msg.setCoord(LOC, null);
+		assertFalse(msg.hasProperty(LOC));
+	}
+
+	public void testDeclare() {
+		assertSame(COUNT, PropertySlot.intSlot("PropertySlotTest.count"));
+		assertSame(RATE, PropertySlot.forName("PropertySlotTest.rate"));
+		try {
+			PropertySlot.doubleSlot("PropertySlotTest.count");
+			fail("Slot declared with two types");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			msg.setDouble(COUNT, 1.0);
+			fail("Double value set to an int slot");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testStringKeys() {
+		msg.addProperty("PropertySlotTest.count", 3);
+		assertEquals(3, msg.getInt(COUNT));
+		msg.setDouble(RATE, 1.5);
+		assertEquals(1.5, msg.getProperty("PropertySlotTest.rate"));
+		assertNull(msg.getProperty("PropertySlotTest.flag"));
+
+		try {
+			msg.addProperty("PropertySlotTest.count", 4);
+			fail("Property added twice");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			msg.updateProperty("PropertySlotTest.count", "text");
+			fail("String value set to an int slot");
+		} catch (SimError e) {
+			// expected
+		}
+
+		msg.updateProperty("PropertySlotTest.count", null);
+		assertFalse(msg.hasProperty(COUNT));
+	}
+
+	public void testReplicate() {
+		msg.setInt(COUNT, 8);
+		msg.setBoolean(FLAG, true);
+		Message rep = msg.replicate();
+		assertEquals(8, rep.getInt(COUNT));
+
+		rep.setInt(COUNT, 4);
+		msg.setInt(COUNT, 2);
+		assertEquals(4, rep.getInt(COUNT));
+		assertEquals(2, msg.getInt(COUNT));
+		assertTrue(rep.getBoolean(FLAG));
+	}
+
+	public void testSerialization() throws Exception {
+		msg.setInt(COUNT, 7);
+		msg.setCoord(LOC, new Coord(3, 4));
+		Message rep = msg.replicate();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(new Message[] {msg, rep});
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		Message[] read = (Message[])in.readObject();
+
+		assertEquals(7, read[0].getInt(COUNT));
+		assertEquals(new Coord(3, 4), read[0].getCoord(LOC));
+		assertFalse(read[0].hasProperty(RATE));
+		read[1].setInt(COUNT, 1);
+		assertEquals(7, read[0].getInt(COUNT));
+	}
+}
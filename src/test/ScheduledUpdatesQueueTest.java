@@ -5,6 +5,10 @@
 package test;
 
 import input.ScheduledUpdatesQueue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
 import junit.framework.TestCase;
 import core.SimClock;
 
@@ -107,4 +111,32 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+	
+	public void testBulkUpdates() {
+		suq.addUpdate(2.0);
+		suq.addUpdates(new double[] {6.0, 2.0, 0.5, 9.0, 6.0, 99.0}, 5);
+		suq.addUpdates(new double[] {3.0}, 1); // less than in the queue
+		
+		assertEquals(0.5, suq.nextEvent().getTime());
+		assertEquals(2.0, suq.nextEvent().getTime());
+		assertEquals(3.0, suq.nextEvent().getTime());
+		assertEquals(6.0, suq.nextEvent().getTime());
+		assertEquals(9.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEvent().getTime());
+	}
+	
+	public void testManyUpdates() {
+		Random rng = new Random(1);
+		TreeSet<Double> expected = new TreeSet<Double>();
+		for (int i=0; i<500; i++) {
+			double time = rng.nextInt(300) / 10.0;
+			expected.add(time);
+			suq.addUpdate(time);
+		}
+		
+		for (double time : expected) {
+			assertEquals(time, suq.nextEvent().getTime());
+		}
+		assertEquals(MAX, suq.nextEventsTime());
+	}
 }
@@ -0,0 +1,218 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.AssetCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNSim;
+import core.Settings;
+import core.SimClock;
+import core.SimContext;
+import core.World;
+
+/**
+ * Tests for the SimContext
+ */
+public class SimContextTest extends TestCase {
+	/** set by {@link #runBatchRun(String[], int, int)} */
+	public static int lastRunIndex = -1;
+	/** simulation time seen by {@link #runBatchRun(String[], int, int)} */
+	public static double clockTime = -1;
+	/** settings of the small scenario of the batch mode tests */
+	private static final String[] SCENARIO = {
+		"Scenario.name = run%%MovementModel.rngSeed%%",
+		"Scenario.endTime = 2000",
+		"Scenario.nrofHostGroups = 1",
+		"Group.movementModel = RandomWaypoint",
+		"Group.router = EpidemicRouter",
+		"Group.nrofHosts = 20",
+		"Group.bufferSize = 5M",
+		"Group.waitTime = 0, 60",
+		"Events1.class = MessageEventGenerator",
+		"Events1.hosts = 0,19",
+		"Events1.size = 10k,100k",
+		"MovementModel.rngSeed = [1; 2]",
+		"MovementModel.worldSize = 1000, 1000",
+		"Report.nrofReports = 2",
+		"Report.report1 = MessageStatsReport",
+		"Report.report2 = ContactTimesReport"};
+	
+	private File dir;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		lastRunIndex = -1;
+		dir = null;
+	}
+	
+	protected void tearDown() throws Exception {
+		if (dir != null) {
+			delete(dir);
+		}
+		super.tearDown();
+	}
+
+	public void testSeparateState() throws Exception {
+		SimContext c1 = new SimContext(0);
+		SimContext c2 = new SimContext(1);
+		Class<?> clock1 = c1.loadClass(SimClock.class.getName());
+		Class<?> clock2 = c2.loadClass(SimClock.class.getName());
+		
+		assertNotSame(SimClock.class, clock1);
+		assertNotSame(clock1, clock2);
+		assertSame(clock1, c1.loadClass(SimClock.class.getName()));
+		
+		Object instance1 = clock1.getMethod("getInstance").invoke(null);
+		clock1.getMethod("setTime", double.class).invoke(instance1, 42.0);
+		
+		assertEquals(42.0, clock1.getMethod("getTime").invoke(null));
+		assertEquals(0.0, clock2.getMethod("getTime").invoke(null));
+		assertEquals(0.0, SimClock.getTime());
+	}
+	
+	public void testSharedClasses() throws Exception {
+		SimContext c1 = new SimContext(0);
+		SimContext c2 = new SimContext(1);
+		
+		assertSame(Coord.class, c1.loadClass(Coord.class.getName()));
+		assertSame(AssetCache.class, c2.loadClass(AssetCache.class.getName()));
+		assertSame(AssetCache.Loader.class,
+				c1.loadClass(AssetCache.Loader.class.getName()));
+		assertNotSame(c1.loadClass(Settings.class.getName()),
+				c2.loadClass(Settings.class.getName()));
+	}
+	
+	public void testRun() throws Exception {
+		SimClock.getInstance().setTime(10);
+		SimContext c = new SimContext(3);
+		c.run(SimContextTest.class.getName(), new String[0], 0);
+		
+		Class<?> test = c.loadClass(SimContextTest.class.getName());
+		assertEquals(3, test.getField("lastRunIndex").getInt(null));
+		assertEquals(0.0, test.getField("clockTime").getDouble(null));
+		assertEquals(-1, lastRunIndex); // this copy wasn't run
+	}
+	
+	public void testFailingRun() throws Exception {
+		SimContext c = new SimContext(-1);
+		try {
+			c.run(SimContextTest.class.getName(), new String[0], 0);
+			fail("Failing run didn't throw an exception");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	public void testConcurrentBatchRunsSameAsSequential() throws Exception {
+		dir = File.createTempFile("simContextTest", "");
+		dir.delete();
+		dir.mkdir();
+		File scenario = writeSettings("scenario.txt", SCENARIO);
+		File seqDir = new File(dir, "seq");
+		File parDir = new File(dir, "par");
+		
+		runBatch(scenario, writeSettings("seq.txt",
+				"Report.reportDir = " + seqDir.getPath() + "/"));
+		runBatch(scenario, writeSettings("par.txt",
+				"Report.reportDir = " + parDir.getPath() + "/",
+				World.OPTIMIZATION_SETTINGS_NS + "." + 
+				DTNSim.BATCH_THREADS_S + " = 2"));
+		
+		String[] reports = seqDir.list();
+		Arrays.sort(reports);
+		assertEquals(4, reports.length); // two reports of both runs
+		String[] parReports = parDir.list();
+		Arrays.sort(parReports);
+		assertEquals(Arrays.asList(reports), Arrays.asList(parReports));
+		for (String name : reports) {
+			byte[] expected = read(new File(seqDir, name));
+			assertTrue(name + " is empty", expected.length > 0);
+			assertTrue(name + " differs", Arrays.equals(expected, 
+					read(new File(parDir, name))));
+		}
+	}
+	
+	/**
+	 * Runs the two runs of a scenario in batch mode in a new context (so
+	 * that the runs don't change the static state of the tests)
+	 */
+	private void runBatch(File scenario, File output) throws Exception {
+		SimContext c = new SimContext(0);
+		Class<?> main = c.loadClass(DTNSim.class.getName());
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(main.getClassLoader());
+		try {
+			Method m = main.getMethod("main", String[].class);
+			m.invoke(null, (Object)new String[] {"-b", "2", 
+					scenario.getPath(), output.getPath()});
+		} finally {
+			thread.setContextClassLoader(oldLoader);
+		}
+	}
+	
+	private File writeSettings(String name, String... lines) 
+		throws IOException {
+		File f = new File(dir, name);
+		FileWriter out = new FileWriter(f);
+		for (String line : lines) {
+			out.write(line + "\n");
+		}
+		out.close();
+		return f;
+	}
+	
+	private static byte[] read(File f) throws IOException {
+		byte[] data = new byte[(int)f.length()];
+		InputStream in = new FileInputStream(f);
+		try {
+			int n = 0;
+			int read = 0;
+			while (n < data.length && read >= 0) {
+				read = in.read(data, n, data.length - n);
+				n += Math.max(read, 0);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+	
+	private static void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+	
+	/**
+	 * Dummy run method for the context tests
+	 * @param confFiles Not used
+	 * @param firstConfIndex Not used
+	 * @param runIndex The run index; a negative index fails the run
+	 */
+	public static void runBatchRun(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		if (runIndex < 0) {
+			throw new IllegalArgumentException("Negative run index");
+		}
+		lastRunIndex = runIndex;
+		clockTime = SimClock.getTime();
+	}
+}
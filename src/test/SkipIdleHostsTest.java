@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.EpidemicRouter;
+import routing.GeoEpidemicRouter;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Settings;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests that skipping the idle hosts doesn't change the results of a
+ * simulation
+ */
+public class SkipIdleHostsTest extends TestCase {
+	private static final double UP_INT = 1.0;
+	private static final int NROF_UPDATES = 300;
+	private static final int NROF_HOSTS = 6;
+	private static final double RANGE = 10.0;
+	private static final double HOST_SPEED = 5.0;
+	private static final double HOST_WAIT_TIME = 40;
+
+	/* shared by all the hosts so the order of path requests matters */
+	private static Random waitRng;
+
+	private TestSettings s;
+	/* connection events and locations after every update */
+	private List<String> events;
+	/* number of getPath calls */
+	private int nrofPathRequests;
+	/* should the hosts have cell visiting geo routers */
+	private boolean geoHosts;
+	/* cell visits recorded by the geo routers */
+	private static List<String> cellVisits;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		s = new TestSettings();
+	}
+
+	public void testSkippingDoesNotChangeResults() {
+		runScenario(false);
+		List<String> allMovedEvents = events;
+		int allMovedRequests = nrofPathRequests;
+		assertTrue(allMovedEvents.contains("up"));
+
+		s.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.SKIP_IDLE_HOSTS_S, "true");
+		runScenario(true);
+		assertEquals(allMovedRequests, nrofPathRequests);
+		assertEquals(allMovedEvents, events);
+	}
+
+	public void testMultithreadedSkipping() {
+		runScenario(false);
+		List<String> allMovedEvents = events;
+
+		s.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.SKIP_IDLE_HOSTS_S, "true");
+		s.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.MOVEMENT_THREADS_S, "3");
+		runScenario(true);
+		assertEquals(allMovedEvents, events);
+	}
+
+	public void testSkippingDoesNotChangeCellVisits() {
+		geoHosts = true;
+		runScenario(false);
+		List<String> allMovedEvents = events;
+		List<String> allMovedVisits = cellVisits;
+		assertTrue(allMovedVisits.size() > NROF_HOSTS);
+
+		s.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.SKIP_IDLE_HOSTS_S, "true");
+		runScenario(true);
+		assertEquals(allMovedEvents, events);
+		assertEquals(allMovedVisits, cellVisits);
+	}
+
+	/**
+	 * Runs a scenario where the hosts move back and forth past each other
+	 * and records the connection events and locations
+	 * @param checkIdleness If true, checks that routers with connections
+	 * are not idle
+	 */
+	private void runScenario(final boolean checkIdleness) {
+		TestUtils.resetWorld();
+		waitRng = new Random(1);
+		events = new ArrayList<String>();
+		cellVisits = new ArrayList<String>();
+		nrofPathRequests = 0;
+
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		cls.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " " + host1 + "-" + host2);
+				events.add("up");
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " " + host1 + "-" + host2);
+				events.add("down");
+			}
+		});
+
+		TestUtils utils = new TestUtils(cls, null, s);
+		utils.setBroadcastRange(RANGE);
+		utils.setMessageRouterProto(new EpidemicRouter(s));
+		if (geoHosts) {
+			utils.setGeoMessageRouterProto(new CellVisitingRouter(s));
+		}
+		for (int i=0; i<NROF_HOSTS; i++) {
+			utils.createBroadcastHost(new LineMovement(50 + 10 * i));
+		}
+
+		List<UpdateListener> uls = new ArrayList<UpdateListener>();
+		uls.add(new UpdateListener() {
+			public void updated(List<? extends DTNHost> hosts) {
+				for (DTNHost host : hosts) {
+					events.add(host.getLocation().toString());
+					if (checkIdleness && host.getConnections().size() > 0) {
+						assertFalse(host.getRouter().isIdle());
+					}
+				}
+			}
+		});
+		World world = utils.createWorld(UP_INT, uls, true, null);
+		TestUtils.updateWorld(world, NROF_UPDATES);
+		world.shutdown();
+	}
+
+	/**
+	 * Geo router that records the times its host enters new (20 m high)
+	 * cells on every update, like the routers that keep cell visiting
+	 * times do, and hence is never idle
+	 */
+	private static class CellVisitingRouter extends GeoEpidemicRouter {
+		private static final long serialVersionUID = 42L;
+
+		private int currentCell = -1;
+
+		public CellVisitingRouter(Settings s) {
+			super(s);
+		}
+
+		protected CellVisitingRouter(CellVisitingRouter r) {
+			super(r);
+		}
+
+		@Override
+		public boolean isIdle() {
+			return false;
+		}
+
+		@Override
+		public void update() {
+			super.update();
+			int cell = (int)(getGeoHost().getLocation().getY() / 20);
+			if (cell != currentCell) {
+				currentCell = cell;
+				cellVisits.add(SimClock.getTime() + " " + getGeoHost() +
+						" " + cell);
+			}
+		}
+
+		@Override
+		public CellVisitingRouter replicate() {
+			return new CellVisitingRouter(this);
+		}
+	}
+
+	/**
+	 * Movement model that moves back and forth on a vertical line and waits
+	 * for a random time at both ends
+	 */
+	private class LineMovement extends MovementModel {
+		private static final long serialVersionUID = 42L;
+
+		private double x;
+		private boolean down;
+
+		public LineMovement(double x) {
+			this.x = x;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(x, 100);
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			nrofPathRequests++;
+			Path p = new Path(HOST_SPEED);
+			p.addWaypoint(new Coord(x, down ? 100 : 300));
+			p.addWaypoint(new Coord(x + 15, down ? 300 : 100));
+			down = !down;
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + waitRng.nextDouble() * HOST_WAIT_TIME;
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(x);
+		}
+	}
+}
@@ -17,6 +17,7 @@ import core.SimScenario;
  *
  */
 public class TestSettings extends core.Settings {
+	private static final long serialVersionUID = 42L;
 	
 	public TestSettings() {
 		init(null);
@@ -4,18 +4,30 @@
  */
 package test;
 
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.HierarchicalGrid;
+import interfaces.SimpleBroadcastInterface;
+
 import java.util.ArrayList;
 import java.util.List;
 
 import movement.MovementModel;
+import routing.GeoMessageRouter;
 import routing.MessageRouter;
 import routing.PassiveRouter;
 import core.ConnectionListener;
 import core.Coord;
 import core.DTNHost;
+import core.GeoDTNHost;
+import core.GeoMessageListener;
 import core.MessageListener;
 import core.ModuleCommunicationBus;
+import core.MovementListener;
 import core.NetworkInterface;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
 
 /**
  * Generic convenience methods for tests.
@@ -24,14 +36,20 @@ public class TestUtils {
 	
 	private List<ConnectionListener> conListeners;
 	private List<MessageListener> msgListeners;
+	private List<MovementListener> movListeners;
 	private String groupId = "h";
 	private List<DTNHost> allHosts;
 	private MessageRouter mr;
+	private GeoMessageRouter gmr;
+	/** prototype of the interfaces of the hosts of test worlds */
+	private NetworkInterface broadcastProto;
 	
 	private ModuleCommunicationBus comBus;
 	private TestSettings settings;
 	
 	public static String IFACE_NS = "interface";
+	/** width and height of the test worlds */
+	public static final int WORLD_SIZE = 1000;
 
 	/**
 	 * Creates a test utils object suitable for creating new hosts.
@@ -54,6 +72,16 @@ public class TestUtils {
 		this.mr = mr;
 	}
 	
+	/**
+	 * Sets the geo message router prototype. If it is set, the hosts
+	 * created with {@link #createBroadcastHost(MovementModel)} are 
+	 * {@link GeoDTNHost}s.
+	 * @param gmr The prototype (or null for normal hosts)
+	 */
+	public void setGeoMessageRouterProto(GeoMessageRouter gmr) {
+		this.gmr = gmr;
+	}
+	
 	/**
 	 * @param conListeners the ConnectionListeners to set
 	 */
@@ -75,6 +103,41 @@ public class TestUtils {
 		this.msgListeners = msgListeners;
 	}
 
+	/**
+	 * @param movListeners the MovementListeners to set
+	 */
+	public void setMovListeners(List<MovementListener> movListeners) {
+		this.movListeners = movListeners;
+	}
+
+	/**
+	 * Sets the transmit range of the {@link SimpleBroadcastInterface} the
+	 * hosts created with {@link #createBroadcastHost(MovementModel)} get.
+	 * The interface gets the current connection listeners.
+	 * @param transmitRange The transmit range of the interface
+	 */
+	public void setBroadcastRange(double transmitRange) {
+		setBroadcastRange(IFACE_NS, transmitRange);
+	}
+
+	/**
+	 * Sets the interface type and transmit range of the 
+	 * {@link SimpleBroadcastInterface} the hosts created with 
+	 * {@link #createBroadcastHost(MovementModel)} get.
+	 * @param interfaceType Type (settings namespace) of the interface
+	 * @param transmitRange The transmit range of the interface
+	 */
+	public void setBroadcastRange(String interfaceType, double transmitRange) {
+		settings.setNameSpace(interfaceType);
+		settings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, 
+				"" + transmitRange);
+		settings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		this.broadcastProto = new SimpleBroadcastInterface(settings);
+		this.broadcastProto.setGroupSettings(settings);
+		this.broadcastProto.setClisteners(conListeners);
+		settings.restoreNameSpace();
+	}
+
 	/**
 	 * @param transmitRange the transmitRange to set
 	 */
@@ -142,6 +205,77 @@ public class TestUtils {
 		return this.createHost(new Coord(0,0));
 	}
 	
+	/**
+	 * Creates a host for a test world. The host has a 
+	 * {@link SimpleBroadcastInterface} (see {@link #setBroadcastRange(
+	 * double)}), its own communication bus and the defined movement model.
+	 * @param mmProto The prototype of the movement model
+	 * @return The new host
+	 */
+	public DTNHost createBroadcastHost(MovementModel mmProto) {
+		if (this.broadcastProto == null) {
+			setBroadcastRange(1.0);
+		}
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(broadcastProto);
+		DTNHost host;
+		if (this.gmr != null) {
+			host = new GeoDTNHost(msgListeners, movListeners, groupId, li,
+					new ModuleCommunicationBus(), mmProto, mr, gmr,
+					new ArrayList<GeoMessageListener>());
+		}
+		else {
+			host = new DTNHost(msgListeners, movListeners, groupId, li,
+					new ModuleCommunicationBus(), mmProto, mr);
+		}
+		
+		this.allHosts.add(host);
+		return host;
+	}
+	
+	/**
+	 * Creates a {@link #WORLD_SIZE} sized world of all the hosts created
+	 * with this object. The settings of the world (e.g., the optimization
+	 * settings) are read from the settings given to this object.
+	 * @param updateInterval The update interval of the world
+	 * @param uls The update listeners (or null for none)
+	 * @param simulateConnections Should the connections be simulated
+	 * @param eqs The external event queues (or null for none)
+	 * @return The new world
+	 */
+	public World createWorld(double updateInterval, List<UpdateListener> uls,
+			boolean simulateConnections, List<EventQueue> eqs) {
+		return new World(allHosts, WORLD_SIZE, WORLD_SIZE, updateInterval,
+				uls != null ? uls : new ArrayList<UpdateListener>(),
+				simulateConnections,
+				eqs != null ? eqs : new ArrayList<EventQueue>());
+	}
+	
+	/**
+	 * Resets the static state of the classes test worlds use (clock, host
+	 * and interface addresses, movement model randomness and the 
+	 * connectivity optimizers) so that a new world can be created
+	 */
+	public static void resetWorld() {
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		HierarchicalGrid.reset();
+	}
+	
+	/**
+	 * Updates a world the given number of times
+	 * @param world The world
+	 * @param nrofUpdates How many times the world is updated
+	 */
+	public static void updateWorld(World world, int nrofUpdates) {
+		for (int i=0; i<nrofUpdates; i++) {
+			world.update();
+		}
+	}
+	
 	public List<DTNHost> getAllHosts() {
 		return this.allHosts;
 	}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.TimingWheel;
+
+/**
+ * Tests for the TimingWheel class
+ */
+public class TimingWheelTest extends TestCase {
+	private TimingWheel wheel;
+	private List<Object> expired;
+	private TimingWheel.Listener listener;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		wheel = new TimingWheel(1.0, 0);
+		expired = new ArrayList<Object>();
+		listener = new TimingWheel.Listener() {
+			public void timerExpired(Object key) {
+				expired.add(key);
+			}
+		};
+	}
+
+	public void testExactExpiry() {
+		wheel.schedule(10.5, listener, "A");
+		wheel.schedule(10, listener, "B");
+		assertEquals(2, wheel.size());
+
+		wheel.advance(9.9);
+		assertEquals(0, expired.size());
+		wheel.advance(10.0);
+		assertEquals(1, expired.size());
+		assertEquals("B", expired.get(0));
+		wheel.advance(10.4);
+		assertEquals(1, expired.size());
+		wheel.advance(10.5);
+		assertEquals(2, expired.size());
+		assertEquals("A", expired.get(1));
+		assertEquals(0, wheel.size());
+	}
+
+	public void testCancel() {
+		TimingWheel.Timer t1 = wheel.schedule(5, listener, "A");
+		TimingWheel.Timer t2 = wheel.schedule(100000, listener, "B");
+		wheel.schedule(6, listener, "C");
+		assertTrue(t1.isScheduled());
+
+		wheel.cancel(t1);
+		wheel.cancel(t2);
+		assertFalse(t1.isScheduled());
+		assertEquals(1, wheel.size());
+		wheel.cancel(t1); // cancelling twice does nothing
+		assertEquals(1, wheel.size());
+
+		wheel.advance(200000);
+		assertEquals(1, expired.size());
+		assertEquals("C", expired.get(0));
+		assertFalse(t2.isScheduled());
+	}
+
+	public void testPastTimes() {
+		wheel.advance(100);
+		wheel.schedule(50, listener, "A");
+		wheel.schedule(100.5, listener, "B");
+		wheel.advance(100);
+		assertEquals(1, expired.size());
+		assertEquals("A", expired.get(0));
+		wheel.advance(101);
+		assertEquals(2, expired.size());
+	}
+
+	public void testOrderOverLevels() {
+		Random rng = new Random(7);
+		double[] times = new double[2000];
+		for (int i=0; i<times.length; i++) {
+			/* times on all levels of the wheel */
+			times[i] = rng.nextDouble() * Math.pow(64, 1 + (i % 4));
+			wheel.schedule(times[i], listener, i);
+		}
+
+		double now = 0;
+		double step = 0.7;
+		int fired = 0;
+		while (wheel.size() > 0) {
+			now += step;
+			step *= 1.01; // larger and larger steps
+			wheel.advance(now);
+			for (; fired < expired.size(); fired++) {
+				int i = (Integer)expired.get(fired);
+				assertTrue("Timer " + i + " expired too early", times[i] <= now);
+				assertTrue("Timer " + i + " expired too late",
+						times[i] > now - step);
+			}
+		}
+		assertEquals(times.length, expired.size());
+	}
+
+	public void testScheduleWhenExpiring() {
+		TimingWheel.Listener rescheduler = new TimingWheel.Listener() {
+			public void timerExpired(Object key) {
+				expired.add(key);
+				wheel.schedule(((Integer)key) + 10.0, listener, "next");
+			}
+		};
+		wheel.schedule(5, rescheduler, 5);
+		wheel.advance(5);
+		assertEquals(1, expired.size());
+		assertEquals(1, wheel.size());
+		wheel.advance(15);
+		assertEquals(2, expired.size());
+		assertEquals("next", expired.get(1));
+	}
+}
@@ -5,6 +5,7 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,11 +33,13 @@ public class WorldTest extends TestCase {
 	private double upInterval = 0.1;
 	private List<TestDTNHost> testHosts;
 	private List<EventQueue> eQueues;
+	private TestSettings testSettings;
 	
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
-		TestSettings testSettings = new TestSettings();
+		DTNHost.reset();
+		testSettings = new TestSettings();
 		testSettings.setNameSpace(TestUtils.IFACE_NS);
 		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
 		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
@@ -52,6 +55,10 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus, testSettings));
 		}
 		
+		createWorld();
+	}
+	
+	private void createWorld() {
 		TestScenario ts = new TestScenario();
 		this.world = new World(ts.getHosts(),ts.getWorldSizeX(), 
 				ts.getWorldSizeY(),ts.getUpdateInterval(), 
@@ -101,9 +108,90 @@ public class WorldTest extends TestCase {
 
 	}
 	
+	public void testOnlyTouchedHostsUpdatedAfterEvent() {
+		eQueues.add(new SingleEventQueue(new TouchingEvent(0.05, 
+				new int[] {2, 5, 2})));
+		createWorld();
+		
+		world.update();
+		for (int i=0; i<testHosts.size(); i++) {
+			int expected = (i == 2 || i == 5 ? 2 : 1);
+			assertEquals("host " + i, expected, testHosts.get(i).nrofUpdate);
+		}
+	}
+	
+	public void testTouchedAgainByNextEvent() {
+		eQueues.add(new SingleEventQueue(new TouchingEvent(0.03,
+				new int[] {2})));
+		eQueues.add(new SingleEventQueue(new TouchingEvent(0.06,
+				new int[] {4, 2, 4})));
+		createWorld();
+
+		world.update();
+		for (int i=0; i<testHosts.size(); i++) {
+			int expected = (i == 2 ? 3 : (i == 4 ? 2 : 1));
+			assertEquals("host " + i, expected, testHosts.get(i).nrofUpdate);
+		}
+	}
+
+	public void testAllHostsUpdatedAfterEvent() {
+		eQueues.add(new SingleEventQueue(new ExternalEvent(0.05)));
+		eQueues.add(new SingleEventQueue(new TouchingEvent(0.15, 
+				new int[] {3})));
+		testSettings.restoreNameSpace();
+		testSettings.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." + 
+				World.UPDATE_ALL_AFTER_EVENTS_S, "true");
+		createWorld();
+		
+		world.update(); // event that doesn't tell which hosts it touched
+		assertNrofUpdates(2);
+		world.update(); // compatibility setting updates all hosts
+		assertNrofUpdates(4);
+	}
+	
+	/** Event queue with only one event */
+	private class SingleEventQueue implements EventQueue {
+		private static final long serialVersionUID = 42L;
+
+		private ExternalEvent event;
+		
+		public SingleEventQueue(ExternalEvent event) {
+			this.event = event;
+		}
+		
+		public ExternalEvent nextEvent() {
+			ExternalEvent ee = this.event;
+			this.event = new ExternalEvent(Double.MAX_VALUE);
+			return ee;
+		}
+		
+		public double nextEventsTime() {
+			return this.event.getTime();
+		}
+	}
+	
+	/** Dummy event that touches the given hosts */
+	private class TouchingEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+
+		private int[] addresses;
+		
+		public TouchingEvent(double time, int[] addresses) {
+			super(time);
+			this.addresses = addresses;
+		}
+		
+		@Override
+		public int[] getTouchedHosts() {
+			return this.addresses;
+		}
+	}
+	
 
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
+		private static final long serialVersionUID = 42L;
+
 		public TestScenario() {	}
 		
 		public int getWorldSizeX() {
@@ -4,6 +4,7 @@
  */
 package ui;
 
+import core.Profiler;
 import core.SimClock;
 
 /**
@@ -33,6 +34,7 @@ public class DTNSimTextUI extends DTNSimUI {
 				return;
 			}
 			simTime = SimClock.getTime();
+			checkpoint.update(scen.getListenerLists());
 			this.update(false);
 		}
 		
@@ -61,6 +63,9 @@ public class DTNSimTextUI extends DTNSimUI {
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
 			print(String.format("%.1f %d: %.2f 1/s", dur, 
 					SimClock.getIntTime(),ssps));
+			if (Profiler.isEnabled()) {
+				print(Profiler.getSummary());
+			}
 			
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();
@@ -8,9 +8,11 @@ import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.MovementListener;
+import core.Profiler;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -58,6 +60,8 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** Checkpoint manager of the simulation */
+	protected Checkpoint checkpoint;
 	
 	/**
 	 * Constructor.
@@ -74,7 +78,11 @@ public abstract class DTNSimUI {
 	 */
 	public void start() {
 		initModel();
-		runSim();
+		try {
+			runSim();
+		} finally {
+			world.shutdown(); // stop the worker threads of the world
+		}
 	}
 	
 	/**
@@ -90,6 +98,10 @@ public abstract class DTNSimUI {
 				
 		try {
 			settings = new Settings();
+			this.checkpoint = new Checkpoint();
+			if (checkpoint.isRestoring()) {
+				checkpoint.restore();
+			}
 			this.scen = SimScenario.getInstance();
 
 			// add reports
@@ -100,7 +112,8 @@ public abstract class DTNSimUI {
 			}
 
 			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
+			if (settings.contains(MM_WARMUP_S) && 
+					!checkpoint.isRestoring()) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
 				if (warmupTime > 0) {
 					SimClock c = SimClock.getInstance();
@@ -110,6 +123,7 @@ public abstract class DTNSimUI {
 
 			this.world = this.scen.getWorld();
 			world.warmupMovementModel(warmupTime);
+			Profiler.init();
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -130,6 +144,7 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		Profiler.done();
 	}
 	
 	/**
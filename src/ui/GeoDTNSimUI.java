@@ -6,10 +6,12 @@ package ui;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.GeoMessageListener;
 import core.MovementListener;
+import core.Profiler;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -51,7 +53,11 @@ public abstract class GeoDTNSimUI extends DTNSimUI {
 	@Override
 	public void start() {
 		initModel();
-		runSim();
+		try {
+			runSim();
+		} finally {
+			world.shutdown(); // stop the worker threads of the world
+		}
 	}
 
 	/**
@@ -62,6 +68,10 @@ public abstract class GeoDTNSimUI extends DTNSimUI {
 				
 		try {
 			settings = new Settings();
+			this.checkpoint = new Checkpoint();
+			if (checkpoint.isRestoring()) {
+				checkpoint.restore();
+			}
 			this.scen = GeoSimScenario.getInstance();
 
 			// add reports
@@ -72,7 +82,8 @@ public abstract class GeoDTNSimUI extends DTNSimUI {
 			}
 
 			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
+			if (settings.contains(MM_WARMUP_S) && 
+					!checkpoint.isRestoring()) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
 				if (warmupTime > 0) {
 					SimClock c = SimClock.getInstance();
@@ -82,6 +93,7 @@ public abstract class GeoDTNSimUI extends DTNSimUI {
 
 			this.world = this.scen.getWorld();
 			world.warmupMovementModel(warmupTime);
+			Profiler.init();
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
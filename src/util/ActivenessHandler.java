@@ -4,6 +4,7 @@
  */
 package util;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	
 	/** 
 	 * <P>Active times -setting id ({@value})</P>
@@ -115,7 +117,7 @@ public class ActivenessHandler {
 	 * @param offset The offset 
 	 * @return true if node should be active, false if not
 	 */
-	public boolean isActive(int offset) {
+	public synchronized boolean isActive(int offset) {
 		if (this.activeTimes == null) {
 			if (this.activePeriods == null) {
 				return true; // no inactive times nor periods -> always active		
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <P>Multi-level grid of axis aligned bounding boxes that are identified by
+ * small, non-negative, integer ids (e.g., host addresses). The cells of
+ * the levels grow in powers of two starting from the base cell size, and
+ * every box is stored on the finest level whose cells are at least as
+ * large as the box, in the cell of the box's lower left corner. A box
+ * thus extends at most to the next cell on its level, and finding the
+ * boxes that overlap a query box needs to check only the cells around the
+ * query box on each level that has boxes. The cost of the search follows
+ * the number of boxes near the query box, not the number of all boxes.
+ * </P>
+ *
+ * <P>Only the cells that have boxes are stored (in hash maps) so the
+ * coordinates don't need to be within any bounds and can be negative.</P>
+ */
+public class BoxGrid implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** how many boxes a cell can hold initially */
+	private static final int EXPECTED_CELL_SIZE = 4;
+	/** how many box ids the grid can hold initially */
+	private static final int EXPECTED_NROF_IDS = 64;
+
+	/**
+	 * Visitor for the boxes found by
+	 * {@link BoxGrid#forEachOverlapping(double, double, double, double,
+	 * BoxVisitor)}
+	 */
+	public interface BoxVisitor {
+		/**
+		 * Visits a box
+		 * @param id Id of the box
+		 */
+		public void visit(int id);
+	}
+
+	/**
+	 * Boxes of a grid cell
+	 */
+	private static class Cell implements Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private int[] ids = new int[EXPECTED_CELL_SIZE];
+		private int count;
+	}
+
+	private double baseCellSize;
+	/** the non-empty cells of every level by their
+	 * {@link LongHashMap#pair(int, int) (row, column)} keys */
+	private List<LongHashMap<Cell>> levels;
+	/** number of boxes on every level */
+	private int[] levelCounts;
+
+	/* the boxes by their ids */
+	private double[] minXs;
+	private double[] minYs;
+	private double[] maxXs;
+	private double[] maxYs;
+	/** level of every box (-1 if there's no box with the id) */
+	private int[] levelOf;
+	/** key of the cell of every box */
+	private long[] cellOf;
+	/** slot of every box in its cell */
+	private int[] slotOf;
+	/** number of boxes in the grid */
+	private int size;
+
+	/**
+	 * Creates a new, empty, grid
+	 * @param baseCellSize Cell size of the finest level. Boxes smaller than
+	 * this are all put to the finest level.
+	 */
+	public BoxGrid(double baseCellSize) {
+		this.baseCellSize = baseCellSize;
+		this.levels = new ArrayList<LongHashMap<Cell>>();
+		this.levelCounts = new int[0];
+		this.minXs = new double[EXPECTED_NROF_IDS];
+		this.minYs = new double[EXPECTED_NROF_IDS];
+		this.maxXs = new double[EXPECTED_NROF_IDS];
+		this.maxYs = new double[EXPECTED_NROF_IDS];
+		this.levelOf = new int[EXPECTED_NROF_IDS];
+		this.cellOf = new long[EXPECTED_NROF_IDS];
+		this.slotOf = new int[EXPECTED_NROF_IDS];
+		Arrays.fill(this.levelOf, -1);
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a box to the grid or, if there already is a box with the same id,
+	 * moves that box to the new coordinates
+	 * @param id Id of the box
+	 * @param minX The smallest X coordinate of the box
+	 * @param minY The smallest Y coordinate of the box
+	 * @param maxX The largest X coordinate of the box
+	 * @param maxY The largest Y coordinate of the box
+	 */
+	public void put(int id, double minX, double minY, double maxX,
+			double maxY) {
+		if (id >= levelOf.length) {
+			growIds(id + 1);
+		}
+		minXs[id] = minX;
+		minYs[id] = minY;
+		maxXs[id] = maxX;
+		maxYs[id] = maxY;
+
+		int level = levelFor(Math.max(maxX - minX, maxY - minY));
+		double cellSize = cellSize(level);
+		long key = LongHashMap.pair(cellIndex(minY, cellSize),
+				cellIndex(minX, cellSize));
+		if (levelOf[id] == level && cellOf[id] == key) {
+			return; /* still in the same cell */
+		}
+
+		if (levelOf[id] >= 0) {
+			removeFromCell(id);
+		}
+		else {
+			size++;
+		}
+		addToCell(id, level, key);
+	}
+
+	/**
+	 * Removes a box from the grid
+	 * @param id Id of the box to remove
+	 * @return true if there was a box with the id, false if not
+	 */
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		removeFromCell(id);
+		levelOf[id] = -1;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Returns true if the grid has a box with the given id
+	 * @param id The id
+	 * @return true if the grid has a box with the given id
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < levelOf.length && levelOf[id] >= 0;
+	}
+
+	/**
+	 * Returns the number of boxes in the grid
+	 * @return the number of boxes in the grid
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Calls the visitor for every box that overlaps (or touches) the query
+	 * box. Every box is visited at most once and in no particular order.
+	 * The visitor must not change the grid. Doesn't create any new objects
+	 * unless almost all the cells of a level are near the query box.
+	 * @param minX The smallest X coordinate of the query box
+	 * @param minY The smallest Y coordinate of the query box
+	 * @param maxX The largest X coordinate of the query box
+	 * @param maxY The largest Y coordinate of the query box
+	 * @param visitor The visitor to call
+	 */
+	public void forEachOverlapping(double minX, double minY, double maxX,
+			double maxY, BoxVisitor visitor) {
+		for (int level=0, n=levels.size(); level < n; level++) {
+			if (levelCounts[level] == 0) {
+				continue;
+			}
+			LongHashMap<Cell> cells = levels.get(level);
+			double cellSize = cellSize(level);
+			/* boxes of the previous row and column may extend to the
+			 * query box */
+			int col0 = cellIndex(minX, cellSize) - 1;
+			int col1 = cellIndex(maxX, cellSize);
+			int row0 = cellIndex(minY, cellSize) - 1;
+			int row1 = cellIndex(maxY, cellSize);
+
+			if ((long)(col1 - col0 + 1) * (row1 - row0 + 1) > cells.size()) {
+				/* cheaper to check all the cells of the level */
+				for (Cell cell : cells.values()) {
+					visitCell(cell, minX, minY, maxX, maxY, visitor);
+				}
+				continue;
+			}
+
+			for (int row = row0; row <= row1; row++) {
+				for (int col = col0; col <= col1; col++) {
+					Cell cell = cells.get(LongHashMap.pair(row, col));
+					if (cell != null) {
+						visitCell(cell, minX, minY, maxX, maxY, visitor);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calls the visitor for the boxes of a cell that overlap the query box
+	 */
+	private void visitCell(Cell cell, double minX, double minY, double maxX,
+			double maxY, BoxVisitor visitor) {
+		int[] ids = cell.ids;
+		for (int i=0, n=cell.count; i < n; i++) {
+			int id = ids[i];
+			if (minXs[id] <= maxX && maxXs[id] >= minX &&
+					minYs[id] <= maxY && maxYs[id] >= minY) {
+				visitor.visit(id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the finest level whose cells are at least as large as the
+	 * given size. Creates the level if it doesn't exist yet.
+	 * @param size The size
+	 * @return The level
+	 */
+	private int levelFor(double size) {
+		int level = 0;
+		double cellSize = baseCellSize;
+		while (cellSize < size) {
+			cellSize *= 2;
+			level++;
+		}
+		while (levels.size() <= level) {
+			levels.add(new LongHashMap<Cell>());
+		}
+		if (levelCounts.length < levels.size()) {
+			levelCounts = Arrays.copyOf(levelCounts, levels.size());
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the cell size of a level
+	 */
+	private double cellSize(int level) {
+		return baseCellSize * (1L << level);
+	}
+
+	/**
+	 * Returns the index of the row or column of a coordinate
+	 */
+	private static int cellIndex(double coord, double cellSize) {
+		return (int)Math.floor(coord / cellSize);
+	}
+
+	/**
+	 * Adds a box to the end of a cell's id array
+	 * @param id Id of the box
+	 * @param level Level of the cell
+	 * @param key Key of the cell
+	 */
+	private void addToCell(int id, int level, long key) {
+		LongHashMap<Cell> cells = levels.get(level);
+		Cell cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell();
+			cells.put(key, cell);
+		}
+		else if (cell.count == cell.ids.length) {
+			cell.ids = Arrays.copyOf(cell.ids, cell.count * 2);
+		}
+
+		cell.ids[cell.count] = id;
+		levelOf[id] = level;
+		cellOf[id] = key;
+		slotOf[id] = cell.count;
+		cell.count++;
+		levelCounts[level]++;
+	}
+
+	/**
+	 * Removes a box from its cell by moving the last box of the cell to its
+	 * slot. Empty cells are removed from the level.
+	 * @param id Id of the box
+	 */
+	private void removeFromCell(int id) {
+		int level = levelOf[id];
+		LongHashMap<Cell> cells = levels.get(level);
+		Cell cell = cells.get(cellOf[id]);
+		int last = --cell.count;
+		levelCounts[level]--;
+
+		assert cell.ids[slotOf[id]] == id : "box " + id + " not found from " +
+			"its cell on level " + level;
+
+		if (slotOf[id] != last) {
+			int moved = cell.ids[last];
+			cell.ids[slotOf[id]] = moved;
+			slotOf[moved] = slotOf[id];
+		}
+		if (last == 0) {
+			cells.remove(cellOf[id]);
+		}
+	}
+
+	/**
+	 * Grows the per id arrays so that they can hold at least the given
+	 * number of ids
+	 */
+	private void growIds(int minSize) {
+		int oldSize = levelOf.length;
+		int newSize = Math.max(minSize, oldSize * 2);
+		minXs = Arrays.copyOf(minXs, newSize);
+		minYs = Arrays.copyOf(minYs, newSize);
+		maxXs = Arrays.copyOf(maxXs, newSize);
+		maxYs = Arrays.copyOf(maxYs, newSize);
+		levelOf = Arrays.copyOf(levelOf, newSize);
+		cellOf = Arrays.copyOf(cellOf, newSize);
+		slotOf = Arrays.copyOf(slotOf, newSize);
+		Arrays.fill(levelOf, oldSize, newSize, -1);
+	}
+}
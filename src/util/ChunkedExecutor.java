@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import core.SimError;
+
+/**
+ * Runs index range based tasks in parallel using a fixed pool of worker
+ * threads. The index range is split into (roughly) equally sized contiguous
+ * chunks and the caller's thread is blocked until all chunks are done.
+ * The worker threads are daemon threads so an unused executor doesn't keep
+ * the JVM alive.
+ */
+public class ChunkedExecutor {
+	/** How many chunks are created per thread (for load balancing) */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private ExecutorService pool;
+	private int nrofThreads;
+
+	/**
+	 * A task that processes a range of indexes
+	 */
+	public interface ChunkTask {
+		/**
+		 * Processes the indexes of a chunk
+		 * @param from The first index of the chunk (inclusive)
+		 * @param to The last index of the chunk (exclusive)
+		 */
+		public void run(int from, int to);
+	}
+
+	/**
+	 * Creates a new executor
+	 * @param nrofThreads How many worker threads to use
+	 * @param name Name prefix for the worker threads
+	 */
+	public ChunkedExecutor(int nrofThreads, final String name) {
+		this.nrofThreads = nrofThreads;
+		this.pool = Executors.newFixedThreadPool(nrofThreads,
+				new ThreadFactory() {
+			private int count = 0;
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + (count++));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of worker threads
+	 * @return the number of worker threads
+	 */
+	public int getNrofThreads() {
+		return this.nrofThreads;
+	}
+
+	/**
+	 * Runs the task for all indexes in range [0, size) and waits until all
+	 * the chunks are processed. Any exception thrown by a task is re-thrown
+	 * in the calling thread.
+	 * @param size The size of the index range
+	 * @param task The task to run
+	 */
+	public void run(int size, final ChunkTask task) {
+		int nrofChunks = Math.min(size, nrofThreads * CHUNKS_PER_THREAD);
+		if (nrofChunks <= 1) {
+			task.run(0, size);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(nrofChunks);
+		for (int i=0; i < nrofChunks; i++) {
+			final int from = (int)((long)size * i / nrofChunks);
+			final int to = (int)((long)size * (i+1) / nrofChunks);
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					task.run(from, to);
+				}
+			}));
+		}
+
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				throw new SimError(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				} else if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new SimError((Exception)cause);
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker threads. The executor can't be used after this.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive long keys (e.g., message handles or pairs of
+ * ints packed with {@link #pair(int, int)}). Uses open addressing with
+ * linear probing, so the keys aren't boxed and the map doesn't allocate
+ * entry objects. Null values are not allowed.
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	private static final int DEF_CAPACITY = 16;
+
+	/** the keys (valid only where there's a value) */
+	private long[] keys;
+	/** the values (null for free slots) */
+	private Object[] values;
+	/** number of mappings */
+	private int size;
+	/** number of modifications (for detecting concurrent modifications) */
+	private transient int modCount;
+	/** read-only view of the values (created when first needed) */
+	private transient Collection<V> valueView;
+
+	/**
+	 * Creates a new, empty, map
+	 */
+	public LongHashMap() {
+		this.keys = new long[DEF_CAPACITY];
+		this.values = new Object[DEF_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Packs two ints to a long key
+	 * @param high The int for the high 32 bits
+	 * @param low The int for the low 32 bits
+	 * @return The key
+	 */
+	public static long pair(int high, int low) {
+		return ((long)high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the value mapped to a key
+	 * @param key The key
+	 * @return The value or null if there's no mapping for the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = indexOf(key);
+		return (i < 0 ? null : (V)this.values[i]);
+	}
+
+	/**
+	 * Returns true if there's a mapping for the key
+	 * @param key The key
+	 * @return True if there's a mapping for the key
+	 */
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Maps a key to a value
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The value previously mapped to the key or null if there was
+	 * no mapping
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null value for key " + key);
+		}
+		int mask = this.values.length - 1;
+		int i = hash(key) & mask;
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				V old = (V)this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+		this.modCount++;
+		if (this.size * 2 > this.values.length) {
+			resize(this.values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the mapping of a key
+	 * @param key The key
+	 * @return The value that was mapped to the key or null if there was
+	 * no mapping
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V)this.values[i];
+		this.size--;
+		this.modCount++;
+
+		/* move the following entries of the probe sequence back so that
+		 * no free slots are left in the sequences */
+		int mask = this.values.length - 1;
+		int free = i;
+		int j = (i + 1) & mask;
+		while (this.values[j] != null) {
+			int home = hash(this.keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				this.keys[free] = this.keys[j];
+				this.values[free] = this.values[j];
+				free = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.values[free] = null;
+		return old;
+	}
+
+	/**
+	 * Returns the number of mappings
+	 * @return The number of mappings
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return True if there are no mappings
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all the mappings
+	 */
+	public void clear() {
+		java.util.Arrays.fill(this.values, null);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	/**
+	 * Returns the keys of the map in no particular order
+	 * @return A new array with the keys
+	 */
+	public long[] keys() {
+		long[] result = new long[this.size];
+		int n = 0;
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.values[i] != null) {
+				result[n++] = this.keys[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a read-only view of the values of the map. The values are
+	 * iterated in no particular order.
+	 * @return The values
+	 */
+	public Collection<V> values() {
+		if (this.valueView == null) {
+			this.valueView = new AbstractCollection<V>() {
+				public int size() {
+					return size;
+				}
+
+				public Iterator<V> iterator() {
+					return new ValueIterator();
+				}
+			};
+		}
+		return this.valueView;
+	}
+
+	/**
+	 * Returns the slot index of a key or -1 if the key isn't in the map
+	 */
+	private int indexOf(long key) {
+		int mask = this.values.length - 1;
+		int i = hash(key) & mask;
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != null) {
+				int i = hash(oldKeys[j]) & mask;
+				while (this.values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				this.keys[i] = oldKeys[j];
+				this.values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * Iterator over the values
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private int next = 0;
+		private final int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			while (next < values.length && values[next] == null) {
+				next++;
+			}
+			return next < values.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return (V)values[next++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
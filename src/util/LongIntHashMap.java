@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to primitive int values (e.g., bit
+ * masks by message handles). Works like {@link LongHashMap} but doesn't
+ * box the values either. Zero is the value of every key that has no
+ * mapping: {@link #get(long)} returns zero for unmapped keys and putting
+ * zero removes the mapping.
+ */
+public class LongIntHashMap implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	private static final int DEF_CAPACITY = 16;
+
+	/** the keys (valid only where the value isn't zero) */
+	private long[] keys;
+	/** the values (zero for free slots) */
+	private int[] values;
+	/** number of mappings */
+	private int size;
+
+	/**
+	 * Creates a new, empty, map
+	 */
+	public LongIntHashMap() {
+		this.keys = new long[DEF_CAPACITY];
+		this.values = new int[DEF_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the value mapped to a key
+	 * @param key The key
+	 * @return The value or zero if there's no mapping for the key
+	 */
+	public int get(long key) {
+		int i = indexOf(key);
+		return (i < 0 ? 0 : this.values[i]);
+	}
+
+	/**
+	 * Returns true if there's a mapping for the key
+	 * @param key The key
+	 * @return True if there's a (non-zero) mapping for the key
+	 */
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Maps a key to a value
+	 * @param key The key
+	 * @param value The value (zero removes the mapping)
+	 * @return The value previously mapped to the key or zero if there was
+	 * no mapping
+	 */
+	public int put(long key, int value) {
+		if (value == 0) {
+			return remove(key);
+		}
+		int mask = this.values.length - 1;
+		int i = hash(key) & mask;
+		while (this.values[i] != 0) {
+			if (this.keys[i] == key) {
+				int old = this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+		if (this.size * 2 > this.values.length) {
+			resize(this.values.length * 2);
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes the mapping of a key
+	 * @param key The key
+	 * @return The value that was mapped to the key or zero if there was
+	 * no mapping
+	 */
+	public int remove(long key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return 0;
+		}
+		int old = this.values[i];
+		this.size--;
+
+		/* move the following entries of the probe sequence back so that
+		 * no free slots are left in the sequences */
+		int mask = this.values.length - 1;
+		int free = i;
+		int j = (i + 1) & mask;
+		while (this.values[j] != 0) {
+			int home = hash(this.keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				this.keys[free] = this.keys[j];
+				this.values[free] = this.values[j];
+				free = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.values[free] = 0;
+		return old;
+	}
+
+	/**
+	 * Returns the number of mappings
+	 * @return The number of mappings
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return True if there are no mappings
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all the mappings
+	 */
+	public void clear() {
+		Arrays.fill(this.values, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the slot index of a key or -1 if the key isn't in the map
+	 */
+	private int indexOf(long key) {
+		int mask = this.values.length - 1;
+		int i = hash(key) & mask;
+		while (this.values[i] != 0) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != 0) {
+				int i = hash(oldKeys[j]) & mask;
+				while (this.values[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				this.keys[i] = oldKeys[j];
+				this.values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}